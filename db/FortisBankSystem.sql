@@ -4,6 +4,24 @@ EXCEPTION WHEN OTHERS THEN NULL;
 END;
 /
 
+BEGIN
+EXECUTE IMMEDIATE 'DROP TABLE balance_snapshots CASCADE CONSTRAINTS';
+EXCEPTION WHEN OTHERS THEN NULL;
+END;
+/
+
+BEGIN
+EXECUTE IMMEDIATE 'DROP TABLE transaction_idempotency_keys CASCADE CONSTRAINTS';
+EXCEPTION WHEN OTHERS THEN NULL;
+END;
+/
+
+BEGIN
+EXECUTE IMMEDIATE 'DROP TABLE transactions_archive CASCADE CONSTRAINTS';
+EXCEPTION WHEN OTHERS THEN NULL;
+END;
+/
+
 BEGIN
 EXECUTE IMMEDIATE 'DROP TABLE transactions CASCADE CONSTRAINTS';
 EXCEPTION WHEN OTHERS THEN NULL;
@@ -77,6 +95,7 @@ available_balance NUMBER(18, 2) DEFAULT 0 NOT NULL,
 credit_limit NUMBER(18, 2),         -- For CREDIT accounts
 interest_rate NUMBER(5, 2),         -- For SAVINGS and CREDIT accounts
 currency_code VARCHAR2(10),         -- For CURRENCY accounts
+version NUMBER(19) DEFAULT 0 NOT NULL, -- Incremented by every update, which is rejected if it changed
 created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
 FOREIGN KEY (customer_id) REFERENCES customers(user_id) ON DELETE CASCADE
 );
@@ -98,6 +117,63 @@ destination_account_id VARCHAR2(50),
 created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
 FOREIGN KEY (source_account_id) REFERENCES accounts(account_id) ON DELETE SET NULL,
 FOREIGN KEY (destination_account_id) REFERENCES accounts(account_id) ON DELETE SET NULL
+)
+-- One partition per month, created as transactions are inserted, so that a date range only reads
+-- the months it covers
+PARTITION BY RANGE (transaction_date) INTERVAL (NUMTOYMINTERVAL(1, 'MONTH'))
+(PARTITION p_before_2024 VALUES LESS THAN (DATE '2024-01-01'));
+
+-- =======================
+-- TRANSACTIONS ARCHIVE TABLE
+-- =======================
+
+-- Cold tier: transactions older than the archive horizon are moved here by the archive task.
+-- Rows are never updated once archived, so the table is stored compressed.
+CREATE TABLE transactions_archive (
+transaction_id VARCHAR2(50) PRIMARY KEY,
+transaction_type VARCHAR2(20) NOT NULL,
+transaction_date DATE NOT NULL,
+amount NUMBER(18, 2) NOT NULL,
+description VARCHAR2(255),
+source_account_id VARCHAR2(50),
+destination_account_id VARCHAR2(50),
+created_at TIMESTAMP NOT NULL,
+archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+) COMPRESS;
+
+-- =======================
+-- BALANCE SNAPSHOTS TABLE
+-- =======================
+
+-- Closing balance of each account at the end of the months in which it had transactions: the signed
+-- sum of its transactions up to then. Maintained with every executed transaction, so that opening
+-- balances of statements are read from the previous month instead of the whole history.
+CREATE TABLE balance_snapshots (
+account_id VARCHAR2(50) NOT NULL,
+snapshot_month DATE NOT NULL,       -- First day of the month
+closing_balance NUMBER(18, 2) NOT NULL,
+PRIMARY KEY (account_id, snapshot_month),
+FOREIGN KEY (account_id) REFERENCES accounts(account_id) ON DELETE CASCADE
+);
+
+-- =======================
+-- TRANSACTION IDEMPOTENCY KEYS TABLE
+-- =======================
+
+-- Dedupe index of transactions submitted with an idempotency key, inserted in the same database
+-- transaction as the transaction itself: a retried submission returns the recorded result instead of
+-- executing again. No foreign key to transactions, whose rows move to the archive.
+CREATE TABLE transaction_idempotency_keys (
+idempotency_key VARCHAR2(100) PRIMARY KEY,
+created_at TIMESTAMP NOT NULL,
+sequence_number NUMBER(19) NOT NULL,
+transaction_id VARCHAR2(50),
+transaction_type VARCHAR2(20),
+source_account_id VARCHAR2(50),
+destination_account_id VARCHAR2(50),
+amount NUMBER(18, 2),
+status VARCHAR2(10) NOT NULL,
+reason VARCHAR2(255)
 );
 
 -- =======================
@@ -126,15 +202,33 @@ FOREIGN KEY (related_customer_id) REFERENCES  users(user_id) ON DELETE SET NULL
 -- INDEXES FOR PERFORMANCE
 -- =======================
 
--- Improve lookup by customer
-CREATE INDEX idx_accounts_customer_id ON accounts(customer_id);
+-- Improve lookup by customer; also gives the account ids of a customer without reading the table
+CREATE INDEX idx_accounts_customer_account ON accounts(customer_id, account_id);
 
 -- Support filtering/grouping by account type
 CREATE INDEX idx_accounts_account_type ON accounts(account_type);
 
--- Optimize transactions filtering by account
-CREATE INDEX idx_transactions_source_account_id ON transactions(source_account_id);
-CREATE INDEX idx_transactions_destination_account_id ON transactions(destination_account_id);
+-- Statement queries: the transactions of an account in a date range, with their amounts, are read
+-- from the index alone. Local indexes are partitioned like the table, by month.
+CREATE INDEX idx_transactions_source_date ON transactions(source_account_id, transaction_date, amount) LOCAL;
+CREATE INDEX idx_transactions_destination_date ON transactions(destination_account_id, transaction_date, amount) LOCAL;
+
+-- Keyset pagination of the transaction history, global so that a page is read across months in order
+CREATE INDEX idx_transactions_date_id ON transactions(transaction_date, transaction_id);
+
+-- Archived transactions are only read by account and date range
+CREATE INDEX idx_transactions_archive_source ON transactions_archive(source_account_id, transaction_date) COMPRESS 1;
+CREATE INDEX idx_transactions_archive_destination ON transactions_archive(destination_account_id, transaction_date) COMPRESS 1;
+CREATE INDEX idx_transactions_archive_date ON transactions_archive(transaction_date, transaction_id);
+
+-- Expiry of idempotency keys by creation time
+CREATE INDEX idx_idempotency_keys_created ON transaction_idempotency_keys(created_at);
+
+-- Optimize recipient filtering in inbox, newest first for keyset pagination
+CREATE INDEX idx_notifications_user_id ON notifications(recipient_user_id, created_at, notification_id);
+
+-- Case-insensitive login and registration lookups by email
+CREATE INDEX idx_users_email_lower ON users(LOWER(email));
 
--- Optimize recipient filtering in inbox
-CREATE INDEX idx_notifications_user_id ON notifications(recipient_user_id);
+-- Registration check for an existing phone number
+CREATE INDEX idx_customers_phone_number ON customers(phone_number);
@@ -0,0 +1,8 @@
+-- =======================
+-- MIGRATION 001: EMAIL AND PHONE NUMBER LOOKUP INDEXES
+-- =======================
+-- Adds the indexes of FortisBankSystem.sql behind the login and registration lookups, which query
+-- users by LOWER(email) and customers by phone number instead of reading every user.
+
+CREATE INDEX idx_users_email_lower ON users(LOWER(email));
+CREATE INDEX idx_customers_phone_number ON customers(phone_number);
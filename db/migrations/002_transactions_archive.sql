@@ -0,0 +1,23 @@
+-- =======================
+-- MIGRATION 002: TRANSACTIONS ARCHIVE
+-- =======================
+-- Creates the cold tier of FortisBankSystem.sql, filled by the monthly archive task with the
+-- transactions older than the archive horizon. Existing transactions stay in the transactions table
+-- until the task first runs.
+
+CREATE TABLE transactions_archive (
+transaction_id VARCHAR2(50) PRIMARY KEY,
+transaction_type VARCHAR2(20) NOT NULL,
+transaction_date DATE NOT NULL,
+amount NUMBER(18, 2) NOT NULL,
+description VARCHAR2(255),
+source_account_id VARCHAR2(50),
+destination_account_id VARCHAR2(50),
+created_at TIMESTAMP NOT NULL,
+archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+) COMPRESS;
+
+-- Archived transactions are only read by account and date range
+CREATE INDEX idx_transactions_archive_source ON transactions_archive(source_account_id, transaction_date) COMPRESS 1;
+CREATE INDEX idx_transactions_archive_destination ON transactions_archive(destination_account_id, transaction_date) COMPRESS 1;
+CREATE INDEX idx_transactions_archive_date ON transactions_archive(transaction_date);
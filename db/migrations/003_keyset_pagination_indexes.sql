@@ -0,0 +1,14 @@
+-- =======================
+-- MIGRATION 003: KEYSET PAGINATION INDEXES
+-- =======================
+-- Adds or widens the indexes of FortisBankSystem.sql that the paged queries read in key order:
+-- transactions by (date, id), archived ones included, and a user's notifications by
+-- (created_at, id). Apply after 002, which creates the archive table.
+
+CREATE INDEX idx_transactions_date_id ON transactions(transaction_date, transaction_id);
+
+DROP INDEX idx_transactions_archive_date;
+CREATE INDEX idx_transactions_archive_date ON transactions_archive(transaction_date, transaction_id);
+
+DROP INDEX idx_notifications_user_id;
+CREATE INDEX idx_notifications_user_id ON notifications(recipient_user_id, created_at, notification_id);
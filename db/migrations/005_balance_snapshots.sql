@@ -0,0 +1,36 @@
+-- =======================
+-- MIGRATION 005: MONTHLY BALANCE SNAPSHOTS
+-- =======================
+-- Creates the balance_snapshots table of FortisBankSystem.sql and fills it from the existing history,
+-- archived transactions included. Apply after 002, which creates the archive table, to a schema
+-- created before FortisBankSystem.sql had the snapshots. Run it while no transactions are executed:
+-- the application maintains the snapshots from then on.
+
+CREATE TABLE balance_snapshots (
+account_id VARCHAR2(50) NOT NULL,
+snapshot_month DATE NOT NULL,       -- First day of the month
+closing_balance NUMBER(18, 2) NOT NULL,
+PRIMARY KEY (account_id, snapshot_month),
+FOREIGN KEY (account_id) REFERENCES accounts(account_id) ON DELETE CASCADE
+);
+
+-- The net change of each account and month, accumulated over the months of the account
+INSERT INTO balance_snapshots (account_id, snapshot_month, closing_balance)
+SELECT account_id, snapshot_month, SUM(SUM(delta)) OVER (PARTITION BY account_id ORDER BY snapshot_month)
+FROM (
+SELECT source_account_id account_id, TRUNC(transaction_date, 'MM') snapshot_month, -amount delta
+FROM transactions WHERE source_account_id IS NOT NULL
+UNION ALL
+SELECT destination_account_id, TRUNC(transaction_date, 'MM'), amount
+FROM transactions WHERE destination_account_id IS NOT NULL
+UNION ALL
+SELECT source_account_id, TRUNC(transaction_date, 'MM'), -amount
+FROM transactions_archive WHERE source_account_id IS NOT NULL
+UNION ALL
+SELECT destination_account_id, TRUNC(transaction_date, 'MM'), amount
+FROM transactions_archive WHERE destination_account_id IS NOT NULL
+)
+WHERE account_id IN (SELECT account_id FROM accounts)
+GROUP BY account_id, snapshot_month;
+
+COMMIT;
@@ -0,0 +1,8 @@
+-- =======================
+-- MIGRATION 006: ACCOUNT VERSIONS
+-- =======================
+-- Adds the version column of FortisBankSystem.sql to the accounts table. Every update of an account
+-- increments it, and is rejected if the account was updated since it was read.
+-- Existing accounts start at version 0; adding a column with a default is a metadata-only change.
+
+ALTER TABLE accounts ADD version NUMBER(19) DEFAULT 0 NOT NULL;
@@ -0,0 +1,20 @@
+-- =======================
+-- MIGRATION 007: TRANSACTION IDEMPOTENCY KEYS
+-- =======================
+-- Creates the dedupe index of transactions submitted with an idempotency key, as in
+-- FortisBankSystem.sql. Transactions executed before it have no key and are not affected.
+
+CREATE TABLE transaction_idempotency_keys (
+idempotency_key VARCHAR2(100) PRIMARY KEY,
+created_at TIMESTAMP NOT NULL,
+sequence_number NUMBER(19) NOT NULL,
+transaction_id VARCHAR2(50),
+transaction_type VARCHAR2(20),
+source_account_id VARCHAR2(50),
+destination_account_id VARCHAR2(50),
+amount NUMBER(18, 2),
+status VARCHAR2(10) NOT NULL,
+reason VARCHAR2(255)
+);
+
+CREATE INDEX idx_idempotency_keys_created ON transaction_idempotency_keys(created_at);
@@ -9,6 +9,7 @@ import com.fortisbank.contracts.models.transactions.Transaction;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.Map;
 
 /**
  * Utility class for exporting reports to CSV files.
@@ -86,6 +87,11 @@ public class ReportExporter {
                 }
             });
 
+            writer.write("\nTransactions by Type:\nType,Count\n");
+            for (Map.Entry<String, Long> entry : report.getTransactionTypeCounts().entrySet()) {
+                writer.write(csvEscape(entry.getKey()) + "," + entry.getValue() + "\n");
+            }
+
             writer.write("\nLow Balance Accounts (< $50):\nAccountNumber,Customer,Balance\n");
             for (Account acc : report.getLowBalanceAccounts()) {
                 writer.write(String.join(",",
@@ -1,5 +1,6 @@
 package com.fortisbank.business.services.automation;
 
+import com.fortisbank.business.services.transaction.ArchiveService;
 import com.fortisbank.business.services.transaction.TransactionService;
 import com.fortisbank.business.services.account.AccountService;
 import com.fortisbank.business.bll_utils.DaemonThread;
@@ -63,6 +64,24 @@ public class AutomationService {
             }
         }, TimeUnit.HOURS.toMillis(1)).start();
 
+        // 6. Archive Old Transactions (Monthly)
+        new DaemonThread(() -> {
+            try {
+                ArchiveService.getInstance(storageMode).archiveOldTransactions();
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Error archiving old transactions: {0}", e.getMessage());
+            }
+        }, TimeUnit.DAYS.toMillis(30)).start();
+
+        // 10. Expire Idempotency Keys (Daily)
+        new DaemonThread(() -> {
+            try {
+                TransactionService.getInstance(storageMode).purgeExpiredIdempotencyKeys();
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Error deleting expired idempotency keys: {0}", e.getMessage());
+            }
+        }, TimeUnit.DAYS.toMillis(1)).start();
+
         // Uncomment and implement the following tasks as needed:
         // 5. Monthly Statement Generation (Monthly)
         // new DaemonThread(() -> {
@@ -73,15 +92,6 @@ public class AutomationService {
         //     }
         // }, TimeUnit.DAYS.toMillis(30)).start();
 
-        // 6. Archive Old Transactions (Monthly)
-        // new DaemonThread(() -> {
-        //     try {
-        //         ArchiveService.archiveOldTransactions();
-        //     } catch (Exception e) {
-        //         LOGGER.log(Level.SEVERE, "Error archiving old transactions: {0}", e.getMessage());
-        //     }
-        // }, TimeUnit.DAYS.toMillis(30)).start();
-
         // 7. Auto-Approval for Low-Risk Account Requests (Every 5 minutes)
         // new DaemonThread(() -> {
         //     try {
@@ -1,5 +1,6 @@
 package com.fortisbank.business.services.notification;
 
+import com.fortisbank.contracts.collections.Page;
 import com.fortisbank.data.dal_utils.RepositoryFactory;
 import com.fortisbank.data.dal_utils.StorageMode;
 import com.fortisbank.contracts.models.accounts.Account;
@@ -11,6 +12,7 @@ import com.fortisbank.contracts.models.users.Customer;
 import com.fortisbank.contracts.models.users.User;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -42,12 +44,7 @@ public class NotificationService {
 
     public void sendNotification(User recipient, NotificationType type, String title, String message, Customer relatedCustomer, Account relatedAccount) {
         try {
-            if (recipient == null) {
-                throw new IllegalArgumentException("Recipient cannot be null.");
-            }
-
-            Notification notification = new Notification(type, title, message, relatedCustomer, relatedAccount);
-            notification.setRecipientUserId(recipient.getUserId()); // Set recipient explicitly
+            Notification notification = createNotification(recipient, type, title, message, relatedCustomer, relatedAccount);
             repositoryFactory.getNotificationRepository().insertNotification(notification);
 
         } catch (Exception e) {
@@ -56,6 +53,34 @@ public class NotificationService {
         }
     }
 
+    /**
+     * Builds a notification without sending it, so that callers producing many notifications can
+     * send them together with {@link #sendNotifications(Collection)}.
+     */
+    public Notification createNotification(User recipient, NotificationType type, String title, String message, Customer relatedCustomer, Account relatedAccount) {
+        if (recipient == null) {
+            throw new IllegalArgumentException("Recipient cannot be null.");
+        }
+        Notification notification = new Notification(type, title, message, relatedCustomer, relatedAccount);
+        notification.setRecipientUserId(recipient.getUserId()); // Set recipient explicitly
+        return notification;
+    }
+
+    /**
+     * Sends several notifications in one batch.
+     */
+    public void sendNotifications(Collection<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        try {
+            repositoryFactory.getNotificationRepository().insertNotifications(notifications);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error sending notifications: {0}", e.getMessage());
+            throw new RuntimeException("Failed to send " + notifications.size() + " notifications", e);
+        }
+    }
+
 
     public void notifyTransactionReceipt(Customer customer, Transaction tx) {
         String title = "Transaction Completed";
@@ -161,6 +186,19 @@ public class NotificationService {
         }
     }
 
+    /**
+     * Returns one page of the notifications of a user, newest first. An empty last page is returned
+     * if the notifications cannot be read.
+     */
+    public Page<Notification> getNotificationsPage(String userId, String pageToken, int pageSize) {
+        try {
+            return repositoryFactory.getNotificationRepository().getNotificationsPageByUserId(userId, pageToken, pageSize);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving notifications for user ID: " + userId, e);
+            return new Page<>(List.of(), null);
+        }
+    }
+
     public List<Notification> getUnreadNotifications(String userId) {
         try {
             return repositoryFactory.getNotificationRepository().getNotificationsByUserId(userId).stream()
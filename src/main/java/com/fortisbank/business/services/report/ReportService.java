@@ -4,13 +4,14 @@ package com.fortisbank.business.services.report;
     import com.fortisbank.data.interfaces.ICustomerRepository;
     import com.fortisbank.data.interfaces.ITransactionRepository;
     import com.fortisbank.data.dal_utils.RepositoryFactory;
-    import com.fortisbank.contracts.models.accounts.Account;
     import com.fortisbank.contracts.models.accounts.AccountType;
     import com.fortisbank.contracts.collections.AccountList;
     import com.fortisbank.contracts.collections.TransactionList;
+    import com.fortisbank.contracts.models.reports.AccountTypeTotals;
     import com.fortisbank.contracts.models.reports.BankSummaryReport;
     import com.fortisbank.contracts.models.reports.CustomerStatementReport;
-    import com.fortisbank.contracts.models.transactions.Transaction;
+    import com.fortisbank.contracts.models.reports.TransactionTypeTotals;
+    import com.fortisbank.contracts.models.transactions.TransactionType;
     import com.fortisbank.contracts.models.users.Customer;
     import com.fortisbank.business.bll_utils.ReportExporter;
 
@@ -29,6 +30,7 @@ package com.fortisbank.business.services.report;
     public class ReportService {
 
         private static final Logger LOGGER = Logger.getLogger(ReportService.class.getName());
+        private static final BigDecimal LOW_BALANCE_THRESHOLD = new BigDecimal("50");
 
         private final ICustomerRepository customerRepository;
         private final IAccountRepository accountRepository;
@@ -55,19 +57,10 @@ package com.fortisbank.business.services.report;
 
                 BigDecimal openingBalance = transactionRepository.getBalanceBeforeDate(customer.getUserId(), start);
 
-                AccountList customerAccounts = accountRepository.getAccountsByCustomerId(customer.getUserId());
-
-                BigDecimal closingBalance = openingBalance;
-
-                for (Transaction t : transactions) {
-                    for (Account acc : customerAccounts) {
-                        BigDecimal signed = t.getSignedAmountFor(acc);
-                        if (signed.compareTo(BigDecimal.ZERO) != 0) {
-                            closingBalance = closingBalance.add(signed);
-                            break;
-                        }
-                    }
-                }
+                BigDecimal closingBalance = transactionRepository
+                        .getNetChangeByAccount(customer.getUserId(), start, end)
+                        .values().stream()
+                        .reduce(openingBalance, BigDecimal::add);
 
                 return new CustomerStatementReport(customer, transactions, openingBalance, closingBalance, start, end);
             } catch (Exception e) {
@@ -78,44 +71,33 @@ package com.fortisbank.business.services.report;
 
         public BankSummaryReport generateBankSummaryReport() {
             try {
-                var customers = customerRepository.getAllCustomers();
-                var accounts = accountRepository.getAllAccounts();
-                var transactions = transactionRepository.getAllTransactions();
-
-                Map<String, Long> accountTypeCounts = accounts.stream()
-                        .collect(Collectors.groupingBy(
-                                acc -> acc.getAccountType().name(),
-                                Collectors.counting()
-                        ));
-
-                BigDecimal totalBalance = accounts.stream()
-                        .map(Account::getAvailableBalance)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                BigDecimal totalCreditUsed = accounts.stream()
-                        .filter(acc -> acc.getAccountType() == AccountType.CREDIT)
-                        .map(Account::getCreditLimit)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                BigDecimal totalFees = transactions.stream()
-                        .filter(t -> t.getTransactionType() == com.fortisbank.contracts.models.transactions.TransactionType.FEE)
-                        .map(Transaction::getAmount)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-                AccountList lowBalanceAccounts = new AccountList(
-                        accounts.stream()
-                                .filter(acc -> acc.getAvailableBalance().compareTo(new BigDecimal("50")) < 0)
-                                .collect(Collectors.toList())
-                );
+                // Aggregated by the repositories, so that no table is loaded whole
+                Map<AccountType, AccountTypeTotals> accountTotals = accountRepository.getTotalsByAccountType();
+                Map<TransactionType, TransactionTypeTotals> transactionTotals = transactionRepository.getTotalsByTransactionType();
+
+                Map<String, Long> accountTypeCounts = accountTotals.entrySet().stream()
+                        .collect(Collectors.toMap(e -> e.getKey().name(), e -> e.getValue().count()));
+
+                Map<String, Long> transactionTypeCounts = transactionTotals.entrySet().stream()
+                        .collect(Collectors.toMap(e -> e.getKey().name(), e -> e.getValue().count()));
+
+                AccountTypeTotals allAccounts = accountTotals.values().stream()
+                        .reduce(AccountTypeTotals.NONE, AccountTypeTotals::plus);
+
+                BigDecimal totalCreditUsed = accountTotals.getOrDefault(AccountType.CREDIT, AccountTypeTotals.NONE).totalCreditLimit();
+
+                BigDecimal totalFees = transactionTotals.getOrDefault(TransactionType.FEE, TransactionTypeTotals.NONE).totalAmount();
+
+                AccountList lowBalanceAccounts = accountRepository.getAccountsWithBalanceBelow(LOW_BALANCE_THRESHOLD);
 
                 return new BankSummaryReport(
-                        customers.size(),
-                        accounts.size(),
+                        customerRepository.countCustomers(),
+                        (int) allAccounts.count(),
                         accountTypeCounts,
-                        totalBalance,
+                        allAccounts.totalBalance(),
                         totalCreditUsed,
                         totalFees,
-                        transactions,
+                        transactionTypeCounts,
                         lowBalanceAccounts
                 );
             } catch (Exception e) {
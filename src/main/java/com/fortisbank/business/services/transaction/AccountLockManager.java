@@ -0,0 +1,77 @@
+package com.fortisbank.business.services.transaction;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks keyed by account number, held while a transaction reads, checks and writes the
+ * balances of its accounts.
+ * <p>
+ * Account numbers are hashed onto a fixed set of stripes, set with
+ * {@code -Dfortisbank.lockStripes=...} (default 1024, rounded up to a power of two), so memory does
+ * not grow with the number of accounts. The stripes of a transaction are always acquired in
+ * ascending order, so two transfers between the same accounts in opposite directions cannot
+ * deadlock; transactions whose accounts fall on different stripes run in parallel.
+ * <p>
+ * The locks only coordinate the threads of this process; updates by other writers are detected by
+ * the account versions checked when the balances are written.
+ */
+final class AccountLockManager {
+
+    static final int STRIPES = Integer.highestOneBit(Math.max(1, Integer.getInteger("fortisbank.lockStripes", 1024) * 2 - 1));
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    AccountLockManager() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Acquires the locks of the given accounts, in stripe order.
+     *
+     * @param accountNumbers the account numbers; null ones are ignored
+     * @return the held locks, released when closed
+     */
+    Held lock(String... accountNumbers) {
+        int[] indexes = Arrays.stream(accountNumbers)
+                .filter(number -> number != null)
+                .mapToInt(this::stripeOf)
+                .sorted()
+                .distinct()
+                .toArray();
+        int acquired = 0;
+        try {
+            for (int index : indexes) {
+                stripes[index].lock();
+                acquired++;
+            }
+        } finally {
+            if (acquired < indexes.length) {
+                unlock(indexes, acquired);
+            }
+        }
+        return () -> unlock(indexes, indexes.length);
+    }
+
+    private int stripeOf(String accountNumber) {
+        int h = accountNumber.hashCode();
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+
+    private void unlock(int[] indexes, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            stripes[indexes[i]].unlock();
+        }
+    }
+
+    /**
+     * Locks held by a transaction.
+     */
+    @FunctionalInterface
+    interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
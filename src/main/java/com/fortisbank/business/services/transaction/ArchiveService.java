@@ -0,0 +1,64 @@
+package com.fortisbank.business.services.transaction;
+
+import com.fortisbank.contracts.exceptions.TransactionRepositoryException;
+import com.fortisbank.data.dal_utils.RepositoryFactory;
+import com.fortisbank.data.dal_utils.StorageMode;
+import com.fortisbank.data.interfaces.ITransactionRepository;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Service class for archiving old transactions.
+ * Transactions older than the archive horizon are moved out of the transaction store into its
+ * compressed archive, which keeps the store holding recent activity small. The horizon is set in days
+ * with {@code -Dfortisbank.archiveHorizonDays=...} (default 365).
+ */
+public class ArchiveService {
+
+    private static final Logger LOGGER = Logger.getLogger(ArchiveService.class.getName());
+    private static final Map<StorageMode, ArchiveService> instances = new EnumMap<>(StorageMode.class);
+
+    /**
+     * Age in days after which transactions are archived.
+     */
+    static final int HORIZON_DAYS = Integer.getInteger("fortisbank.archiveHorizonDays", 365);
+
+    private final ITransactionRepository transactionRepository;
+
+    private ArchiveService(StorageMode storageMode) {
+        this.transactionRepository = RepositoryFactory.getInstance(storageMode).getTransactionRepository();
+    }
+
+    public static synchronized ArchiveService getInstance(StorageMode storageMode) {
+        return instances.computeIfAbsent(storageMode, ArchiveService::new);
+    }
+
+    /**
+     * Archives the transactions older than the archive horizon.
+     *
+     * @return the number of transactions archived
+     */
+    public int archiveOldTransactions() {
+        return archiveTransactionsBefore(LocalDate.now().minusDays(HORIZON_DAYS));
+    }
+
+    /**
+     * Archives the transactions dated before the given day.
+     *
+     * @param cutoff the first day kept out of the archive
+     * @return the number of transactions archived
+     */
+    public int archiveTransactionsBefore(LocalDate cutoff) {
+        try {
+            int archived = transactionRepository.archiveTransactionsBefore(cutoff);
+            LOGGER.log(Level.INFO, "Archived {0} transactions dated before {1}", new Object[]{archived, cutoff});
+            return archived;
+        } catch (TransactionRepositoryException e) {
+            throw new ServiceException("Failed to archive transactions dated before " + cutoff, e);
+        }
+    }
+}
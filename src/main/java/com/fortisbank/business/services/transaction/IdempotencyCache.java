@@ -0,0 +1,73 @@
+package com.fortisbank.business.services.transaction;
+
+import com.fortisbank.contracts.models.transactions.TransactionResult;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recent idempotency keys and the results of their transactions, in front of the persisted dedupe
+ * index.
+ * <p>
+ * A key is claimed with a future before its transaction runs, so concurrent submissions with the same
+ * key wait for the first one instead of executing again. Keys expire after {@link #TTL_MILLIS}, set in
+ * minutes with {@code -Dfortisbank.idempotencyTtlMinutes=...} (default 1440), and at most
+ * {@link #CAPACITY} completed keys are kept, set with {@code -Dfortisbank.idempotencyCacheSize=...}
+ * (default 10000); the oldest are evicted first.
+ */
+final class IdempotencyCache {
+
+    static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong("fortisbank.idempotencyTtlMinutes", 1440));
+    static final int CAPACITY = Integer.getInteger("fortisbank.idempotencyCacheSize", 10_000);
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Claims a key unless a live entry holds it.
+     *
+     * @param key the idempotency key
+     * @param claim the future to complete with the result of the key's transaction
+     * @return the future of the entry holding the key, or null if the key was claimed
+     */
+    CompletableFuture<TransactionResult> putIfAbsent(String key, CompletableFuture<TransactionResult> claim) {
+        long now = System.currentTimeMillis();
+        evict(now);
+        Entry entry = new Entry(key, claim, now + TTL_MILLIS);
+        Entry holder = entries.compute(key, (k, existing) -> existing != null && existing.expiresAt > now ? existing : entry);
+        if (holder != entry) return holder.result;
+        insertionOrder.add(entry);
+        return null;
+    }
+
+    /**
+     * Releases a claimed key whose transaction failed, so that it can be submitted again.
+     *
+     * @param key the idempotency key
+     * @param claim the future the key was claimed with
+     */
+    void remove(String key, CompletableFuture<TransactionResult> claim) {
+        entries.computeIfPresent(key, (k, existing) -> existing.result == claim ? null : existing);
+    }
+
+    /**
+     * Drops the expired entries and the oldest completed ones beyond the capacity. Entries expire in
+     * insertion order, so only the head of the queue is examined.
+     */
+    private void evict(long now) {
+        for (Entry head; (head = insertionOrder.peek()) != null; ) {
+            boolean expired = head.expiresAt <= now;
+            boolean removed = !expired && entries.get(head.key) != head;
+            if (!expired && !removed && (entries.size() <= CAPACITY || !head.result.isDone())) return;
+            if (insertionOrder.remove(head)) {
+                entries.remove(head.key, head);
+            }
+        }
+    }
+
+    private record Entry(String key, CompletableFuture<TransactionResult> result, long expiresAt) {
+    }
+}
@@ -0,0 +1,189 @@
+package com.fortisbank.business.services.transaction;
+
+import com.fortisbank.contracts.exceptions.InvalidTransactionException;
+import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.contracts.models.transactions.TransactionResult;
+import com.fortisbank.data.dal_utils.WriteAheadJournal;
+import com.fortisbank.data.file.codec.TransactionResultCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Single writer of the transactions submitted to a {@link TransactionService}.
+ * <p>
+ * Submitted transactions wait in a bounded ring buffer, set with
+ * {@code -Dfortisbank.sequencerCapacity=...} (default 1024); submitters block while it is full. One
+ * sequencer thread takes everything queued since its last batch and executes it, in submission order,
+ * as one {@link TransactionService#executeBatch batch}: the balances are written with one update per
+ * account and the transactions with one insert, in a single unit of work, so the more transactions
+ * queue up under load, the fewer writes each one costs. Each transaction is numbered in that global
+ * order. The numbered {@link TransactionResult}s, rejected transactions included, are appended to a
+ * ledger journal together, by its committer thread, without holding up the sequencer; the journal is
+ * replayed in order with {@link WriteAheadJournal#recover(long)} from 0, while the sequencer only
+ * reads its last entry on startup.
+ * <p>
+ * A transaction breaking a rule, such as the funds check, is rejected on its own. When a batch
+ * cannot be committed, all of its transactions fail with the reason. Should the sequencer thread stop
+ * nonetheless, the transactions still queued and any submitted afterwards are failed instead of left
+ * waiting.
+ */
+final class TransactionSequencer {
+
+    private static final Logger LOGGER = Logger.getLogger(TransactionSequencer.class.getName());
+    static final int CAPACITY = Integer.getInteger("fortisbank.sequencerCapacity", 1024);
+    private static final boolean FSYNC_JOURNAL = !"false".equalsIgnoreCase(System.getProperty("fortisbank.journalFsync"));
+
+    private final BlockingQueue<Request> ring = new ArrayBlockingQueue<>(CAPACITY);
+    private final Executor executor;
+    private final WriteAheadJournal<TransactionResult> ledger;
+    private volatile Throwable stopped; // why the sequencer thread stopped, or null while it runs
+
+    /**
+     * Opens the ledger and starts the sequencer thread.
+     *
+     * @param name the name of the ledger, unique per storage mode
+     * @param executor commits a batch of transactions
+     */
+    TransactionSequencer(String name, Executor executor) {
+        this.executor = executor;
+        this.ledger = new WriteAheadJournal<>(new File("data/ledger-" + name + ".journal"), new TransactionResultCodec(), FSYNC_JOURNAL);
+        try {
+            ledger.resume(); // continues the numbering of the existing ledger from its last entry
+        } catch (IOException e) {
+            ledger.close();
+            throw new UncheckedIOException("Failed to read the transaction ledger", e);
+        }
+        Thread thread = new Thread(this::run, "transaction-sequencer-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a transaction for the sequencer.
+     *
+     * @param transaction the transaction
+     * @param idempotencyKey the key to record with the transaction, or null
+     * @return a future completed with the result once the transaction is committed, or completed
+     *         exceptionally with the reason it was rejected
+     */
+    CompletableFuture<TransactionResult> submit(Transaction transaction, String idempotencyKey) {
+        Request request = new Request(transaction, idempotencyKey, new CompletableFuture<>());
+        if (stopped != null) {
+            request.result.completeExceptionally(stoppedException());
+            return request.result;
+        }
+        try {
+            ring.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.result.completeExceptionally(new ServiceException("Interrupted while submitting transaction", e));
+        }
+        if (stopped != null) {
+            failQueued(); // queued after the sequencer thread drained the ring on stopping
+        }
+        return request.result;
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        try {
+            while (true) {
+                try {
+                    batch.add(ring.take());
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                ring.drainTo(batch);
+                apply(batch);
+                batch.clear();
+            }
+        } catch (Throwable e) {
+            LOGGER.log(Level.SEVERE, "Transaction sequencer stopped", e);
+            stopped = e;
+            for (Request request : batch) {
+                request.result.completeExceptionally(stoppedException()); // no effect on those already applied
+            }
+            failQueued();
+        }
+    }
+
+    private void apply(List<Request> batch) {
+        long first = ledger.lastLsn() + 1; // the sequencer is the only writer of the ledger
+        List<Transaction> transactions = new ArrayList<>(batch.size());
+        List<String> idempotencyKeys = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            transactions.add(request.transaction);
+            idempotencyKeys.add(request.idempotencyKey);
+        }
+        List<TransactionResult> results;
+        Throwable failure = null;
+        try {
+            results = executor.execute(transactions, idempotencyKeys, first);
+        } catch (Throwable e) {
+            failure = e;
+            results = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                results.add(TransactionResult.rejected(first + i, transactions.get(i), e.getMessage()));
+            }
+        }
+        Map<String, TransactionResult> entries = new LinkedHashMap<>();
+        for (TransactionResult result : results) {
+            entries.put(Long.toString(result.sequence()), result);
+        }
+        ledger.submitAll(entries)
+                .exceptionally(e -> {
+                    LOGGER.log(Level.SEVERE, "Failed to journal transactions " + first + " to " + (first + batch.size() - 1) + " of the ledger", e);
+                    return null;
+                });
+        for (int i = 0; i < batch.size(); i++) {
+            TransactionResult result = results.get(i);
+            if (failure != null) {
+                batch.get(i).result.completeExceptionally(failure);
+            } else if (result.status() == TransactionResult.Status.REJECTED) {
+                batch.get(i).result.completeExceptionally(new InvalidTransactionException(result.reason()));
+            } else {
+                batch.get(i).result.complete(result);
+            }
+        }
+    }
+
+    private void failQueued() {
+        for (Request request; (request = ring.poll()) != null; ) {
+            request.result.completeExceptionally(stoppedException());
+        }
+    }
+
+    private ServiceException stoppedException() {
+        return new ServiceException("The transaction sequencer has stopped", stopped);
+    }
+
+    /**
+     * Commits the batches of transactions taken by the sequencer.
+     */
+    @FunctionalInterface
+    interface Executor {
+        /**
+         * Commits a batch of transactions in one unit of work, rejecting those that break a rule.
+         *
+         * @param transactions the transactions, in submission order
+         * @param idempotencyKeys the key to record with each applied transaction, or null
+         * @param firstSequence the number of the first transaction
+         * @return the result of each transaction, numbered from the first sequence
+         */
+        List<TransactionResult> execute(List<Transaction> transactions, List<String> idempotencyKeys, long firstSequence);
+    }
+
+    private record Request(Transaction transaction, String idempotencyKey, CompletableFuture<TransactionResult> result) {
+    }
+}
@@ -3,9 +3,12 @@ package com.fortisbank.business.services.transaction;
 import com.fortisbank.business.services.account.AccountService;
 import com.fortisbank.business.services.notification.NotificationService;
 import com.fortisbank.contracts.exceptions.InvalidTransactionException;
+import com.fortisbank.contracts.exceptions.OptimisticLockException;
 import com.fortisbank.contracts.exceptions.TransactionRepositoryException;
+import com.fortisbank.contracts.exceptions.UnitOfWorkException;
 import com.fortisbank.contracts.models.accounts.*;
 import com.fortisbank.contracts.collections.TransactionList;
+import com.fortisbank.contracts.models.others.Notification;
 import com.fortisbank.contracts.models.others.NotificationType;
 import com.fortisbank.contracts.models.transactions.*;
 import com.fortisbank.contracts.utils.ValidationUtils;
@@ -16,7 +19,12 @@ import com.fortisbank.data.interfaces.ITransactionRepository;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service class for handling all transaction operations.
@@ -25,10 +33,31 @@ public class TransactionService implements ITransactionService {
 
     private static final Map<StorageMode, TransactionService> instances = new EnumMap<>(StorageMode.class);
 
+    /**
+     * Attempts of a transaction whose accounts were updated concurrently, set with
+     * {@code -Dfortisbank.transactionAttempts=...}. Retries back off exponentially from
+     * {@link #RETRY_BACKOFF_MILLIS}, with jitter, up to {@link #MAX_BACKOFF_MILLIS}.
+     */
+    static final int MAX_ATTEMPTS = Integer.getInteger("fortisbank.transactionAttempts", 5);
+    private static final long RETRY_BACKOFF_MILLIS = 5;
+    private static final long MAX_BACKOFF_MILLIS = 200;
+
+    /**
+     * Whether {@link #executeTransaction} hands every transaction to the {@link TransactionSequencer},
+     * set with {@code -Dfortisbank.sequencedTransactions=true}.
+     */
+    static final boolean SEQUENCED = Boolean.getBoolean("fortisbank.sequencedTransactions");
+
+    /** Longest idempotency key accepted, the size of the key column of the dedupe index. */
+    public static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
+
     private final ITransactionRepository transactionRepository;
     private final AccountService accountService;
     private final NotificationService notificationService;
     private final StorageMode storageMode;
+    private final AccountLockManager accountLocks = new AccountLockManager();
+    private TransactionSequencer sequencer; // started by the first submission
+    private final IdempotencyCache idempotencyCache = new IdempotencyCache();
 
     private TransactionService(StorageMode storageMode) {
         this.storageMode = storageMode;
@@ -46,6 +75,7 @@ public class TransactionService implements ITransactionService {
     public void createTransaction(Transaction transaction) {  // should not be used directly
         try {
             transactionRepository.insertTransaction(transaction);
+            transactionRepository.updateBalanceSnapshots(List.of(transaction));
         } catch (TransactionRepositoryException e) {
             throw new ServiceException("Failed to create transaction", e);
         }
@@ -105,14 +135,437 @@ public class TransactionService implements ITransactionService {
         }
     }
 
+    /**
+     * Executes a transaction: updates the balances of its accounts, applies the fees it incurs and
+     * records it with the balance snapshots of its accounts. All of its writes are committed together
+     * in one unit of work.
+     * <p>
+     * The locks of its accounts are held from the reload of their balances until the commit, so the
+     * funds check and the balance update of concurrent transactions on an account cannot interleave.
+     * The accounts are updated only if their versions are still the reloaded ones: when another
+     * writer, such as an interest run, updated one of them meanwhile, the unit of work is rolled back
+     * and the transaction is retried on fresh balances, up to {@link #MAX_ATTEMPTS} times.
+     * <p>
+     * When {@link #SEQUENCED}, the transaction is submitted with {@link #submitTransaction} and this
+     * method waits for its result.
+     *
+     * @param transaction the transaction to execute
+     */
     public void executeTransaction(Transaction transaction) {
         ValidationUtils.validateNotNull(transaction, "Transaction");
         ValidationUtils.validateAmount(transaction.getAmount());
 
+        if (SEQUENCED) {
+            await(submit(transaction, null));
+            return;
+        }
+        executeLocked(transaction, null, null);
+    }
+
+    /**
+     * Executes a transaction at most once per idempotency key, for submissions that may be sent
+     * twice, such as a double-clicked form or a retried client request.
+     * <p>
+     * The first call with a key executes the transaction like {@link #executeTransaction(Transaction)}
+     * and records the key with its result in the same unit of work. Later calls with the key,
+     * concurrent ones included, return that result without validating or executing their transaction:
+     * from a cache of recent keys, otherwise from the dedupe index of the transaction repository. Keys
+     * expire after {@link IdempotencyCache#TTL_MILLIS}. A rejected transaction does not use up its key.
+     *
+     * @param transaction the transaction to execute
+     * @param idempotencyKey the key identifying the submission, at most {@value #MAX_IDEMPOTENCY_KEY_LENGTH} characters
+     * @return the result of the first execution with the key
+     */
+    public TransactionResult executeTransaction(Transaction transaction, String idempotencyKey) {
+        ValidationUtils.validateString(idempotencyKey, "Idempotency key");
+        if (idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key cannot exceed " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters.");
+        }
+
+        CompletableFuture<TransactionResult> claim = new CompletableFuture<>();
+        CompletableFuture<TransactionResult> previous = idempotencyCache.putIfAbsent(idempotencyKey, claim);
+        if (previous != null) {
+            return await(previous);
+        }
+        try {
+            TransactionResult result = findIdempotentResult(idempotencyKey);
+            if (result == null) {
+                result = executeOnce(transaction, idempotencyKey);
+            }
+            claim.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            idempotencyCache.remove(idempotencyKey, claim);
+            claim.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private TransactionResult executeOnce(Transaction transaction, String idempotencyKey) {
+        ValidationUtils.validateNotNull(transaction, "Transaction");
+        ValidationUtils.validateAmount(transaction.getAmount());
+        try {
+            if (SEQUENCED) {
+                return await(submit(transaction, idempotencyKey));
+            }
+            TransactionResult result = TransactionResult.applied(0, transaction);
+            executeLocked(transaction, idempotencyKey, result);
+            return result;
+        } catch (RuntimeException e) {
+            // another process may have executed the key since it was looked up
+            TransactionResult recorded = findIdempotentResult(idempotencyKey);
+            if (recorded != null) return recorded;
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the recorded result of an idempotency key that has not expired, or null.
+     */
+    private TransactionResult findIdempotentResult(String idempotencyKey) {
+        try {
+            IdempotencyRecord record = transactionRepository.getIdempotencyRecord(idempotencyKey);
+            return record != null && !record.createdAt().before(idempotencyCutoff()) ? record.result() : null;
+        } catch (TransactionRepositoryException e) {
+            throw new ServiceException("Failed to look up idempotency key: " + idempotencyKey, e);
+        }
+    }
+
+    /**
+     * Deletes the expired idempotency keys from the dedupe index.
+     *
+     * @return the number of keys deleted
+     */
+    public int purgeExpiredIdempotencyKeys() {
+        try {
+            return transactionRepository.deleteIdempotencyRecordsBefore(idempotencyCutoff());
+        } catch (TransactionRepositoryException e) {
+            throw new ServiceException("Failed to delete expired idempotency keys", e);
+        }
+    }
+
+    /**
+     * Returns the creation date before which idempotency keys have expired.
+     */
+    private static Date idempotencyCutoff() {
+        return new Date(System.currentTimeMillis() - IdempotencyCache.TTL_MILLIS);
+    }
+
+    private static TransactionResult await(CompletableFuture<TransactionResult> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new ServiceException("Failed to execute transaction", e.getCause());
+        }
+    }
+
+    /**
+     * Submits a transaction to the sequencer, which executes the submitted transactions in batches,
+     * in submission order, and journals their numbered results.
+     *
+     * @param transaction the transaction to execute
+     * @return a future completed with the result once the transaction is committed, or completed
+     *         exceptionally with the reason it was rejected
+     */
+    public CompletableFuture<TransactionResult> submitTransaction(Transaction transaction) {
+        ValidationUtils.validateNotNull(transaction, "Transaction");
+        ValidationUtils.validateAmount(transaction.getAmount());
+        return submit(transaction, null);
+    }
+
+    private CompletableFuture<TransactionResult> submit(Transaction transaction, String idempotencyKey) {
+        TransactionSequencer current;
+        synchronized (this) {
+            if (sequencer == null) {
+                sequencer = new TransactionSequencer(storageMode.name().toLowerCase(), this::executeBatch);
+            }
+            current = sequencer;
+        }
+        return current.submit(transaction, idempotencyKey);
+    }
+
+    /**
+     * Executes a transaction under the locks of its accounts, recording its idempotency key, if any,
+     * in the same unit of work.
+     */
+    private void executeLocked(Transaction transaction, String idempotencyKey, TransactionResult result) {
+        Account source = transaction.getSourceAccount();
+        Account destination = transaction.getDestinationAccount();
+        int sourceRecorded = recordedCount(source);
+        int destinationRecorded = recordedCount(destination);
+        for (int attempt = 1; ; attempt++) {
+            AccountLockManager.Held locks = accountLocks.lock(accountNumber(source), accountNumber(destination));
+            try {
+                reload(source);
+                reload(destination);
+                RepositoryFactory.getInstance(storageMode).inUnitOfWork(() -> {
+                    apply(transaction);
+                    if (idempotencyKey != null) recordIdempotencyKey(idempotencyKey, result);
+                });
+                return;
+            } catch (UnitOfWorkException | RuntimeException e) {
+                discardRecorded(source, sourceRecorded);
+                discardRecorded(destination, destinationRecorded);
+                if (attempt >= MAX_ATTEMPTS || !isConcurrentUpdate(e)) {
+                    try {
+                        // The caller's copies show the stored balances again
+                        reload(source);
+                        reload(destination);
+                    } catch (RuntimeException reloadFailure) {
+                        e.addSuppressed(reloadFailure);
+                    }
+                    throw e instanceof RuntimeException runtime ? runtime : new ServiceException("Failed to commit transaction", e);
+                }
+            } finally {
+                locks.close();
+            }
+            backOff(attempt);
+        }
+    }
+
+    private void recordIdempotencyKey(String idempotencyKey, TransactionResult result) {
+        try {
+            transactionRepository.insertIdempotencyRecord(new IdempotencyRecord(idempotencyKey, new Date(), result), idempotencyCutoff());
+        } catch (TransactionRepositoryException e) {
+            throw new ServiceException("Failed to record idempotency key: " + idempotencyKey, e);
+        }
+    }
+
+    /**
+     * Replaces the balance and version of an account with the stored ones, which the caller's copy
+     * may predate.
+     */
+    private void reload(Account account) {
+        if (account == null) return;
+        Account stored = accountService.getAccount(account.getAccountNumber());
+        if (stored != null) {
+            account.setAvailableBalance(stored.getAvailableBalance());
+            account.setVersion(stored.getVersion());
+        }
+    }
+
+    private static int recordedCount(Account account) {
+        return account != null && account.getTransactions() != null ? account.getTransactions().size() : 0;
+    }
+
+    /**
+     * Removes from an account the transactions that a rolled back attempt added to it.
+     */
+    private static void discardRecorded(Account account, int count) {
+        if (account == null || account.getTransactions() == null) return;
+        List<Transaction> transactions = account.getTransactions();
+        if (transactions.size() > count) {
+            transactions.subList(count, transactions.size()).clear();
+        }
+    }
+
+    /**
+     * Returns whether a unit of work failed on an account version that changed since it was read.
+     * The accounts are checked before anything of the unit of work is written, so it can be retried.
+     */
+    private static boolean isConcurrentUpdate(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Waits before a retry, for a random time up to twice the previous wait, so that conflicting
+     * writers do not retry in step.
+     */
+    private static void backOff(int attempt) {
+        long bound = Math.min(MAX_BACKOFF_MILLIS, RETRY_BACKOFF_MILLIS << attempt);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound / 2, bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Interrupted while retrying transaction", e);
+        }
+    }
+
+    private static String accountNumber(Account account) {
+        return account != null ? account.getAccountNumber() : null;
+    }
+
+    /**
+     * Executes a batch of transactions, such as a payroll run, in one unit of work.
+     * <p>
+     * The whole batch is validated up front: malformed transactions and transactions on unknown
+     * accounts are rejected without affecting the others. The rest are posted in order against one
+     * copy of each account, with the funds, credit limit and fee rules of {@link #executeTransaction},
+     * and those that break them are rejected too. The balances are then written with one update per
+     * account, and the posted transactions with their fees in one bulk insert. The locks of all the
+     * accounts are held until the commit; a concurrent update of one of them restarts the batch, up to
+     * {@link #MAX_ATTEMPTS} times.
+     *
+     * @param transactions the transactions, in posting order
+     * @return the result of each transaction, at its index in the batch and numbered by it
+     * @throws ServiceException if the batch could not be committed, in which case nothing is written
+     */
+    public List<TransactionResult> executeBatch(List<Transaction> transactions) {
+        ValidationUtils.validateNotNull(transactions, "Transactions");
+        return executeBatch(transactions, null, 0);
+    }
+
+    /**
+     * Executes a batch of transactions like {@link #executeBatch(List)}, numbering the results from
+     * a first sequence number and recording the idempotency key of each applied transaction in the
+     * unit of work of the batch. The {@link TransactionSequencer} commits each batch it takes with it.
+     *
+     * @param transactions the transactions, in posting order
+     * @param idempotencyKeys the key of each transaction, or null for none; null if no transaction has one
+     * @param firstSequence the number of the first result
+     * @return the result of each transaction, at its index in the batch
+     */
+    List<TransactionResult> executeBatch(List<Transaction> transactions, List<String> idempotencyKeys, long firstSequence) {
+        TransactionResult[] rejected = new TransactionResult[transactions.size()];
+        Set<String> accountNumbers = new TreeSet<>();
+        for (int i = 0; i < rejected.length; i++) {
+            Transaction transaction = transactions.get(i);
+            try {
+                validateBatchItem(transaction);
+                addIfPresent(accountNumbers, accountNumber(transaction.getSourceAccount()));
+                addIfPresent(accountNumbers, accountNumber(transaction.getDestinationAccount()));
+            } catch (InvalidTransactionException e) {
+                rejected[i] = TransactionResult.rejected(firstSequence + i, transaction, e.getMessage());
+            }
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            Batch batch = new Batch();
+            AccountLockManager.Held locks = accountLocks.lock(accountNumbers.toArray(String[]::new));
+            try {
+                for (String accountNumber : accountNumbers) {
+                    batch.load(accountNumber, accountService.getAccount(accountNumber));
+                }
+                TransactionResult[] results = rejected.clone();
+                for (int i = 0; i < results.length; i++) {
+                    if (results[i] != null) continue;
+                    try {
+                        post(transactions.get(i), batch);
+                        results[i] = TransactionResult.applied(firstSequence + i, transactions.get(i));
+                    } catch (InvalidTransactionException e) {
+                        results[i] = TransactionResult.rejected(firstSequence + i, transactions.get(i), e.getMessage());
+                    }
+                }
+                RepositoryFactory.getInstance(storageMode).inUnitOfWork(() -> {
+                    commit(batch);
+                    if (idempotencyKeys == null) return;
+                    for (int i = 0; i < results.length; i++) {
+                        if (idempotencyKeys.get(i) != null && results[i].status() == TransactionResult.Status.APPLIED) {
+                            recordIdempotencyKey(idempotencyKeys.get(i), results[i]);
+                        }
+                    }
+                });
+                for (Transaction transaction : transactions) {
+                    if (transaction != null) {
+                        batch.copyTo(transaction.getSourceAccount());
+                        batch.copyTo(transaction.getDestinationAccount());
+                    }
+                }
+                return List.of(results);
+            } catch (UnitOfWorkException | RuntimeException e) {
+                batch.rollBack();
+                if (attempt >= MAX_ATTEMPTS || !isConcurrentUpdate(e)) {
+                    throw e instanceof RuntimeException runtime ? runtime : new ServiceException("Failed to commit transaction batch", e);
+                }
+            } finally {
+                locks.close();
+            }
+            backOff(attempt);
+        }
+    }
+
+    private void validateBatchItem(Transaction transaction) {
+        validateNotNull(transaction, "Transaction");
+        ValidationUtils.validateAmount(transaction.getAmount());
+        validateNotNull(transaction.getTransactionType(), "Transaction type");
+        switch (transaction.getTransactionType()) {
+            case DEPOSIT -> validateNotNull(accountNumber(transaction.getDestinationAccount()), "Destination account");
+            case WITHDRAWAL, FEE -> validateNotNull(accountNumber(transaction.getSourceAccount()), "Source account");
+            case TRANSFER -> {
+                validateNotNull(accountNumber(transaction.getSourceAccount()), "Source account");
+                validateNotNull(accountNumber(transaction.getDestinationAccount()), "Destination account");
+            }
+            default -> throw new InvalidTransactionException("Unsupported transaction type.");
+        }
+    }
+
+    private static void addIfPresent(Set<String> accountNumbers, String accountNumber) {
+        if (accountNumber != null) accountNumbers.add(accountNumber);
+    }
+
+    /**
+     * Posts a transaction of a batch to the batch's copies of its accounts, checking every rule
+     * before changing any balance so that a rejected transaction leaves them untouched.
+     */
+    private void post(Transaction transaction, Batch batch) {
+        TransactionType type = transaction.getTransactionType();
+        BigDecimal amount = transaction.getAmount();
+        Account source = type != TransactionType.DEPOSIT ? batch.account(accountNumber(transaction.getSourceAccount())) : null;
+        Account destination = type == TransactionType.DEPOSIT || type == TransactionType.TRANSFER
+                ? batch.account(accountNumber(transaction.getDestinationAccount())) : null;
+
+        boolean feeable = source != null && type != TransactionType.FEE && source.getAccountType() == AccountType.CHECKING;
+        boolean feeDue = feeable && batch.feeableCount(source, this::countFeeableThisMonth) >= CheckingAccount.FREE_TRANSACTION_LIMIT;
+        if (source != null) {
+            if (type != TransactionType.FEE) validateCreditLimit(source, amount);
+            validateSufficientFunds(source, amount);
+            if (feeDue) validateSufficientFunds(source, amount.add(CheckingAccount.TRANSACTION_FEE));
+        }
+
+        if (feeable) batch.countFeeable(source);
+        if (source != null) {
+            adjustBalance(source, amount.negate());
+            source.addTransaction(transaction);
+            batch.touch(source);
+        }
+        if (destination != null) {
+            adjustBalance(destination, amount);
+            if (destination != source) destination.addTransaction(transaction);
+            batch.touch(destination);
+        }
+        batch.recorded.add(transaction);
+        if (feeDue) {
+            batch.recorded.add(createFee(source, CheckingAccount.TRANSACTION_FEE,
+                    "Transaction fee after " + CheckingAccount.FREE_TRANSACTION_LIMIT + " free transactions."));
+        }
+    }
+
+    private int countFeeableThisMonth(Account account) {
+        try {
+            return transactionRepository.getTransactionsByAccount(account.getAccountNumber())
+                    .filterByMonth(LocalDate.now())
+                    .filterByTypes(TransactionType.WITHDRAWAL, TransactionType.TRANSFER)
+                    .size();
+        } catch (TransactionRepositoryException e) {
+            throw new ServiceException("Failed to apply transaction fee", e);
+        }
+    }
+
+    /**
+     * Writes the balances of a batch's accounts and its transactions; runs in a unit of work.
+     */
+    private void commit(Batch batch) {
+        for (Account account : batch.touched.values()) {
+            accountService.updateAccount(account);
+        }
+        if (batch.recorded.isEmpty()) return;
+        try {
+            transactionRepository.insertTransactions(batch.recorded);
+            transactionRepository.updateBalanceSnapshots(batch.recorded);
+        } catch (TransactionRepositoryException e) {
+            throw new ServiceException("Failed to insert transaction batch", e);
+        }
+    }
+
+    private void apply(Transaction transaction) {
         Account source = transaction.getSourceAccount();
         Account destination = transaction.getDestinationAccount();
         BigDecimal amount = transaction.getAmount();
         TransactionType type = transaction.getTransactionType();
+        List<Transaction> recorded = new ArrayList<>(2); // the transaction and the fee it incurs
 
         switch (type) {
             case DEPOSIT -> {
@@ -127,7 +580,7 @@ public class TransactionService implements ITransactionService {
                 validateSufficientFunds(source, amount);
                 adjustBalance(source, amount.negate());
                 source.addTransaction(transaction);
-                applyTransactionFeeIfRequired(source);
+                applyTransactionFeeIfRequired(source, recorded);
                 accountService.updateAccount(source);
             }
             case TRANSFER -> {
@@ -139,7 +592,7 @@ public class TransactionService implements ITransactionService {
                 adjustBalance(destination, amount);
                 source.addTransaction(transaction);
                 destination.addTransaction(transaction);
-                applyTransactionFeeIfRequired(source);
+                applyTransactionFeeIfRequired(source, recorded);
                 accountService.updateAccount(source);
                 accountService.updateAccount(destination);
             }
@@ -153,30 +606,58 @@ public class TransactionService implements ITransactionService {
             default -> throw new InvalidTransactionException("Unsupported transaction type.");
         }
 
+        recorded.add(transaction);
         try {
             transactionRepository.insertTransaction(transaction);
+            transactionRepository.updateBalanceSnapshots(recorded);
         } catch (TransactionRepositoryException e) {
-            throw new RuntimeException(e);
+            throw new ServiceException("Failed to insert transaction", e);
         }
     }
 
     public void applyInterestToCreditAccount(CreditAccount account) {
+        List<Notification> notifications = new ArrayList<>();
+        applyInterestLocked(account, CreditAccount.class, (stored, transactions, collected) -> {
+            chargeMonthlyInterest(stored, transactions, collected);
+            return !transactions.isEmpty();
+        }, notifications);
+        notificationService.sendNotifications(notifications);
+    }
+
+    public void applyAnnualInterestToSavingsAccount(SavingsAccount account) {
+        List<Notification> notifications = new ArrayList<>();
+        applyInterestLocked(account, SavingsAccount.class, (stored, transactions, collected) -> {
+            creditAnnualInterest(stored, transactions, collected);
+            return !transactions.isEmpty();
+        }, notifications);
+        notificationService.sendNotifications(notifications);
+    }
+
+    /**
+     * Charges the monthly interest to the in-memory account, collecting the fee transaction and the
+     * customer's notification instead of saving them.
+     */
+    private void chargeMonthlyInterest(CreditAccount account, List<Transaction> transactions, List<Notification> notifications) {
         BigDecimal rate = account.getInterestRate();
         if (rate == null || rate.compareTo(BigDecimal.ZERO) <= 0) return;
 
         BigDecimal interest = account.getAvailableBalance().multiply(rate);
         if (interest.compareTo(BigDecimal.ZERO) > 0) {
-            applyFee(account, interest, "Monthly interest applied.");
-            notificationService.sendNotification(
+            transactions.add(createFee(account, interest, "Monthly interest applied."));
+            notifications.add(notificationService.createNotification(
                     account.getCustomer(), NotificationType.INFO,
                     "Monthly Interest Charged",
                     String.format("An interest charge of $%.2f has been applied to your credit account (%s).",
                             interest, account.getAccountNumber()),
-                    account.getCustomer(), account);
+                    account.getCustomer(), account));
         }
     }
 
-    public void applyAnnualInterestToSavingsAccount(SavingsAccount account) {
+    /**
+     * Credits the annual interest to the in-memory account, collecting the deposit transaction and the
+     * customer's notification instead of saving them.
+     */
+    private void creditAnnualInterest(SavingsAccount account, List<Transaction> transactions, List<Notification> notifications) {
         BigDecimal rate = account.getAnnualInterestRate();
         if (rate == null || rate.compareTo(BigDecimal.ZERO) <= 0) return;
 
@@ -187,21 +668,80 @@ public class TransactionService implements ITransactionService {
 
             adjustBalance(account, interest);
             account.addTransaction(tx);
-            try {
-                transactionRepository.insertTransaction(tx);
-            } catch (TransactionRepositoryException e) {
-                throw new RuntimeException(e);
-            }
-            accountService.updateAccount(account);
-            notificationService.sendNotification(
+            transactions.add(tx);
+            notifications.add(notificationService.createNotification(
                     account.getCustomer(), NotificationType.INFO,
                     "Annual Interest Credited",
                     String.format("An interest of $%.2f has been credited to your savings account (%s).",
                             interest, account.getAccountNumber()),
-                    account.getCustomer(), account);
+                    account.getCustomer(), account));
+        }
+    }
+
+    /**
+     * Applies interest to an account under its lock, in one unit of work.
+     * <p>
+     * The interest is computed on the stored account, which is written first so that its version
+     * is checked before anything else is, then its transactions and balance snapshots. A concurrent
+     * update of the account restarts the computation on the fresh account, up to
+     * {@link #MAX_ATTEMPTS} times. Once committed, the new balance and version are copied to the
+     * given account and the customer's notification is collected, to be sent by the caller.
+     *
+     * @param account the account, skipped if it no longer exists
+     * @param type the type of account the interest applies to
+     * @param interest computes the interest on the stored account, collecting its transaction and
+     *        notification, and tells whether the account changed
+     * @param notifications the notifications of the run
+     */
+    private <A extends Account> void applyInterestLocked(Account account, Class<A> type, InterestCalculation<A> interest,
+                                                         List<Notification> notifications) {
+        for (int attempt = 1; ; attempt++) {
+            AccountLockManager.Held lock = accountLocks.lock(account.getAccountNumber());
+            try {
+                Account stored = accountService.getAccount(account.getAccountNumber());
+                if (!type.isInstance(stored)) return;
+                List<Transaction> transactions = new ArrayList<>(1);
+                List<Notification> collected = new ArrayList<>(1);
+                RepositoryFactory.getInstance(storageMode).inUnitOfWork(() -> {
+                    if (!interest.apply(type.cast(stored), transactions, collected)) return;
+                    accountService.updateAccount(stored);
+                    try {
+                        transactionRepository.insertTransactions(transactions);
+                        transactionRepository.updateBalanceSnapshots(transactions);
+                    } catch (TransactionRepositoryException e) {
+                        throw new ServiceException("Failed to insert interest transactions", e);
+                    }
+                });
+                if (stored != account) {
+                    account.setAvailableBalance(stored.getAvailableBalance());
+                    account.setVersion(stored.getVersion());
+                    transactions.forEach(account::addTransaction);
+                }
+                notifications.addAll(collected);
+                return;
+            } catch (UnitOfWorkException | RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS || !isConcurrentUpdate(e)) {
+                    throw e instanceof RuntimeException runtime ? runtime : new ServiceException("Failed to apply interest", e);
+                }
+            } finally {
+                lock.close();
+            }
+            backOff(attempt);
         }
     }
 
+    /**
+     * Computes the interest of an account, changing its balance and collecting its transaction and
+     * the customer's notification.
+     */
+    @FunctionalInterface
+    private interface InterestCalculation<A extends Account> {
+        /**
+         * @return whether the account was changed and must be written
+         */
+        boolean apply(A account, List<Transaction> transactions, List<Notification> notifications);
+    }
+
     public TransactionList filterRecentTransactions(TransactionList transactions, int days) {
         Date startDate = new Date(System.currentTimeMillis() - (long) days * 24 * 60 * 60 * 1000);
         Date endDate = new Date();
@@ -225,74 +765,115 @@ public class TransactionService implements ITransactionService {
         }
     }
 
+    /**
+     * Charges the monthly interest to every eligible credit account, each in its own unit of work.
+     * Eligibility is checked again on the stored account under its lock, so accounts charged by a
+     * concurrent or interrupted run are skipped. The notifications of the charged accounts are sent
+     * in one batch, even if a later account fails.
+     */
     public void applyMonthlyInterestToAllCreditAccounts() {
         var customerRepo = RepositoryFactory.getInstance(storageMode).getCustomerRepository();
-        for (var customer : customerRepo.getAllCustomers()) {
-            for (var account : accountService.getAccountsByCustomerId(customer.getUserId())) {
-                if (account instanceof CreditAccount creditAccount && creditAccount.isEligibleForInterestCalculation()) {
-                    applyInterestToCreditAccount(creditAccount);
-                    creditAccount.setLastInterestApplied(LocalDate.now());
-                    accountService.updateAccount(creditAccount);
+        List<Notification> notifications = new ArrayList<>();
+        try {
+            for (var customer : customerRepo.getAllCustomers()) {
+                for (var account : accountService.getAccountsByCustomerId(customer.getUserId())) {
+                    if (account instanceof CreditAccount creditAccount && creditAccount.isEligibleForInterestCalculation()) {
+                        applyInterestLocked(creditAccount, CreditAccount.class, (stored, transactions, collected) -> {
+                            if (!stored.isEligibleForInterestCalculation()) return false;
+                            chargeMonthlyInterest(stored, transactions, collected);
+                            stored.setLastInterestApplied(LocalDate.now());
+                            return true;
+                        }, notifications);
+                    }
                 }
             }
+        } finally {
+            notificationService.sendNotifications(notifications);
         }
     }
 
+    /**
+     * Credits the annual interest to every eligible savings account, each in its own unit of work,
+     * like {@link #applyMonthlyInterestToAllCreditAccounts()}.
+     */
     public void applyAnnualInterestToAllSavingsAccounts() {
         var customerRepo = RepositoryFactory.getInstance(storageMode).getCustomerRepository();
-        for (var customer : customerRepo.getAllCustomers()) {
-            for (var account : accountService.getAccountsByCustomerId(customer.getUserId())) {
-                if (account instanceof SavingsAccount savingsAccount && savingsAccount.isEligibleForInterestCalculation()) {
-                    applyAnnualInterestToSavingsAccount(savingsAccount);
-                    savingsAccount.setLastInterestApplied(LocalDate.now());
-                    accountService.updateAccount(savingsAccount);
+        List<Notification> notifications = new ArrayList<>();
+        try {
+            for (var customer : customerRepo.getAllCustomers()) {
+                for (var account : accountService.getAccountsByCustomerId(customer.getUserId())) {
+                    if (account instanceof SavingsAccount savingsAccount && savingsAccount.isEligibleForInterestCalculation()) {
+                        applyInterestLocked(savingsAccount, SavingsAccount.class, (stored, transactions, collected) -> {
+                            if (!stored.isEligibleForInterestCalculation()) return false;
+                            creditAnnualInterest(stored, transactions, collected);
+                            stored.setLastInterestApplied(LocalDate.now());
+                            return true;
+                        }, notifications);
+                    }
                 }
             }
+        } finally {
+            notificationService.sendNotifications(notifications);
         }
     }
 
     public void scanForSuspiciousActivity() {
         var customerRepo = RepositoryFactory.getInstance(storageMode).getCustomerRepository();
         BigDecimal suspiciousAmount = new BigDecimal("5000");
+        Date recentSince = new Date(System.currentTimeMillis() - 60000);
+        Map<String, Transaction> highValue = new HashMap<>(); // first high-value transaction of each account
+        Map<String, Integer> recentCounts = new HashMap<>();
+
+        // One pass over the history, which is streamed rather than loaded account by account
+        try (Stream<Transaction> history = transactionRepository.streamTransactions(null, null)) {
+            history.forEach(tx -> {
+                boolean suspicious = (tx.getTransactionType() == TransactionType.WITHDRAWAL ||
+                        tx.getTransactionType() == TransactionType.TRANSFER)
+                        && tx.getAmount().compareTo(suspiciousAmount) >= 0;
+                boolean recent = tx.getTransactionDate().after(recentSince);
+                for (String accountNumber : accountNumbers(tx)) {
+                    if (suspicious) highValue.putIfAbsent(accountNumber, tx);
+                    if (recent) recentCounts.merge(accountNumber, 1, Integer::sum);
+                }
+            });
+        } catch (TransactionRepositoryException e) {
+            throw new ServiceException("Failed to scan transactions", e);
+        }
 
+        List<Notification> alerts = new ArrayList<>();
         for (var customer : customerRepo.getAllCustomers()) {
             for (var account : accountService.getAccountsByCustomerId(customer.getUserId())) {
-                TransactionList transactions;
-                try {
-                    transactions = transactionRepository.getTransactionsByAccount(account.getAccountNumber());
-                } catch (TransactionRepositoryException e) {
-                    throw new ServiceException("Failed to retrieve transactions for account: " + account.getAccountNumber(), e);
-                }
-
-                for (Transaction tx : transactions) {
-                    if ((tx.getTransactionType() == TransactionType.WITHDRAWAL ||
-                            tx.getTransactionType() == TransactionType.TRANSFER)
-                            && tx.getAmount().compareTo(suspiciousAmount) >= 0) {
-
-                        notificationService.sendNotification(
-                                customer, NotificationType.SECURITY_ALERT,
-                                "Unusual Transaction Detected",
-                                String.format("A high-value %s of $%s occurred on account %s",
-                                        tx.getTransactionType().name().toLowerCase(), tx.getAmount(), account.getAccountNumber()),
-                                customer, account);
-                        break;
-                    }
+                Transaction tx = highValue.get(account.getAccountNumber());
+                if (tx != null) {
+                    alerts.add(notificationService.createNotification(
+                            customer, NotificationType.SECURITY_ALERT,
+                            "Unusual Transaction Detected",
+                            String.format("A high-value %s of $%s occurred on account %s",
+                                    tx.getTransactionType().name().toLowerCase(), tx.getAmount(), account.getAccountNumber()),
+                            customer, account));
                 }
 
-                long recentCount = transactions.stream()
-                        .filter(t -> t.getTransactionDate().after(new Date(System.currentTimeMillis() - 60000)))
-                        .count();
-
-                if (recentCount > 10) {
-                    notificationService.sendNotification(
+                if (recentCounts.getOrDefault(account.getAccountNumber(), 0) > 10) {
+                    alerts.add(notificationService.createNotification(
                             customer, NotificationType.SECURITY_ALERT,
                             "Suspicious Activity",
                             String.format("More than 10 transactions were made on account %s within a minute.",
                                     account.getAccountNumber()),
-                            customer, account);
+                            customer, account));
                 }
             }
         }
+        notificationService.sendNotifications(alerts);
+    }
+
+    /**
+     * Returns the distinct numbers of the accounts a transaction moves money from and to.
+     */
+    private static Set<String> accountNumbers(Transaction tx) {
+        Set<String> numbers = new HashSet<>(2);
+        if (tx.getSourceAccount() != null) numbers.add(tx.getSourceAccount().getAccountNumber());
+        if (tx.getDestinationAccount() != null) numbers.add(tx.getDestinationAccount().getAccountNumber());
+        return numbers;
     }
 
     private void validateNotNull(Object obj, String fieldName) {
@@ -314,11 +895,25 @@ public class TransactionService implements ITransactionService {
         }
     }
 
+    /**
+     * Deducts a fee from the in-memory account and returns its transaction, which is not saved yet.
+     */
+    private Transaction createFee(Account account, BigDecimal feeAmount, String description) {
+        validateSufficientFunds(account, feeAmount);
+
+        Transaction feeTx = TransactionFactory.createTransaction(
+                TransactionType.FEE, description, new Date(), feeAmount, account, null);
+
+        adjustBalance(account, feeAmount.negate());
+        account.addTransaction(feeTx);
+        return feeTx;
+    }
+
     private void adjustBalance(Account account, BigDecimal delta) {
         account.setAvailableBalance(account.getAvailableBalance().add(delta));
     }
 
-    private void applyTransactionFeeIfRequired(Account account) {
+    private void applyTransactionFeeIfRequired(Account account, List<Transaction> recorded) {
         if (account.getAccountType() != AccountType.CHECKING) return;
 
         try {
@@ -328,27 +923,85 @@ public class TransactionService implements ITransactionService {
                     .size();
 
             if (count >= CheckingAccount.FREE_TRANSACTION_LIMIT) {
-                applyFee(account, CheckingAccount.TRANSACTION_FEE,
-                        "Transaction fee after " + CheckingAccount.FREE_TRANSACTION_LIMIT + " free transactions.");
+                recorded.add(applyFee(account, CheckingAccount.TRANSACTION_FEE,
+                        "Transaction fee after " + CheckingAccount.FREE_TRANSACTION_LIMIT + " free transactions."));
             }
         } catch (TransactionRepositoryException e) {
             throw new ServiceException("Failed to apply transaction fee", e);
         }
     }
 
-    private void applyFee(Account account, BigDecimal feeAmount, String description) {
-        validateSufficientFunds(account, feeAmount);
+    /**
+     * The accounts of a batch being posted: one copy of each, with the balances and transaction
+     * counts they had when loaded so that a failed attempt can be undone.
+     */
+    private static final class Batch {
+        private final Map<String, Account> accounts = new HashMap<>();
+        private final Map<String, BigDecimal> loadedBalances = new HashMap<>();
+        private final Map<String, Long> loadedVersions = new HashMap<>();
+        private final Map<String, Integer> loadedRecordedCounts = new HashMap<>();
+        private final Map<String, Integer> feeableCounts = new HashMap<>();
+        private final Map<String, Account> touched = new LinkedHashMap<>();
+        private final List<Transaction> recorded = new ArrayList<>();
+
+        void load(String accountNumber, Account account) {
+            if (account == null) return;
+            accounts.put(accountNumber, account);
+            loadedBalances.put(accountNumber, account.getAvailableBalance());
+            loadedVersions.put(accountNumber, account.getVersion());
+            loadedRecordedCounts.put(accountNumber, recordedCount(account));
+        }
 
-        Transaction feeTx = TransactionFactory.createTransaction(
-                TransactionType.FEE, description, new Date(), feeAmount, account, null);
+        Account account(String accountNumber) {
+            Account account = accounts.get(accountNumber);
+            if (account == null) throw new InvalidTransactionException("Account not found: " + accountNumber);
+            return account;
+        }
 
-        adjustBalance(account, feeAmount.negate());
-        account.addTransaction(feeTx);
+        void touch(Account account) {
+            touched.put(account.getAccountNumber(), account);
+        }
+
+        /**
+         * Returns the withdrawals and transfers of the month from an account, those posted in the
+         * batch included.
+         */
+        int feeableCount(Account account, ToIntFunction<Account> countThisMonth) {
+            return feeableCounts.computeIfAbsent(account.getAccountNumber(), n -> countThisMonth.applyAsInt(account));
+        }
+
+        void countFeeable(Account account) {
+            feeableCounts.merge(account.getAccountNumber(), 1, Integer::sum);
+        }
+
+        /**
+         * Copies the committed balance and version of an account to another copy of it.
+         */
+        void copyTo(Account copy) {
+            Account account = copy != null ? accounts.get(copy.getAccountNumber()) : null;
+            if (account != null && account != copy) {
+                copy.setAvailableBalance(account.getAvailableBalance());
+                copy.setVersion(account.getVersion());
+            }
+        }
+
+        void rollBack() {
+            accounts.forEach((accountNumber, account) -> {
+                account.setAvailableBalance(loadedBalances.get(accountNumber));
+                account.setVersion(loadedVersions.get(accountNumber));
+                discardRecorded(account, loadedRecordedCounts.get(accountNumber));
+            });
+        }
+    }
+
+    private Transaction applyFee(Account account, BigDecimal feeAmount, String description) {
+        Transaction feeTx = createFee(account, feeAmount, description);
+        accountService.updateAccount(account);
         try {
             transactionRepository.insertTransaction(feeTx);
         } catch (TransactionRepositoryException e) {
             throw new ServiceException("Failed to insert transaction fee", e);
         }
-        accountService.updateAccount(account);
+        return feeTx;
     }
 }
@@ -6,6 +6,7 @@ package com.fortisbank.business.services.users.customer;
  import com.fortisbank.data.dal_utils.StorageMode;
  import com.fortisbank.contracts.collections.AccountList;
  import com.fortisbank.contracts.collections.CustomerList;
+ import com.fortisbank.contracts.collections.Page;
  import com.fortisbank.contracts.models.users.Customer;
  import com.fortisbank.business.bll_utils.SecurityUtils;
 
@@ -103,15 +104,41 @@ package com.fortisbank.business.services.users.customer;
          }
      }
 
+     @Override
+     public Page<Customer> getCustomersPage(String pageToken, int pageSize) {
+         try {
+             Page<Customer> page = customerRepository.getCustomersPage(pageToken, pageSize);
+             for (Customer customer : page.items()) {
+                 customer.setAccounts(accountService.getAccountsByCustomerId(customer.getUserId()));
+             }
+             return page;
+         } catch (Exception e) {
+             LOGGER.log(Level.SEVERE, "Error retrieving page of customers: {0}", e.getMessage());
+             throw new RuntimeException("Failed to retrieve customers", e);
+         }
+     }
+
+     @Override
+     public Customer getCustomerByEmail(String email) {
+         validateNotNull(email, "Email");
+         try {
+             Customer customer = customerRepository.getCustomerByEmail(email);
+             if (customer != null) {
+                 customer.setAccounts(accountService.getAccountsByCustomerId(customer.getUserId()));
+             }
+             return customer;
+         } catch (Exception e) {
+             LOGGER.log(Level.SEVERE, "Error retrieving customer by email: {0}", e.getMessage());
+             throw new RuntimeException("Failed to retrieve customer by email", e);
+         }
+     }
+
      public boolean emailExists(String email) {
          validateNotNull(email, "Email");
          try {
-             CustomerList allCustomers = customerRepository.getAllCustomers();
-             for (Customer customer : allCustomers) {
-                 if (customer.getEmail().equalsIgnoreCase(email)) {
-                     LOGGER.log(Level.INFO, "Email already exists: {0}", email);
-                     return true;
-                 }
+             if (customerRepository.getCustomerByEmail(email) != null) {
+                 LOGGER.log(Level.INFO, "Email already exists: {0}", email);
+                 return true;
              }
              return false;
          } catch (Exception e) {
@@ -123,12 +150,9 @@ package com.fortisbank.business.services.users.customer;
      public boolean phoneExists(String phoneNumber) {
          validateNotNull(phoneNumber, "Phone Number");
          try {
-             CustomerList allCustomers = customerRepository.getAllCustomers();
-             for (Customer customer : allCustomers) {
-                 if (customer.getPhoneNumber().equals(phoneNumber)) {
-                     LOGGER.log(Level.INFO, "Phone number already exists: {0}", phoneNumber);
-                     return true;
-                 }
+             if (customerRepository.getCustomerByPhone(phoneNumber) != null) {
+                 LOGGER.log(Level.INFO, "Phone number already exists: {0}", phoneNumber);
+                 return true;
              }
              return false;
          } catch (Exception e) {
@@ -1,6 +1,7 @@
 package com.fortisbank.business.services.users.customer;
 
 import com.fortisbank.contracts.collections.CustomerList;
+import com.fortisbank.contracts.collections.Page;
 import com.fortisbank.contracts.models.users.Customer;
 
 /**
@@ -43,4 +44,21 @@ public interface ICustomerService {
      * @return the list of all customers
      */
     CustomerList getAllCustomers();
+
+    /**
+     * Retrieves one page of customers, in the order of their IDs.
+     *
+     * @param pageToken the token of the page, from the previous page, or null for the first page
+     * @param pageSize the maximum number of customers in the page
+     * @return the page of customers
+     */
+    Page<Customer> getCustomersPage(String pageToken, int pageSize);
+
+    /**
+     * Retrieves the customer with the given email, compared case-insensitively.
+     *
+     * @param email the email of the customer
+     * @return the customer with the given email, or null if none exists
+     */
+    Customer getCustomerByEmail(String email);
 }
\ No newline at end of file
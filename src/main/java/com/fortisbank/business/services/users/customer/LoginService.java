@@ -84,16 +84,14 @@ package com.fortisbank.business.services.users.customer;
 
          private User authenticate(String email, char[] rawInput, boolean usePIN) throws Exception {
              try {
-                 for (Customer customer : customerService.getAllCustomers()) {
-                     if (email.equalsIgnoreCase(customer.getEmail())) {
-                         return authenticateUser(customer, rawInput, usePIN);
-                     }
+                 Customer customer = customerService.getCustomerByEmail(email);
+                 if (customer != null) {
+                     return authenticateUser(customer, rawInput, usePIN);
                  }
 
-                 for (BankManager manager : managerService.getAllManagers()) {
-                     if (email.equalsIgnoreCase(manager.getEmail())) {
-                         return authenticateUser(manager, rawInput, usePIN);
-                     }
+                 BankManager manager = managerService.getManagerByEmail(email);
+                 if (manager != null) {
+                     return authenticateUser(manager, rawInput, usePIN);
                  }
 
                  return null;
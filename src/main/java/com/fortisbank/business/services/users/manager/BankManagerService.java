@@ -81,14 +81,13 @@ package com.fortisbank.business.services.users.manager;
       public BankManager getManagerByEmail(String email) {
           validateNotNull(email, "Email");
           try {
-              for (BankManager manager : getAllManagers()) {
-                  if (manager.getEmail().equalsIgnoreCase(email)) {
-                      LOGGER.log(Level.INFO, "Manager found with email: {0}", email);
-                      return manager;
-                  }
+              BankManager manager = managerRepository.getManagerByEmail(email);
+              if (manager != null) {
+                  LOGGER.log(Level.INFO, "Manager found with email: {0}", email);
+              } else {
+                  LOGGER.log(Level.WARNING, "No manager found with email: {0}", email);
               }
-              LOGGER.log(Level.WARNING, "No manager found with email: {0}", email);
-              return null;
+              return manager;
           } catch (Exception e) {
               LOGGER.log(Level.SEVERE, "Error searching for manager by email: {0}", e.getMessage());
               throw new RuntimeException("Failed to search for manager by email", e);
@@ -100,7 +99,7 @@ package com.fortisbank.business.services.users.manager;
       public boolean emailExists(String email) {
           validateNotNull(email, "Email");
           try {
-              boolean exists = getAllManagers().stream().anyMatch(manager -> manager.getEmail().equalsIgnoreCase(email));
+              boolean exists = managerRepository.getManagerByEmail(email) != null;
               LOGGER.log(Level.INFO, "Email exists check for {0}: {1}", new Object[]{email, exists});
               return exists;
           } catch (Exception e) {
@@ -0,0 +1,84 @@
+package com.fortisbank.contracts.collections;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated query.
+ * <p>
+ * Pages are read in key order, each starting after the last key of the previous one, so reading a
+ * page costs the same wherever it is in the list. The next page is requested with
+ * {@link #nextPageToken()}, an opaque string that callers pass back unchanged.
+ *
+ * @param items the items of the page
+ * @param nextPageToken the token of the next page, or null if this is the last page
+ * @param <T> the type of the items
+ */
+public record Page<T>(List<T> items, String nextPageToken) {
+
+    private static final char SEPARATOR = '\n';
+
+    public Page {
+        items = List.copyOf(items);
+    }
+
+    /**
+     * Returns whether another page follows this one.
+     *
+     * @return true if {@link #nextPageToken()} is not null
+     */
+    public boolean hasNext() {
+        return nextPageToken != null;
+    }
+
+    /**
+     * Builds the page of a query that fetched one item more than the page size, which tells whether
+     * another page follows.
+     *
+     * @param fetched the items fetched, at most {@code pageSize + 1}
+     * @param pageSize the page size
+     * @param keyOf returns the key parts of an item, encoded into the token of the next page
+     * @param <T> the type of the items
+     * @return the page
+     */
+    public static <T> Page<T> of(List<T> fetched, int pageSize, Function<T, String[]> keyOf) {
+        if (fetched.size() <= pageSize) {
+            return new Page<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, pageSize);
+        return new Page<>(items, encodeToken(keyOf.apply(items.get(pageSize - 1))));
+    }
+
+    /**
+     * Encodes the key of the last item of a page into a continuation token.
+     *
+     * @param keyParts the parts of the key
+     * @return the token
+     */
+    public static String encodeToken(String... keyParts) {
+        String joined = String.join(String.valueOf(SEPARATOR), keyParts);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(joined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a continuation token into the key it was built from.
+     *
+     * @param token the token, or null for the first page
+     * @param parts the number of key parts expected
+     * @return the parts of the key, or null for the first page
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static String[] decodeToken(String token, int parts) {
+        if (token == null) {
+            return null;
+        }
+        String[] keyParts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8)
+                .split(String.valueOf(SEPARATOR), -1);
+        if (keyParts.length != parts) {
+            throw new IllegalArgumentException("Invalid page token: " + token);
+        }
+        return keyParts;
+    }
+}
@@ -0,0 +1,21 @@
+package com.fortisbank.contracts.exceptions;
+
+import java.io.Serial;
+
+/**
+ * Exception thrown when an account is updated from a version that is no longer the stored one:
+ * another update was committed since the account was read. The update can be retried on a fresh copy.
+ */
+public class OptimisticLockException extends AccountRepositoryException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new OptimisticLockException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public OptimisticLockException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,57 @@
+package com.fortisbank.contracts.exceptions;
+
+import java.io.Serial;
+
+/**
+ * Exception class for handling errors raised when a unit of work cannot be committed.
+ */
+public class UnitOfWorkException extends Exception {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new UnitOfWorkException with no detail message or cause.
+     */
+    public UnitOfWorkException() {
+        super();
+    }
+
+    /**
+     * Constructs a new UnitOfWorkException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public UnitOfWorkException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs a new UnitOfWorkException with the specified cause.
+     *
+     * @param cause the cause of the exception
+     */
+    public UnitOfWorkException(Throwable cause) {
+        super(cause);
+    }
+
+    /**
+     * Constructs a new UnitOfWorkException with the specified detail message and cause.
+     *
+     * @param message the detail message
+     * @param cause the cause of the exception
+     */
+    public UnitOfWorkException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Constructs a new UnitOfWorkException with formatted message and original cause.
+     *
+     * @param template the message template
+     * @param cause the cause of the exception
+     * @param args arguments to format the template
+     */
+    public UnitOfWorkException(String template, Throwable cause, Object... args) {
+        super(String.format(template, args), cause);
+    }
+}
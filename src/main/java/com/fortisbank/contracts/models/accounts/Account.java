@@ -59,6 +59,12 @@ public abstract class Account implements Serializable {
      */
     private boolean lowBalanceAlertSent = false;
 
+    /**
+     * Version of the stored account, incremented by every update. An update is rejected when the
+     * stored version differs, which means the account was updated since it was read.
+     */
+    private long version;
+
     /**
      * Default constructor initializing default values.
      */
@@ -193,6 +199,24 @@ public abstract class Account implements Serializable {
         this.isActive = active;
     }
 
+    /**
+     * Returns the version of the stored account this instance was read from.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the stored account.
+     *
+     * @param version the version to set
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     // Utility
 
     /**
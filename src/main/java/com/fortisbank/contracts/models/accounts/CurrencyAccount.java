@@ -82,6 +82,15 @@ public class CurrencyAccount extends Account {
         this.lastActiveDate = new Date();
     }
 
+    /**
+     * Sets the date when the account was last active.
+     *
+     * @param lastActiveDate the last active date
+     */
+    public void setLastActiveDate(Date lastActiveDate) {
+        this.lastActiveDate = lastActiveDate;
+    }
+
     /**
      * Displays account information in a formatted string.
      *
@@ -0,0 +1,34 @@
+package com.fortisbank.contracts.models.reports;
+
+import java.math.BigDecimal;
+
+/**
+ * Aggregates of the accounts of one type, computed by the account repository for reports.
+ *
+ * @param count the number of accounts
+ * @param totalBalance the sum of their available balances
+ * @param totalCreditLimit the sum of their credit limits, zero for types without one
+ */
+public record AccountTypeTotals(long count, BigDecimal totalBalance, BigDecimal totalCreditLimit) {
+
+    /**
+     * An empty aggregate, for types without accounts.
+     */
+    public static final AccountTypeTotals NONE = new AccountTypeTotals(0, BigDecimal.ZERO, BigDecimal.ZERO);
+
+    public AccountTypeTotals {
+        totalBalance = totalBalance != null ? totalBalance : BigDecimal.ZERO;
+        totalCreditLimit = totalCreditLimit != null ? totalCreditLimit : BigDecimal.ZERO;
+    }
+
+    /**
+     * Returns the aggregate of these accounts and the other ones.
+     *
+     * @param other the aggregate to add
+     * @return the combined aggregate
+     */
+    public AccountTypeTotals plus(AccountTypeTotals other) {
+        return new AccountTypeTotals(count + other.count, totalBalance.add(other.totalBalance),
+                totalCreditLimit.add(other.totalCreditLimit));
+    }
+}
@@ -0,0 +1,84 @@
+package com.fortisbank.contracts.models.reports;
+
+import com.fortisbank.contracts.models.accounts.Account;
+import com.fortisbank.contracts.models.transactions.Transaction;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Closing balance of an account at the end of a month, maintained by the transaction repository so
+ * that opening balances of statements are read from the nearest month instead of the whole history.
+ * <p>
+ * The balance is the signed sum of the account's transactions up to the end of the month, with the
+ * same signs as {@code getNetChangeByAccount}: deposits and incoming transfers add to the account,
+ * withdrawals, fees and outgoing transfers subtract from it. Snapshots exist for the months in which
+ * the account had transactions.
+ *
+ * @param accountId the account number
+ * @param month the month
+ * @param closingBalance the balance at the end of the month
+ */
+public record BalanceSnapshot(String accountId, YearMonth month, BigDecimal closingBalance) {
+
+    public BalanceSnapshot {
+        closingBalance = closingBalance != null ? closingBalance : BigDecimal.ZERO;
+    }
+
+    /**
+     * Returns the key of the snapshot, unique by account and month.
+     *
+     * @return the account number and the month
+     */
+    public String key() {
+        return accountId + '|' + month;
+    }
+
+    /**
+     * Returns the snapshot with a change added to its closing balance.
+     *
+     * @param change the signed amount to add
+     * @return the new snapshot
+     */
+    public BalanceSnapshot plus(BigDecimal change) {
+        return new BalanceSnapshot(accountId, month, closingBalance.add(change));
+    }
+
+    /**
+     * Sums the signed amounts of transactions by account and month.
+     *
+     * @param transactions the transactions
+     * @return the net change of each month, by account number
+     */
+    public static Map<String, NavigableMap<YearMonth, BigDecimal>> changesByAccount(Collection<? extends Transaction> transactions) {
+        Map<String, NavigableMap<YearMonth, BigDecimal>> changes = new HashMap<>();
+        for (Transaction transaction : transactions) {
+            addChanges(transaction, changes);
+        }
+        return changes;
+    }
+
+    /**
+     * Adds the signed amount of a transaction to the net change of its month, for the accounts it
+     * moves money from and to.
+     *
+     * @param transaction the transaction
+     * @param changes the net change of each month, by account number
+     */
+    public static void addChanges(Transaction transaction, Map<String, NavigableMap<YearMonth, BigDecimal>> changes) {
+        YearMonth month = YearMonth.from(transaction.getTransactionDate().toInstant().atZone(ZoneId.systemDefault()));
+        addChange(transaction.getSourceAccount(), month, transaction.getAmount().negate(), changes);
+        addChange(transaction.getDestinationAccount(), month, transaction.getAmount(), changes);
+    }
+
+    private static void addChange(Account account, YearMonth month, BigDecimal change, Map<String, NavigableMap<YearMonth, BigDecimal>> changes) {
+        if (account == null || account.getAccountNumber() == null) return;
+        changes.computeIfAbsent(account.getAccountNumber(), a -> new TreeMap<>()).merge(month, change, BigDecimal::add);
+    }
+}
@@ -1,15 +1,18 @@
 package com.fortisbank.contracts.models.reports;
 
 import com.fortisbank.contracts.collections.AccountList;
-import com.fortisbank.contracts.collections.TransactionList;
 
+import java.io.Serial;
 import java.math.BigDecimal;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Class representing a bank summary report.
  */
 public class BankSummaryReport extends Report {
+    @Serial
+    private static final long serialVersionUID = 1L;
 
     /**
      * The total number of customers.
@@ -24,7 +27,7 @@ public class BankSummaryReport extends Report {
     /**
      * A map containing the count of each account type.
      */
-    private final Map<String, Long> accountTypeCounts;
+    private final LinkedHashMap<String, Long> accountTypeCounts;
 
     /**
      * The total balance across all accounts.
@@ -42,9 +45,9 @@ public class BankSummaryReport extends Report {
     private final BigDecimal totalFeesCollected;
 
     /**
-     * A list of all transactions.
+     * A map containing the count of each transaction type.
      */
-    private final TransactionList allTransactions;
+    private final LinkedHashMap<String, Long> transactionTypeCounts;
 
     /**
      * A list of accounts with low balances.
@@ -60,7 +63,7 @@ public class BankSummaryReport extends Report {
      * @param totalBalance the total balance across all accounts
      * @param totalCreditUsed the total credit used across all accounts
      * @param totalFeesCollected the total fees collected
-     * @param allTransactions a list of all transactions
+     * @param transactionTypeCounts a map containing the count of each transaction type
      * @param lowBalanceAccounts a list of accounts with low balances
      */
     public BankSummaryReport(
@@ -70,17 +73,17 @@ public class BankSummaryReport extends Report {
             BigDecimal totalBalance,
             BigDecimal totalCreditUsed,
             BigDecimal totalFeesCollected,
-            TransactionList allTransactions,
+            Map<String, Long> transactionTypeCounts,
             AccountList lowBalanceAccounts
     ) {
         super("Bank Summary");
         this.totalCustomers = totalCustomers;
         this.totalAccounts = totalAccounts;
-        this.accountTypeCounts = accountTypeCounts;
+        this.accountTypeCounts = new LinkedHashMap<>(accountTypeCounts); // copied into a serializable map
         this.totalBalance = totalBalance;
         this.totalCreditUsed = totalCreditUsed;
         this.totalFeesCollected = totalFeesCollected;
-        this.allTransactions = allTransactions;
+        this.transactionTypeCounts = new LinkedHashMap<>(transactionTypeCounts);
         this.lowBalanceAccounts = lowBalanceAccounts;
     }
 
@@ -154,12 +157,12 @@ public class BankSummaryReport extends Report {
     }
 
     /**
-     * Returns a list of all transactions.
+     * Returns a map containing the count of each transaction type.
      *
-     * @return a list of all transactions
+     * @return a map containing the count of each transaction type
      */
-    public TransactionList getAllTransactions() {
-        return allTransactions;
+    public Map<String, Long> getTransactionTypeCounts() {
+        return transactionTypeCounts;
     }
 
     /**
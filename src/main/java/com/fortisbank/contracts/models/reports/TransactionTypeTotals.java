@@ -0,0 +1,31 @@
+package com.fortisbank.contracts.models.reports;
+
+import java.math.BigDecimal;
+
+/**
+ * Aggregates of the transactions of one type, computed by the transaction repository for reports.
+ *
+ * @param count the number of transactions
+ * @param totalAmount the sum of their amounts
+ */
+public record TransactionTypeTotals(long count, BigDecimal totalAmount) {
+
+    /**
+     * An empty aggregate, for types without transactions.
+     */
+    public static final TransactionTypeTotals NONE = new TransactionTypeTotals(0, BigDecimal.ZERO);
+
+    public TransactionTypeTotals {
+        totalAmount = totalAmount != null ? totalAmount : BigDecimal.ZERO;
+    }
+
+    /**
+     * Returns the aggregate of these transactions and the other ones.
+     *
+     * @param other the aggregate to add
+     * @return the combined aggregate
+     */
+    public TransactionTypeTotals plus(TransactionTypeTotals other) {
+        return new TransactionTypeTotals(count + other.count, totalAmount.add(other.totalAmount));
+    }
+}
@@ -0,0 +1,14 @@
+package com.fortisbank.contracts.models.transactions;
+
+import java.util.Date;
+
+/**
+ * Entry of the persisted dedupe index of transactions: the idempotency key a transaction was
+ * submitted with and its result, written in the same unit of work as the transaction.
+ *
+ * @param key the idempotency key chosen by the client
+ * @param createdAt when the transaction was executed
+ * @param result the result returned to the client
+ */
+public record IdempotencyRecord(String key, Date createdAt, TransactionResult result) {
+}
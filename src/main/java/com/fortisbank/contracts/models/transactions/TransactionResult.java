@@ -0,0 +1,72 @@
+package com.fortisbank.contracts.models.transactions;
+
+import com.fortisbank.contracts.models.accounts.Account;
+
+import java.math.BigDecimal;
+
+/**
+ * Outcome of a transaction executed by the transaction sequencer or in a batch, numbered in the
+ * order in which transactions were applied.
+ * <p>
+ * The sequencer journals results in sequence order, rejected transactions included, so that the
+ * ledger can be replayed for audits.
+ *
+ * @param sequence the position of the transaction in the global order, or its index in its batch
+ * @param transactionNumber the transaction number
+ * @param type the type of the transaction
+ * @param sourceAccountId the number of the account debited, or null
+ * @param destinationAccountId the number of the account credited, or null
+ * @param amount the amount of the transaction
+ * @param status whether the transaction was applied
+ * @param reason why the transaction was rejected, null when it was applied
+ */
+public record TransactionResult(long sequence, String transactionNumber, TransactionType type,
+                                String sourceAccountId, String destinationAccountId, BigDecimal amount,
+                                Status status, String reason) {
+
+    /**
+     * Outcome of a transaction.
+     */
+    public enum Status {
+        /** The transaction was committed. */
+        APPLIED,
+        /** The transaction failed and nothing was written. */
+        REJECTED
+    }
+
+    /**
+     * Returns the result of an applied transaction.
+     *
+     * @param sequence the position of the transaction in the global order, or its index in its batch
+     * @param transaction the transaction
+     * @return the result
+     */
+    public static TransactionResult applied(long sequence, Transaction transaction) {
+        return of(sequence, transaction, Status.APPLIED, null);
+    }
+
+    /**
+     * Returns the result of a rejected transaction.
+     *
+     * @param sequence the position of the transaction in the global order, or its index in its batch
+     * @param transaction the transaction
+     * @param reason why it was rejected
+     * @return the result
+     */
+    public static TransactionResult rejected(long sequence, Transaction transaction, String reason) {
+        return of(sequence, transaction, Status.REJECTED, reason);
+    }
+
+    private static TransactionResult of(long sequence, Transaction transaction, Status status, String reason) {
+        if (transaction == null) {
+            return new TransactionResult(sequence, null, null, null, null, null, status, reason);
+        }
+        return new TransactionResult(sequence, transaction.getTransactionNumber(), transaction.getTransactionType(),
+                accountNumber(transaction.getSourceAccount()), accountNumber(transaction.getDestinationAccount()),
+                transaction.getAmount(), status, reason);
+    }
+
+    private static String accountNumber(Account account) {
+        return account != null ? account.getAccountNumber() : null;
+    }
+}
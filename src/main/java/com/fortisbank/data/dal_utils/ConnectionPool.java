@@ -0,0 +1,499 @@
+package com.fortisbank.data.dal_utils;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of JDBC connections.
+ * <p>
+ * {@link #borrow()} hands out an idle connection, opening a new one while fewer than the maximum are
+ * open and otherwise waiting up to the borrow timeout. The caller gets a proxy whose {@code close()}
+ * returns the connection to the pool, rolling back a transaction left open and restoring auto-commit;
+ * the proxy cannot be used once closed. A connection idle for more than a second is validated before
+ * it is handed out, and replaced if the check fails.
+ * <p>
+ * A background task closes connections idle longer than the idle timeout, down to the minimum size,
+ * reopens connections up to the minimum, and logs the borrows held longer than the leak detection
+ * threshold together with the stack trace of the code that borrowed them.
+ */
+public final class ConnectionPool implements ConnectionPoolMXBean, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+    private static final long VALIDATION_SKIP_NANOS = TimeUnit.SECONDS.toNanos(1); // recently used connections are trusted
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final long MAINTENANCE_MILLIS = 30_000L;
+
+    /**
+     * Opens a physical connection.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    private final String name;
+    private final ConnectionFactory factory;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final long leakThresholdNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>(); // most recently returned first
+    private final Set<PooledConnection> borrowed = new HashSet<>();
+    private final ScheduledExecutorService maintenance;
+    private int total; // open connections, plus those being opened
+    private int waiting;
+    private boolean closed;
+
+    private long borrows;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long timeouts;
+    private long created;
+    private long evicted;
+    private long leaks;
+
+    /**
+     * Creates a pool and starts its maintenance task, which opens the minimum number of connections.
+     *
+     * @param name the name of the pool, used in logs and in the JMX object name
+     * @param factory opens the physical connections
+     * @param minSize the number of connections kept open
+     * @param maxSize the maximum number of open connections
+     * @param borrowTimeoutMillis how long a borrow waits for a connection before failing
+     * @param idleTimeoutMillis how long a connection above the minimum may stay idle
+     * @param leakThresholdMillis how long a connection may be held before it is reported as a leak, 0 to disable
+     */
+    public ConnectionPool(String name, ConnectionFactory factory, int minSize, int maxSize,
+                          long borrowTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min " + minSize + ", max " + maxSize);
+        }
+        this.name = name;
+        this.factory = factory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name + "-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::maintain, 0, MAINTENANCE_MILLIS, TimeUnit.MILLISECONDS);
+        registerMBean();
+    }
+
+    /**
+     * Borrows a connection. Closing the returned connection gives it back to the pool.
+     *
+     * @return a valid connection
+     * @throws SQLException if no connection could be opened, or none was returned before the borrow timeout
+     */
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        long remaining = borrowTimeoutNanos;
+        while (true) {
+            PooledConnection connection = null;
+            lock.lock();
+            try {
+                while (connection == null) {
+                    if (closed) {
+                        throw new SQLException("Connection pool " + name + " is closed");
+                    }
+                    connection = idle.pollFirst();
+                    if (connection != null) break;
+                    if (total < maxSize) {
+                        total++; // reserves the slot while the connection is opened outside the lock
+                        break;
+                    }
+                    if (remaining <= 0) {
+                        timeouts++;
+                        throw new SQLTransientConnectionException(String.format(
+                                "Timed out after %d ms waiting for a connection from pool %s (%d in use, max %d)",
+                                TimeUnit.NANOSECONDS.toMillis(borrowTimeoutNanos), name, borrowed.size(), maxSize));
+                    }
+                    waiting++;
+                    try {
+                        remaining = available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a connection", e);
+                    } finally {
+                        waiting--;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (connection == null) {
+                connection = open();
+            } else if (System.nanoTime() - connection.lastUsed > VALIDATION_SKIP_NANOS && !isValid(connection)) {
+                discard(connection, true);
+                remaining = borrowTimeoutNanos - (System.nanoTime() - start);
+                continue;
+            }
+
+            long now = System.nanoTime();
+            Exception borrower = leakThresholdNanos > 0 ? new Exception("Connection borrowed here") : null;
+            lock.lock();
+            try {
+                connection.borrowedAt = now;
+                connection.borrower = borrower;
+                connection.leakReported = false;
+                borrowed.add(connection);
+                borrows++;
+                totalWaitNanos += now - start;
+                maxWaitNanos = Math.max(maxWaitNanos, now - start);
+            } finally {
+                lock.unlock();
+            }
+            return connection.handle();
+        }
+    }
+
+    /**
+     * Closes the idle connections and stops the maintenance task. Borrowed connections are closed
+     * when they are returned.
+     */
+    @Override
+    public void close() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            total -= toClose.size();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        maintenance.shutdownNow();
+        toClose.forEach(PooledConnection::closePhysical);
+        LOGGER.log(Level.INFO, "Closed connection pool {0}", name);
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return locked(borrowed::size);
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return locked(idle::size);
+    }
+
+    @Override
+    public int getTotalConnections() {
+        return locked(() -> total);
+    }
+
+    @Override
+    public int getWaitingThreads() {
+        return locked(() -> waiting);
+    }
+
+    @Override
+    public long getBorrowCount() {
+        return locked(() -> borrows);
+    }
+
+    @Override
+    public double getAverageWaitMillis() {
+        return locked(() -> borrows == 0 ? 0.0 : totalWaitNanos / 1e6 / borrows);
+    }
+
+    @Override
+    public double getMaxWaitMillis() {
+        return locked(() -> maxWaitNanos / 1e6);
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return locked(() -> timeouts);
+    }
+
+    @Override
+    public long getCreatedCount() {
+        return locked(() -> created);
+    }
+
+    @Override
+    public long getEvictedCount() {
+        return locked(() -> evicted);
+    }
+
+    @Override
+    public long getLeakCount() {
+        return locked(() -> leaks);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool[%s: active=%d, idle=%d, waiting=%d, avgWait=%.2fms, maxWait=%.2fms, timeouts=%d, leaks=%d]",
+                name, getActiveConnections(), getIdleConnections(), getWaitingThreads(),
+                getAverageWaitMillis(), getMaxWaitMillis(), getTimeoutCount(), getLeakCount());
+    }
+
+    /**
+     * Opens a connection for a slot already reserved in {@link #total}.
+     */
+    private PooledConnection open() throws SQLException {
+        try {
+            PooledConnection connection = new PooledConnection(factory.open());
+            lock.lock();
+            try {
+                created++;
+            } finally {
+                lock.unlock();
+            }
+            LOGGER.log(Level.FINE, "Opened a connection for pool {0}", name);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                total--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private boolean isValid(PooledConnection connection) {
+        try {
+            return connection.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gives a borrowed connection back, or closes it if it is broken or the pool is closed.
+     */
+    private void release(PooledConnection connection) {
+        boolean broken = false;
+        try {
+            if (!connection.physical.getAutoCommit()) {
+                connection.physical.rollback(); // transaction abandoned by the borrower
+                connection.physical.setAutoCommit(true);
+            }
+            connection.physical.clearWarnings();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Discarding connection that could not be reset: {0}", e.getMessage());
+            broken = true;
+        }
+        lock.lock();
+        try {
+            borrowed.remove(connection);
+            if (!broken && !closed) {
+                connection.lastUsed = System.nanoTime();
+                idle.addFirst(connection);
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        discard(connection, false);
+    }
+
+    private void discard(PooledConnection connection, boolean evict) {
+        lock.lock();
+        try {
+            total--;
+            if (evict) evicted++;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        connection.closePhysical();
+    }
+
+    /**
+     * Reports leaks, evicts idle connections above the minimum size and reopens connections up to it.
+     */
+    private void maintain() {
+        try {
+            long now = System.nanoTime();
+            List<PooledConnection> expired = new ArrayList<>();
+            int missing;
+            lock.lock();
+            try {
+                if (closed) return;
+                if (leakThresholdNanos > 0) {
+                    for (PooledConnection connection : borrowed) {
+                        if (!connection.leakReported && now - connection.borrowedAt > leakThresholdNanos) {
+                            connection.leakReported = true;
+                            leaks++;
+                            LOGGER.log(Level.WARNING, String.format("Connection from pool %s held for %d ms, possible leak",
+                                    name, TimeUnit.NANOSECONDS.toMillis(now - connection.borrowedAt)), connection.borrower);
+                        }
+                    }
+                }
+                Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+                while (total - expired.size() > minSize && oldestFirst.hasNext()) {
+                    PooledConnection connection = oldestFirst.next();
+                    if (now - connection.lastUsed < idleTimeoutNanos) break;
+                    oldestFirst.remove();
+                    expired.add(connection);
+                }
+                total -= expired.size();
+                evicted += expired.size();
+                missing = Math.max(0, minSize - total);
+                total += missing;
+            } finally {
+                lock.unlock();
+            }
+            expired.forEach(PooledConnection::closePhysical);
+            for (int i = 0; i < missing; i++) {
+                PooledConnection connection;
+                try {
+                    connection = open();
+                } catch (SQLException e) {
+                    LOGGER.log(Level.WARNING, "Could not open connection for pool {0}: {1}", new Object[]{name, e.getMessage()});
+                    lock.lock();
+                    try {
+                        total -= missing - i - 1; // open() already released the failed slot
+                    } finally {
+                        lock.unlock();
+                    }
+                    return;
+                }
+                connection.lastUsed = System.nanoTime();
+                lock.lock();
+                try {
+                    idle.addLast(connection);
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Connection pool maintenance failed", e);
+        }
+    }
+
+    private <T> T locked(Supplier<T> read) {
+        lock.lock();
+        try {
+            return read.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName("com.fortisbank:type=ConnectionPool,name=" + ObjectName.quote(name)));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not export metrics of connection pool {0}: {1}", new Object[]{name, e.getMessage()});
+        }
+    }
+
+    /**
+     * A physical connection and its pool bookkeeping.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private long lastUsed = System.nanoTime();
+        private long borrowedAt;
+        private Exception borrower; // where the current borrow happened, for leak reports
+        private boolean leakReported;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        /**
+         * Returns a new proxy for one borrow; closing it releases this connection once.
+         */
+        private Connection handle() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handle(this));
+        }
+
+        private void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Error closing pooled connection: {0}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Forwards calls to the physical connection until the borrower closes it.
+     */
+    private final class Handle implements InvocationHandler {
+        private PooledConnection connection;
+
+        private Handle(PooledConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    PooledConnection released;
+                    synchronized (this) {
+                        released = connection;
+                        connection = null;
+                    }
+                    if (released != null) release(released);
+                    return null;
+                }
+                case "isClosed" -> {
+                    PooledConnection current = connection;
+                    return current == null || current.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled connection of " + name + (connection == null ? " (closed)" : "");
+                }
+                default -> {
+                    PooledConnection current = connection;
+                    if (current == null) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    try {
+                        return method.invoke(current.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+    }
+}
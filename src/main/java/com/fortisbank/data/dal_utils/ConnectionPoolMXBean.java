@@ -0,0 +1,62 @@
+package com.fortisbank.data.dal_utils;
+
+/**
+ * Metrics of a {@link ConnectionPool}, exported over JMX as {@code com.fortisbank:type=ConnectionPool}.
+ */
+public interface ConnectionPoolMXBean {
+
+    /**
+     * Returns the number of connections currently borrowed.
+     */
+    int getActiveConnections();
+
+    /**
+     * Returns the number of open connections waiting in the pool.
+     */
+    int getIdleConnections();
+
+    /**
+     * Returns the number of open connections, borrowed or idle.
+     */
+    int getTotalConnections();
+
+    /**
+     * Returns the number of threads currently waiting for a connection.
+     */
+    int getWaitingThreads();
+
+    /**
+     * Returns the number of connections borrowed since the pool was created.
+     */
+    long getBorrowCount();
+
+    /**
+     * Returns the average time a borrow waited for a connection, in milliseconds.
+     */
+    double getAverageWaitMillis();
+
+    /**
+     * Returns the longest time a borrow waited for a connection, in milliseconds.
+     */
+    double getMaxWaitMillis();
+
+    /**
+     * Returns the number of borrows that timed out.
+     */
+    long getTimeoutCount();
+
+    /**
+     * Returns the number of physical connections opened since the pool was created.
+     */
+    long getCreatedCount();
+
+    /**
+     * Returns the number of connections closed for being idle too long or failing validation.
+     */
+    long getEvictedCount();
+
+    /**
+     * Returns the number of borrows held longer than the leak detection threshold.
+     */
+    long getLeakCount();
+}
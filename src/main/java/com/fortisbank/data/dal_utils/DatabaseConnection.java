@@ -2,47 +2,137 @@ package com.fortisbank.data.dal_utils;
 
 import com.fortisbank.data.interfaces.IDatabaseConnection;
 import com.fortisbank.contracts.exceptions.DatabaseConnectionException;
+import com.fortisbank.contracts.exceptions.UnitOfWorkException;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Access to the Oracle database, or to the embedded database of the EMBEDDED_DATABASE mode, through a
+ * {@link ConnectionPool}.
+ * <p>
+ * Connections returned by {@link #getConnection()} are borrowed from the pool and given back when
+ * closed, so callers keep using try-with-resources. The pool is sized and tuned with
+ * {@code -Dfortisbank.dbPoolMin=...} (default 2), {@code -Dfortisbank.dbPoolMax=...} (default 10),
+ * {@code -Dfortisbank.dbBorrowTimeoutMillis=...} (default 30000),
+ * {@code -Dfortisbank.dbIdleTimeoutMillis=...} (default 600000) and
+ * {@code -Dfortisbank.dbLeakThresholdMillis=...} (default 60000, 0 disables leak detection).
+ * <p>
+ * Inside {@link #inTransaction(Runnable)} the thread is bound to a single connection with auto-commit
+ * disabled, and {@link #getConnection()} returns that connection, so that every statement of the
+ * work runs in one database transaction.
+ * <p>
+ * The embedded database is an in-process H2 database in Oracle compatibility mode, so that the same
+ * repositories and SQL run against it. Its URL is set with {@code -Dfortisbank.embeddedUrl=...}, by
+ * default a file database under {@code data/}; an in-memory URL such as
+ * {@code jdbc:h2:mem:fortisbank;MODE=Oracle;DB_CLOSE_DELAY=-1} suits benchmarks and load tests. Its
+ * tables are created from the Oracle schema by {@link EmbeddedSchema} when the database is empty.
+ */
 public class DatabaseConnection implements IDatabaseConnection {
     private static final Logger LOGGER = Logger.getLogger(DatabaseConnection.class.getName());
-    private static DatabaseConnection instance;
+    private static volatile DatabaseConnection instance;
+    private static volatile DatabaseConnection embeddedInstance;
 
-    private final String connectionString = "jdbc:oracle:thin:@//aedev.pro:1521/XEPDB1";
-    private final String username = "java_course";
-    private final String password = "Baddemon665";
+    private static final String EMBEDDED_URL = System.getProperty("fortisbank.embeddedUrl",
+            "jdbc:h2:./data/fortisbank-h2;MODE=Oracle;DEFAULT_NULL_ORDERING=HIGH");
 
-    private DatabaseConnection() {
+    /**
+     * Number of rows sent per JDBC batch by the bulk insert methods, set with {@code -Dfortisbank.dbBatchSize=...}.
+     */
+    public static final int BATCH_SIZE = Integer.getInteger("fortisbank.dbBatchSize", 500);
+
+    /**
+     * Number of rows fetched per round trip by the streaming queries, set with {@code -Dfortisbank.dbFetchSize=...}.
+     */
+    public static final int FETCH_SIZE = Integer.getInteger("fortisbank.dbFetchSize", 500);
+
+    private final String connectionString;
+    private final String username;
+    private final String password;
+    private final ConnectionPool pool;
+    private final ThreadLocal<Connection> bound = new ThreadLocal<>(); // connection of the unit of work of the thread
+
+    private DatabaseConnection(String name, String driver, String connectionString, String username, String password) {
+        this.connectionString = connectionString;
+        this.username = username;
+        this.password = password;
         try {
-            Class.forName("oracle.jdbc.OracleDriver");
+            Class.forName(driver);
         } catch (ClassNotFoundException e) {
-            LOGGER.log(Level.SEVERE, "Oracle JDBC Driver not found.", e);
-            throw new RuntimeException("Oracle JDBC Driver not found.", e);
+            LOGGER.log(Level.SEVERE, "JDBC Driver not found: " + driver, e);
+            throw new RuntimeException("JDBC Driver not found: " + driver, e);
         }
+        pool = new ConnectionPool(name, () -> DriverManager.getConnection(this.connectionString, this.username, this.password),
+                Integer.getInteger("fortisbank.dbPoolMin", 2),
+                Integer.getInteger("fortisbank.dbPoolMax", 10),
+                Long.getLong("fortisbank.dbBorrowTimeoutMillis", 30_000L),
+                Long.getLong("fortisbank.dbIdleTimeoutMillis", 600_000L),
+                Long.getLong("fortisbank.dbLeakThresholdMillis", 60_000L));
+        Runtime.getRuntime().addShutdownHook(new Thread(pool::close, name + "-pool-shutdown"));
     }
 
     public static DatabaseConnection getInstance() {
         if (instance == null) {
             synchronized (DatabaseConnection.class) {
                 if (instance == null) {
-                    instance = new DatabaseConnection();
+                    instance = new DatabaseConnection("oracle", "oracle.jdbc.OracleDriver",
+                            "jdbc:oracle:thin:@//aedev.pro:1521/XEPDB1", "java_course", "Baddemon665");
                 }
             }
         }
         return instance;
     }
 
+    /**
+     * Returns the embedded database, creating its tables on first use if it is empty.
+     *
+     * @return the embedded database
+     */
+    public static DatabaseConnection getEmbeddedInstance() {
+        if (embeddedInstance == null) {
+            synchronized (DatabaseConnection.class) {
+                if (embeddedInstance == null) {
+                    DatabaseConnection embedded = new DatabaseConnection("embedded", "org.h2.Driver", EMBEDDED_URL, "sa", "");
+                    EmbeddedSchema.createIfMissing(embedded);
+                    embeddedInstance = embedded;
+                }
+            }
+        }
+        return embeddedInstance;
+    }
+
+    /**
+     * Returns the database of a storage mode: the embedded database in the EMBEDDED_DATABASE mode and
+     * the Oracle database otherwise.
+     *
+     * @param mode the storage mode
+     * @return the database of the mode
+     */
+    public static DatabaseConnection getInstance(StorageMode mode) {
+        return mode == StorageMode.EMBEDDED_DATABASE ? getEmbeddedInstance() : getInstance();
+    }
+
+    /**
+     * Borrows a connection from the pool; closing it returns it to the pool. Inside a unit of work,
+     * returns the connection of the unit of work instead, on which closing, committing, rolling back
+     * and changing auto-commit have no effect.
+     */
     @Override
     public Connection getConnection() throws DatabaseConnectionException {
+        Connection connection = bound.get();
+        if (connection != null) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Enlisted(connection));
+        }
         try {
-            Connection conn = DriverManager.getConnection(connectionString, username, password);
-            LOGGER.log(Level.INFO, "Connected to Oracle Database successfully.");
-            return conn;
+            return pool.borrow();
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to connect to the database.", e);
             throw new DatabaseConnectionException("Failed to connect to the database.", e);
@@ -51,7 +141,7 @@ public class DatabaseConnection implements IDatabaseConnection {
 
     @Override
     public boolean TestConnection() {
-        try (Connection testConn = DriverManager.getConnection(connectionString, username, password)) {
+        try (Connection testConn = pool.borrow()) {
             LOGGER.log(Level.INFO, "Database connection test successful.");
             return true;
         } catch (SQLException e) {
@@ -59,4 +149,98 @@ public class DatabaseConnection implements IDatabaseConnection {
             return false;
         }
     }
+
+    /**
+     * Runs work as a unit of work: its statements run on one connection and are committed together
+     * once it returns, or rolled back if it throws. A unit of work started inside another joins it.
+     *
+     * @param work the work to run
+     * @throws UnitOfWorkException if no connection could be borrowed or the commit failed
+     */
+    public void inTransaction(Runnable work) throws UnitOfWorkException {
+        if (bound.get() != null) {
+            work.run();
+            return;
+        }
+        try (Connection connection = pool.borrow()) {
+            connection.setAutoCommit(false);
+            bound.set(connection);
+            try {
+                work.run();
+                connection.commit();
+            } catch (RuntimeException | Error e) {
+                rollbackQuietly(connection);
+                throw e;
+            } finally {
+                bound.remove();
+                restoreAutoCommit(connection);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Failed to commit unit of work.", e);
+            throw new UnitOfWorkException("Failed to commit unit of work.", e);
+        }
+    }
+
+    /**
+     * Restores auto-commit once a unit of work has ended. A failure does not undo a committed unit of
+     * work: it is logged, and the pool resets or discards the connection when it is given back.
+     */
+    private static void restoreAutoCommit(Connection connection) {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Failed to restore auto-commit after unit of work: {0}", e.getMessage());
+        }
+    }
+
+    private static void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Failed to roll back unit of work: {0}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the connection pool, whose metrics are also exported over JMX.
+     *
+     * @return the connection pool
+     */
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Forwards calls to the connection of a unit of work, leaving its transaction and its release to
+     * the unit of work.
+     */
+    private static final class Enlisted implements InvocationHandler {
+        private final Connection connection;
+
+        private Enlisted(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close", "commit", "rollback", "setAutoCommit" -> {
+                    return null;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                default -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+    }
 }
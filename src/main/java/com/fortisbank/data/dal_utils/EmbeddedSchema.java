@@ -0,0 +1,116 @@
+package com.fortisbank.data.dal_utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Creates the tables of the embedded database from the Oracle schema script.
+ * <p>
+ * The script, {@code db/FortisBankSystem.sql} by default or the file set with
+ * {@code -Dfortisbank.schemaFile=...}, is run statement by statement with these adaptations:
+ * <ul>
+ *     <li>PL/SQL blocks, terminated by a line holding a single {@code /}, are skipped; the schema only
+ *     uses them to drop existing tables, and the script is only run on an empty database.</li>
+ *     <li>Oracle {@code COMPRESS} storage clauses of tables and indexes are removed.</li>
+ *     <li>{@code PARTITION BY} clauses of tables and the {@code LOCAL} keyword of their indexes are
+ *     removed: the embedded tables are not partitioned.</li>
+ *     <li>Indexes the embedded engine cannot build, such as function-based indexes, are skipped with
+ *     a warning: they only speed up queries.</li>
+ * </ul>
+ */
+public final class EmbeddedSchema {
+    private static final Logger LOGGER = Logger.getLogger(EmbeddedSchema.class.getName());
+    private static final File SCHEMA_FILE = new File(System.getProperty("fortisbank.schemaFile", "db/FortisBankSystem.sql"));
+    private static final Pattern COMPRESS = Pattern.compile("\\s+COMPRESS(\\s+\\d+)?\\s*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PARTITIONING = Pattern.compile("\\s+PARTITION\\s+BY\\s.*$|\\s+LOCAL\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private EmbeddedSchema() {
+    }
+
+    /**
+     * Runs the schema script on a database that has no {@code users} table yet.
+     *
+     * @param database the embedded database
+     * @throws IllegalStateException if the script cannot be read or one of its tables cannot be created
+     */
+    static void createIfMissing(DatabaseConnection database) {
+        try (Connection connection = database.getPool().borrow()) {
+            try (ResultSet tables = connection.getMetaData().getTables(null, null, "USERS", new String[]{"TABLE"})) {
+                if (tables.next()) {
+                    return;
+                }
+            }
+            List<String> statements = parse(Files.readString(SCHEMA_FILE.toPath(), StandardCharsets.UTF_8));
+            int skipped = 0;
+            try (Statement stmt = connection.createStatement()) {
+                for (String sql : statements) {
+                    try {
+                        stmt.execute(sql);
+                    } catch (SQLException e) {
+                        if (!sql.regionMatches(true, 0, "CREATE INDEX", 0, 12)) {
+                            throw e;
+                        }
+                        LOGGER.log(Level.WARNING, "Skipped index not supported by the embedded database: {0}", sql);
+                        skipped++;
+                    }
+                }
+            }
+            LOGGER.log(Level.INFO, "Created embedded schema from {0}: {1} statements, {2} indexes skipped",
+                    new Object[]{SCHEMA_FILE.getPath(), statements.size() - skipped, skipped});
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException("Failed to create the embedded schema from " + SCHEMA_FILE.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Splits a script into the statements run on the embedded database, without PL/SQL blocks,
+     * comments, storage and partitioning clauses.
+     *
+     * @param script the Oracle script
+     * @return the statements, without their terminating semicolons
+     */
+    static List<String> parse(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inBlock = false;
+        for (String line : script.split("\\R")) {
+            String trimmed = stripComment(line).trim();
+            if (inBlock) {
+                inBlock = !trimmed.equals("/");
+                continue;
+            }
+            if (current.isEmpty() && (trimmed.equalsIgnoreCase("BEGIN") || trimmed.toUpperCase().startsWith("DECLARE"))) {
+                inBlock = true;
+                continue;
+            }
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            current.append(current.isEmpty() ? "" : "\n").append(trimmed);
+            if (trimmed.endsWith(";")) {
+                String sql = current.substring(0, current.length() - 1);
+                sql = COMPRESS.matcher(sql).replaceAll("");
+                statements.add(PARTITIONING.matcher(sql).replaceAll(""));
+                current.setLength(0);
+            }
+        }
+        return statements;
+    }
+
+    private static String stripComment(String line) {
+        int comment = line.indexOf("--");
+        return comment >= 0 ? line.substring(0, comment) : line;
+    }
+}
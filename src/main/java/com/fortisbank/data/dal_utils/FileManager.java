@@ -1,22 +1,47 @@
 package com.fortisbank.data.dal_utils;
 
      import java.io.*;
+     import java.nio.file.AtomicMoveNotSupportedException;
+     import java.nio.file.Files;
+     import java.nio.file.StandardCopyOption;
      import java.util.ArrayList;
      import java.util.List;
      import java.util.logging.Level;
      import java.util.logging.Logger;
 
+     /**
+      * Reads and writes the data files of the file storage mode.
+      * <p>
+      * Writes never touch the live file: the content is written to a temporary file in the same
+      * directory, forced to the storage device and renamed over the live file, so a crash leaves either
+      * the old or the new version. Reads fail with an {@link UncheckedIOException} when a file exists but
+      * cannot be decoded, instead of reporting it as empty.
+      */
      @SuppressWarnings("ResultOfMethodCallIgnored")
      public class FileManager {
 
          private static final Logger LOGGER = Logger.getLogger(FileManager.class.getName());
+         private static final int CODEC_FILE_MAGIC = 0x46424B31; // "FBK1"
+         private static final int SNAPSHOT_FILE_MAGIC = 0x46424B32; // "FBK2", adds the checkpoint LSN
+         private static final int BUFFER_SIZE = 64 * 1024;
+
+         /**
+          * Content of a snapshot file: the records and the journal sequence number they include.
+          *
+          * @param records the records of the snapshot
+          * @param lsn the sequence number of the last journal entry applied to the records, 0 if none
+          * @param <T> the type of the records
+          */
+         public record Snapshot<T>(List<T> records, long lsn) {
+         }
 
          /**
           * Reads a list of objects from a file.
           *
           * @param file the file to read from
           * @param <T> the type of objects in the list
-          * @return the list of objects read from the file, or an empty list if the file does not exist or is invalid
+          * @return the list of objects read from the file, or an empty list if the file does not exist or is empty
+          * @throws UncheckedIOException if the file cannot be read
           */
          @SuppressWarnings("unchecked")
          public static <T> List<T> readListFromFile(File file) {
@@ -24,41 +49,133 @@ package com.fortisbank.data.dal_utils;
                  LOGGER.log(Level.WARNING, "File does not exist or is empty: {0}", file.getAbsolutePath());
                  return new ArrayList<>();
              }
-             try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+             try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
                  return (List<T>) ois.readObject();
              } catch (IOException | ClassNotFoundException e) {
                  LOGGER.log(Level.SEVERE, "Error reading list from file: {0}", file.getAbsolutePath());
-                 LOGGER.log(Level.SEVERE, e.getMessage(), e);
-                 return new ArrayList<>();
+                 throw new UncheckedIOException("Error reading list from file: " + file.getAbsolutePath(),
+                         e instanceof IOException io ? io : new IOException(e));
              }
          }
 
          /**
-          * Writes a list of objects to a file.
+          * Writes a list of objects to a file, atomically replacing its previous content.
           *
           * @param file the file to write to
           * @param list the list of objects to write
           * @param <T> the type of objects in the list
+          * @throws UncheckedIOException if the file cannot be written
           */
          public static <T> void writeListToFile(File file, List<T> list) {
-             try {
-                 if (file.getParentFile() != null) file.getParentFile().mkdirs();
-                 try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-                     oos.writeObject(list);
-                     LOGGER.log(Level.INFO, "List written to file successfully: {0}", file.getAbsolutePath());
+             writeAtomically(file, out -> {
+                 ObjectOutputStream oos = new ObjectOutputStream(out);
+                 oos.writeObject(list);
+                 oos.flush();
+             });
+             LOGGER.log(Level.INFO, "List written to file successfully: {0}", file.getAbsolutePath());
+         }
+
+         /**
+          * Reads a list of records written with a {@link RecordCodec}.
+          * Files written by older versions with Java serialization are detected and read as such.
+          *
+          * @param file the file to read from
+          * @param codec the codec used to decode the records
+          * @param <T> the type of objects in the list
+          * @return the list of records read from the file, or an empty list if the file does not exist or is empty
+          * @throws UncheckedIOException if the file cannot be read
+          */
+         public static <T> List<T> readListFromFile(File file, RecordCodec<T> codec) {
+             return readSnapshot(file, codec).records();
+         }
+
+         /**
+          * Writes a list of records with a {@link RecordCodec}, atomically replacing the previous content.
+          *
+          * @param file the file to write to
+          * @param list the list of records to write
+          * @param codec the codec used to encode the records
+          * @param <T> the type of objects in the list
+          * @throws UncheckedIOException if the file cannot be written
+          */
+         public static <T> void writeListToFile(File file, List<T> list, RecordCodec<T> codec) {
+             writeSnapshot(file, new Snapshot<>(list, 0), codec);
+         }
+
+         /**
+          * Reads a snapshot written with {@link #writeSnapshot(File, Snapshot, RecordCodec)}.
+          * Codec files without a sequence number and Java-serialized files are read with an LSN of 0.
+          *
+          * @param file the file to read from
+          * @param codec the codec used to decode the records
+          * @param <T> the type of the records
+          * @return the snapshot, empty if the file does not exist or is empty
+          * @throws UncheckedIOException if the file cannot be read
+          */
+         public static <T> Snapshot<T> readSnapshot(File file, RecordCodec<T> codec) {
+             if (!file.exists() || file.length() == 0) {
+                 LOGGER.log(Level.WARNING, "File does not exist or is empty: {0}", file.getAbsolutePath());
+                 return new Snapshot<>(new ArrayList<>(), 0);
+             }
+             try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+                 int magic = in.readInt();
+                 if (magic >>> 16 == JavaSerializationCodec.STREAM_MAGIC) {
+                     LOGGER.log(Level.INFO, "Reading legacy serialized file: {0}", file.getAbsolutePath());
+                     return new Snapshot<>(readListFromFile(file), 0);
+                 }
+                 if (magic != CODEC_FILE_MAGIC && magic != SNAPSHOT_FILE_MAGIC) {
+                     throw new IOException("Unrecognized file format");
+                 }
+                 String format = in.readUTF();
+                 if (!format.equals(codec.name())) {
+                     throw new IOException("File holds " + format + " records, expected " + codec.name());
+                 }
+                 long lsn = magic == SNAPSHOT_FILE_MAGIC ? in.readLong() : 0;
+                 int count = in.readInt();
+                 List<T> list = new ArrayList<>(count);
+                 for (int i = 0; i < count; i++) {
+                     list.add(codec.decode(in));
                  }
+                 return new Snapshot<>(list, lsn);
              } catch (IOException e) {
-                 LOGGER.log(Level.SEVERE, "Error writing list to file: {0}", file.getAbsolutePath());
-                 LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                 LOGGER.log(Level.SEVERE, "Error reading list from file: {0}", file.getAbsolutePath());
+                 throw new UncheckedIOException("Error reading list from file: " + file.getAbsolutePath(), e);
              }
          }
 
+         /**
+          * Writes a snapshot with a {@link RecordCodec}, atomically replacing the previous content.
+          * The file holds a header ({@code "FBK2"}, the codec name, the LSN and the record count)
+          * followed by the encoded records.
+          *
+          * @param file the file to write to
+          * @param snapshot the records and the journal sequence number they include
+          * @param codec the codec used to encode the records
+          * @param <T> the type of the records
+          * @throws UncheckedIOException if the file cannot be written
+          */
+         public static <T> void writeSnapshot(File file, Snapshot<T> snapshot, RecordCodec<T> codec) {
+             writeAtomically(file, stream -> {
+                 DataOutputStream out = new DataOutputStream(stream);
+                 out.writeInt(SNAPSHOT_FILE_MAGIC);
+                 out.writeUTF(codec.name());
+                 out.writeLong(snapshot.lsn());
+                 out.writeInt(snapshot.records().size());
+                 for (T record : snapshot.records()) {
+                     codec.encode(record, out);
+                 }
+                 out.flush();
+             });
+             LOGGER.log(Level.INFO, "List written to file successfully: {0}", file.getAbsolutePath());
+         }
+
          /**
           * Reads a single object from a file. Reads the first object in the file.
           *
           * @param file the file to read from
           * @param <T> the type of the object
-          * @return the object read from the file, or null if an error occurs
+          * @return the object read from the file, or null if the file does not exist or is empty
+          * @throws UncheckedIOException if the file cannot be read
           */
          @SuppressWarnings("unchecked")
          public static <T> T readObjectFromFile(File file) {
@@ -66,32 +183,67 @@ package com.fortisbank.data.dal_utils;
                  LOGGER.log(Level.WARNING, "File does not exist or is empty: {0}", file.getAbsolutePath());
                  return null;
              }
-             try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+             try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
                  return (T) ois.readObject();
              } catch (IOException | ClassNotFoundException e) {
                  LOGGER.log(Level.SEVERE, "Error reading object from file: {0}", file.getAbsolutePath());
-                 LOGGER.log(Level.SEVERE, e.getMessage(), e);
-                 return null;
+                 throw new UncheckedIOException("Error reading object from file: " + file.getAbsolutePath(),
+                         e instanceof IOException io ? io : new IOException(e));
              }
          }
 
          /**
-          * Writes a single object to a file. Overwrites the file.
+          * Writes a single object to a file, atomically replacing its previous content.
           *
           * @param file the file to write to
           * @param object the object to write
           * @param <T> the type of the object
+          * @throws UncheckedIOException if the file cannot be written
           */
          public static <T> void writeObjectToFile(File file, T object) {
+             writeAtomically(file, out -> {
+                 ObjectOutputStream oos = new ObjectOutputStream(out);
+                 oos.writeObject(object);
+                 oos.flush();
+             });
+             LOGGER.log(Level.INFO, "Object written to file successfully: {0}", file.getAbsolutePath());
+         }
+
+         /**
+          * Writes a file through a temporary file that is forced to disk and renamed over the target.
+          *
+          * @param file the file to replace
+          * @param writer writes the new content
+          * @throws UncheckedIOException if the file cannot be written; the previous content is left intact
+          */
+         public static void writeAtomically(File file, ContentWriter writer) {
+             File parent = file.getAbsoluteFile().getParentFile();
+             if (parent != null) parent.mkdirs();
+             File temp = new File(file.getPath() + ".tmp");
              try {
-                 if (file.getParentFile() != null) file.getParentFile().mkdirs();
-                 try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-                     oos.writeObject(object);
-                     LOGGER.log(Level.INFO, "Object written to file successfully: {0}", file.getAbsolutePath());
+                 try (FileOutputStream fos = new FileOutputStream(temp);
+                      BufferedOutputStream out = new BufferedOutputStream(fos, BUFFER_SIZE)) {
+                     writer.write(out);
+                     out.flush();
+                     fos.getChannel().force(true);
+                 }
+                 try {
+                     Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                 } catch (AtomicMoveNotSupportedException e) {
+                     Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
                  }
              } catch (IOException e) {
-                 LOGGER.log(Level.SEVERE, "Error writing object to file: {0}", file.getAbsolutePath());
-                 LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                 LOGGER.log(Level.SEVERE, "Error writing file: {0}", file.getAbsolutePath());
+                 temp.delete();
+                 throw new UncheckedIOException("Error writing file: " + file.getAbsolutePath(), e);
              }
          }
-     }
\ No newline at end of file
+
+         /**
+          * Writes the content of a file to a stream.
+          */
+         @FunctionalInterface
+         public interface ContentWriter {
+             void write(OutputStream out) throws IOException;
+         }
+     }
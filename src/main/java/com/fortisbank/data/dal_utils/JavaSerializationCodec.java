@@ -0,0 +1,66 @@
+package com.fortisbank.data.dal_utils;
+
+import java.io.*;
+
+/**
+ * Record codec based on Java serialization.
+ * Kept as the default for stores without a dedicated codec and to read records written by older versions.
+ *
+ * @param <T> the type of records handled by the codec
+ */
+public class JavaSerializationCodec<T> implements RecordCodec<T> {
+
+    /**
+     * The first two bytes of every Java serialization stream.
+     */
+    public static final int STREAM_MAGIC = 0xACED;
+
+    @Override
+    public String name() {
+        return "java-serialization";
+    }
+
+    @Override
+    public void encode(T record, DataOutput out) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(record);
+        }
+        out.writeInt(bytes.size());
+        out.write(bytes.toByteArray());
+    }
+
+    @Override
+    public T decode(DataInput in) throws IOException {
+        byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        return deserialize(payload);
+    }
+
+    /**
+     * Deserializes a complete Java serialization stream.
+     *
+     * @param payload the serialized bytes
+     * @param <T> the expected type of the object
+     * @return the deserialized object
+     * @throws IOException if the bytes cannot be deserialized
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T deserialize(byte[] payload) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+            return (T) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unknown class in serialized data", e);
+        }
+    }
+
+    /**
+     * Returns whether the given bytes start a Java serialization stream.
+     *
+     * @param payload the bytes to inspect
+     * @return true if the bytes are Java-serialized data
+     */
+    public static boolean isSerialized(byte[] payload) {
+        return payload.length >= 2 && ((payload[0] & 0xFF) << 8 | (payload[1] & 0xFF)) == STREAM_MAGIC;
+    }
+}
@@ -0,0 +1,42 @@
+package com.fortisbank.data.dal_utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes and decodes single records of a file-based store.
+ * <p>
+ * Implementations write a compact binary form of one object to a {@link DataOutput} and read it back
+ * from a {@link DataInput}. They are used by {@link FileManager} and {@link RecordLog} instead of Java
+ * serialization, so that records do not carry class metadata or copies of the objects they reference.
+ *
+ * @param <T> the type of records handled by the codec
+ */
+public interface RecordCodec<T> {
+
+    /**
+     * Returns the name of the record format, written to file headers to detect mismatched files.
+     *
+     * @return the format name
+     */
+    String name();
+
+    /**
+     * Writes a record.
+     *
+     * @param record the record to write
+     * @param out the output to write to
+     * @throws IOException if the record cannot be written
+     */
+    void encode(T record, DataOutput out) throws IOException;
+
+    /**
+     * Reads a record previously written by {@link #encode(Object, DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return the decoded record
+     * @throws IOException if the record cannot be read or is malformed
+     */
+    T decode(DataInput in) throws IOException;
+}
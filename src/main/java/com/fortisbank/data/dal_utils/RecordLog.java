@@ -0,0 +1,278 @@
+package com.fortisbank.data.dal_utils;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, length-prefixed record log.
+ * Each record is stored as {@code [int length][long crc32][payload]} where the payload is a single
+ * object encoded by the log's {@link RecordCodec}. Payloads written by older versions as plain Java
+ * serialization streams are still recognized and decoded when replaying. Inserts are a single buffered append, reads replay the log
+ * from the beginning. A torn record at the tail (e.g. after a crash mid-append) is detected through
+ * its length/checksum and truncated the next time the log is opened.
+ *
+ * @param <T> the type of records stored in the log
+ */
+public class RecordLog<T> implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(RecordLog.class.getName());
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final boolean fsyncOnAppend;
+    private final RecordCodec<T> codec;
+
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+
+    /**
+     * Constructs a RecordLog backed by the specified file, encoding records with Java serialization.
+     *
+     * @param file the log file
+     * @param fsyncOnAppend whether every append should be forced to the storage device
+     */
+    public RecordLog(File file, boolean fsyncOnAppend) {
+        this(file, fsyncOnAppend, new JavaSerializationCodec<>());
+    }
+
+    /**
+     * Constructs a RecordLog backed by the specified file.
+     *
+     * @param file the log file
+     * @param fsyncOnAppend whether every append should be forced to the storage device
+     * @param codec the codec used to encode and decode records
+     */
+    public RecordLog(File file, boolean fsyncOnAppend, RecordCodec<T> codec) {
+        this.file = file;
+        this.fsyncOnAppend = fsyncOnAppend;
+        this.codec = codec;
+    }
+
+    /**
+     * Returns the file backing this log.
+     *
+     * @return the log file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns whether the log file exists and holds at least one byte.
+     *
+     * @return true if the log holds data, false otherwise
+     */
+    public boolean exists() {
+        return file.exists() && file.length() > 0;
+    }
+
+    /**
+     * Appends a single record to the end of the log.
+     *
+     * @param record the record to append
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void append(T record) throws IOException {
+        writeRecord(openForAppend(), encode(record));
+        flush();
+    }
+
+    /**
+     * Appends several records with a single flush (and a single fsync if enabled).
+     *
+     * @param records the records to append
+     * @throws IOException if the records cannot be written
+     */
+    public synchronized void appendAll(Collection<? extends T> records) throws IOException {
+        if (records.isEmpty()) return;
+        DataOutputStream stream = openForAppend();
+        for (T record : records) {
+            writeRecord(stream, encode(record));
+        }
+        flush();
+    }
+
+    /**
+     * Replays the log from the beginning and returns every intact record in append order.
+     *
+     * @return the records read from the log, or an empty list if the log does not exist
+     * @throws IOException if the log cannot be read
+     */
+    public synchronized List<T> replay() throws IOException {
+        List<T> records = new ArrayList<>();
+        if (!file.exists()) {
+            return records;
+        }
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            long fileLength = file.length();
+            while (validLength + HEADER_SIZE <= fileLength) {
+                int length = in.readInt();
+                long checksum = in.readLong();
+                if (length < 0 || validLength + HEADER_SIZE + length > fileLength) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (checksum(payload) != checksum) {
+                    break;
+                }
+                records.add(decode(payload));
+                validLength += HEADER_SIZE + length;
+            }
+        }
+        if (validLength < file.length()) {
+            LOGGER.log(Level.WARNING, "Truncating torn tail of record log {0} at offset {1}",
+                    new Object[]{file.getAbsolutePath(), validLength});
+            truncate(validLength);
+        }
+        return records;
+    }
+
+    /**
+     * Returns the last intact record of the log, decoding no other. The earlier records are only
+     * checked against their checksums; a torn tail is truncated as by {@link #replay()}.
+     *
+     * @return the last record, or null if the log is empty or does not exist
+     * @throws IOException if the log cannot be read
+     */
+    public synchronized T last() throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        long validLength = 0;
+        byte[] last = new byte[0];
+        byte[] payload = new byte[0];
+        int lastLength = -1;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            long fileLength = file.length();
+            CRC32 crc = new CRC32();
+            while (validLength + HEADER_SIZE <= fileLength) {
+                int length = in.readInt();
+                long checksum = in.readLong();
+                if (length < 0 || validLength + HEADER_SIZE + length > fileLength) {
+                    break;
+                }
+                if (payload.length < length) {
+                    payload = new byte[Math.max(length, 2 * payload.length)];
+                }
+                in.readFully(payload, 0, length);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if (crc.getValue() != checksum) {
+                    break;
+                }
+                byte[] previous = last; // keeps the intact record, reuses the other buffer
+                last = payload;
+                payload = previous;
+                lastLength = length;
+                validLength += HEADER_SIZE + length;
+            }
+        }
+        if (validLength < file.length()) {
+            LOGGER.log(Level.WARNING, "Truncating torn tail of record log {0} at offset {1}",
+                    new Object[]{file.getAbsolutePath(), validLength});
+            truncate(validLength);
+        }
+        return lastLength >= 0 ? decode(Arrays.copyOf(last, lastLength)) : null;
+    }
+
+    /**
+     * Atomically replaces the whole log with the given records.
+     * The new log is written to a temporary file and renamed over the old one.
+     *
+     * @param records the records the log should contain
+     * @throws IOException if the log cannot be rewritten
+     */
+    public synchronized void rewrite(Collection<? extends T> records) throws IOException {
+        close();
+        if (file.getParentFile() != null) file.getParentFile().mkdirs();
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp);
+             DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE))) {
+            for (T record : records) {
+                writeRecord(stream, encode(record));
+            }
+            stream.flush();
+            fos.getChannel().force(true);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Closes the append stream. The log is reopened lazily on the next append.
+     */
+    @Override
+    public synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error closing record log: {0}", file.getAbsolutePath());
+            }
+            out = null;
+            fileOut = null;
+        }
+    }
+
+    private DataOutputStream openForAppend() throws IOException {
+        if (out == null) {
+            if (file.getParentFile() != null) file.getParentFile().mkdirs();
+            fileOut = new FileOutputStream(file, true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut, BUFFER_SIZE));
+        }
+        return out;
+    }
+
+    private void flush() throws IOException {
+        out.flush();
+        if (fsyncOnAppend) {
+            fileOut.getChannel().force(false);
+        }
+    }
+
+    private void truncate(long length) throws IOException {
+        close();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream stream, byte[] payload) throws IOException {
+        stream.writeInt(payload.length);
+        stream.writeLong(checksum(payload));
+        stream.write(payload);
+    }
+
+    private static long checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue();
+    }
+
+    private byte[] encode(T record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream stream = new DataOutputStream(bytes);
+        codec.encode(record, stream);
+        stream.flush();
+        return bytes.toByteArray();
+    }
+
+    private T decode(byte[] payload) throws IOException {
+        if (JavaSerializationCodec.isSerialized(payload)) {
+            return JavaSerializationCodec.deserialize(payload); // record written before codecs were introduced
+        }
+        return codec.decode(new DataInputStream(new ByteArrayInputStream(payload)));
+    }
+}
@@ -1,5 +1,6 @@
 package com.fortisbank.data.dal_utils;
 
+import com.fortisbank.contracts.exceptions.UnitOfWorkException;
 import com.fortisbank.data.database.*;
 import com.fortisbank.data.file.*;
 import com.fortisbank.data.interfaces.*;
@@ -15,6 +16,9 @@ public class RepositoryFactory {
 
     private RepositoryFactory(StorageMode mode) {
         this.mode = mode;
+        if (mode == StorageMode.FILE_SHARDED) {
+            AccountRepositoryShardedFile.activate();
+        }
     }
 
     public static synchronized RepositoryFactory getInstance(StorageMode mode) {
@@ -23,36 +27,54 @@ public class RepositoryFactory {
 
     public ICustomerRepository getCustomerRepository() {
         return switch (mode) {
-            case FILE -> CustomerRepositoryFile.getInstance();
-            case DATABASE -> CustomerRepository.getInstance();
+            case FILE, FILE_SHARDED -> CustomerRepositoryFile.getInstance();
+            case DATABASE, EMBEDDED_DATABASE -> CustomerRepository.getInstance(mode);
         };
     }
 
     public IAccountRepository getAccountRepository() {
         return switch (mode) {
             case FILE -> AccountRepositoryFile.getInstance();
-            case DATABASE -> AccountRepository.getInstance();
+            case FILE_SHARDED -> AccountRepositoryShardedFile.getInstance();
+            case DATABASE, EMBEDDED_DATABASE -> AccountRepository.getInstance(mode);
         };
     }
 
     public ITransactionRepository getTransactionRepository() {
         return switch (mode) {
             case FILE -> TransactionRepositoryFile.getInstance();
-            case DATABASE -> TransactionRepository.getInstance();
+            case FILE_SHARDED -> TransactionRepositoryShardedFile.getInstance();
+            case DATABASE, EMBEDDED_DATABASE -> TransactionRepository.getInstance(mode);
         };
     }
 
     public IBankManagerRepository getBankManagerRepository() {
         return switch (mode) {
-            case FILE -> BankManagerRepositoryFile.getInstance();
-            case DATABASE -> BankManagerRepository.getInstance();
+            case FILE, FILE_SHARDED -> BankManagerRepositoryFile.getInstance();
+            case DATABASE, EMBEDDED_DATABASE -> BankManagerRepository.getInstance(mode);
         };
     }
 
+    /**
+     * Runs work as a unit of work: the writes it makes through the repositories of this storage mode
+     * are committed together once it returns, and discarded if it throws. In the database modes they
+     * run in one database transaction; in the file modes they are staged in a {@link FileUnitOfWork}
+     * and written with one batch per repository.
+     *
+     * @param work the work to run
+     * @throws UnitOfWorkException if the writes could not be committed
+     */
+    public void inUnitOfWork(Runnable work) throws UnitOfWorkException {
+        switch (mode) {
+            case FILE, FILE_SHARDED -> FileUnitOfWork.run(work);
+            case DATABASE, EMBEDDED_DATABASE -> DatabaseConnection.getInstance(mode).inTransaction(work);
+        }
+    }
+
     public INotificationRepository getNotificationRepository() {
         return switch (mode) {
-            case FILE -> NotificationRepositoryFile.getInstance();
-            case DATABASE -> NotificationRepository.getInstance();
+            case FILE, FILE_SHARDED -> NotificationRepositoryFile.getInstance();
+            case DATABASE, EMBEDDED_DATABASE -> NotificationRepository.getInstance(mode);
         };
     }
 }
@@ -2,7 +2,7 @@ package com.fortisbank.data.dal_utils;
 
 /**
  * Enum representing the storage modes available for the repository.
- * The storage modes can be either DATABASE or FILE.
+ * The storage modes can be DATABASE, EMBEDDED_DATABASE, FILE or FILE_SHARDED.
  */
 public enum StorageMode {
     /**
@@ -10,8 +10,19 @@ public enum StorageMode {
      */
     DATABASE,
 
+    /**
+     * Represents the database storage mode on an embedded, in-process H2 database in Oracle
+     * compatibility mode, created from the Oracle schema on first use.
+     */
+    EMBEDDED_DATABASE,
+
     /**
      * Represents the file storage mode.
      */
-    FILE
+    FILE,
+
+    /**
+     * Represents the file storage mode with accounts and transactions partitioned into shards by customer.
+     */
+    FILE_SHARDED
 }
\ No newline at end of file
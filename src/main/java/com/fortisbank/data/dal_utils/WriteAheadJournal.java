@@ -0,0 +1,287 @@
+package com.fortisbank.data.dal_utils;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-ahead journal of the changes made to a keyed collection of records.
+ * <p>
+ * Every change is an {@link Entry} carrying a log sequence number (LSN). Entries are submitted in
+ * LSN order and written by a single committer thread, which drains everything queued since its last
+ * write and appends it with one flush and one fsync (group commit): concurrent writers share the cost
+ * of forcing the journal to disk. The journal is stored in a {@link RecordLog}, so a torn entry at the
+ * tail is discarded when it is replayed.
+ * <p>
+ * The owner periodically writes a checkpoint of the whole collection stamped with the LSN it includes
+ * and then calls {@link #discardUpTo(long)}; recovery loads the checkpoint and replays only the entries
+ * after its LSN.
+ *
+ * @param <T> the type of records in the journaled collection
+ */
+public final class WriteAheadJournal<T> implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(WriteAheadJournal.class.getName());
+    private static final int MAX_GROUP_SIZE = 4096;
+
+    /**
+     * Kind of change recorded by a journal entry.
+     */
+    public enum Operation {
+        /** Inserts or replaces the record stored under the key. */
+        PUT,
+        /** Removes the record stored under the key. */
+        DELETE,
+        /** Removes every record. */
+        CLEAR
+    }
+
+    /**
+     * A change recorded in the journal.
+     *
+     * @param lsn the log sequence number of the change
+     * @param operation the kind of change
+     * @param key the key of the changed record, null for {@link Operation#CLEAR}
+     * @param value the new record for {@link Operation#PUT}, null otherwise
+     * @param <T> the type of the record
+     */
+    public record Entry<T>(long lsn, Operation operation, String key, T value) {
+    }
+
+    private final RecordLog<Entry<T>> log;
+    private final BlockingQueue<Pending<T>> queue = new LinkedBlockingQueue<>();
+    private final Pending<T> stop = new Pending<>(List.of(), new CompletableFuture<>());
+    private final Thread committer;
+    private long lastLsn;
+    private boolean closed;
+
+    /**
+     * Constructs a journal backed by the specified file and starts its committer thread.
+     *
+     * @param file the journal file
+     * @param codec the codec of the journaled records
+     * @param fsync whether each group of entries is forced to the storage device before it is acknowledged
+     */
+    public WriteAheadJournal(File file, RecordCodec<T> codec, boolean fsync) {
+        this.log = new RecordLog<>(file, fsync, new EntryCodec<>(codec));
+        this.committer = new Thread(this::runCommitter, "journal-committer-" + file.getName());
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Returns the journal entries written after the given checkpoint, in LSN order.
+     * Must be called before the first {@link #submit}; new entries are numbered after the
+     * highest LSN seen.
+     *
+     * @param checkpointLsn the LSN included in the last checkpoint
+     * @return the entries with a greater LSN
+     * @throws IOException if the journal cannot be read
+     */
+    public synchronized List<Entry<T>> recover(long checkpointLsn) throws IOException {
+        List<Entry<T>> tail = new ArrayList<>();
+        lastLsn = checkpointLsn;
+        for (Entry<T> entry : log.replay()) {
+            if (entry.lsn() > checkpointLsn) {
+                tail.add(entry);
+                lastLsn = Math.max(lastLsn, entry.lsn());
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Numbers new entries after the last entry of the journal, decoding only that one, for a
+     * journal that is kept whole rather than replayed from a checkpoint. Must be called before the
+     * first {@link #submit}.
+     *
+     * @return the LSN of the last entry, 0 if the journal is empty
+     * @throws IOException if the journal cannot be read
+     */
+    public synchronized long resume() throws IOException {
+        Entry<T> last = log.last();
+        lastLsn = last != null ? last.lsn() : 0;
+        return lastLsn;
+    }
+
+    /**
+     * Numbers a change and queues it for the committer. Callers submit under the lock guarding the
+     * journaled collection, so that LSN order matches the order in which changes were applied, and
+     * wait for the returned future outside of it.
+     *
+     * @param operation the kind of change
+     * @param key the key of the changed record
+     * @param value the new record, for {@link Operation#PUT}
+     * @return a future completed with the LSN once the entry is durable
+     */
+    public synchronized CompletableFuture<Long> submit(Operation operation, String key, T value) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IOException("Journal is closed: " + log.getFile().getAbsolutePath()));
+        }
+        Pending<T> pending = new Pending<>(List.of(new Entry<>(++lastLsn, operation, key, value)), new CompletableFuture<>());
+        queue.add(pending);
+        return pending.done;
+    }
+
+    /**
+     * Numbers a {@link Operation#PUT} of each record, in the iteration order of the map, and queues
+     * them to be written together in one group, like {@link #submit}.
+     *
+     * @param values the new records by key
+     * @return a future completed with the LSN of the last entry once all of them are durable
+     */
+    public synchronized CompletableFuture<Long> submitAll(Map<String, T> values) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IOException("Journal is closed: " + log.getFile().getAbsolutePath()));
+        }
+        if (values.isEmpty()) {
+            return CompletableFuture.completedFuture(lastLsn);
+        }
+        List<Entry<T>> entries = new ArrayList<>(values.size());
+        values.forEach((key, value) -> entries.add(new Entry<>(++lastLsn, Operation.PUT, key, value)));
+        Pending<T> pending = new Pending<>(entries, new CompletableFuture<>());
+        queue.add(pending);
+        return pending.done;
+    }
+
+    /**
+     * Returns the LSN of the last submitted change. A checkpoint taken under the collection's lock
+     * includes every change up to this number.
+     *
+     * @return the last assigned LSN
+     */
+    public synchronized long lastLsn() {
+        return lastLsn;
+    }
+
+    /**
+     * Waits until a submitted entry is durable.
+     *
+     * @param commit the future returned by {@link #submit}
+     * @throws UncheckedIOException if the entry could not be written
+     */
+    public static void await(CompletableFuture<Long> commit) {
+        try {
+            commit.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException unchecked) throw unchecked;
+            throw new UncheckedIOException(cause instanceof IOException io ? io : new IOException(cause));
+        }
+    }
+
+    /**
+     * Removes the entries included in a checkpoint. Entries with a greater LSN are kept; entries
+     * still queued are appended after the rewrite.
+     *
+     * @param checkpointLsn the LSN included in the checkpoint that was written
+     * @throws IOException if the journal cannot be rewritten
+     */
+    public void discardUpTo(long checkpointLsn) throws IOException {
+        synchronized (log) { // holds off the committer between the replay and the rewrite
+            if (!log.exists()) return;
+            List<Entry<T>> kept = new ArrayList<>();
+            for (Entry<T> entry : log.replay()) {
+                if (entry.lsn() > checkpointLsn) kept.add(entry);
+            }
+            log.rewrite(kept);
+        }
+    }
+
+    /**
+     * Stops the committer once the queued entries are written and closes the journal file.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            queue.add(stop); // always the last entry, nothing is submitted once closed
+        }
+        stop.done.join();
+        log.close();
+    }
+
+    private void runCommitter() {
+        List<Pending<T>> group = new ArrayList<>();
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                group.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(group, MAX_GROUP_SIZE - group.size());
+            stopped = group.remove(stop);
+            if (!group.isEmpty()) commit(group);
+            group.clear();
+        }
+        stop.done.complete(lastLsn());
+    }
+
+    private void commit(List<Pending<T>> group) {
+        List<Entry<T>> entries = new ArrayList<>(group.size());
+        for (Pending<T> pending : group) {
+            entries.addAll(pending.entries);
+        }
+        try {
+            log.appendAll(entries);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Error writing journal " + log.getFile().getAbsolutePath(), e);
+            for (Pending<T> pending : group) {
+                pending.done.completeExceptionally(e);
+            }
+            return;
+        }
+        for (Pending<T> pending : group) {
+            pending.done.complete(pending.entries.get(pending.entries.size() - 1).lsn());
+        }
+    }
+
+    private record Pending<T>(List<Entry<T>> entries, CompletableFuture<Long> done) {
+    }
+
+    /**
+     * Encodes journal entries as {@code [long lsn][byte operation][key][record]}, the key and record
+     * being present only when the operation has them.
+     */
+    private record EntryCodec<T>(RecordCodec<T> codec) implements RecordCodec<Entry<T>> {
+
+        @Override
+        public String name() {
+            return "journal:" + codec.name();
+        }
+
+        @Override
+        public void encode(Entry<T> entry, DataOutput out) throws IOException {
+            out.writeLong(entry.lsn());
+            out.writeByte(entry.operation().ordinal());
+            if (entry.operation() != Operation.CLEAR) {
+                out.writeUTF(entry.key());
+            }
+            if (entry.operation() == Operation.PUT) {
+                codec.encode(entry.value(), out);
+            }
+        }
+
+        @Override
+        public Entry<T> decode(DataInput in) throws IOException {
+            long lsn = in.readLong();
+            int ordinal = in.readUnsignedByte();
+            if (ordinal >= Operation.values().length) {
+                throw new IOException("Unknown journal operation: " + ordinal);
+            }
+            Operation operation = Operation.values()[ordinal];
+            String key = operation != Operation.CLEAR ? in.readUTF() : null;
+            T value = operation == Operation.PUT ? codec.decode(in) : null;
+            return new Entry<>(lsn, operation, key, value);
+        }
+    }
+}
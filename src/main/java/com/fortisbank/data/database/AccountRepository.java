@@ -1,43 +1,58 @@
 package com.fortisbank.data.database;
 
 import com.fortisbank.contracts.collections.AccountList;
+import com.fortisbank.contracts.collections.Page;
 import com.fortisbank.contracts.exceptions.AccountRepositoryException;
 import com.fortisbank.contracts.exceptions.DatabaseConnectionException;
+import com.fortisbank.contracts.exceptions.OptimisticLockException;
 import com.fortisbank.contracts.models.accounts.*;
+import com.fortisbank.contracts.models.reports.AccountTypeTotals;
 import com.fortisbank.contracts.models.users.Customer;
 import com.fortisbank.data.dal_utils.DatabaseConnection;
+import com.fortisbank.data.dal_utils.StorageMode;
 import com.fortisbank.data.dto.AccountDTO;
 import com.fortisbank.data.interfaces.IAccountRepository;
 
+import java.math.BigDecimal;
 import java.sql.*;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class AccountRepository implements IAccountRepository {
     private static final Logger LOGGER = Logger.getLogger(AccountRepository.class.getName());
-    private static AccountRepository instance;
+    private static final Map<StorageMode, AccountRepository> instances = new EnumMap<>(StorageMode.class);
+
+    // Accounts with the columns of their owner, so that a query loads accounts and customers in one round trip
+    private static final String SELECT_ACCOUNTS = "SELECT a.*, u.user_id, u.first_name, u.last_name, u.email, " +
+            "u.hashed_password, u.pin_hash, u.role, c.phone_number FROM accounts a " +
+            "JOIN users u ON u.user_id = a.customer_id " +
+            "JOIN customers c ON c.user_id = a.customer_id";
 
     private final DatabaseConnection dbConnection;
-    private final CustomerRepository customerRepository;
 
-    private AccountRepository() {
-        this.dbConnection = DatabaseConnection.getInstance();
-        this.customerRepository = CustomerRepository.getInstance();
+    private AccountRepository(StorageMode mode) {
+        this.dbConnection = DatabaseConnection.getInstance(mode);
     }
 
-    public static synchronized AccountRepository getInstance() {
-        if (instance == null) {
-            instance = new AccountRepository();
-        }
-        return instance;
+    /**
+     * Returns the repository of the database of a storage mode.
+     *
+     * @param mode DATABASE or EMBEDDED_DATABASE
+     * @return the repository of the mode's database
+     */
+    public static synchronized AccountRepository getInstance(StorageMode mode) {
+        return instances.computeIfAbsent(mode, AccountRepository::new);
     }
 
     @Override
     public Account getAccountById(String accountId) throws AccountRepositoryException {
-        String query = "SELECT * FROM accounts WHERE account_id = ?";
+        String query = SELECT_ACCOUNTS + " WHERE a.account_id = ?";
         return executeQuery(query, stmt -> stmt.setString(1, accountId), rs -> {
             if (rs.next()) {
-                return mapResultSetToAccount(rs);
+                return mapResultSetToAccount(rs, new HashMap<>());
             } else {
                 throw new AccountRepositoryException("Account with ID " + accountId + " not found.");
             }
@@ -46,13 +61,26 @@ public class AccountRepository implements IAccountRepository {
 
     @Override
     public AccountList getAccountsByCustomerId(String customerId) throws AccountRepositoryException {
-        String query = "SELECT * FROM accounts WHERE customer_id = ?";
+        String query = SELECT_ACCOUNTS + " WHERE a.customer_id = ?";
         return executeQueryList(query, stmt -> stmt.setString(1, customerId));
     }
 
     @Override
     public AccountList getAllAccounts() throws AccountRepositoryException {
-        return executeQueryList("SELECT * FROM accounts", stmt -> {});
+        return executeQueryList(SELECT_ACCOUNTS, stmt -> {});
+    }
+
+    @Override
+    public Page<Account> getAccountsPage(String pageToken, int pageSize) throws AccountRepositoryException {
+        String[] after = Page.decodeToken(pageToken, 1);
+        String query = SELECT_ACCOUNTS + (after != null ? " WHERE a.account_id > ?" : "") +
+                " ORDER BY a.account_id FETCH FIRST ? ROWS ONLY";
+        AccountList accounts = executeQueryList(query, stmt -> {
+            int i = 1;
+            if (after != null) stmt.setString(i++, after[0]);
+            stmt.setInt(i, pageSize + 1);
+        });
+        return Page.of(accounts, pageSize, a -> new String[]{a.getAccountNumber()});
     }
 
     @Override
@@ -71,12 +99,18 @@ public class AccountRepository implements IAccountRepository {
         });
     }
 
+    /**
+     * Updates an account if its stored version is still the one it was read with, and increments it.
+     *
+     * @throws OptimisticLockException if the account was updated since it was read
+     */
     @Override
     public void updateAccount(Account account) throws AccountRepositoryException {
-        String query = "UPDATE accounts SET customer_id = ?, account_type = ?, opened_date = ?, is_active = ?, available_balance = ?, credit_limit = ? " +
-                "WHERE account_id = ?";
+        String query = "UPDATE accounts SET customer_id = ?, account_type = ?, opened_date = ?, is_active = ?, available_balance = ?, credit_limit = ?, " +
+                "version = version + 1 WHERE account_id = ? AND version = ?";
 
-        executeUpdate(query, stmt -> {
+        long version = account.getVersion();
+        int updated = executeUpdate(query, stmt -> {
             stmt.setString(1, account.getCustomer().getUserId());
             stmt.setString(2, account.getAccountType().name());
             stmt.setDate(3, new java.sql.Date(account.getOpenedDate().getTime()));
@@ -84,7 +118,17 @@ public class AccountRepository implements IAccountRepository {
             stmt.setBigDecimal(5, account.getAvailableBalance());
             stmt.setBigDecimal(6, account instanceof CreditAccount credit ? credit.getCreditLimit() : null);
             stmt.setString(7, account.getAccountNumber());
+            stmt.setLong(8, version);
         });
+        if (updated == 0) {
+            boolean exists = executeQuery("SELECT 1 FROM accounts WHERE account_id = ?",
+                    stmt -> stmt.setString(1, account.getAccountNumber()), ResultSet::next);
+            if (exists) {
+                throw new OptimisticLockException("Account " + account.getAccountNumber() + " was updated since version " + version);
+            }
+            return;
+        }
+        account.setVersion(version + 1);
     }
 
     @Override
@@ -92,7 +136,33 @@ public class AccountRepository implements IAccountRepository {
         executeUpdate("DELETE FROM accounts WHERE account_id = ?", stmt -> stmt.setString(1, accountId));
     }
 
-    private Account mapResultSetToAccount(ResultSet rs) throws SQLException, AccountRepositoryException {
+    @Override
+    public Map<AccountType, AccountTypeTotals> getTotalsByAccountType() throws AccountRepositoryException {
+        String query = "SELECT account_type, COUNT(*), SUM(available_balance), SUM(credit_limit) FROM accounts GROUP BY account_type";
+        return executeQuery(query, stmt -> {}, rs -> {
+            Map<AccountType, AccountTypeTotals> totals = new EnumMap<>(AccountType.class);
+            while (rs.next()) {
+                totals.put(AccountType.valueOf(rs.getString(1)),
+                        new AccountTypeTotals(rs.getLong(2), rs.getBigDecimal(3), rs.getBigDecimal(4)));
+            }
+            return totals;
+        });
+    }
+
+    @Override
+    public AccountList getAccountsWithBalanceBelow(BigDecimal threshold) throws AccountRepositoryException {
+        String query = SELECT_ACCOUNTS + " WHERE a.available_balance < ?";
+        return executeQueryList(query, stmt -> stmt.setBigDecimal(1, threshold));
+    }
+
+    /**
+     * Maps the current row to an account and its owner. Rows of the same owner share one customer
+     * instance, taken from the identity map of the query.
+     *
+     * @param rs the result set, positioned on a row of {@link #SELECT_ACCOUNTS}
+     * @param customers the customers already mapped by the query, by id
+     */
+    private Account mapResultSetToAccount(ResultSet rs, Map<String, Customer> customers) throws SQLException {
         AccountDTO dto = new AccountDTO(
                 rs.getString("account_id"),
                 rs.getString("customer_id"),
@@ -102,18 +172,24 @@ public class AccountRepository implements IAccountRepository {
                 rs.getBigDecimal("available_balance"),
                 rs.getBigDecimal("credit_limit"),
                 rs.getBigDecimal("interest_rate"),
-                rs.getString("currency_code")
+                rs.getString("currency_code"),
+                rs.getLong("version")
         );
 
-        Customer customer = customerRepository.getCustomerById(dto.customerId());
+        Customer customer = customers.get(dto.customerId());
+        if (customer == null) {
+            customer = CustomerRepository.mapResultSetToCustomer(rs);
+            customers.put(dto.customerId(), customer);
+        }
         return dto.toEntity(customer);
     }
 
     private AccountList executeQueryList(String query, QueryPreparer preparer) throws AccountRepositoryException {
         var list = new AccountList();
         executeQuery(query, preparer, rs -> {
+            Map<String, Customer> customers = new HashMap<>();
             while (rs.next()) {
-                list.add(mapResultSetToAccount(rs));
+                list.add(mapResultSetToAccount(rs, customers));
             }
             return null;
         });
@@ -133,11 +209,11 @@ public class AccountRepository implements IAccountRepository {
         }
     }
 
-    private void executeUpdate(String query, QueryPreparer preparer) throws AccountRepositoryException {
+    private int executeUpdate(String query, QueryPreparer preparer) throws AccountRepositoryException {
         try (Connection conn = dbConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(query)) {
             preparer.prepare(stmt);
-            stmt.executeUpdate();
+            return stmt.executeUpdate();
         } catch (SQLException | DatabaseConnectionException e) {
             LOGGER.log(Level.SEVERE, "Error executing update: {0}", e.getMessage());
             throw new AccountRepositoryException("Update failed: " + query, e);
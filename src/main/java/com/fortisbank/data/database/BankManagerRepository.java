@@ -4,28 +4,34 @@ import com.fortisbank.contracts.collections.ManagerList;
 import com.fortisbank.contracts.exceptions.*;
 import com.fortisbank.contracts.models.users.BankManager;
 import com.fortisbank.data.dal_utils.DatabaseConnection;
+import com.fortisbank.data.dal_utils.StorageMode;
 import com.fortisbank.data.dto.BankManagerDTO;
 import com.fortisbank.data.interfaces.IBankManagerRepository;
 
 import java.sql.*;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class BankManagerRepository implements IBankManagerRepository {
 
     private static final Logger LOGGER = Logger.getLogger(BankManagerRepository.class.getName());
-    private static BankManagerRepository instance;
+    private static final Map<StorageMode, BankManagerRepository> instances = new EnumMap<>(StorageMode.class);
     private final DatabaseConnection dbConnection;
 
-    private BankManagerRepository() {
-        this.dbConnection = DatabaseConnection.getInstance();
+    private BankManagerRepository(StorageMode mode) {
+        this.dbConnection = DatabaseConnection.getInstance(mode);
     }
 
-    public static synchronized BankManagerRepository getInstance() {
-        if (instance == null) {
-            instance = new BankManagerRepository();
-        }
-        return instance;
+    /**
+     * Returns the repository of the database of a storage mode.
+     *
+     * @param mode DATABASE or EMBEDDED_DATABASE
+     * @return the repository of the mode's database
+     */
+    public static synchronized BankManagerRepository getInstance(StorageMode mode) {
+        return instances.computeIfAbsent(mode, BankManagerRepository::new);
     }
 
     @Override
@@ -68,6 +74,23 @@ public class BankManagerRepository implements IBankManagerRepository {
         }
     }
 
+    @Override
+    public BankManager getManagerByEmail(String email) throws BankManagerRepositoryException {
+        String query = "SELECT * FROM users u JOIN bank_managers bm ON u.user_id = bm.user_id WHERE LOWER(u.email) = LOWER(?)";
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+
+            stmt.setString(1, email);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapResultSetToDTO(rs).toEntity() : null;
+            }
+
+        } catch (SQLException | DatabaseConnectionException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving manager by email: {0}", e.getMessage());
+            throw new BankManagerRepositoryException("Failed to retrieve manager by email", e);
+        }
+    }
+
     @Override
     public void insertManager(BankManager manager) throws BankManagerRepositoryException {
         BankManagerDTO dto = BankManagerDTO.fromEntity(manager);
@@ -1,14 +1,18 @@
 package com.fortisbank.data.database;
 
 import com.fortisbank.contracts.collections.CustomerList;
+import com.fortisbank.contracts.collections.Page;
 import com.fortisbank.contracts.exceptions.CustomerRepositoryException;
 import com.fortisbank.contracts.exceptions.DatabaseConnectionException;
 import com.fortisbank.contracts.models.users.Customer;
 import com.fortisbank.data.dal_utils.DatabaseConnection;
+import com.fortisbank.data.dal_utils.StorageMode;
 import com.fortisbank.data.dto.CustomerDTO;
 import com.fortisbank.data.interfaces.ICustomerRepository;
 
 import java.sql.*;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,17 +20,20 @@ public class CustomerRepository implements ICustomerRepository {
 
     private static final Logger LOGGER = Logger.getLogger(CustomerRepository.class.getName());
     private final DatabaseConnection dbConnection;
-    private static CustomerRepository instance;
+    private static final Map<StorageMode, CustomerRepository> instances = new EnumMap<>(StorageMode.class);
 
-    private CustomerRepository() {
-        this.dbConnection = DatabaseConnection.getInstance();
+    private CustomerRepository(StorageMode mode) {
+        this.dbConnection = DatabaseConnection.getInstance(mode);
     }
 
-    public static synchronized CustomerRepository getInstance() {
-        if (instance == null) {
-            instance = new CustomerRepository();
-        }
-        return instance;
+    /**
+     * Returns the repository of the database of a storage mode.
+     *
+     * @param mode DATABASE or EMBEDDED_DATABASE
+     * @return the repository of the mode's database
+     */
+    public static synchronized CustomerRepository getInstance(StorageMode mode) {
+        return instances.computeIfAbsent(mode, CustomerRepository::new);
     }
 
     @Override
@@ -72,6 +79,59 @@ public class CustomerRepository implements ICustomerRepository {
         return list;
     }
 
+    @Override
+    public Page<Customer> getCustomersPage(String pageToken, int pageSize) throws CustomerRepositoryException {
+        String[] after = Page.decodeToken(pageToken, 1);
+        String sql = "SELECT u.*, c.phone_number FROM users u " +
+                "JOIN customers c ON u.user_id = c.user_id WHERE u.role = 'CUSTOMER'" +
+                (after != null ? " AND u.user_id > ?" : "") +
+                " ORDER BY u.user_id FETCH FIRST ? ROWS ONLY";
+        CustomerList list = new CustomerList();
+
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int i = 1;
+            if (after != null) stmt.setString(i++, after[0]);
+            stmt.setInt(i, pageSize + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    list.add(mapResultSetToCustomer(rs));
+                }
+            }
+        } catch (SQLException | DatabaseConnectionException e) {
+            throw new CustomerRepositoryException("Error retrieving page of customers", e);
+        }
+
+        return Page.of(list, pageSize, c -> new String[]{c.getUserId()});
+    }
+
+    @Override
+    public int countCustomers() throws CustomerRepositoryException {
+        String sql = "SELECT COUNT(*) FROM customers";
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException | DatabaseConnectionException e) {
+            throw new CustomerRepositoryException("Error counting customers", e);
+        }
+    }
+
+    @Override
+    public Customer getCustomerByEmail(String email) throws CustomerRepositoryException {
+        String sql = "SELECT u.*, c.phone_number FROM users u " +
+                "JOIN customers c ON u.user_id = c.user_id WHERE LOWER(u.email) = LOWER(?)";
+        return findSingleCustomer(sql, email);
+    }
+
+    @Override
+    public Customer getCustomerByPhone(String phoneNumber) throws CustomerRepositoryException {
+        String sql = "SELECT u.*, c.phone_number FROM users u " +
+                "JOIN customers c ON u.user_id = c.user_id WHERE c.phone_number = ? FETCH FIRST 1 ROWS ONLY";
+        return findSingleCustomer(sql, phoneNumber);
+    }
+
     @Override
     public void insertCustomer(Customer customer) throws CustomerRepositoryException {
         CustomerDTO dto = CustomerDTO.fromEntity(customer);
@@ -142,7 +202,25 @@ public class CustomerRepository implements ICustomerRepository {
         }
     }
 
-    private Customer mapResultSetToCustomer(ResultSet rs) throws SQLException {
+    private Customer findSingleCustomer(String sql, String value) throws CustomerRepositoryException {
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, value);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapResultSetToCustomer(rs) : null;
+            }
+        } catch (SQLException | DatabaseConnectionException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving customer: " + e.getMessage(), e);
+            throw new CustomerRepositoryException("Error retrieving customer", e);
+        }
+    }
+
+    /**
+     * Maps the current row to a customer. Also used by the repositories that join the customer
+     * columns ({@code u.*} and {@code c.phone_number}) into their own queries.
+     */
+    static Customer mapResultSetToCustomer(ResultSet rs) throws SQLException {
         CustomerDTO dto = new CustomerDTO(
                 rs.getString("user_id"),
                 rs.getString("first_name"),
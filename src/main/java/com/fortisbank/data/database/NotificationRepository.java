@@ -1,66 +1,109 @@
 package com.fortisbank.data.database;
 
 import com.fortisbank.contracts.collections.NotificationList;
+import com.fortisbank.contracts.collections.Page;
 import com.fortisbank.contracts.exceptions.DatabaseConnectionException;
 import com.fortisbank.contracts.models.others.Notification;
 import com.fortisbank.data.dal_utils.DatabaseConnection;
+import com.fortisbank.data.dal_utils.StorageMode;
 import com.fortisbank.contracts.exceptions.NotificationRepositoryException;
 import com.fortisbank.data.dto.NotificationDTO;
 import com.fortisbank.data.interfaces.INotificationRepository;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 public class NotificationRepository implements INotificationRepository {
 
-    private final Connection conn;
-    private static NotificationRepository instance;
+    private final DatabaseConnection dbConnection;
+    private final StorageMode mode;
+    private static final Map<StorageMode, NotificationRepository> instances = new EnumMap<>(StorageMode.class);
+    private static final String INSERT = "INSERT INTO notifications (notification_id, recipient_user_id, account_id, title, message, type, seen, created_at, related_customer_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-    private NotificationRepository() throws DatabaseConnectionException {
-        this.conn = DatabaseConnection.getInstance().getConnection();
+    private NotificationRepository(StorageMode mode) {
+        this.dbConnection = DatabaseConnection.getInstance(mode);
+        this.mode = mode;
     }
 
-    public static synchronized NotificationRepository getInstance() {
-        if (instance == null) {
-            try {
-                instance = new NotificationRepository();
-            } catch (DatabaseConnectionException e) {
-                throw new RuntimeException("Failed to initialize NotificationRepository", e);
-            }
-        }
-        return instance;
+    /**
+     * Returns the repository of the database of a storage mode.
+     *
+     * @param mode DATABASE or EMBEDDED_DATABASE
+     * @return the repository of the mode's database
+     */
+    public static synchronized NotificationRepository getInstance(StorageMode mode) {
+        return instances.computeIfAbsent(mode, NotificationRepository::new);
     }
 
     @Override
     public void insertNotification(Notification notification) throws NotificationRepositoryException {
-        NotificationDTO dto = NotificationDTO.fromEntity(notification);
-
-        String sql = "INSERT INTO notifications (notification_id, recipient_user_id, account_id, title, message, type, seen, created_at, related_customer_id) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, dto.notificationId());
-            stmt.setString(2, dto.recipientUserId());
-            stmt.setString(3, dto.accountId());
-            stmt.setString(4, dto.title());
-            stmt.setString(5, dto.message());
-            stmt.setString(6, dto.type());
-            stmt.setInt(7, dto.seen() ? 1 : 0);
-            stmt.setTimestamp(8, new Timestamp(dto.timestamp().getTime()));
-            stmt.setString(9, dto.relatedCustomerId());
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(INSERT)) {
+            setInsertParameters(stmt, notification);
             stmt.executeUpdate();
-        } catch (SQLException e) {
+        } catch (SQLException | DatabaseConnectionException e) {
             throw new NotificationRepositoryException("Failed to insert notification", e);
         }
     }
 
+    @Override
+    public void insertNotifications(Collection<Notification> notifications) throws NotificationRepositoryException {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        try (Connection conn = dbConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT)) {
+                int pending = 0;
+                for (Notification notification : notifications) {
+                    setInsertParameters(stmt, notification);
+                    stmt.addBatch();
+                    if (++pending == DatabaseConnection.BATCH_SIZE) {
+                        stmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    stmt.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException | DatabaseConnectionException e) {
+            throw new NotificationRepositoryException("Failed to insert " + notifications.size() + " notifications", e);
+        }
+    }
+
+    private void setInsertParameters(PreparedStatement stmt, Notification notification) throws SQLException {
+        NotificationDTO dto = NotificationDTO.fromEntity(notification);
+        stmt.setString(1, dto.notificationId());
+        stmt.setString(2, dto.recipientUserId());
+        stmt.setString(3, dto.accountId());
+        stmt.setString(4, dto.title());
+        stmt.setString(5, dto.message());
+        stmt.setString(6, dto.type());
+        stmt.setInt(7, dto.seen() ? 1 : 0);
+        stmt.setTimestamp(8, new Timestamp(dto.timestamp().getTime()));
+        stmt.setString(9, dto.relatedCustomerId());
+    }
+
     @Override
     public void deleteNotification(String notificationId) throws NotificationRepositoryException {
         String sql = "DELETE FROM notifications WHERE notification_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, notificationId);
             stmt.executeUpdate();
-        } catch (SQLException e) {
+        } catch (SQLException | DatabaseConnectionException e) {
             throw new NotificationRepositoryException("Failed to delete notification", e);
         }
     }
@@ -68,10 +111,11 @@ public class NotificationRepository implements INotificationRepository {
     @Override
     public void markAsSeen(String notificationId) throws NotificationRepositoryException {
         String sql = "UPDATE notifications SET seen = 1 WHERE notification_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, notificationId);
             stmt.executeUpdate();
-        } catch (SQLException e) {
+        } catch (SQLException | DatabaseConnectionException e) {
             throw new NotificationRepositoryException("Failed to mark notification as seen", e);
         }
     }
@@ -81,33 +125,69 @@ public class NotificationRepository implements INotificationRepository {
         String sql = "SELECT n.*, a.account_type FROM notifications n " +
                 "LEFT JOIN accounts a ON n.account_id = a.account_id " +
                 "WHERE n.recipient_user_id = ? ORDER BY n.created_at DESC";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, userId);
-            ResultSet rs = stmt.executeQuery();
-            List<Notification> notifications = new ArrayList<>();
-            while (rs.next()) {
-                notifications.add(mapResultSetToDTO(rs).toEntity());
+            try (ResultSet rs = stmt.executeQuery()) {
+                List<Notification> notifications = new ArrayList<>();
+                while (rs.next()) {
+                    notifications.add(mapResultSetToDTO(rs).toEntity(mode));
+                }
+                return new NotificationList(notifications);
             }
-            return new NotificationList(notifications);
-        } catch (SQLException e) {
+        } catch (SQLException | DatabaseConnectionException e) {
             throw new NotificationRepositoryException("Failed to retrieve notifications for user: " + userId, e);
         }
     }
 
+    @Override
+    public Page<Notification> getNotificationsPageByUserId(String userId, String pageToken, int pageSize) throws NotificationRepositoryException {
+        String[] before = Page.decodeToken(pageToken, 2);
+        String sql = "SELECT n.*, a.account_type FROM notifications n " +
+                "LEFT JOIN accounts a ON n.account_id = a.account_id " +
+                "WHERE n.recipient_user_id = ?" +
+                (before != null ? " AND (n.created_at < ? OR (n.created_at = ? AND n.notification_id < ?))" : "") +
+                " ORDER BY n.created_at DESC, n.notification_id DESC FETCH FIRST ? ROWS ONLY";
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int i = 1;
+            stmt.setString(i++, userId);
+            if (before != null) {
+                Timestamp createdAt = new Timestamp(Long.parseLong(before[0]));
+                stmt.setTimestamp(i++, createdAt);
+                stmt.setTimestamp(i++, createdAt);
+                stmt.setString(i++, before[1]);
+            }
+            stmt.setInt(i, pageSize + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                List<Notification> notifications = new ArrayList<>();
+                while (rs.next()) {
+                    notifications.add(mapResultSetToDTO(rs).toEntity(mode));
+                }
+                return Page.of(notifications, pageSize,
+                        n -> new String[]{Long.toString(n.getTimestamp().getTime()), n.getNotificationId()});
+            }
+        } catch (SQLException | DatabaseConnectionException e) {
+            throw new NotificationRepositoryException("Failed to retrieve page of notifications for user: " + userId, e);
+        }
+    }
+
     @Override
     public Notification getNotificationById(String id) throws NotificationRepositoryException {
         String sql = "SELECT n.*, a.account_type FROM notifications n " +
                 "LEFT JOIN accounts a ON n.account_id = a.account_id " +
                 "WHERE n.notification_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, id);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return mapResultSetToDTO(rs).toEntity();
-            } else {
-                throw new NotificationRepositoryException("Notification with ID " + id + " not found.");
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapResultSetToDTO(rs).toEntity(mode);
+                } else {
+                    throw new NotificationRepositoryException("Notification with ID " + id + " not found.");
+                }
             }
-        } catch (SQLException e) {
+        } catch (SQLException | DatabaseConnectionException e) {
             throw new NotificationRepositoryException("Failed to retrieve notification with ID: " + id, e);
         }
     }
@@ -0,0 +1,196 @@
+package com.fortisbank.data.database;
+
+import com.fortisbank.contracts.exceptions.AccountRepositoryException;
+import com.fortisbank.contracts.exceptions.DatabaseConnectionException;
+import com.fortisbank.contracts.exceptions.TransactionRepositoryException;
+import com.fortisbank.contracts.models.accounts.Account;
+import com.fortisbank.contracts.models.accounts.CheckingAccount;
+import com.fortisbank.contracts.models.accounts.SavingsAccount;
+import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.contracts.models.transactions.TransactionFactory;
+import com.fortisbank.contracts.models.transactions.TransactionType;
+import com.fortisbank.contracts.models.users.Customer;
+import com.fortisbank.contracts.utils.IdGenerator;
+import com.fortisbank.data.dal_utils.DatabaseConnection;
+import com.fortisbank.data.dal_utils.StorageMode;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Command-line benchmark of the customer statement queries before and after the covering indexes of
+ * {@code db/migrations/004_transactions_partitioning.sql}.
+ * <p>
+ * Usage: {@code java com.fortisbank.data.database.StatementQueryBenchmark [transactionCount] [queryCount] [storageMode]}
+ * (default 10000000, 200, EMBEDDED_DATABASE). Run it on a scratch database, for instance with
+ * {@code -Dfortisbank.embeddedUrl=jdbc:h2:./data/bench;MODE=Oracle}: it inserts synthetic customers,
+ * accounts and transactions spread over three years, and replaces the transaction indexes.
+ * <p>
+ * The three queries of a customer statement, over one month of a random customer, are then timed with
+ * the single-column account indexes of the original schema, and again with the covering
+ * (account, date, amount) indexes. On Oracle the covering indexes are built local to the monthly
+ * partitions when the table is partitioned. For each index set and query the median, 95th percentile
+ * and mean latency are printed.
+ */
+public class StatementQueryBenchmark {
+
+    private static final int ACCOUNTS_PER_CUSTOMER = 2;
+    private static final int TRANSACTIONS_PER_ACCOUNT = 250;
+    private static final int MONTHS = 36;
+    private static final int LOAD_CHUNK = 100_000;
+    private static final int WARMUP_QUERIES = 20;
+
+    private static final String[] LEGACY_INDEXES = {
+            "CREATE INDEX idx_accounts_customer_id ON accounts(customer_id)",
+            "CREATE INDEX idx_transactions_source_account_id ON transactions(source_account_id)",
+            "CREATE INDEX idx_transactions_destination_account_id ON transactions(destination_account_id)"
+    };
+    private static final String[] COVERING_INDEXES = {
+            "CREATE INDEX idx_accounts_customer_account ON accounts(customer_id, account_id)",
+            "CREATE INDEX idx_transactions_source_date ON transactions(source_account_id, transaction_date, amount)",
+            "CREATE INDEX idx_transactions_destination_date ON transactions(destination_account_id, transaction_date, amount)"
+    };
+
+    public static void main(String[] args) throws Exception {
+        int transactionCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        StorageMode mode = args.length > 2 ? StorageMode.valueOf(args[2]) : StorageMode.EMBEDDED_DATABASE;
+        DatabaseConnection database = DatabaseConnection.getInstance(mode);
+        Random random = new Random(42);
+
+        LocalDate today = LocalDate.now();
+        List<Customer> customers = load(transactionCount, today, random, mode);
+
+        System.out.printf("%-10s %-16s %9s %10s %10s %10s%n", "indexes", "query", "queries", "p50 ms", "p95 ms", "mean ms");
+        createIndexes(database, COVERING_INDEXES, LEGACY_INDEXES, false);
+        run("legacy", customers, queryCount, today, mode);
+        createIndexes(database, LEGACY_INDEXES, COVERING_INDEXES, true);
+        run("covering", customers, queryCount, today, mode);
+    }
+
+    private static List<Customer> load(int transactionCount, LocalDate today, Random random, StorageMode mode)
+            throws AccountRepositoryException, TransactionRepositoryException {
+        int accountCount = Math.max(ACCOUNTS_PER_CUSTOMER, transactionCount / TRANSACTIONS_PER_ACCOUNT);
+        List<Customer> customers = new ArrayList<>();
+        List<Account> accounts = new ArrayList<>();
+        CustomerRepository customerRepository = CustomerRepository.getInstance(mode);
+        AccountRepository accountRepository = AccountRepository.getInstance(mode);
+        for (int i = 0; i < accountCount / ACCOUNTS_PER_CUSTOMER; i++) {
+            Customer customer = new Customer(IdGenerator.generateId(), "First" + i, "Last" + i, "bench" + i + "@fortisbank.com",
+                    "514555" + String.format("%04d", i % 10_000), "hash" + i, "pin" + i);
+            customerRepository.insertCustomer(customer);
+            customers.add(customer);
+            Date opened = toDate(today.minusMonths(MONTHS));
+            Account checking = new CheckingAccount(IdGenerator.generateId(), customer, opened, BigDecimal.valueOf(random.nextInt(100_000), 2));
+            Account savings = new SavingsAccount(IdGenerator.generateId(), customer, opened, BigDecimal.valueOf(random.nextInt(100_000), 2), new BigDecimal("0.025"));
+            accountRepository.insertAccount(checking);
+            accountRepository.insertAccount(savings);
+            accounts.add(checking);
+            accounts.add(savings);
+        }
+
+        TransactionRepository transactionRepository = TransactionRepository.getInstance(mode);
+        TransactionType[] types = {TransactionType.DEPOSIT, TransactionType.WITHDRAWAL, TransactionType.TRANSFER};
+        int days = MONTHS * 31;
+        long start = System.nanoTime();
+        List<Transaction> chunk = new ArrayList<>(LOAD_CHUNK);
+        for (int i = 0; i < transactionCount; i++) {
+            TransactionType type = types[random.nextInt(types.length)];
+            Account source = accounts.get(random.nextInt(accounts.size()));
+            Account destination = accounts.get(random.nextInt(accounts.size()));
+            Date date = toDate(today.minusDays(random.nextInt(days)));
+            chunk.add(TransactionFactory.createTransaction(type, null, date, BigDecimal.valueOf(random.nextInt(50_000), 2), source, destination));
+            if (chunk.size() == LOAD_CHUNK || i == transactionCount - 1) {
+                transactionRepository.insertTransactions(chunk);
+                chunk.clear();
+            }
+        }
+        System.out.printf("Loaded %d customers, %d accounts and %d transactions in %.1f s%n%n",
+                customers.size(), accounts.size(), transactionCount, (System.nanoTime() - start) / 1e9);
+        return customers;
+    }
+
+    /**
+     * Replaces one index set with another and refreshes the optimizer statistics.
+     */
+    private static void createIndexes(DatabaseConnection database, String[] drop, String[] create, boolean local)
+            throws DatabaseConnectionException, SQLException {
+        try (Connection connection = database.getConnection();
+             Statement stmt = connection.createStatement()) {
+            boolean oracle = connection.getMetaData().getDatabaseProductName().startsWith("Oracle");
+            for (String sql : drop) {
+                try {
+                    stmt.execute("DROP INDEX " + sql.split("\\s+")[2]);
+                } catch (SQLException e) {
+                    // not created yet
+                }
+            }
+            for (String sql : create) {
+                try {
+                    boolean partitioned = local && oracle && sql.contains(" ON transactions(") && isPartitioned(stmt);
+                    stmt.execute(partitioned ? sql + " LOCAL" : sql);
+                } catch (SQLException e) {
+                    System.err.println("Index not created: " + e.getMessage());
+                }
+            }
+            if (oracle) {
+                stmt.execute("BEGIN DBMS_STATS.GATHER_TABLE_STATS(USER, 'TRANSACTIONS', cascade => TRUE); " +
+                        "DBMS_STATS.GATHER_TABLE_STATS(USER, 'ACCOUNTS', cascade => TRUE); END;");
+            } else {
+                stmt.execute("ANALYZE");
+            }
+        }
+    }
+
+    private static boolean isPartitioned(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT partitioned FROM user_tables WHERE table_name = 'TRANSACTIONS'")) {
+            return rs.next() && "YES".equals(rs.getString(1));
+        }
+    }
+
+    private static void run(String label, List<Customer> customers, int queryCount, LocalDate today, StorageMode mode)
+            throws TransactionRepositoryException {
+        TransactionRepository repository = TransactionRepository.getInstance(mode);
+        Random random = new Random(7); // the same customers and months for both index sets
+        long[][] nanos = new long[3][queryCount];
+        for (int i = -WARMUP_QUERIES; i < queryCount; i++) {
+            String customerId = customers.get(random.nextInt(customers.size())).getUserId();
+            LocalDate end = today.minusMonths(random.nextInt(MONTHS - 1));
+            LocalDate start = end.minusMonths(1).plusDays(1);
+
+            long t0 = System.nanoTime();
+            repository.getTransactionsByCustomerAndDateRange(customerId, start, end);
+            long t1 = System.nanoTime();
+            repository.getBalanceBeforeDate(customerId, start);
+            long t2 = System.nanoTime();
+            repository.getNetChangeByAccount(customerId, start, end);
+            long t3 = System.nanoTime();
+            if (i >= 0) {
+                nanos[0][i] = t1 - t0;
+                nanos[1][i] = t2 - t1;
+                nanos[2][i] = t3 - t2;
+            }
+        }
+        print(label, "transactions", nanos[0]);
+        print(label, "opening balance", nanos[1]);
+        print(label, "net change", nanos[2]);
+    }
+
+    private static void print(String label, String query, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(sorted).average().orElse(0);
+        System.out.printf("%-10s %-16s %9d %10.2f %10.2f %10.2f%n", label, query, sorted.length,
+                sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.95)] / 1e6, mean / 1e6);
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -1,11 +1,18 @@
 package com.fortisbank.data.database;
 
+import com.fortisbank.contracts.collections.Page;
 import com.fortisbank.contracts.collections.TransactionList;
 import com.fortisbank.contracts.exceptions.AccountRepositoryException;
 import com.fortisbank.contracts.exceptions.DatabaseConnectionException;
 import com.fortisbank.contracts.exceptions.TransactionRepositoryException;
+import com.fortisbank.contracts.models.reports.BalanceSnapshot;
+import com.fortisbank.contracts.models.reports.TransactionTypeTotals;
+import com.fortisbank.contracts.models.transactions.IdempotencyRecord;
 import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.contracts.models.transactions.TransactionResult;
+import com.fortisbank.contracts.models.transactions.TransactionType;
 import com.fortisbank.data.dal_utils.DatabaseConnection;
+import com.fortisbank.data.dal_utils.StorageMode;
 import com.fortisbank.data.dto.TransactionDTO;
 import com.fortisbank.data.interfaces.ITransactionRepository;
 import com.fortisbank.contracts.utils.IdGenerator;
@@ -13,30 +20,52 @@ import com.fortisbank.contracts.utils.IdGenerator;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class TransactionRepository implements ITransactionRepository {
 
     private static final Logger LOGGER = Logger.getLogger(TransactionRepository.class.getName());
-    private static TransactionRepository instance;
+    private static final Map<StorageMode, TransactionRepository> instances = new EnumMap<>(StorageMode.class);
+
+    private static final String COLUMNS = "transaction_id, transaction_type, transaction_date, amount, description, source_account_id, destination_account_id";
+    // Hot and archived transactions together, used only when a query reaches before the archive horizon
+    private static final String ALL_TIERS = "(SELECT " + COLUMNS + " FROM transactions UNION ALL SELECT " + COLUMNS + " FROM transactions_archive)";
+    private static final String INSERT = "INSERT INTO transactions (transaction_id, transaction_type, transaction_date, amount, description, source_account_id, destination_account_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
 
     private final DatabaseConnection dbConnection;
+    private volatile LocalDate archiveHorizon; // day after the newest archived transaction, null if none
+    private volatile boolean archiveHorizonLoaded;
 
-    private TransactionRepository() {
-        this.dbConnection = DatabaseConnection.getInstance();
+    private TransactionRepository(StorageMode mode) {
+        this.dbConnection = DatabaseConnection.getInstance(mode);
     }
 
-    public static synchronized TransactionRepository getInstance() {
-        if (instance == null) {
-            instance = new TransactionRepository();
-        }
-        return instance;
+    /**
+     * Returns the repository of the database of a storage mode.
+     *
+     * @param mode DATABASE or EMBEDDED_DATABASE
+     * @return the repository of the mode's database
+     */
+    public static synchronized TransactionRepository getInstance(StorageMode mode) {
+        return instances.computeIfAbsent(mode, TransactionRepository::new);
     }
 
     @Override
     public Transaction getTransactionByNumber(String transactionId) throws TransactionRepositoryException {
-        String query = "SELECT * FROM transactions WHERE transaction_id = ?";
+        String query = "SELECT * FROM " + source(null) + " t WHERE transaction_id = ?";
         return executeQuery(query, stmt -> stmt.setString(1, transactionId), rs -> {
             if (rs.next()) {
                 return mapResultSetToTransaction(rs);
@@ -48,7 +77,7 @@ public class TransactionRepository implements ITransactionRepository {
 
     @Override
     public TransactionList getTransactionsByAccount(String accountId) throws TransactionRepositoryException {
-        String query = "SELECT * FROM transactions WHERE source_account_id = ? OR destination_account_id = ?";
+        String query = "SELECT * FROM " + source(null) + " t WHERE source_account_id = ? OR destination_account_id = ?";
         return executeQueryList(query, stmt -> {
             stmt.setString(1, accountId);
             stmt.setString(2, accountId);
@@ -57,27 +86,133 @@ public class TransactionRepository implements ITransactionRepository {
 
     @Override
     public TransactionList getAllTransactions() throws TransactionRepositoryException {
-        return executeQueryList("SELECT * FROM transactions", stmt -> {});
+        return executeQueryList("SELECT * FROM " + source(null) + " t", stmt -> {});
     }
 
     @Override
-    public void insertTransaction(Transaction transaction) throws TransactionRepositoryException {
-        String query = "INSERT INTO transactions (transaction_id, transaction_type, transaction_date, amount, description, source_account_id, destination_account_id) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    public Stream<Transaction> streamTransactions(LocalDate start, LocalDate end) throws TransactionRepositoryException {
+        String query = "SELECT * FROM " + source(start) + " t WHERE 1 = 1" +
+                (start != null ? " AND t.transaction_date >= ?" : "") +
+                (end != null ? " AND t.transaction_date <= ?" : "") +
+                " ORDER BY t.transaction_date";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = dbConnection.getConnection();
+            stmt = conn.prepareStatement(query);
+            stmt.setFetchSize(DatabaseConnection.FETCH_SIZE);
+            int i = 1;
+            if (start != null) stmt.setDate(i++, Date.valueOf(start));
+            if (end != null) stmt.setDate(i, Date.valueOf(end));
+            rs = stmt.executeQuery();
+        } catch (SQLException | DatabaseConnectionException e) {
+            closeQuietly(rs, stmt, conn);
+            LOGGER.log(Level.SEVERE, "Query failed: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Failed query: " + query, e);
+        }
+        ResultSet rows = rs;
+        AutoCloseable[] resources = {rs, stmt, conn};
+        // Rows are mapped one at a time as the stream pulls them, the driver fetching FETCH_SIZE rows per round trip
+        Spliterator<Transaction> cursor = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Transaction> action) {
+                try {
+                    if (!rows.next()) {
+                        return false;
+                    }
+                    action.accept(mapResultSetToTransaction(rows));
+                    return true;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Failed to read transactions: " + e.getMessage(), e);
+                }
+            }
+        };
+        return StreamSupport.stream(cursor, false).onClose(() -> closeQuietly(resources));
+    }
 
-        TransactionDTO dto = TransactionDTO.fromEntity(transaction);
+    private static void closeQuietly(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            if (resource == null) continue;
+            try {
+                resource.close();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to close query resource: {0}", e.getMessage());
+            }
+        }
+    }
 
-        executeUpdate(query, stmt -> {
-            stmt.setString(1, dto.transactionId() != null ? dto.transactionId() : IdGenerator.generateId());
-            stmt.setString(2, dto.transactionType());
-            stmt.setDate(3, Date.valueOf(dto.transactionDate()));
-            stmt.setBigDecimal(4, dto.amount());
-            stmt.setString(5, dto.description());
-            stmt.setString(6, dto.sourceAccountId());
-            stmt.setString(7, dto.destinationAccountId());
+    @Override
+    public Page<Transaction> getTransactionsPage(String pageToken, int pageSize) throws TransactionRepositoryException {
+        String[] after = Page.decodeToken(pageToken, 2);
+        String query = "SELECT * FROM " + source(null) + " t" +
+                (after != null ? " WHERE t.transaction_date > ? OR (t.transaction_date = ? AND t.transaction_id > ?)" : "") +
+                " ORDER BY t.transaction_date, t.transaction_id FETCH FIRST ? ROWS ONLY";
+        TransactionList transactions = executeQueryList(query, stmt -> {
+            int i = 1;
+            if (after != null) {
+                Date date = Date.valueOf(LocalDate.parse(after[0]));
+                stmt.setDate(i++, date);
+                stmt.setDate(i++, date);
+                stmt.setString(i++, after[1]);
+            }
+            stmt.setInt(i, pageSize + 1);
+        });
+        return Page.of(transactions, pageSize, t -> {
+            TransactionDTO dto = TransactionDTO.fromEntity(t);
+            return new String[]{dto.transactionDate().toString(), dto.transactionId()};
         });
     }
 
+    @Override
+    public void insertTransaction(Transaction transaction) throws TransactionRepositoryException {
+        executeUpdate(INSERT, stmt -> setInsertParameters(stmt, transaction));
+    }
+
+    @Override
+    public void insertTransactions(Collection<Transaction> transactions) throws TransactionRepositoryException {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        try (Connection conn = dbConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT)) {
+                int pending = 0;
+                for (Transaction transaction : transactions) {
+                    setInsertParameters(stmt, transaction);
+                    stmt.addBatch();
+                    if (++pending == DatabaseConnection.BATCH_SIZE) {
+                        stmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    stmt.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException | DatabaseConnectionException e) {
+            LOGGER.log(Level.SEVERE, "Batch insert failed: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Failed to insert " + transactions.size() + " transactions", e);
+        }
+    }
+
+    private void setInsertParameters(PreparedStatement stmt, Transaction transaction) throws SQLException {
+        TransactionDTO dto = TransactionDTO.fromEntity(transaction);
+        stmt.setString(1, dto.transactionId() != null ? dto.transactionId() : IdGenerator.generateId());
+        stmt.setString(2, dto.transactionType());
+        stmt.setDate(3, Date.valueOf(dto.transactionDate()));
+        stmt.setBigDecimal(4, dto.amount());
+        stmt.setString(5, dto.description());
+        stmt.setString(6, dto.sourceAccountId());
+        stmt.setString(7, dto.destinationAccountId());
+    }
+
     @Override
     public void deleteTransaction(String transactionId) throws TransactionRepositoryException {
         executeUpdate("DELETE FROM transactions WHERE transaction_id = ?", stmt -> stmt.setString(1, transactionId));
@@ -85,7 +220,7 @@ public class TransactionRepository implements ITransactionRepository {
 
     @Override
     public TransactionList getTransactionsByCustomerAndDateRange(String customerId, LocalDate start, LocalDate end) throws TransactionRepositoryException {
-        String query = "SELECT t.* FROM transactions t " +
+        String query = "SELECT t.* FROM " + source(start) + " t " +
                 "JOIN accounts a ON t.source_account_id = a.account_id " +
                 "WHERE a.customer_id = ? AND t.transaction_date BETWEEN ? AND ?";
         return executeQueryList(query, stmt -> {
@@ -97,13 +232,215 @@ public class TransactionRepository implements ITransactionRepository {
 
     @Override
     public BigDecimal getBalanceBeforeDate(String customerId, LocalDate start) throws TransactionRepositoryException {
-        String query = "SELECT SUM(t.amount) FROM transactions t " +
+        // The latest snapshot of each account before the month of start
+        String query = "SELECT SUM(s.closing_balance) FROM balance_snapshots s " +
+                "JOIN accounts a ON s.account_id = a.account_id " +
+                "WHERE a.customer_id = ? AND s.snapshot_month = (SELECT MAX(p.snapshot_month) FROM balance_snapshots p " +
+                "WHERE p.account_id = s.account_id AND p.snapshot_month < ?)";
+        BigDecimal balance = executeQuery(query, stmt -> {
+            stmt.setString(1, customerId);
+            stmt.setDate(2, Date.valueOf(start.withDayOfMonth(1)));
+        }, rs -> rs.next() && rs.getBigDecimal(1) != null ? rs.getBigDecimal(1) : BigDecimal.ZERO);
+        if (start.getDayOfMonth() > 1) {
+            for (BigDecimal change : getNetChangeByAccount(customerId, start.withDayOfMonth(1), start.minusDays(1)).values()) {
+                balance = balance.add(change);
+            }
+        }
+        return balance;
+    }
+
+    @Override
+    public void updateBalanceSnapshots(Collection<Transaction> transactions) throws TransactionRepositoryException {
+        Map<String, NavigableMap<YearMonth, BigDecimal>> changes = BalanceSnapshot.changesByAccount(transactions);
+        if (changes.isEmpty()) {
+            return;
+        }
+        // A missing month starts from the closing balance of the previous one; the change is then added
+        // to that month and the later ones
+        String insert = "INSERT INTO balance_snapshots (account_id, snapshot_month, closing_balance) " +
+                "SELECT ?, ?, COALESCE((SELECT s.closing_balance FROM balance_snapshots s WHERE s.account_id = ? " +
+                "AND s.snapshot_month = (SELECT MAX(p.snapshot_month) FROM balance_snapshots p WHERE p.account_id = ? AND p.snapshot_month < ?)), 0) " +
+                "FROM dual WHERE NOT EXISTS (SELECT 1 FROM balance_snapshots WHERE account_id = ? AND snapshot_month = ?)";
+        String update = "UPDATE balance_snapshots SET closing_balance = closing_balance + ? " +
+                "WHERE account_id = ? AND snapshot_month >= ?";
+        try (Connection conn = dbConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement insertStmt = conn.prepareStatement(insert);
+                 PreparedStatement updateStmt = conn.prepareStatement(update)) {
+                for (Map.Entry<String, NavigableMap<YearMonth, BigDecimal>> account : changes.entrySet()) {
+                    for (Map.Entry<YearMonth, BigDecimal> change : account.getValue().entrySet()) {
+                        Date month = Date.valueOf(change.getKey().atDay(1));
+                        insertStmt.setString(1, account.getKey());
+                        insertStmt.setDate(2, month);
+                        insertStmt.setString(3, account.getKey());
+                        insertStmt.setString(4, account.getKey());
+                        insertStmt.setDate(5, month);
+                        insertStmt.setString(6, account.getKey());
+                        insertStmt.setDate(7, month);
+                        insertStmt.executeUpdate();
+                        updateStmt.setBigDecimal(1, change.getValue());
+                        updateStmt.setString(2, account.getKey());
+                        updateStmt.setDate(3, month);
+                        updateStmt.executeUpdate();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException | DatabaseConnectionException e) {
+            LOGGER.log(Level.SEVERE, "Balance snapshot update failed: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Failed to update balance snapshots", e);
+        }
+    }
+
+    @Override
+    public void insertIdempotencyRecord(IdempotencyRecord record, java.util.Date expiredBefore) throws TransactionRepositoryException {
+        TransactionResult result = record.result();
+        executeUpdate("DELETE FROM transaction_idempotency_keys WHERE idempotency_key = ? AND created_at < ?", stmt -> {
+            stmt.setString(1, record.key());
+            stmt.setTimestamp(2, new Timestamp(expiredBefore.getTime()));
+        });
+        executeUpdate("INSERT INTO transaction_idempotency_keys (idempotency_key, created_at, sequence_number, transaction_id, " +
+                "transaction_type, source_account_id, destination_account_id, amount, status, reason) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", stmt -> {
+            stmt.setString(1, record.key());
+            stmt.setTimestamp(2, new Timestamp(record.createdAt().getTime()));
+            stmt.setLong(3, result.sequence());
+            stmt.setString(4, result.transactionNumber());
+            stmt.setString(5, result.type() != null ? result.type().name() : null);
+            stmt.setString(6, result.sourceAccountId());
+            stmt.setString(7, result.destinationAccountId());
+            stmt.setBigDecimal(8, result.amount());
+            stmt.setString(9, result.status().name());
+            stmt.setString(10, result.reason());
+        });
+    }
+
+    @Override
+    public IdempotencyRecord getIdempotencyRecord(String key) throws TransactionRepositoryException {
+        return executeQuery("SELECT * FROM transaction_idempotency_keys WHERE idempotency_key = ?",
+                stmt -> stmt.setString(1, key), rs -> {
+                    if (!rs.next()) return null;
+                    String type = rs.getString("transaction_type");
+                    TransactionResult result = new TransactionResult(rs.getLong("sequence_number"), rs.getString("transaction_id"),
+                            type != null ? TransactionType.valueOf(type) : null, rs.getString("source_account_id"),
+                            rs.getString("destination_account_id"), rs.getBigDecimal("amount"),
+                            TransactionResult.Status.valueOf(rs.getString("status")), rs.getString("reason"));
+                    return new IdempotencyRecord(key, new java.util.Date(rs.getTimestamp("created_at").getTime()), result);
+                });
+    }
+
+    @Override
+    public int deleteIdempotencyRecordsBefore(java.util.Date cutoff) throws TransactionRepositoryException {
+        String query = "DELETE FROM transaction_idempotency_keys WHERE created_at < ?";
+        try (Connection conn = dbConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setTimestamp(1, new Timestamp(cutoff.getTime()));
+            return stmt.executeUpdate();
+        } catch (SQLException | DatabaseConnectionException e) {
+            LOGGER.log(Level.SEVERE, "Idempotency key cleanup failed: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Failed to delete idempotency keys created before " + cutoff, e);
+        }
+    }
+
+    @Override
+    public Map<String, BigDecimal> getNetChangeByAccount(String customerId, LocalDate start, LocalDate end) throws TransactionRepositoryException {
+        String from = source(start);
+        String query = "SELECT account_id, SUM(delta) FROM (" +
+                "SELECT t.source_account_id account_id, -t.amount delta FROM " + from + " t " +
                 "JOIN accounts a ON t.source_account_id = a.account_id " +
-                "WHERE a.customer_id = ? AND t.transaction_date < ?";
+                "WHERE a.customer_id = ? AND t.transaction_date BETWEEN ? AND ? " +
+                "UNION ALL " +
+                "SELECT t.destination_account_id, t.amount FROM " + from + " t " +
+                "JOIN accounts a ON t.destination_account_id = a.account_id " +
+                "WHERE a.customer_id = ? AND t.transaction_date BETWEEN ? AND ?" +
+                ") GROUP BY account_id";
         return executeQuery(query, stmt -> {
-            stmt.setString(1, customerId);
-            stmt.setDate(2, Date.valueOf(start));
-        }, rs -> rs.next() ? rs.getBigDecimal(1) : BigDecimal.ZERO);
+            for (int i = 0; i < 2; i++) {
+                stmt.setString(3 * i + 1, customerId);
+                stmt.setDate(3 * i + 2, Date.valueOf(start));
+                stmt.setDate(3 * i + 3, Date.valueOf(end));
+            }
+        }, rs -> {
+            Map<String, BigDecimal> changes = new HashMap<>();
+            while (rs.next()) {
+                changes.put(rs.getString(1), rs.getBigDecimal(2));
+            }
+            return changes;
+        });
+    }
+
+    @Override
+    public Map<TransactionType, TransactionTypeTotals> getTotalsByTransactionType() throws TransactionRepositoryException {
+        String query = "SELECT transaction_type, COUNT(*), SUM(amount) FROM " + source(null) + " t GROUP BY transaction_type";
+        return executeQuery(query, stmt -> {}, rs -> {
+            Map<TransactionType, TransactionTypeTotals> totals = new EnumMap<>(TransactionType.class);
+            while (rs.next()) {
+                totals.put(TransactionType.valueOf(rs.getString(1)), new TransactionTypeTotals(rs.getLong(2), rs.getBigDecimal(3)));
+            }
+            return totals;
+        });
+    }
+
+    @Override
+    public int archiveTransactionsBefore(LocalDate cutoff) throws TransactionRepositoryException {
+        String copy = "INSERT INTO transactions_archive (" + COLUMNS + ", created_at) " +
+                "SELECT " + COLUMNS + ", created_at FROM transactions WHERE transaction_date < ?";
+        // Only rows that were copied are deleted, in case older rows are inserted meanwhile
+        String delete = "DELETE FROM transactions WHERE transaction_date < ? " +
+                "AND transaction_id IN (SELECT transaction_id FROM transactions_archive)";
+        try (Connection conn = dbConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement copyStmt = conn.prepareStatement(copy);
+                 PreparedStatement deleteStmt = conn.prepareStatement(delete)) {
+                copyStmt.setDate(1, Date.valueOf(cutoff));
+                copyStmt.executeUpdate();
+                deleteStmt.setDate(1, Date.valueOf(cutoff));
+                int archived = deleteStmt.executeUpdate();
+                conn.commit();
+                archiveHorizonLoaded = false; // reloaded by the next query
+                return archived;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException | DatabaseConnectionException e) {
+            LOGGER.log(Level.SEVERE, "Archiving failed: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Failed to archive transactions before " + cutoff, e);
+        }
+    }
+
+    /**
+     * Returns the table to query for a range starting at the given day: the transactions table alone,
+     * or together with the archive when the range reaches before the archive horizon.
+     *
+     * @param start the first day of the range, or null for no lower bound
+     */
+    private String source(LocalDate start) {
+        LocalDate horizon = archiveHorizon();
+        return horizon != null && (start == null || start.isBefore(horizon)) ? ALL_TIERS : "transactions";
+    }
+
+    private LocalDate archiveHorizon() {
+        if (!archiveHorizonLoaded) {
+            try {
+                archiveHorizon = executeQuery("SELECT MAX(transaction_date) FROM transactions_archive", stmt -> {}, rs -> {
+                    Date newest = rs.next() ? rs.getDate(1) : null;
+                    return newest != null ? newest.toLocalDate().plusDays(1) : null;
+                });
+            } catch (TransactionRepositoryException e) {
+                // Schema created before the archive table existed: nothing is archived
+                LOGGER.log(Level.WARNING, "Transactions archive unavailable: {0}", e.getMessage());
+                archiveHorizon = null;
+            }
+            archiveHorizonLoaded = true;
+        }
+        return archiveHorizon;
     }
 
     private Transaction mapResultSetToTransaction(ResultSet rs) throws SQLException {
@@ -21,7 +21,8 @@ public record AccountDTO(
         BigDecimal availableBalance,
         BigDecimal creditLimit,      // CREDIT
         BigDecimal interestRate,     // SAVINGS, CREDIT
-        String currencyCode          // CURRENCY
+        String currencyCode,         // CURRENCY
+        long version
 ) {
     public AccountDTO {
         if (accountId == null || accountId.isBlank())
@@ -47,7 +48,8 @@ public record AccountDTO(
                 account instanceof CreditAccount c ? c.getCreditLimit() : null,
                 account instanceof SavingsAccount s ? s.getInterestRate() :
                         account instanceof CreditAccount c ? c.getInterestRate() : null,
-                account instanceof CurrencyAccount cu ? cu.getCurrencyType() : null
+                account instanceof CurrencyAccount cu ? cu.getCurrencyType() : null,
+                account.getVersion()
         );
     }
 
@@ -60,12 +62,14 @@ public record AccountDTO(
             resolvedInterestRate = InterestRateConfigService.getInstance().getRate(type);
         }
 
-        return switch (type) {
+        Account account = switch (type) {
             case CHECKING -> AccountFactory.createAccount(type, accountId, customer, date, availableBalance);
             case SAVINGS -> AccountFactory.createAccount(type, accountId, customer, date, availableBalance, resolvedInterestRate);
             case CREDIT -> AccountFactory.createAccount(type, accountId, customer, date, creditLimit, resolvedInterestRate);
             case CURRENCY -> AccountFactory.createAccount(type, accountId, customer, date, availableBalance, currencyCode);
             default -> throw new IllegalStateException("Unsupported account type: " + type);
         };
+        account.setVersion(version);
+        return account;
     }
 }
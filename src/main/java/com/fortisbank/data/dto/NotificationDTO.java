@@ -65,11 +65,13 @@ public record NotificationDTO(
     }
 
     /**
-     * Converts this DTO back into a Notification entity.
+     * Converts this DTO back into a Notification entity, resolving its related account and customer
+     * through the services of the given storage mode.
      *
+     * @param storageMode the storage mode holding the related account and customer
      * @return Notification object
      */
-    public Notification toEntity() {
+    public Notification toEntity(StorageMode storageMode) {
         NotificationType parsedType = NotificationType.valueOf(type);
 
         Notification notification = new Notification(
@@ -84,7 +86,7 @@ public record NotificationDTO(
 
         if (accountId != null) {
             try {
-                notification.setRelatedAccount(AccountService.getInstance(StorageMode.DATABASE).getAccount(accountId));
+                notification.setRelatedAccount(AccountService.getInstance(storageMode).getAccount(accountId));
             } catch (Exception e) {
                 // Log but allow fallback
                 System.err.println("Failed to load related account: " + e.getMessage()); //TODO: replace with proper logging
@@ -93,7 +95,7 @@ public record NotificationDTO(
 
         if (relatedCustomerId != null) {
             try {
-                notification.setRelatedCustomer(CustomerService.getInstance(StorageMode.DATABASE).getCustomer(relatedCustomerId));
+                notification.setRelatedCustomer(CustomerService.getInstance(storageMode).getCustomer(relatedCustomerId));
             } catch (Exception e) {
                 // Log but allow fallback (e.g., for managers)
                 System.err.println("No customer found for relatedCustomerId: " + relatedCustomerId); //TODO: replace with proper logging
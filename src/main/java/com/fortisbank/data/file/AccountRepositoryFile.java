@@ -1,18 +1,32 @@
 package com.fortisbank.data.file;
 
+        import com.fortisbank.data.file.codec.AccountCodec;
         import com.fortisbank.data.interfaces.IAccountRepository;
         import com.fortisbank.contracts.exceptions.AccountRepositoryException;
+        import com.fortisbank.contracts.exceptions.OptimisticLockException;
         import com.fortisbank.contracts.models.accounts.Account;
+        import com.fortisbank.contracts.models.accounts.AccountType;
+        import com.fortisbank.contracts.models.reports.AccountTypeTotals;
         import com.fortisbank.contracts.collections.AccountList;
+        import com.fortisbank.contracts.collections.Page;
 
         import java.io.File;
+        import java.math.BigDecimal;
+        import java.util.ArrayList;
+        import java.util.Collection;
+        import java.util.EnumMap;
         import java.util.List;
+        import java.util.Map;
         import java.util.logging.Level;
         import java.util.logging.Logger;
 
         /**
          * Repository class for managing account data stored in a file.
          * Extends the FileRepository class and implements the IAccountRepository interface.
+         * <p>
+         * Accounts are read and written as copies of the resident instances, so a balance changed by a
+         * caller is only seen by other readers once the account is updated, and the version it was
+         * read with is checked against the stored one.
          */
         public class AccountRepositoryFile extends FileRepository<Account> implements IAccountRepository {
             private static final Logger LOGGER = Logger.getLogger(AccountRepositoryFile.class.getName());
@@ -23,8 +37,12 @@ package com.fortisbank.data.file;
              * Private constructor to prevent direct instantiation.
              * Initializes the repository with the specified file.
              */
+            private final FileIndex<Account> customerIndex;
+
             private AccountRepositoryFile() {
-                super(file);
+                super(file, Account::getAccountNumber,
+                        new AccountCodec(id -> CustomerRepositoryFile.getInstance().findById(id)));
+                customerIndex = addIndex("customer", a -> a.getCustomer() != null ? a.getCustomer().getUserId() : null);
             }
 
             /**
@@ -35,72 +53,164 @@ package com.fortisbank.data.file;
              */
             public static synchronized AccountRepositoryFile getInstance() {
                 if (instance == null) {
-                    instance = new AccountRepositoryFile();
+                    instance = register(new AccountRepositoryFile());
                 }
                 return instance;
             }
 
             @Override
             public Account getAccountById(String accountId) throws AccountRepositoryException {
-                return executeQuery(accounts -> accounts.stream()
-                        .filter(a -> a.getAccountNumber().equals(accountId))
-                        .findFirst()
-                        .orElse(null), "Error retrieving account with ID: " + accountId);
+                return executeQuery(() -> copyOrNull(this, findById(accountId)), "Error retrieving account with ID: " + accountId);
             }
 
             @Override
             public AccountList getAccountsByCustomerId(String customerId) throws AccountRepositoryException {
-                return executeQuery(accounts -> {
-                    AccountList result = new AccountList();
-                    accounts.stream()
-                            .filter(a -> a.getCustomer() != null && customerId.equals(a.getCustomer().getUserId()))
-                            .forEach(result::add);
-                    return result;
-                }, "Error retrieving accounts for customer ID: " + customerId);
+                return executeQuery(() -> copiesOf(this, findAllByIndex(customerIndex, customerId)),
+                        "Error retrieving accounts for customer ID: " + customerId);
             }
 
             @Override
             public AccountList getAllAccounts() throws AccountRepositoryException {
-                return executeQuery(AccountList::new, "Error retrieving all accounts");
+                return executeQuery(() -> copiesOf(this, readAll()), "Error retrieving all accounts");
+            }
+
+            @Override
+            public Page<Account> getAccountsPage(String pageToken, int pageSize) throws AccountRepositoryException {
+                return executeQuery(() -> {
+                    String[] after = Page.decodeToken(pageToken, 1);
+                    return Page.of(copiesOf(this, readPage(after != null ? after[0] : null, pageSize + 1)), pageSize,
+                            a -> new String[]{a.getAccountNumber()});
+                }, "Error retrieving page of accounts");
             }
 
             @Override
             public void insertAccount(Account account) throws AccountRepositoryException {
-                executeUpdate(accounts -> accounts.add(account), "Error inserting account");
+                executeUpdate(() -> save(copyOf(account)), "Error inserting account");
             }
 
             @Override
             public void updateAccount(Account account) throws AccountRepositoryException {
-                executeUpdate(accounts -> {
-                    for (int i = 0; i < accounts.size(); i++) {
-                        if (accounts.get(i).getAccountNumber().equals(account.getAccountNumber())) {
-                            accounts.set(i, account);
-                            return;
-                        }
-                    }
-                }, "Error updating account");
+                FileUnitOfWork unit = FileUnitOfWork.current();
+                if (unit != null) {
+                    unit.stageVersioned(this, account.getAccountNumber(), account, this::replaceVersioned);
+                    return;
+                }
+                replaceVersioned(List.of(account));
+            }
+
+            /**
+             * Replaces the stored accounts whose versions are those of the given instances, and
+             * increments the versions, in one journal commit.
+             *
+             * @throws OptimisticLockException if a stored account has another version; nothing is written then
+             */
+            private void replaceVersioned(List<Account> accounts) throws AccountRepositoryException {
+                boolean replaced;
+                try {
+                    replaced = replaceCopies(this, accounts);
+                } catch (Exception e) {
+                    LOGGER.log(Level.SEVERE, "Error updating account", e);
+                    throw new AccountRepositoryException("Error updating account", e);
+                }
+                if (!replaced) {
+                    throw conflict(accounts);
+                }
             }
 
             @Override
             public void deleteAccount(String accountId) throws AccountRepositoryException {
-                executeUpdate(accounts -> accounts.removeIf(a -> a.getAccountNumber().equals(accountId)), "Error deleting account with ID: " + accountId);
+                executeUpdate(() -> remove(accountId), "Error deleting account with ID: " + accountId);
+            }
+
+            @Override
+            public Map<AccountType, AccountTypeTotals> getTotalsByAccountType() throws AccountRepositoryException {
+                return executeQuery(() -> {
+                    Map<AccountType, AccountTypeTotals> totals = new EnumMap<>(AccountType.class);
+                    forEach(account -> addTotals(totals, account));
+                    return totals;
+                }, "Error aggregating accounts by type");
+            }
+
+            @Override
+            public AccountList getAccountsWithBalanceBelow(BigDecimal threshold) throws AccountRepositoryException {
+                return executeQuery(() -> {
+                    List<Account> accounts = new ArrayList<>();
+                    forEach(account -> {
+                        if (account.getAvailableBalance().compareTo(threshold) < 0) accounts.add(account);
+                    });
+                    return copiesOf(this, accounts);
+                }, "Error retrieving accounts with balance below " + threshold);
+            }
+
+            /**
+             * Stores copies of accounts in place of the stored ones, in one journal commit, if the stored
+             * versions are still those of the given instances. The versions are incremented on the copies
+             * and, once they are written, on the instances, as the database does.
+             *
+             * @param repository the repository holding the accounts
+             * @param accounts the new versions of the accounts
+             * @return false if a stored account has another version, in which case nothing is written
+             */
+            static boolean replaceCopies(FileRepository<Account> repository, List<Account> accounts) {
+                List<Account> copies = new ArrayList<>(accounts.size());
+                for (Account account : accounts) {
+                    copies.add(repository.copyOf(account));
+                }
+                if (!repository.replaceAllIf(copies, AccountRepositoryFile::sameVersion, AccountRepositoryFile::nextVersion)) {
+                    return false;
+                }
+                for (int i = 0; i < accounts.size(); i++) {
+                    accounts.get(i).setVersion(copies.get(i).getVersion());
+                }
+                return true;
+            }
+
+            static AccountList copiesOf(FileRepository<Account> repository, Collection<Account> accounts) {
+                AccountList copies = new AccountList();
+                for (Account account : accounts) {
+                    copies.add(repository.copyOf(account));
+                }
+                return copies;
+            }
+
+            static Account copyOrNull(FileRepository<Account> repository, Account account) {
+                return account != null ? repository.copyOf(account) : null;
+            }
+
+            static boolean sameVersion(Account stored, Account account) {
+                return stored.getVersion() == account.getVersion();
+            }
+
+            static void nextVersion(Account account) {
+                account.setVersion(account.getVersion() + 1);
+            }
+
+            static OptimisticLockException conflict(List<Account> accounts) {
+                return new OptimisticLockException(accounts.size() == 1
+                        ? "Account " + accounts.get(0).getAccountNumber() + " was updated since version " + accounts.get(0).getVersion()
+                        : "One of " + accounts.size() + " accounts was updated since it was read");
+            }
+
+            /**
+             * Adds an account to the aggregates of its type.
+             */
+            static void addTotals(Map<AccountType, AccountTypeTotals> totals, Account account) {
+                totals.merge(account.getAccountType(),
+                        new AccountTypeTotals(1, account.getAvailableBalance(), account.getCreditLimit()), AccountTypeTotals::plus);
             }
 
-            private <T> T executeQuery(QueryFunction<List<Account>, T> function, String errorMessage) throws AccountRepositoryException {
+            private <T> T executeQuery(QueryFunction<T> function, String errorMessage) throws AccountRepositoryException {
                 try {
-                    List<Account> accounts = readAll();
-                    return function.apply(accounts);
+                    return function.apply();
                 } catch (Exception e) {
                     LOGGER.log(Level.SEVERE, errorMessage, e);
                     throw new AccountRepositoryException(errorMessage, e);
                 }
             }
 
-            private void executeUpdate(UpdateFunction<List<Account>> function, String errorMessage) throws AccountRepositoryException {
+            private void executeUpdate(UpdateFunction function, String errorMessage) throws AccountRepositoryException {
                 try {
-                    List<Account> accounts = readAll();
-                    function.apply(accounts);
-                    writeAll(accounts);
+                    function.apply();
                 } catch (Exception e) {
                     LOGGER.log(Level.SEVERE, errorMessage, e);
                     throw new AccountRepositoryException(errorMessage, e);
@@ -108,12 +218,12 @@ package com.fortisbank.data.file;
             }
 
             @FunctionalInterface
-            private interface QueryFunction<T, R> {
-                R apply(T t) throws Exception;
+            private interface QueryFunction<R> {
+                R apply() throws Exception;
             }
 
             @FunctionalInterface
-            private interface UpdateFunction<T> {
-                void apply(T t) throws Exception;
+            private interface UpdateFunction {
+                void apply() throws Exception;
             }
         }
\ No newline at end of file
@@ -0,0 +1,354 @@
+package com.fortisbank.data.file;
+
+import com.fortisbank.contracts.collections.AccountList;
+import com.fortisbank.contracts.collections.Page;
+import com.fortisbank.contracts.exceptions.AccountRepositoryException;
+import com.fortisbank.contracts.exceptions.OptimisticLockException;
+import com.fortisbank.contracts.models.accounts.Account;
+import com.fortisbank.contracts.models.accounts.AccountType;
+import com.fortisbank.contracts.models.reports.AccountTypeTotals;
+import com.fortisbank.data.file.codec.AccountCodec;
+import com.fortisbank.data.interfaces.IAccountRepository;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Repository class for managing account data in sharded files.
+ * <p>
+ * Accounts are partitioned by a hash of their customer's id into the shards of the {@link ShardLayout},
+ * each a resident {@link FileRepository} with its own file, journal, lock and cache. Operations on the
+ * accounts of one customer only touch that customer's shard, and writes for customers in different
+ * shards run in parallel. A routing map from account number to shard, rebuilt from the shards on
+ * startup, serves lookups by account number. As in {@link AccountRepositoryFile}, accounts are read
+ * and written as copies of the resident instances.
+ * Implements the IAccountRepository interface.
+ */
+public class AccountRepositoryShardedFile implements IAccountRepository {
+    private static final Logger LOGGER = Logger.getLogger(AccountRepositoryShardedFile.class.getName());
+    private static AccountRepositoryShardedFile instance;
+    private static volatile boolean active;
+
+    private final ShardLayout layout = ShardLayout.get();
+    private final AccountShard[] shards;
+    private final Map<String, Integer> routing = new ConcurrentHashMap<>(); // account number -> shard
+
+    private AccountRepositoryShardedFile() {
+        shards = new AccountShard[layout.count()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = FileRepository.register(new AccountShard(layout.shardFile("accounts", i, ".ser")));
+            for (Account account : shards[i].readAll()) {
+                routing.put(account.getAccountNumber(), i);
+            }
+        }
+        if (layout.isNew() && routing.isEmpty()) {
+            importUnsharded();
+        }
+    }
+
+    public static synchronized AccountRepositoryShardedFile getInstance() {
+        if (instance == null) {
+            instance = new AccountRepositoryShardedFile();
+        }
+        return instance;
+    }
+
+    /**
+     * Makes the sharded accounts the ones referenced by the file stores shared with the FILE mode,
+     * such as notifications. Called when the FILE_SHARDED storage mode is selected.
+     */
+    public static void activate() {
+        active = true;
+    }
+
+    /**
+     * Returns the stored account with the given number, from the shards if the FILE_SHARDED mode is
+     * active and from the unsharded file otherwise. Used by codecs shared by both modes.
+     *
+     * @param accountNumber the account number
+     * @return the account, or null if it does not exist
+     */
+    static Account resolve(String accountNumber) {
+        return active ? getInstance().findAccount(accountNumber) : AccountRepositoryFile.getInstance().findById(accountNumber);
+    }
+
+    /**
+     * Returns the shard holding the accounts of a customer.
+     *
+     * @param customerId the customer id
+     * @return the shard number
+     */
+    int shardOfCustomer(String customerId) {
+        return layout.shardOf(customerId);
+    }
+
+    /**
+     * Returns the shard holding an account.
+     *
+     * @param accountNumber the account number
+     * @return the shard number, or -1 if the account does not exist
+     */
+    int shardOfAccount(String accountNumber) {
+        return accountNumber != null ? routing.getOrDefault(accountNumber, -1) : -1;
+    }
+
+    Account findAccount(String accountNumber) {
+        int shard = shardOfAccount(accountNumber);
+        return shard >= 0 ? shards[shard].findById(accountNumber) : null;
+    }
+
+    @Override
+    public Account getAccountById(String accountId) throws AccountRepositoryException {
+        try {
+            int shard = shardOfAccount(accountId);
+            return shard >= 0 ? AccountRepositoryFile.copyOrNull(shards[shard], shards[shard].findById(accountId)) : null;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving account with ID: " + accountId, e);
+            throw new AccountRepositoryException("Error retrieving account with ID: " + accountId, e);
+        }
+    }
+
+    @Override
+    public AccountList getAccountsByCustomerId(String customerId) throws AccountRepositoryException {
+        try {
+            AccountShard shard = shards[layout.shardOf(customerId)];
+            return AccountRepositoryFile.copiesOf(shard, shard.findByCustomer(customerId));
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving accounts for customer ID: " + customerId, e);
+            throw new AccountRepositoryException("Error retrieving accounts for customer ID: " + customerId, e);
+        }
+    }
+
+    @Override
+    public AccountList getAllAccounts() throws AccountRepositoryException {
+        try {
+            AccountList accounts = new AccountList();
+            for (AccountShard shard : shards) {
+                accounts.addAll(AccountRepositoryFile.copiesOf(shard, shard.readAll()));
+            }
+            return accounts;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving all accounts", e);
+            throw new AccountRepositoryException("Error retrieving all accounts", e);
+        }
+    }
+
+    @Override
+    public Page<Account> getAccountsPage(String pageToken, int pageSize) throws AccountRepositoryException {
+        try {
+            String[] after = Page.decodeToken(pageToken, 1);
+            // Each shard is ordered by account number: the page is among the first accounts of each shard
+            List<Account> accounts = new ArrayList<>();
+            for (AccountShard shard : shards) {
+                accounts.addAll(AccountRepositoryFile.copiesOf(shard, shard.readPage(after != null ? after[0] : null, pageSize + 1)));
+            }
+            accounts.sort(Comparator.comparing(Account::getAccountNumber));
+            return Page.of(accounts.subList(0, Math.min(accounts.size(), pageSize + 1)), pageSize,
+                    a -> new String[]{a.getAccountNumber()});
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving page of accounts", e);
+            throw new AccountRepositoryException("Error retrieving page of accounts", e);
+        }
+    }
+
+    @Override
+    public void insertAccount(Account account) throws AccountRepositoryException {
+        try {
+            int shard = layout.shardOf(customerId(account));
+            shards[shard].save(shards[shard].copyOf(account));
+            routing.put(account.getAccountNumber(), shard);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error inserting account", e);
+            throw new AccountRepositoryException("Error inserting account", e);
+        }
+    }
+
+    @Override
+    public void updateAccount(Account account) throws AccountRepositoryException {
+        FileUnitOfWork unit = FileUnitOfWork.current();
+        if (unit != null) {
+            unit.stageVersioned(this, account.getAccountNumber(), account, this::updateAll);
+            return;
+        }
+        try {
+            int current = shardOfAccount(account.getAccountNumber());
+            if (current < 0) {
+                return;
+            }
+            int shard = layout.shardOf(customerId(account));
+            if (shard == current) {
+                if (!shards[shard].replaceVersioned(List.of(account))) {
+                    throw AccountRepositoryFile.conflict(List.of(account));
+                }
+            } else {
+                // The account changed owner: move it to the new owner's shard
+                Account stored = shards[current].findById(account.getAccountNumber());
+                if (stored != null && !AccountRepositoryFile.sameVersion(stored, account)) {
+                    throw AccountRepositoryFile.conflict(List.of(account));
+                }
+                Account copy = shards[shard].copyOf(account);
+                AccountRepositoryFile.nextVersion(copy);
+                shards[shard].save(copy);
+                account.setVersion(copy.getVersion());
+                routing.put(account.getAccountNumber(), shard);
+                shards[current].remove(account.getAccountNumber());
+            }
+        } catch (OptimisticLockException e) {
+            throw e;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error updating account", e);
+            throw new AccountRepositoryException("Error updating account", e);
+        }
+    }
+
+    @Override
+    public void deleteAccount(String accountId) throws AccountRepositoryException {
+        try {
+            Integer shard = routing.remove(accountId);
+            if (shard != null) {
+                shards[shard].remove(accountId);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error deleting account with ID: " + accountId, e);
+            throw new AccountRepositoryException("Error deleting account with ID: " + accountId, e);
+        }
+    }
+
+    @Override
+    public Map<AccountType, AccountTypeTotals> getTotalsByAccountType() throws AccountRepositoryException {
+        try {
+            Map<AccountType, AccountTypeTotals> totals = new EnumMap<>(AccountType.class);
+            for (AccountShard shard : shards) {
+                shard.forEach(account -> AccountRepositoryFile.addTotals(totals, account));
+            }
+            return totals;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error aggregating accounts by type", e);
+            throw new AccountRepositoryException("Error aggregating accounts by type", e);
+        }
+    }
+
+    @Override
+    public AccountList getAccountsWithBalanceBelow(BigDecimal threshold) throws AccountRepositoryException {
+        try {
+            AccountList accounts = new AccountList();
+            for (AccountShard shard : shards) {
+                List<Account> below = new ArrayList<>();
+                shard.forEach(account -> {
+                    if (account.getAvailableBalance().compareTo(threshold) < 0) below.add(account);
+                });
+                accounts.addAll(AccountRepositoryFile.copiesOf(shard, below));
+            }
+            return accounts;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving accounts with balance below " + threshold, e);
+            throw new AccountRepositoryException("Error retrieving accounts with balance below " + threshold, e);
+        }
+    }
+
+    /**
+     * Writes the accounts staged by a unit of work, with one journal commit per shard. Accounts that
+     * changed owner are moved one by one. The versions of all the accounts are checked before any
+     * shard is written, and again atomically with the write of each shard.
+     * <p>
+     * An {@link OptimisticLockException} means that nothing was written. A conflict found once some
+     * accounts were written, by a writer that raced the first check, is reported as a plain
+     * {@link AccountRepositoryException} instead, so that the unit of work is not retried over the
+     * accounts already written.
+     */
+    private void updateAll(List<Account> accounts) throws AccountRepositoryException {
+        List<List<Account>> byShard = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (Account account : accounts) {
+            Account stored = findAccount(account.getAccountNumber());
+            if (stored != null && !AccountRepositoryFile.sameVersion(stored, account)) {
+                throw AccountRepositoryFile.conflict(List.of(account));
+            }
+        }
+        boolean written = false;
+        try {
+            for (Account account : accounts) {
+                int current = shardOfAccount(account.getAccountNumber());
+                if (current < 0) continue;
+                if (current == layout.shardOf(customerId(account))) {
+                    byShard.get(current).add(account);
+                } else {
+                    updateAccount(account);
+                    written = true;
+                }
+            }
+            for (int i = 0; i < shards.length; i++) {
+                if (byShard.get(i).isEmpty()) continue;
+                if (!shards[i].replaceVersioned(byShard.get(i))) {
+                    throw AccountRepositoryFile.conflict(byShard.get(i));
+                }
+                written = true;
+            }
+        } catch (OptimisticLockException e) {
+            if (!written) throw e;
+            AccountRepositoryException partial = new AccountRepositoryException(
+                    "Accounts were partially updated before a concurrent update was detected");
+            partial.addSuppressed(e);
+            LOGGER.log(Level.SEVERE, "Error updating accounts", partial);
+            throw partial;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error updating accounts", e);
+            throw new AccountRepositoryException("Error updating " + accounts.size() + " accounts", e);
+        }
+    }
+
+    private static String customerId(Account account) {
+        return account.getCustomer() != null ? account.getCustomer().getUserId() : null;
+    }
+
+    /**
+     * Distributes the accounts of the unsharded file into the shards when the layout is created.
+     */
+    private void importUnsharded() {
+        List<Account> accounts = AccountRepositoryFile.getInstance().readAll();
+        List<List<Account>> byShard = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (Account account : accounts) {
+            int shard = layout.shardOf(customerId(account));
+            byShard.get(shard).add(account);
+            routing.put(account.getAccountNumber(), shard);
+        }
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].append(byShard.get(i));
+        }
+        LOGGER.log(Level.INFO, "Imported {0} accounts into {1} shards", new Object[]{accounts.size(), shards.length});
+    }
+
+    /**
+     * One shard of accounts, indexed by customer.
+     */
+    private static final class AccountShard extends FileRepository<Account> {
+        private final FileIndex<Account> customerIndex;
+
+        private AccountShard(File file) {
+            super(file, Account::getAccountNumber,
+                    new AccountCodec(id -> CustomerRepositoryFile.getInstance().findById(id)));
+            customerIndex = addIndex("customer", a -> customerId(a));
+        }
+
+        private List<Account> findByCustomer(String customerId) {
+            return findAllByIndex(customerIndex, customerId);
+        }
+
+        private boolean replaceVersioned(List<Account> accounts) {
+            return AccountRepositoryFile.replaceCopies(this, accounts);
+        }
+    }
+}
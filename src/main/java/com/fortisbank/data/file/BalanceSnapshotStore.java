@@ -0,0 +1,130 @@
+package com.fortisbank.data.file;
+
+import com.fortisbank.contracts.models.reports.BalanceSnapshot;
+import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.data.file.codec.BalanceSnapshotCodec;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Monthly closing balances of the accounts ({@link BalanceSnapshot}), kept next to the transaction
+ * segments so that an opening balance is read from the nearest month instead of summing the history.
+ * <p>
+ * A change to a month is added to the snapshot of that month and to the later snapshots of the
+ * account, so back-dated transactions are accounted for. The snapshots are read, changed and written
+ * under one lock, so concurrent updates of an account do not overwrite each other. Inside a
+ * {@link FileUnitOfWork} the transactions are staged instead, and their changes are applied when the
+ * unit of work is committed.
+ */
+class BalanceSnapshotStore extends FileRepository<BalanceSnapshot> {
+    private final FileIndex<BalanceSnapshot> accountIndex;
+    private final Object updateLock = new Object();
+
+    /**
+     * Opens the store, building it from the transaction history if it does not exist yet.
+     *
+     * @param file the snapshot file
+     * @param history supplies every transaction, read only when the store is empty
+     */
+    BalanceSnapshotStore(File file, Supplier<Stream<Transaction>> history) {
+        super(file, BalanceSnapshot::key, new BalanceSnapshotCodec());
+        accountIndex = addIndex("account", BalanceSnapshot::accountId);
+        if (size() == 0) {
+            rebuild(history);
+        }
+    }
+
+    /**
+     * Adds the signed amounts of transactions to the closing balances of their accounts, from the
+     * month of each transaction on. Inside a unit of work, the transactions are added when it is
+     * committed; a transaction staged twice is added once.
+     *
+     * @param transactions the transactions
+     */
+    void add(Collection<? extends Transaction> transactions) {
+        FileUnitOfWork unit = FileUnitOfWork.current();
+        if (unit == null) {
+            apply(transactions);
+            return;
+        }
+        for (Transaction transaction : transactions) {
+            unit.stage(this, transaction.getTransactionNumber(), transaction, this::apply);
+        }
+    }
+
+    private void apply(Collection<? extends Transaction> transactions) {
+        synchronized (updateLock) {
+            List<BalanceSnapshot> changed = new ArrayList<>();
+            BalanceSnapshot.changesByAccount(transactions).forEach((accountId, changes) -> {
+                NavigableMap<YearMonth, BalanceSnapshot> snapshots = snapshotsOf(accountId);
+                for (Map.Entry<YearMonth, BigDecimal> change : changes.entrySet()) {
+                    YearMonth month = change.getKey();
+                    if (!snapshots.containsKey(month)) {
+                        Map.Entry<YearMonth, BalanceSnapshot> previous = snapshots.lowerEntry(month);
+                        snapshots.put(month, new BalanceSnapshot(accountId, month, previous != null ? previous.getValue().closingBalance() : null));
+                    }
+                    snapshots.tailMap(month, true).replaceAll((m, snapshot) -> snapshot.plus(change.getValue()));
+                }
+                changed.addAll(snapshots.tailMap(changes.firstKey(), true).values());
+            });
+            append(changed);
+        }
+    }
+
+    /**
+     * Sums the closing balances of accounts at the end of their latest snapshots before a month.
+     *
+     * @param accountIds the account numbers
+     * @param month the month
+     * @return the sum; accounts without earlier snapshots count as zero
+     */
+    BigDecimal closingBalanceBefore(Collection<String> accountIds, YearMonth month) {
+        BigDecimal balance = BigDecimal.ZERO;
+        for (String accountId : accountIds) {
+            Map.Entry<YearMonth, BalanceSnapshot> latest = snapshotsOf(accountId).lowerEntry(month);
+            if (latest != null) {
+                balance = balance.add(latest.getValue().closingBalance());
+            }
+        }
+        return balance;
+    }
+
+    private NavigableMap<YearMonth, BalanceSnapshot> snapshotsOf(String accountId) {
+        NavigableMap<YearMonth, BalanceSnapshot> snapshots = new TreeMap<>();
+        for (BalanceSnapshot snapshot : findAllByIndex(accountIndex, accountId)) {
+            snapshots.put(snapshot.month(), snapshot);
+        }
+        return snapshots;
+    }
+
+    /**
+     * Builds the snapshots of every account from the transaction history, in one pass.
+     */
+    private void rebuild(Supplier<Stream<Transaction>> history) {
+        Map<String, NavigableMap<YearMonth, BigDecimal>> changes = new HashMap<>();
+        try (Stream<Transaction> transactions = history.get()) {
+            transactions.forEach(transaction -> BalanceSnapshot.addChanges(transaction, changes));
+        }
+        if (changes.isEmpty()) return;
+        List<BalanceSnapshot> snapshots = new ArrayList<>();
+        changes.forEach((accountId, months) -> {
+            BigDecimal balance = BigDecimal.ZERO;
+            for (Map.Entry<YearMonth, BigDecimal> change : months.entrySet()) {
+                balance = balance.add(change.getValue());
+                snapshots.add(new BalanceSnapshot(accountId, change.getKey(), balance));
+            }
+        });
+        writeAll(snapshots);
+    }
+}
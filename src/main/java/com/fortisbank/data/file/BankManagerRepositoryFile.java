@@ -1,5 +1,6 @@
 package com.fortisbank.data.file;
 
+     import com.fortisbank.data.file.codec.BankManagerCodec;
      import com.fortisbank.data.interfaces.IBankManagerRepository;
      import com.fortisbank.contracts.exceptions.BankManagerRepositoryException;
      import com.fortisbank.contracts.collections.ManagerList;
@@ -7,6 +8,7 @@ package com.fortisbank.data.file;
 
      import java.io.File;
      import java.util.List;
+     import java.util.Locale;
      import java.util.logging.Level;
      import java.util.logging.Logger;
 
@@ -20,24 +22,25 @@ package com.fortisbank.data.file;
          private static final File file = new File("data/managers.ser"); // File to store manager data
          private static BankManagerRepositoryFile instance; // Singleton instance
 
+         private final FileIndex<BankManager> emailIndex;
+
          private BankManagerRepositoryFile() {
-             super(file);
+             super(file, BankManager::getUserId,
+                     new BankManagerCodec(id -> CustomerRepositoryFile.getInstance().findById(id)));
+             emailIndex = addUniqueIndex("email", m -> m.getEmail() != null ? m.getEmail().toLowerCase(Locale.ROOT) : null);
          }
 
          public static synchronized BankManagerRepositoryFile getInstance() {
              if (instance == null) {
-                 instance = new BankManagerRepositoryFile();
+                 instance = register(new BankManagerRepositoryFile());
              }
              return instance;
          }
 
          @Override
          public BankManager getManagerById(String id) throws BankManagerRepositoryException {
-             return executeQuery(managers -> {
-                 BankManager manager = managers.stream()
-                         .filter(m -> m.getUserId().equals(id))
-                         .findFirst()
-                         .orElse(null);
+             return executeQuery(() -> {
+                 BankManager manager = findById(id);
 
                  if (manager != null) {
                      try {
@@ -52,31 +55,42 @@ package com.fortisbank.data.file;
          }
 
 
+         @Override
+         public BankManager getManagerByEmail(String email) throws BankManagerRepositoryException {
+             return executeQuery(() -> {
+                 BankManager manager = findByIndex(emailIndex, email.toLowerCase(Locale.ROOT));
+
+                 if (manager != null) {
+                     try {
+                         manager.setInbox(NotificationRepositoryFile.getInstance().getNotificationsByUserId(manager.getUserId()));
+                     } catch (Exception e) {
+                         LOGGER.log(Level.WARNING, "Failed to load inbox for manager " + manager.getUserId(), e);
+                     }
+                 }
+
+                 return manager;
+             }, "Error retrieving manager with email: " + email);
+         }
+
          @Override
          public void insertManager(BankManager manager) throws BankManagerRepositoryException {
-             executeUpdate(managers -> managers.add(manager), "Error inserting manager");
+             executeUpdate(() -> save(manager), "Error inserting manager");
          }
 
          @Override
          public void updateManager(BankManager manager) throws BankManagerRepositoryException {
-             executeUpdate(managers -> {
-                 for (int i = 0; i < managers.size(); i++) {
-                     if (managers.get(i).getUserId().equals(manager.getUserId())) {
-                         managers.set(i, manager);
-                         return;
-                     }
-                 }
-             }, "Error updating manager");
+             executeUpdate(() -> replace(manager), "Error updating manager");
          }
 
          @Override
          public void deleteManager(String id) throws BankManagerRepositoryException {
-             executeUpdate(managers -> managers.removeIf(m -> m.getUserId().equals(id)), "Error deleting manager with ID: " + id);
+             executeUpdate(() -> remove(id), "Error deleting manager with ID: " + id);
          }
 
          @Override
          public ManagerList getAllManagers() throws BankManagerRepositoryException {
-             return executeQuery(managers -> {
+             return executeQuery(() -> {
+                 List<BankManager> managers = readAll();
                  for (BankManager manager : managers) {
                      try {
                          manager.setInbox(NotificationRepositoryFile.getInstance().getNotificationsByUserId(manager.getUserId()));
@@ -89,21 +103,18 @@ package com.fortisbank.data.file;
          }
 
 
-         private <T> T executeQuery(QueryFunction<List<BankManager>, T> function, String errorMessage) throws BankManagerRepositoryException {
+         private <T> T executeQuery(QueryFunction<T> function, String errorMessage) throws BankManagerRepositoryException {
              try {
-                 List<BankManager> managers = readAll();
-                 return function.apply(managers);
+                 return function.apply();
              } catch (Exception e) {
                  LOGGER.log(Level.SEVERE, errorMessage, e);
                  throw new BankManagerRepositoryException(errorMessage, e);
              }
          }
 
-         private void executeUpdate(UpdateFunction<List<BankManager>> function, String errorMessage) throws BankManagerRepositoryException {
+         private void executeUpdate(UpdateFunction function, String errorMessage) throws BankManagerRepositoryException {
              try {
-                 List<BankManager> managers = readAll();
-                 function.apply(managers);
-                 writeAll(managers);
+                 function.apply();
              } catch (Exception e) {
                  LOGGER.log(Level.SEVERE, errorMessage, e);
                  throw new BankManagerRepositoryException(errorMessage, e);
@@ -111,12 +122,12 @@ package com.fortisbank.data.file;
          }
 
          @FunctionalInterface
-         private interface QueryFunction<T, R> {
-             R apply(T t) throws Exception;
+         private interface QueryFunction<R> {
+             R apply() throws Exception;
          }
 
          @FunctionalInterface
-         private interface UpdateFunction<T> {
-             void apply(T t) throws Exception;
+         private interface UpdateFunction {
+             void apply() throws Exception;
          }
      }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.fortisbank.data.file;
+
+import java.time.Duration;
+
+/**
+ * Outcome of one compaction run of a segmented file store.
+ *
+ * @param store the name of the compacted store
+ * @param segments the number of segments that were rewritten or merged
+ * @param bytesBefore the size of those segments before the run
+ * @param bytesAfter the size of the segments written in their place
+ * @param pause the time during which the store was locked against readers and writers
+ * @param duration the total time of the run
+ */
+public record CompactionReport(String store, int segments, long bytesBefore, long bytesAfter,
+                               Duration pause, Duration duration) {
+
+    /**
+     * Returns the disk space freed by the run.
+     *
+     * @return the number of bytes reclaimed
+     */
+    public long bytesReclaimed() {
+        return bytesBefore - bytesAfter;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d segment(s), %d bytes reclaimed (%d -> %d), pause %.1f ms, total %.1f ms",
+                store, segments, bytesReclaimed(), bytesBefore, bytesAfter,
+                pause.toNanos() / 1e6, duration.toNanos() / 1e6);
+    }
+}
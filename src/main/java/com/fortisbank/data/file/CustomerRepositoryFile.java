@@ -1,6 +1,8 @@
 package com.fortisbank.data.file;
 
+import com.fortisbank.data.file.codec.CustomerCodec;
 import com.fortisbank.contracts.collections.CustomerList;
+import com.fortisbank.contracts.collections.Page;
 import com.fortisbank.contracts.exceptions.CustomerRepositoryException;
 import com.fortisbank.contracts.models.users.Customer;
 import com.fortisbank.data.interfaces.ICustomerRepository;
@@ -8,6 +10,7 @@ import com.fortisbank.contracts.exceptions.NotificationRepositoryException;
 
 import java.io.File;
 import java.util.List;
+import java.util.Locale;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,13 +20,18 @@ public class CustomerRepositoryFile extends FileRepository<Customer> implements
     private static CustomerRepositoryFile instance;
     private static final Logger LOGGER = Logger.getLogger(CustomerRepositoryFile.class.getName());
 
+    private final FileIndex<Customer> emailIndex;
+    private final FileIndex<Customer> phoneIndex;
+
     private CustomerRepositoryFile() {
-        super(file);
+        super(file, Customer::getUserId, new CustomerCodec());
+        emailIndex = addUniqueIndex("email", c -> normalizeEmail(c.getEmail()));
+        phoneIndex = addIndex("phone", Customer::getPhoneNumber);
     }
 
     public static synchronized CustomerRepositoryFile getInstance() {
         if (instance == null) {
-            instance = new CustomerRepositoryFile();
+            instance = register(new CustomerRepositoryFile());
         }
         return instance;
     }
@@ -31,11 +39,10 @@ public class CustomerRepositoryFile extends FileRepository<Customer> implements
     @Override
     public Customer getCustomerById(String id) throws CustomerRepositoryException {
         try {
-            List<Customer> customers = readAll();
-            Customer customer = customers.stream()
-                    .filter(c -> c.getUserId().equals(id))
-                    .findFirst()
-                    .orElseThrow(() -> new CustomerRepositoryException("Customer with ID " + id + " not found."));
+            Customer customer = findById(id);
+            if (customer == null) {
+                throw new CustomerRepositoryException("Customer with ID " + id + " not found.");
+            }
             try {
                 customer.setInbox(NotificationRepositoryFile.getInstance().getNotificationsByUserId(id));
             } catch (NotificationRepositoryException e) {
@@ -47,12 +54,29 @@ public class CustomerRepositoryFile extends FileRepository<Customer> implements
         }
     }
 
+    @Override
+    public Customer getCustomerByEmail(String email) throws CustomerRepositoryException {
+        try {
+            return withInbox(findByIndex(emailIndex, normalizeEmail(email)));
+        } catch (Exception e) {
+            throw new CustomerRepositoryException("Error retrieving customer with email: " + email, e);
+        }
+    }
+
+    @Override
+    public Customer getCustomerByPhone(String phoneNumber) throws CustomerRepositoryException {
+        try {
+            List<Customer> customers = findAllByIndex(phoneIndex, phoneNumber);
+            return customers.isEmpty() ? null : withInbox(customers.getFirst());
+        } catch (Exception e) {
+            throw new CustomerRepositoryException("Error retrieving customer with phone number: " + phoneNumber, e);
+        }
+    }
+
     @Override
     public void insertCustomer(Customer customer) throws CustomerRepositoryException {
         try {
-            List<Customer> customers = readAll();
-            customers.add(customer);
-            writeAll(customers);
+            save(customer);
         } catch (Exception e) {
             throw new CustomerRepositoryException("Error inserting customer", e);
         }
@@ -61,19 +85,9 @@ public class CustomerRepositoryFile extends FileRepository<Customer> implements
     @Override
     public void updateCustomer(Customer customer) throws CustomerRepositoryException {
         try {
-            var customers = readAll();
-            boolean updated = false;
-            for (int i = 0; i < customers.size(); i++) {
-                if (customers.get(i).getUserId().equals(customer.getUserId())) {
-                    customers.set(i, customer);
-                    updated = true;
-                    break;
-                }
-            }
-            if (!updated) {
+            if (!replace(customer)) {
                 throw new CustomerRepositoryException("Customer with ID " + customer.getUserId() + " not found for update.");
             }
-            writeAll(customers);
         } catch (Exception e) {
             throw new CustomerRepositoryException("Error updating customer", e);
         }
@@ -82,12 +96,9 @@ public class CustomerRepositoryFile extends FileRepository<Customer> implements
     @Override
     public void deleteCustomer(String id) throws CustomerRepositoryException {
         try {
-            var customers = readAll();
-            boolean removed = customers.removeIf(c -> c.getUserId().equals(id));
-            if (!removed) {
+            if (!remove(id)) {
                 throw new CustomerRepositoryException("Customer with ID " + id + " not found for deletion.");
             }
-            writeAll(customers);
         } catch (Exception e) {
             throw new CustomerRepositoryException("Error deleting customer with ID: " + id, e);
         }
@@ -109,4 +120,37 @@ public class CustomerRepositoryFile extends FileRepository<Customer> implements
             throw new CustomerRepositoryException("Error retrieving all customers", e);
         }
     }
+
+    @Override
+    public Page<Customer> getCustomersPage(String pageToken, int pageSize) throws CustomerRepositoryException {
+        try {
+            String[] after = Page.decodeToken(pageToken, 1);
+            Page<Customer> page = Page.of(readPage(after != null ? after[0] : null, pageSize + 1), pageSize,
+                    c -> new String[]{c.getUserId()});
+            page.items().forEach(this::withInbox);
+            return page;
+        } catch (Exception e) {
+            throw new CustomerRepositoryException("Error retrieving page of customers", e);
+        }
+    }
+
+    @Override
+    public int countCustomers() throws CustomerRepositoryException {
+        return size();
+    }
+
+    private Customer withInbox(Customer customer) {
+        if (customer != null) {
+            try {
+                customer.setInbox(NotificationRepositoryFile.getInstance().getNotificationsByUserId(customer.getUserId()));
+            } catch (NotificationRepositoryException e) {
+                LOGGER.log(Level.WARNING, "Failed to load inbox for customer " + customer.getUserId(), e);
+            }
+        }
+        return customer;
+    }
+
+    private static String normalizeEmail(String email) {
+        return email != null ? email.toLowerCase(Locale.ROOT) : null;
+    }
 }
@@ -0,0 +1,92 @@
+package com.fortisbank.data.file;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background compaction of the segmented file stores.
+ * <p>
+ * Every registered store is checked periodically and compacts the segments whose share of dead
+ * records (overwritten, deleted or folded into a newer record) crosses the garbage ratio. Each run is
+ * logged with the space it reclaimed and how long it held the store's lock.
+ * <p>
+ * The interval and ratio are set with {@code -Dfortisbank.compactionMillis=...} (default 30000) and
+ * {@code -Dfortisbank.compactionGarbageRatio=...} (default 0.5).
+ */
+public final class FileCompactor {
+
+    private static final Logger LOGGER = Logger.getLogger(FileCompactor.class.getName());
+
+    /**
+     * Interval between two compaction checks, in milliseconds.
+     */
+    static final long INTERVAL_MILLIS = Long.getLong("fortisbank.compactionMillis", 30_000L);
+
+    /**
+     * Share of dead records above which a segment is compacted.
+     */
+    static final double GARBAGE_RATIO = Double.parseDouble(System.getProperty("fortisbank.compactionGarbageRatio", "0.5"));
+
+    private static final Map<String, CompactionReport> LAST_REPORTS = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService COMPACTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "file-store-compactor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * A store that can compact its segments.
+     */
+    @FunctionalInterface
+    public interface Compactable {
+        /**
+         * Compacts the segments whose garbage ratio is at least the given threshold.
+         *
+         * @param garbageRatio the share of dead records above which a segment is compacted
+         * @return the report of the run, or null if no segment needed compaction
+         * @throws IOException if the segments cannot be rewritten; the store is left unchanged
+         */
+        CompactionReport compact(double garbageRatio) throws IOException;
+    }
+
+    private FileCompactor() {
+    }
+
+    /**
+     * Schedules periodic compaction of a store.
+     *
+     * @param name the name of the store, used in logs and reports
+     * @param store the store to compact
+     */
+    public static void schedule(String name, Compactable store) {
+        COMPACTOR.scheduleWithFixedDelay(() -> run(name, store), INTERVAL_MILLIS, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the report of the last compaction of each store.
+     *
+     * @return the last reports, keyed by store name
+     */
+    public static Map<String, CompactionReport> getLastReports() {
+        return Map.copyOf(LAST_REPORTS);
+    }
+
+    private static void run(String name, Compactable store) {
+        try {
+            CompactionReport report = store.compact(GARBAGE_RATIO);
+            if (report != null) {
+                LAST_REPORTS.put(name, report);
+                LOGGER.log(Level.INFO, "Compacted {0}", report);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Compaction failed for " + name, e);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.fortisbank.data.file;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Secondary index of a {@link FileRepository}, mapping an attribute of the stored objects to their keys.
+ * <p>
+ * A unique index holds at most one object per value (e.g. a customer email) and rejects objects that
+ * would duplicate one; a non-unique index maps each value to any number of objects (e.g. the accounts
+ * of a customer). Indexes are maintained by the repository on every change and persisted next to its
+ * data file, stamped with the state of that file so a stale index is detected and rebuilt on startup.
+ *
+ * @param <T> the type of objects in the indexed repository
+ */
+public final class FileIndex<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(FileIndex.class.getName());
+    private static final int MAGIC = 0x46425831; // "FBX1"
+
+    private final String name;
+    private final boolean unique;
+    private final Function<T, String> valueExtractor;
+    private final File file;
+
+    private final Map<String, Set<String>> entries = new HashMap<>(); // indexed value -> object keys
+    private final Map<String, String> values = new HashMap<>();       // object key -> indexed value
+
+    FileIndex(String name, boolean unique, Function<T, String> valueExtractor, File dataFile) {
+        this.name = name;
+        this.unique = unique;
+        this.valueExtractor = valueExtractor;
+        this.file = new File(dataFile.getPath() + "." + name + ".idx");
+    }
+
+    /**
+     * Returns the keys of the objects with the given value.
+     */
+    Set<String> get(String value) {
+        Set<String> keys = entries.get(value);
+        return keys != null ? keys : Set.of();
+    }
+
+    /**
+     * Checks that storing the object under the given key does not duplicate a value of a unique index.
+     *
+     * @throws IllegalArgumentException if another object already has the same value
+     */
+    void checkUnique(String key, T item) {
+        if (!unique) return;
+        String value = valueExtractor.apply(item);
+        Set<String> keys = value != null ? entries.get(value) : null;
+        if (keys != null && !keys.contains(key)) {
+            throw new IllegalArgumentException("Duplicate " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Indexes an object stored under the given key, replacing its previous entry.
+     * Duplicates in a unique index are logged and skipped, so that existing data always loads.
+     */
+    void put(String key, T item) {
+        remove(key);
+        String value = valueExtractor.apply(item);
+        if (value == null) return;
+        Set<String> keys = entries.computeIfAbsent(value, v -> new LinkedHashSet<>());
+        if (unique && !keys.isEmpty()) {
+            LOGGER.log(Level.WARNING, "Duplicate {0} ignored in index: {1}", new Object[]{name, value});
+            return;
+        }
+        keys.add(key);
+        values.put(key, value);
+    }
+
+    /**
+     * Removes the entry of the object stored under the given key.
+     */
+    void remove(String key) {
+        String value = values.remove(key);
+        if (value == null) return;
+        Set<String> keys = entries.get(value);
+        keys.remove(key);
+        if (keys.isEmpty()) entries.remove(value);
+    }
+
+    void clear() {
+        entries.clear();
+        values.clear();
+    }
+
+    /**
+     * Returns a copy of the index content, to be saved outside the repository lock.
+     */
+    Map<String, List<String>> snapshot() {
+        Map<String, List<String>> copy = new HashMap<>(entries.size() * 2);
+        entries.forEach((value, keys) -> copy.put(value, new ArrayList<>(keys)));
+        return copy;
+    }
+
+    /**
+     * Loads the persisted index if it was written for the current state of the data file.
+     *
+     * @param stamp the current stamp of the data file
+     * @param objectCount the number of objects in the repository
+     * @return true if the index was loaded, false if it is missing or stale
+     */
+    boolean load(long[] stamp, int objectCount) {
+        if (!file.exists()) return false;
+        Map<String, Set<String>> loaded = new HashMap<>();
+        Map<String, String> loadedValues = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readLong() != stamp[0] || in.readLong() != stamp[1] || in.readInt() != objectCount) {
+                return false;
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String value = in.readUTF();
+                int count = in.readInt();
+                Set<String> keys = new LinkedHashSet<>(count * 2);
+                for (int j = 0; j < count; j++) {
+                    String key = in.readUTF();
+                    keys.add(key);
+                    loadedValues.put(key, value);
+                }
+                loaded.put(value, keys);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Discarding unreadable index {0}: {1}", new Object[]{file.getAbsolutePath(), e.getMessage()});
+            return false;
+        }
+        clear();
+        entries.putAll(loaded);
+        values.putAll(loadedValues);
+        return true;
+    }
+
+    /**
+     * Writes an index snapshot stamped with the state of the data file it was taken from.
+     */
+    void save(Map<String, List<String>> snapshot, long[] stamp, int objectCount) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(stamp[0]);
+            out.writeLong(stamp[1]);
+            out.writeInt(objectCount);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, List<String>> entry : snapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (String key : entry.getValue()) {
+                    out.writeUTF(key);
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the stamp identifying the current state of a data file: its length and modification time.
+     */
+    static long[] stampOf(File dataFile) {
+        return new long[]{dataFile.length(), dataFile.lastModified()};
+    }
+}
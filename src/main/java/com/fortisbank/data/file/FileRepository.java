@@ -1,42 +1,667 @@
 package com.fortisbank.data.file;
 
 import com.fortisbank.data.dal_utils.FileManager;
+import com.fortisbank.data.dal_utils.RecordCodec;
+import com.fortisbank.data.dal_utils.WriteAheadJournal;
+import com.fortisbank.data.dal_utils.WriteAheadJournal.Operation;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Abstract class for managing file-based repositories.
+ * <p>
+ * The repository is resident: its file is loaded once into a keyed in-memory map and every read
+ * is served from memory. Every mutation is recorded in a {@link WriteAheadJournal} next to the data
+ * file and is durable when the mutating method returns; concurrent writers share a single fsync
+ * through the journal's group commit.
+ * <p>
+ * A background thread periodically writes a checkpoint: the whole map is encoded with the
+ * repository's {@link RecordCodec} into a new snapshot file, stamped with the last journal sequence
+ * number it includes, and atomically renamed over the previous one, after which the journal entries
+ * it includes are discarded. On startup the snapshot is loaded and only the journal entries written
+ * after it are replayed, so recovery time is proportional to the journal tail.
+ * <p>
+ * Objects returned by the read methods are the resident instances; changes to them must be
+ * written back through the repository so they are journaled. Repositories whose objects are
+ * modified before being written back, such as accounts, instead return and store copies made with
+ * {@link #copyOf(Object)}, so that a change is only seen by other readers once it is written.
+ * <p>
+ * Access to the resident state is coordinated by a {@link StampedLock}. Lookups of a single key are
+ * first attempted as optimistic reads that take no lock and are validated afterwards, so readers on
+ * several cores do not contend; index lookups, pages, full reads and checkpoints, which traverse
+ * collections that a writer may be restructuring, take the shared read lock, and mutations take the
+ * exclusive write lock and wait for journal durability after releasing it.
+ * <p>
+ * Subclasses can declare secondary indexes ({@link FileIndex}) on attributes of the stored objects.
+ * Indexes are updated with every change and saved next to the data file on checkpoint.
  *
  * @param <T> the type of objects to be stored in the repository
  */
 public abstract class FileRepository<T> {
+    private static final Logger LOGGER = Logger.getLogger(FileRepository.class.getName());
+
+    /**
+     * Whether journal commits are forced to disk. Disabled with {@code -Dfortisbank.journalFsync=false},
+     * which keeps the changes safe from a process crash but not from a power loss.
+     */
+    protected static final boolean FSYNC_JOURNAL = !"false".equalsIgnoreCase(System.getProperty("fortisbank.journalFsync"));
+
+    /**
+     * Whether appends to record logs, such as the transaction segments, are forced to disk. They are
+     * as durable as the journal unless set otherwise with {@code -Dfortisbank.fsync=true|false}.
+     */
+    protected static final boolean FSYNC_ON_APPEND = Boolean.parseBoolean(System.getProperty("fortisbank.fsync", Boolean.toString(FSYNC_JOURNAL)));
+
+    /**
+     * Checkpoint interval in milliseconds. Set with {@code -Dfortisbank.checkpointMillis=...}.
+     */
+    protected static final long CHECKPOINT_MILLIS = Long.getLong("fortisbank.checkpointMillis", 5000L);
+
+    private static final List<FileRepository<?>> REPOSITORIES = new CopyOnWriteArrayList<>();
+    private static final ScheduledExecutorService CHECKPOINTER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "file-repository-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(FileRepository::flushAll, "file-repository-shutdown-checkpoint"));
+    }
+
     protected final File file;
+    private final WriteAheadJournal<T> journal;
+    private final Function<T, String> keyExtractor;
+    private final RecordCodec<T> codec;
+    private final long checkpointIntervalMillis;
+
+    private final StampedLock lock = new StampedLock();
+    private final Object flushLock = new Object();
+    private final Map<String, T> store = new LinkedHashMap<>();
+    private final NavigableSet<String> keys = new TreeSet<>(); // the keys of the store in order, for paging
+    private final List<FileIndex<T>> indexes = new CopyOnWriteArrayList<>();
+    private boolean checkpointRequired; // the journal holds changes that are not in the snapshot
+    private boolean recovered; // journal entries were replayed over the snapshot on startup
+    private boolean indexesDirty; // an index was rebuilt and must be saved
 
     /**
-     * Constructs a FileRepository with the specified file.
+     * Constructs a resident FileRepository with the specified snapshot file.
      *
      * @param file the file to be used for storage
+     * @param keyExtractor function returning the unique key of a stored object
+     * @param codec the codec used to encode and decode stored objects
+     */
+    protected FileRepository(File file, Function<T, String> keyExtractor, RecordCodec<T> codec) {
+        this(file, keyExtractor, codec, CHECKPOINT_MILLIS);
+    }
+
+    /**
+     * Constructs a resident FileRepository. Checkpoints start once the constructed repository is
+     * passed to {@link #register(FileRepository)}.
+     *
+     * @param file the snapshot file to be used for storage; the journal is kept next to it
+     * @param keyExtractor function returning the unique key of a stored object
+     * @param codec the codec used to encode and decode stored objects
+     * @param checkpointIntervalMillis the checkpoint interval in milliseconds
+     */
+    protected FileRepository(File file, Function<T, String> keyExtractor, RecordCodec<T> codec,
+                             long checkpointIntervalMillis) {
+        this.file = file;
+        this.keyExtractor = keyExtractor;
+        this.codec = codec;
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+        this.journal = new WriteAheadJournal<>(new File(file.getPath() + ".journal"), codec, FSYNC_JOURNAL);
+        load();
+    }
+
+    /**
+     * Schedules the periodic checkpoints of a repository and includes it in {@link #flushAll()}.
+     * Called once the repository is fully constructed, so that the checkpointing thread never sees
+     * a subclass whose constructor has not completed.
+     *
+     * @param repository the constructed repository
+     * @param <R> the type of the repository
+     * @return the repository
      */
-    protected FileRepository(File file) {
-        this.file = file; // Set this.file to file (file path)
+    static <R extends FileRepository<?>> R register(R repository) {
+        FileRepository<?> registered = repository;
+        REPOSITORIES.add(registered);
+        CHECKPOINTER.scheduleWithFixedDelay(registered::flushQuietly, registered.checkpointIntervalMillis,
+                registered.checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+        return repository;
     }
 
     /**
-     * Reads all objects from the file.
+     * Reads all objects from the resident store.
      *
-     * @return a list of objects read from the file
+     * @return a new list holding every stored object
      */
     protected List<T> readAll() {
-        return FileManager.readListFromFile(file); // Call FileManager.readListFromFile() with file as argument
+        long stamp = lock.readLock();
+        try {
+            return new ArrayList<>(store.values());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Passes every object of the resident store to an action, without copying the store. The read
+     * lock is held meanwhile, so the action should be short, such as adding to an aggregate.
+     *
+     * @param action the action to run on each stored object
+     */
+    protected void forEach(Consumer<? super T> action) {
+        long stamp = lock.readLock();
+        try {
+            store.values().forEach(action);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the objects whose keys follow the given one, in key order.
+     *
+     * @param afterKey the key after which the page starts, or null to start with the first key
+     * @param limit the maximum number of objects to return
+     * @return the objects of the page
+     */
+    protected List<T> readPage(String afterKey, int limit) {
+        return readLocked(() -> {
+            List<T> page = new ArrayList<>(Math.min(limit, store.size()));
+            for (String key : afterKey != null ? keys.tailSet(afterKey, false) : keys) {
+                if (page.size() == limit) break;
+                page.add(store.get(key));
+            }
+            return page;
+        });
+    }
+
+    /**
+     * Returns the number of stored objects.
+     *
+     * @return the number of objects in the resident store
+     */
+    protected int size() {
+        return read(store::size);
     }
 
     /**
-     * Writes a list of objects to the file.
+     * Replaces the content of the repository with the given list.
      *
-     * @param list the list of objects to write to the file
+     * @param list the objects the repository should contain
      */
     protected void writeAll(List<T> list) {
-        FileManager.writeListToFile(file, list); // Call FileManager.writeListToFile() with file and list as arguments
+        CompletableFuture<Long> commit;
+        long stamp = lock.writeLock();
+        try {
+            store.clear();
+            keys.clear();
+            for (FileIndex<T> index : indexes) {
+                index.clear();
+            }
+            commit = journal.submit(Operation.CLEAR, null, null);
+            for (T item : list) {
+                commit = put(item);
+            }
+            checkpointRequired = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        WriteAheadJournal.await(commit);
+    }
+
+    /**
+     * Returns the object stored under the given key.
+     *
+     * @param key the key of the object
+     * @return the stored object, or null if none exists
+     */
+    protected T findById(String key) {
+        return read(() -> store.get(key));
+    }
+
+    /**
+     * Returns whether an object is stored under the given key.
+     *
+     * @param key the key of the object
+     * @return true if the object exists, false otherwise
+     */
+    protected boolean exists(String key) {
+        return read(() -> store.containsKey(key));
+    }
+
+    /**
+     * Returns a copy of an object, made by encoding and decoding it with the repository's codec.
+     *
+     * @param item the object to copy
+     * @return the copy
+     * @throws UncheckedIOException if the object cannot be encoded or decoded
+     */
+    protected T copyOf(T item) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            codec.encode(item, out);
+            out.flush();
+            return codec.decode(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error copying " + codec.name() + " record", e);
+        }
+    }
+
+    /**
+     * Declares a unique secondary index. The persisted index is loaded if it is up to date with
+     * the data file, otherwise it is rebuilt from the resident objects.
+     *
+     * @param name the name of the index, used for its file name
+     * @param valueExtractor function returning the indexed value of an object, or null to leave it unindexed
+     * @return the index, to be passed to {@link #findByIndex(FileIndex, String)}
+     */
+    protected FileIndex<T> addUniqueIndex(String name, Function<T, String> valueExtractor) {
+        return registerIndex(new FileIndex<>(name, true, valueExtractor, file));
+    }
+
+    /**
+     * Declares a non-unique secondary index. The persisted index is loaded if it is up to date with
+     * the data file, otherwise it is rebuilt from the resident objects.
+     *
+     * @param name the name of the index, used for its file name
+     * @param valueExtractor function returning the indexed value of an object, or null to leave it unindexed
+     * @return the index, to be passed to {@link #findAllByIndex(FileIndex, String)}
+     */
+    protected FileIndex<T> addIndex(String name, Function<T, String> valueExtractor) {
+        return registerIndex(new FileIndex<>(name, false, valueExtractor, file));
+    }
+
+    /**
+     * Returns the object with the given value in a unique index.
+     *
+     * @param index the index to search
+     * @param value the indexed value
+     * @return the object, or null if none has this value
+     */
+    protected T findByIndex(FileIndex<T> index, String value) {
+        return readLocked(() -> {
+            for (String key : index.get(value)) {
+                return store.get(key);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Returns the objects with the given value in an index.
+     *
+     * @param index the index to search
+     * @param value the indexed value
+     * @return the objects with this value, in storage order
+     */
+    protected List<T> findAllByIndex(FileIndex<T> index, String value) {
+        return readLocked(() -> {
+            List<T> result = new ArrayList<>();
+            for (String key : index.get(value)) {
+                result.add(store.get(key));
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Inserts or replaces an object.
+     *
+     * @param item the object to store
+     */
+    protected void save(T item) {
+        append(List.of(item));
+    }
+
+    /**
+     * Inserts or replaces objects. Returns once the change is durable in the journal.
+     *
+     * @param items the objects to store
+     * @throws IllegalArgumentException if an object duplicates a value of a unique index
+     */
+    protected void append(Collection<? extends T> items) {
+        if (items.isEmpty()) return;
+        CompletableFuture<Long> commit = null;
+        long stamp = lock.writeLock();
+        try {
+            for (T item : items) {
+                String key = keyExtractor.apply(item);
+                for (FileIndex<T> index : indexes) {
+                    index.checkUnique(key, item);
+                }
+            }
+            for (T item : items) {
+                commit = put(item);
+            }
+            checkpointRequired = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        WriteAheadJournal.await(commit);
+    }
+
+    /**
+     * Replaces an object only if one is already stored under its key. The check and the write are
+     * atomic, so an object deleted concurrently is not brought back.
+     * Returns once the change is durable in the journal.
+     *
+     * @param item the new version of the object
+     * @return true if the object was replaced, false if none is stored under its key
+     * @throws IllegalArgumentException if the object duplicates a value of a unique index
+     */
+    protected boolean replace(T item) {
+        CompletableFuture<Long> commit;
+        String key = keyExtractor.apply(item);
+        long stamp = lock.writeLock();
+        try {
+            if (!store.containsKey(key)) {
+                return false;
+            }
+            for (FileIndex<T> index : indexes) {
+                index.checkUnique(key, item);
+            }
+            commit = put(item);
+            checkpointRequired = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        WriteAheadJournal.await(commit);
+        return true;
+    }
+
+    /**
+     * Replaces the objects already stored under their keys, in one journal commit; objects not
+     * stored are skipped. Returns once the change is durable in the journal.
+     *
+     * @param items the new versions of the objects
+     * @return the number of objects replaced
+     * @throws IllegalArgumentException if an object duplicates a value of a unique index
+     */
+    protected int replaceAll(Collection<? extends T> items) {
+        CompletableFuture<Long> commit = null;
+        int replaced = 0;
+        long stamp = lock.writeLock();
+        try {
+            for (T item : items) {
+                String key = keyExtractor.apply(item);
+                if (!store.containsKey(key)) continue;
+                for (FileIndex<T> index : indexes) {
+                    index.checkUnique(key, item);
+                }
+            }
+            for (T item : items) {
+                if (!store.containsKey(keyExtractor.apply(item))) continue;
+                commit = put(item);
+                replaced++;
+            }
+            if (replaced > 0) {
+                checkpointRequired = true;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (commit != null) {
+            WriteAheadJournal.await(commit);
+        }
+        return replaced;
+    }
+
+    /**
+     * Replaces the objects already stored under their keys, in one journal commit, if every stored
+     * object passes a check against its new version; objects not stored are skipped. The checks, the
+     * preparation of the new versions and the write are atomic. Returns once the change is durable in
+     * the journal.
+     *
+     * @param items the new versions of the objects
+     * @param check tests a stored object and its new version
+     * @param prepare applied to each new version once every check has passed, before it is written
+     * @return false if a check failed, in which case nothing is written
+     * @throws IllegalArgumentException if an object duplicates a value of a unique index
+     */
+    protected boolean replaceAllIf(Collection<? extends T> items, BiPredicate<? super T, ? super T> check,
+                                   Consumer<? super T> prepare) {
+        CompletableFuture<Long> commit = null;
+        long stamp = lock.writeLock();
+        try {
+            for (T item : items) {
+                String key = keyExtractor.apply(item);
+                T stored = store.get(key);
+                if (stored == null) continue;
+                if (!check.test(stored, item)) {
+                    return false;
+                }
+                for (FileIndex<T> index : indexes) {
+                    index.checkUnique(key, item);
+                }
+            }
+            for (T item : items) {
+                if (!store.containsKey(keyExtractor.apply(item))) continue;
+                prepare.accept(item);
+                commit = put(item);
+                checkpointRequired = true;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (commit != null) {
+            WriteAheadJournal.await(commit);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the object stored under the given key. Returns once the change is durable in the journal.
+     *
+     * @param key the key of the object to remove
+     * @return true if an object was removed, false otherwise
+     */
+    protected boolean remove(String key) {
+        CompletableFuture<Long> commit;
+        long stamp = lock.writeLock();
+        try {
+            if (store.remove(key) == null) {
+                return false;
+            }
+            keys.remove(key);
+            for (FileIndex<T> index : indexes) {
+                index.remove(key);
+            }
+            commit = journal.submit(Operation.DELETE, key, null);
+            checkpointRequired = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        WriteAheadJournal.await(commit);
+        return true;
+    }
+
+    /**
+     * Writes a checkpoint: a new snapshot of the resident objects, replacing the data file atomically,
+     * after which the journal entries it includes are discarded and the indexes are saved.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<T> items;
+            long lsn;
+            int objectCount;
+            List<Map<String, List<String>>> indexSnapshots = new ArrayList<>();
+            // Writers are held off while the state is captured; readers are not. The flags are only
+            // written under the write lock or, here, by the single checkpointing thread.
+            long stamp = lock.readLock();
+            try {
+                if (!checkpointRequired && !indexesDirty) {
+                    return;
+                }
+                items = new ArrayList<>(store.values());
+                lsn = journal.lastLsn();
+                objectCount = store.size();
+                for (FileIndex<T> index : indexes) {
+                    indexSnapshots.add(index.snapshot());
+                }
+                checkpointRequired = false;
+                indexesDirty = false;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            try {
+                FileManager.writeSnapshot(file, new FileManager.Snapshot<>(items, lsn), codec);
+                journal.discardUpTo(lsn);
+            } catch (IOException | RuntimeException e) {
+                long writeStamp = lock.writeLock();
+                try {
+                    // The journal still holds every change; retry on the next checkpoint
+                    checkpointRequired = true;
+                    indexesDirty = true;
+                } finally {
+                    lock.unlockWrite(writeStamp);
+                }
+                if (e instanceof IOException io) {
+                    throw new UncheckedIOException("Error truncating journal of " + file.getAbsolutePath(), io);
+                }
+                throw (RuntimeException) e;
+            }
+            saveIndexes(indexSnapshots, objectCount);
+        }
+    }
+
+    /**
+     * Flushes every resident repository. Called on shutdown.
+     */
+    public static void flushAll() {
+        for (FileRepository<?> repository : REPOSITORIES) {
+            repository.flushQuietly();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Checkpoint failed for " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private FileIndex<T> registerIndex(FileIndex<T> index) {
+        long stamp = lock.writeLock();
+        try {
+            // After a recovery the persisted index misses the replayed changes
+            if (recovered || !index.load(FileIndex.stampOf(file), store.size())) {
+                for (Map.Entry<String, T> entry : store.entrySet()) {
+                    index.put(entry.getKey(), entry.getValue());
+                }
+                indexesDirty = true;
+            }
+            indexes.add(index);
+            return index;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Runs a lookup of a single key in the store, first optimistically without locking and, if a
+     * writer intervened, again under the read lock. The optimistic attempt may observe the map in an
+     * inconsistent state; its result, or any exception it throws, is discarded unless the stamp is
+     * still valid once it completes. It must not iterate over a collection, which a concurrent
+     * write could keep it from finishing; such reads use {@link #readLocked(Supplier)}.
+     */
+    private <R> R read(Supplier<R> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                R result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // A concurrent write was observed half-way; retried below
+            }
+        }
+        return readLocked(reader);
+    }
+
+    private <R> R readLocked(Supplier<R> reader) {
+        long stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private CompletableFuture<Long> put(T item) {
+        String key = keyExtractor.apply(item);
+        store.put(key, item);
+        keys.add(key);
+        for (FileIndex<T> index : indexes) {
+            index.put(key, item);
+        }
+        return journal.submit(Operation.PUT, key, item);
+    }
+
+    private void saveIndexes(List<Map<String, List<String>>> snapshots, int objectCount) {
+        long[] stamp = FileIndex.stampOf(file);
+        for (int i = 0; i < snapshots.size(); i++) {
+            try {
+                indexes.get(i).save(snapshots.get(i), stamp, objectCount);
+            } catch (IOException e) {
+                // A missing or stale index is rebuilt on the next start
+                LOGGER.log(Level.WARNING, "Error saving index for " + file.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    private void load() {
+        FileManager.Snapshot<T> snapshot = FileManager.readSnapshot(file, codec);
+        for (T item : snapshot.records()) {
+            store.put(keyExtractor.apply(item), item);
+        }
+        List<WriteAheadJournal.Entry<T>> tail;
+        try {
+            tail = journal.recover(snapshot.lsn());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error replaying journal of " + file.getAbsolutePath(), e);
+        }
+        for (WriteAheadJournal.Entry<T> entry : tail) {
+            switch (entry.operation()) {
+                case PUT -> store.put(entry.key(), entry.value());
+                case DELETE -> store.remove(entry.key());
+                case CLEAR -> store.clear();
+            }
+        }
+        keys.addAll(store.keySet());
+        if (!tail.isEmpty()) {
+            LOGGER.log(Level.INFO, "Recovered {0} journal entries for {1}", new Object[]{tail.size(), file.getAbsolutePath()});
+            recovered = true;
+            checkpointRequired = true;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,134 @@
+package com.fortisbank.data.file;
+
+import com.fortisbank.contracts.exceptions.UnitOfWorkException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit of work of the file repositories.
+ * <p>
+ * While a unit of work runs on a thread, the file repositories stage their writes in it instead of
+ * writing them. When the work returns, the staged writes are written with one batch per repository:
+ * the accounts of a transfer are written in a single journal commit and its transactions in a single
+ * segment append. When the work throws, the staged writes are discarded and nothing is written.
+ * <p>
+ * Batches whose versions are checked when written, the accounts, are staged with
+ * {@link #stageVersioned} and written first, whatever the order in which the work staged them; the
+ * append-only stores, such as transactions, balance snapshots and idempotency keys, follow in staging
+ * order. A version conflict therefore fails the unit of work before anything is written, and the work
+ * can be retried on fresh accounts. The batches are separate files: should a later batch fail to be
+ * written after the accounts were, which only an I/O error can cause, the unit of work fails with a
+ * {@link UnitOfWorkException} saying so and is not retried.
+ * <p>
+ * Staged objects are written as they are when the work returns. Repositories that hand out copies,
+ * such as accounts, keep returning the stored state until then, so a unit of work that throws leaves
+ * them unchanged; objects inserted by the work are not found by queries until it is committed.
+ */
+public final class FileUnitOfWork {
+    private static final ThreadLocal<FileUnitOfWork> CURRENT = new ThreadLocal<>();
+
+    private final Map<Object, Batch<?>> versioned = new LinkedHashMap<>(); // by repository, in staging order
+    private final Map<Object, Batch<?>> batches = new LinkedHashMap<>();
+
+    private FileUnitOfWork() {
+    }
+
+    /**
+     * Runs work as a unit of work. A unit of work started inside another joins it.
+     *
+     * @param work the work to run
+     * @throws UnitOfWorkException if a staged batch could not be written
+     */
+    public static void run(Runnable work) throws UnitOfWorkException {
+        if (CURRENT.get() != null) {
+            work.run();
+            return;
+        }
+        FileUnitOfWork unit = new FileUnitOfWork();
+        CURRENT.set(unit);
+        try {
+            work.run();
+        } finally {
+            CURRENT.remove();
+        }
+        unit.commit();
+    }
+
+    /**
+     * Returns the unit of work running on the current thread.
+     *
+     * @return the unit of work, or null if none is running
+     */
+    static FileUnitOfWork current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Stages the write of an object. Staging an object again under the same key replaces it.
+     *
+     * @param repository the repository writing the object, which identifies its batch
+     * @param key the key of the object in the repository
+     * @param item the object to write
+     * @param writer writes the batch of the repository on commit
+     */
+    <T> void stage(Object repository, String key, T item, Writer<T> writer) {
+        stage(batches, repository, key, item, writer);
+    }
+
+    /**
+     * Stages the write of an object whose version is checked by the writer, which writes nothing if
+     * a check fails. Versioned batches are written before all the others.
+     *
+     * @param repository the repository writing the object, which identifies its batch
+     * @param key the key of the object in the repository
+     * @param item the object to write
+     * @param writer checks the versions of the repository's batch and writes it on commit
+     */
+    <T> void stageVersioned(Object repository, String key, T item, Writer<T> writer) {
+        stage(versioned, repository, key, item, writer);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void stage(Map<Object, Batch<?>> batches, Object repository, String key, T item, Writer<T> writer) {
+        Batch<T> batch = (Batch<T>) batches.computeIfAbsent(repository, r -> new Batch<>(writer));
+        batch.items.put(key, item);
+    }
+
+    private void commit() throws UnitOfWorkException {
+        List<Batch<?>> ordered = new ArrayList<>(versioned.values());
+        ordered.addAll(batches.values());
+        for (int written = 0; written < ordered.size(); written++) {
+            try {
+                ordered.get(written).write();
+            } catch (Exception e) {
+                throw new UnitOfWorkException(written == 0
+                        ? "Failed to commit unit of work."
+                        : "Failed to commit unit of work after writing " + written + " of " + ordered.size() + " batches.", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the staged objects of one repository.
+     */
+    @FunctionalInterface
+    interface Writer<T> {
+        void write(List<T> items) throws Exception;
+    }
+
+    private static final class Batch<T> {
+        private final Writer<T> writer;
+        private final Map<String, T> items = new LinkedHashMap<>();
+
+        private Batch(Writer<T> writer) {
+            this.writer = writer;
+        }
+
+        private void write() throws Exception {
+            writer.write(new ArrayList<>(items.values()));
+        }
+    }
+}
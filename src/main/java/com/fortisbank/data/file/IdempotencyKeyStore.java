@@ -0,0 +1,48 @@
+package com.fortisbank.data.file;
+
+import com.fortisbank.contracts.models.transactions.IdempotencyRecord;
+import com.fortisbank.data.file.codec.IdempotencyRecordCodec;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Persisted dedupe index of the transactions executed with an idempotency key, keyed by that key.
+ * Inside a {@link FileUnitOfWork} a record is staged and written with the transaction it belongs to.
+ */
+class IdempotencyKeyStore extends FileRepository<IdempotencyRecord> {
+
+    IdempotencyKeyStore(File file) {
+        super(file, IdempotencyRecord::key, new IdempotencyRecordCodec());
+    }
+
+    void add(IdempotencyRecord record) {
+        FileUnitOfWork unit = FileUnitOfWork.current();
+        if (unit == null) {
+            save(record);
+            return;
+        }
+        unit.stage(this, record.key(), record, this::append);
+    }
+
+    IdempotencyRecord find(String key) {
+        return findById(key);
+    }
+
+    /**
+     * Removes the records created before a date.
+     *
+     * @param cutoff the creation date of the oldest record kept
+     * @return the number of records removed
+     */
+    int removeBefore(Date cutoff) {
+        List<String> expired = new ArrayList<>();
+        forEach(record -> {
+            if (record.createdAt().before(cutoff)) expired.add(record.key());
+        });
+        expired.forEach(this::remove);
+        return expired.size();
+    }
+}
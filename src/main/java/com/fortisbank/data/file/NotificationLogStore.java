@@ -0,0 +1,367 @@
+package com.fortisbank.data.file;
+
+import com.fortisbank.contracts.models.others.Notification;
+import com.fortisbank.data.dal_utils.RecordCodec;
+import com.fortisbank.data.dal_utils.RecordLog;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Log-structured store for notifications.
+ * <p>
+ * Every change is a single record appended to the active segment: a full record when a notification
+ * is created, a small delta when it is marked as seen and a tombstone when it is deleted. Segments are
+ * {@link RecordLog}s named {@code NNNNNN.nlog}; a new one is started once the active segment reaches the
+ * maximum segment size. The current state is resident and rebuilt by replaying the segments in order.
+ * <p>
+ * Sealed segments accumulate dead records as notifications are marked as seen or deleted. Compaction
+ * merges all sealed segments into one holding a single full record per live notification, replacing
+ * the oldest sealed segment atomically and then deleting the others oldest first, so that replaying
+ * the files left by a crash at any point still yields the current state.
+ */
+public class NotificationLogStore implements FileCompactor.Compactable {
+
+    private static final Logger LOGGER = Logger.getLogger(NotificationLogStore.class.getName());
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{6})\\.nlog");
+
+    private final File directory;
+    private final RecordCodec<LogRecord> codec;
+    private final boolean fsync;
+    private final long maxSegmentBytes;
+
+    private final Map<String, Notification> notifications = new LinkedHashMap<>();
+    private final Map<String, Set<String>> byRecipient = new HashMap<>();
+    private final Map<String, Segment> locations = new HashMap<>(); // notification id -> segment of its full record
+    private final NavigableMap<Integer, Segment> segments = new TreeMap<>();
+    private final Object compactionLock = new Object();
+    private Segment active;
+
+    /**
+     * Opens the store in the given directory and replays its segments.
+     *
+     * @param directory the directory holding the segment files
+     * @param codec the codec of the notifications
+     * @param fsync whether every append is forced to the storage device
+     * @param maxSegmentBytes the size at which a new segment is started
+     * @throws IOException if the segments cannot be read
+     */
+    public NotificationLogStore(File directory, RecordCodec<Notification> codec, boolean fsync, long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.codec = new LogRecordCodec(codec);
+        this.fsync = fsync;
+        this.maxSegmentBytes = maxSegmentBytes;
+        open();
+    }
+
+    /**
+     * Returns whether the store holds no segment at all.
+     *
+     * @return true if no notification was ever stored
+     */
+    public synchronized boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * Returns the notification with the given id.
+     *
+     * @param id the notification id
+     * @return the notification, or null if it does not exist
+     */
+    public synchronized Notification get(String id) {
+        return notifications.get(id);
+    }
+
+    /**
+     * Returns the notifications of a recipient, in the order they were created.
+     *
+     * @param recipientUserId the id of the recipient
+     * @return the recipient's notifications
+     */
+    public synchronized List<Notification> getByRecipient(String recipientUserId) {
+        List<Notification> result = new ArrayList<>();
+        for (String id : byRecipient.getOrDefault(recipientUserId, Set.of())) {
+            result.add(notifications.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * Returns one page of the notifications of a recipient, newest first, ordered by timestamp and then
+     * by id.
+     *
+     * @param recipientUserId the id of the recipient
+     * @param beforeMillis the timestamp of the last notification of the previous page, or null for the first page
+     * @param beforeId the id of the last notification of the previous page, or null for the first page
+     * @param limit the maximum number of notifications to return
+     * @return the notifications of the page
+     */
+    public synchronized List<Notification> getPageByRecipient(String recipientUserId, Long beforeMillis, String beforeId, int limit) {
+        List<Notification> result = new ArrayList<>();
+        for (String id : byRecipient.getOrDefault(recipientUserId, Set.of())) {
+            Notification notification = notifications.get(id);
+            long millis = notification.getTimestamp().getTime();
+            if (beforeMillis == null || millis < beforeMillis || (millis == beforeMillis && id.compareTo(beforeId) < 0)) {
+                result.add(notification);
+            }
+        }
+        result.sort(Comparator.comparing(Notification::getTimestamp).thenComparing(Notification::getNotificationId).reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * Inserts or replaces notifications by appending their full records.
+     *
+     * @param items the notifications to store
+     * @throws IOException if the records cannot be written
+     */
+    public synchronized void putAll(Collection<? extends Notification> items) throws IOException {
+        List<LogRecord> records = new ArrayList<>(items.size());
+        for (Notification notification : items) {
+            records.add(new LogRecord(Kind.PUT, notification.getNotificationId(), notification));
+        }
+        append(records);
+    }
+
+    /**
+     * Marks a notification as seen by appending a delta record.
+     *
+     * @param id the notification id
+     * @return true if the notification exists, false otherwise
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized boolean markSeen(String id) throws IOException {
+        Notification notification = notifications.get(id);
+        if (notification == null) return false;
+        if (!notification.isRead()) {
+            append(List.of(new LogRecord(Kind.SEEN, id, null)));
+        }
+        return true;
+    }
+
+    /**
+     * Deletes a notification by appending a tombstone.
+     *
+     * @param id the notification id
+     * @return true if the notification existed, false otherwise
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized boolean delete(String id) throws IOException {
+        if (!notifications.containsKey(id)) return false;
+        append(List.of(new LogRecord(Kind.DELETE, id, null)));
+        return true;
+    }
+
+    /**
+     * Merges the sealed segments if the share of dead records among them is at least the given ratio.
+     * The live notifications are captured under the store lock; the merged segment is written without
+     * holding it, and the lock is taken again only to swap the files. Changes made in the meantime go to
+     * the active segment, which is replayed after the merged one.
+     *
+     * @param garbageRatio the share of dead records above which the sealed segments are merged
+     * @return the report of the run, or null if no compaction was needed
+     * @throws IOException if the merged segment cannot be written; the store is left unchanged
+     */
+    @Override
+    public CompactionReport compact(double garbageRatio) throws IOException {
+        synchronized (compactionLock) {
+            long start = System.nanoTime();
+            List<Segment> sealed;
+            List<LogRecord> live = new ArrayList<>();
+            long bytesBefore = 0;
+            synchronized (this) {
+                if (active == null) return null;
+                sealed = new ArrayList<>(segments.headMap(active.id).values());
+                if (sealed.isEmpty()) return null;
+                long records = 0;
+                long liveRecords = 0;
+                for (Segment segment : sealed) {
+                    records += segment.records;
+                    liveRecords += segment.liveRecords;
+                    bytesBefore += segment.log.getFile().length();
+                }
+                long dead = records - liveRecords;
+                if (dead == 0 || (double) dead / records < garbageRatio) {
+                    return null;
+                }
+                for (Notification notification : notifications.values()) { // keeps the creation order
+                    String id = notification.getNotificationId();
+                    if (locations.get(id).id < active.id) {
+                        live.add(new LogRecord(Kind.PUT, id, notification));
+                    }
+                }
+            }
+            long pause = System.nanoTime() - start;
+
+            Segment target = sealed.getFirst();
+            File merged = new File(directory, target.log.getFile().getName() + ".compact");
+            RecordLog<LogRecord> mergedLog = new RecordLog<>(merged, true, codec);
+            mergedLog.rewrite(live);
+            long bytesAfter = merged.length();
+
+            long swapStart = System.nanoTime();
+            synchronized (this) {
+                for (Segment segment : sealed) {
+                    segment.log.close();
+                }
+                Files.move(merged.toPath(), target.log.getFile().toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                for (Segment segment : sealed.subList(1, sealed.size())) {
+                    Files.deleteIfExists(segment.log.getFile().toPath()); // oldest first, see class comment
+                    segments.remove(segment.id);
+                }
+                target.records = live.size();
+                target.liveRecords = 0;
+                Set<Segment> compacted = new HashSet<>(sealed);
+                for (LogRecord record : live) {
+                    if (compacted.contains(locations.get(record.id()))) {
+                        locations.put(record.id(), target); // not rewritten or deleted since it was captured
+                        target.liveRecords++;
+                    }
+                }
+            }
+            pause += System.nanoTime() - swapStart;
+            return new CompactionReport("notifications", sealed.size(), bytesBefore, bytesAfter,
+                    Duration.ofNanos(pause), Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Closes the segment files.
+     */
+    public synchronized void close() {
+        for (Segment segment : segments.values()) {
+            segment.log.close();
+        }
+    }
+
+    private void append(List<LogRecord> records) throws IOException {
+        if (active == null || active.log.getFile().length() >= maxSegmentBytes) {
+            int id = active == null ? 0 : active.id + 1;
+            active = new Segment(id, new RecordLog<>(new File(directory, String.format("%06d.nlog", id)), fsync, codec));
+            segments.put(id, active);
+        }
+        active.log.appendAll(records);
+        for (LogRecord record : records) {
+            apply(record, active);
+        }
+    }
+
+    private void apply(LogRecord record, Segment segment) {
+        segment.records++;
+        switch (record.kind()) {
+            case PUT -> {
+                Notification previous = notifications.put(record.id(), record.notification());
+                if (previous != null) unindex(record.id(), previous);
+                byRecipient.computeIfAbsent(record.notification().getRecipientUserId(), r -> new LinkedHashSet<>()).add(record.id());
+                Segment previousSegment = locations.put(record.id(), segment);
+                if (previousSegment != null) previousSegment.liveRecords--;
+                segment.liveRecords++;
+            }
+            case SEEN -> {
+                Notification notification = notifications.get(record.id());
+                if (notification != null) notification.setRead(true);
+            }
+            case DELETE -> {
+                Notification previous = notifications.remove(record.id());
+                if (previous != null) unindex(record.id(), previous);
+                Segment previousSegment = locations.remove(record.id());
+                if (previousSegment != null) previousSegment.liveRecords--;
+            }
+        }
+    }
+
+    private void unindex(String id, Notification notification) {
+        Set<String> ids = byRecipient.get(notification.getRecipientUserId());
+        if (ids == null) return;
+        ids.remove(id);
+        if (ids.isEmpty()) byRecipient.remove(notification.getRecipientUserId());
+    }
+
+    private void open() throws IOException {
+        directory.mkdirs();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list segment directory: " + directory.getAbsolutePath());
+        }
+        for (File file : files) {
+            Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+            if (matcher.matches()) {
+                int id = Integer.parseInt(matcher.group(1));
+                segments.put(id, new Segment(id, new RecordLog<>(file, fsync, codec)));
+            } else if (file.getName().endsWith(".compact") || file.getName().endsWith(".tmp")) {
+                Files.delete(file.toPath()); // unfinished compaction, the original segments are intact
+            }
+        }
+        for (Segment segment : segments.values()) {
+            for (LogRecord record : segment.log.replay()) {
+                apply(record, segment);
+            }
+        }
+        active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        LOGGER.log(Level.INFO, "Replayed {0} notification segments", segments.size());
+    }
+
+    private enum Kind { PUT, SEEN, DELETE }
+
+    private record LogRecord(Kind kind, String id, Notification notification) {
+    }
+
+    /**
+     * One segment file and its record counts, used to compute the garbage ratio.
+     */
+    private static final class Segment {
+        private final int id;
+        private final RecordLog<LogRecord> log;
+        private long records;
+        private long liveRecords; // full records that still hold the current state of a notification
+
+        private Segment(int id, RecordLog<LogRecord> log) {
+            this.id = id;
+            this.log = log;
+        }
+    }
+
+    /**
+     * Encodes log records as a kind byte followed by the full notification or the notification id.
+     */
+    private record LogRecordCodec(RecordCodec<Notification> codec) implements RecordCodec<LogRecord> {
+
+        @Override
+        public String name() {
+            return "notification-log";
+        }
+
+        @Override
+        public void encode(LogRecord record, DataOutput out) throws IOException {
+            out.writeByte(record.kind().ordinal());
+            if (record.kind() == Kind.PUT) {
+                codec.encode(record.notification(), out);
+            } else {
+                out.writeUTF(record.id());
+            }
+        }
+
+        @Override
+        public LogRecord decode(DataInput in) throws IOException {
+            int ordinal = in.readUnsignedByte();
+            if (ordinal >= Kind.values().length) {
+                throw new IOException("Unknown notification log record: " + ordinal);
+            }
+            Kind kind = Kind.values()[ordinal];
+            if (kind == Kind.PUT) {
+                Notification notification = codec.decode(in);
+                return new LogRecord(kind, notification.getNotificationId(), notification);
+            }
+            return new LogRecord(kind, in.readUTF(), null);
+        }
+    }
+}
@@ -1,24 +1,53 @@
 package com.fortisbank.data.file;
 
+import com.fortisbank.data.dal_utils.FileManager;
+import com.fortisbank.data.dal_utils.WriteAheadJournal;
+import com.fortisbank.data.file.codec.NotificationCodec;
 import com.fortisbank.contracts.models.others.Notification;
 import com.fortisbank.contracts.collections.NotificationList;
+import com.fortisbank.contracts.collections.Page;
 import com.fortisbank.contracts.exceptions.NotificationRepositoryException;
 import com.fortisbank.data.interfaces.INotificationRepository;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Repository class for managing notifications stored in a file.
- * Extends FileRepository and implements INotificationRepository.
+ * Repository class for managing notifications stored in files.
+ * Notifications are kept in a log-structured store (see {@link NotificationLogStore}): inserting,
+ * marking as seen and deleting each append one record, and the store is compacted in the background.
+ * Implements INotificationRepository.
  */
-public class NotificationRepositoryFile extends FileRepository<Notification> implements INotificationRepository {
+public class NotificationRepositoryFile implements INotificationRepository {
 
-    private static final File file = new File("data/notifications.ser");
+    private static final Logger LOGGER = Logger.getLogger(NotificationRepositoryFile.class.getName());
+    private static final File directory = new File("data/notifications");
+    private static final File legacyFile = new File("data/notifications.ser"); // older format, imported once
+    private static final long SEGMENT_BYTES = Long.getLong("fortisbank.notificationSegmentBytes", 1024L * 1024);
     private static NotificationRepositoryFile instance;
 
+    private final NotificationLogStore store;
+
     private NotificationRepositoryFile() {
-        super(file);
+        NotificationCodec codec = new NotificationCodec(
+                id -> CustomerRepositoryFile.getInstance().findById(id),
+                AccountRepositoryShardedFile::resolve);
+        try {
+            store = new NotificationLogStore(directory, codec, FileRepository.FSYNC_JOURNAL, SEGMENT_BYTES);
+            if (store.isEmpty()) {
+                importLegacy(codec);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening notification segments: " + directory.getAbsolutePath(), e);
+        }
+        FileCompactor.schedule("notifications", store);
     }
 
     public static synchronized NotificationRepositoryFile getInstance() {
@@ -31,23 +60,27 @@ public class NotificationRepositoryFile extends FileRepository<Notification> imp
     @Override
     public void insertNotification(Notification notification) throws NotificationRepositoryException {
         try {
-            List<Notification> notifications = readAll();
-            notifications.add(notification);
-            writeAll(notifications);
+            store.putAll(List.of(notification));
         } catch (Exception e) {
             throw new NotificationRepositoryException("Error inserting notification", e);
         }
     }
 
+    @Override
+    public void insertNotifications(Collection<Notification> notifications) throws NotificationRepositoryException {
+        try {
+            store.putAll(notifications);
+        } catch (Exception e) {
+            throw new NotificationRepositoryException("Error inserting " + notifications.size() + " notifications", e);
+        }
+    }
+
     @Override
     public void deleteNotification(String notificationId) throws NotificationRepositoryException {
         try {
-            List<Notification> notifications = readAll();
-            boolean removed = notifications.removeIf(n -> n.getNotificationId().equals(notificationId));
-            if (!removed) {
+            if (!store.delete(notificationId)) {
                 throw new NotificationRepositoryException("Notification with ID " + notificationId + " not found for deletion.");
             }
-            writeAll(notifications);
         } catch (Exception e) {
             throw new NotificationRepositoryException("Error deleting notification with ID: " + notificationId, e);
         }
@@ -56,19 +89,9 @@ public class NotificationRepositoryFile extends FileRepository<Notification> imp
     @Override
     public void markAsSeen(String notificationId) throws NotificationRepositoryException {
         try {
-            List<Notification> notifications = readAll();
-            boolean found = false;
-            for (Notification n : notifications) {
-                if (n.getNotificationId().equals(notificationId)) {
-                    n.setRead(true);
-                    found = true;
-                    break;
-                }
-            }
-            if (!found) {
+            if (!store.markSeen(notificationId)) {
                 throw new NotificationRepositoryException("Notification with ID " + notificationId + " not found to mark as seen.");
             }
-            writeAll(notifications);
         } catch (Exception e) {
             throw new NotificationRepositoryException("Error updating notification", e);
         }
@@ -77,26 +100,62 @@ public class NotificationRepositoryFile extends FileRepository<Notification> imp
     @Override
     public NotificationList getNotificationsByUserId(String userId) throws NotificationRepositoryException {
         try {
-            List<Notification> result = readAll().stream()
-                    .filter(n -> userId.equals(n.getRecipientUserId()))
-                    .toList();
-            return new NotificationList(result);
+            return new NotificationList(store.getByRecipient(userId));
         } catch (Exception e) {
             throw new NotificationRepositoryException("Error retrieving notifications for user: " + userId, e);
         }
     }
 
-
+    @Override
+    public Page<Notification> getNotificationsPageByUserId(String userId, String pageToken, int pageSize) throws NotificationRepositoryException {
+        try {
+            String[] before = Page.decodeToken(pageToken, 2);
+            List<Notification> notifications = before != null
+                    ? store.getPageByRecipient(userId, Long.parseLong(before[0]), before[1], pageSize + 1)
+                    : store.getPageByRecipient(userId, null, null, pageSize + 1);
+            return Page.of(notifications, pageSize,
+                    n -> new String[]{Long.toString(n.getTimestamp().getTime()), n.getNotificationId()});
+        } catch (Exception e) {
+            throw new NotificationRepositoryException("Error retrieving page of notifications for user: " + userId, e);
+        }
+    }
 
     @Override
     public Notification getNotificationById(String id) throws NotificationRepositoryException {
         try {
-            return readAll().stream()
-                    .filter(n -> n.getNotificationId().equals(id))
-                    .findFirst()
-                    .orElseThrow(() -> new NotificationRepositoryException("Notification with ID " + id + " not found."));
+            Notification notification = store.get(id);
+            if (notification == null) {
+                throw new NotificationRepositoryException("Notification with ID " + id + " not found.");
+            }
+            return notification;
         } catch (Exception e) {
             throw new NotificationRepositoryException("Error retrieving notification with ID: " + id, e);
         }
     }
+
+    /**
+     * Imports the notifications kept by older versions in a snapshot file and its journal.
+     */
+    private void importLegacy(NotificationCodec codec) throws IOException {
+        if (!legacyFile.exists() || legacyFile.length() == 0) {
+            return;
+        }
+        FileManager.Snapshot<Notification> snapshot = FileManager.readSnapshot(legacyFile, codec);
+        Map<String, Notification> notifications = new LinkedHashMap<>();
+        for (Notification notification : snapshot.records()) {
+            notifications.put(notification.getNotificationId(), notification);
+        }
+        try (WriteAheadJournal<Notification> journal = new WriteAheadJournal<>(
+                new File(legacyFile.getPath() + ".journal"), codec, false)) {
+            for (WriteAheadJournal.Entry<Notification> entry : journal.recover(snapshot.lsn())) {
+                switch (entry.operation()) {
+                    case PUT -> notifications.put(entry.key(), entry.value());
+                    case DELETE -> notifications.remove(entry.key());
+                    case CLEAR -> notifications.clear();
+                }
+            }
+        }
+        store.putAll(notifications.values());
+        LOGGER.log(Level.INFO, "Imported {0} notifications into segment files", notifications.size());
+    }
 }
@@ -0,0 +1,96 @@
+package com.fortisbank.data.file;
+
+import java.io.*;
+import java.util.Properties;
+
+/**
+ * Layout of the sharded file storage: the shard directory and the number of shards.
+ * <p>
+ * Data is assigned to a shard by a hash of the owning customer's id. The shard count is chosen with
+ * {@code -Dfortisbank.shards=...} (default 8) when the layout is first created, then recorded in the
+ * shard directory and reused, since changing it would move customers to other shards.
+ */
+final class ShardLayout {
+
+    static final File DIRECTORY = new File("data/shards");
+    private static final File LAYOUT_FILE = new File(DIRECTORY, "layout.properties");
+    private static final String SHARDS = "shards";
+    private static ShardLayout instance;
+
+    private final int count;
+    private final boolean created;
+
+    private ShardLayout(int count, boolean created) {
+        this.count = count;
+        this.created = created;
+    }
+
+    /**
+     * Returns the layout, creating and recording it on first use.
+     *
+     * @throws UncheckedIOException if the layout file cannot be read or written
+     */
+    static synchronized ShardLayout get() {
+        if (instance == null) {
+            instance = LAYOUT_FILE.exists() ? read() : create(Integer.getInteger("fortisbank.shards", 8));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the number of shards.
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Returns whether the layout was created by this process, in which case data from the
+     * unsharded files is imported.
+     */
+    boolean isNew() {
+        return created;
+    }
+
+    /**
+     * Returns the shard holding the data of a customer.
+     *
+     * @param customerId the customer id, or null for data without an owner
+     * @return the shard number, between 0 and {@link #count()} - 1
+     */
+    int shardOf(String customerId) {
+        return customerId == null ? 0 : Math.floorMod(customerId.hashCode(), count);
+    }
+
+    /**
+     * Returns the file or directory of a shard, e.g. {@code data/shards/accounts-03.ser}.
+     */
+    File shardFile(String prefix, int shard, String suffix) {
+        return new File(DIRECTORY, String.format("%s-%02d%s", prefix, shard, suffix));
+    }
+
+    private static ShardLayout read() {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(LAYOUT_FILE)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading shard layout: " + LAYOUT_FILE.getAbsolutePath(), e);
+        }
+        return new ShardLayout(Integer.parseInt(properties.getProperty(SHARDS)), false);
+    }
+
+    private static ShardLayout create(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Shard count must be positive: " + count);
+        }
+        Properties properties = new Properties();
+        properties.setProperty(SHARDS, Integer.toString(count));
+        DIRECTORY.mkdirs();
+        try (OutputStream out = new FileOutputStream(LAYOUT_FILE)) {
+            properties.store(out, "FortisBank shard layout, do not change once data is stored");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing shard layout: " + LAYOUT_FILE.getAbsolutePath(), e);
+        }
+        return new ShardLayout(count, true);
+    }
+}
@@ -0,0 +1,489 @@
+package com.fortisbank.data.file;
+
+import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.data.dal_utils.FileManager;
+import com.fortisbank.data.file.TransactionSegmentStore.RecordView;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Properties;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed cold tier of a {@link TransactionSegmentStore}, holding its transactions dated before the
+ * archive horizon, and the entry point for reading both tiers.
+ * <p>
+ * {@link #archiveBefore(LocalDate)} copies the store's records dated before a cutoff, unchanged and with
+ * their headers, into a new archive file named {@code NNNNNN.fba}, then removes them from the store.
+ * Records are grouped into blocks of about 64 KiB that are compressed separately, and an index at the
+ * end of the file holds the offset and date range of every block, so that a range query only inflates
+ * the blocks it overlaps. Archive files are never modified once written. Queries read the archive only
+ * when their range starts before the horizon.
+ * <p>
+ * The horizon is recorded in {@code archive.properties}, along with the last archive file and whether
+ * its records are still to be removed from the store. A run interrupted before the manifest was written
+ * is discarded, and one interrupted after it is completed, when the archive is opened again.
+ */
+public class TransactionArchive {
+
+    private static final Logger LOGGER = Logger.getLogger(TransactionArchive.class.getName());
+
+    private static final int FILE_MAGIC = 0x46424131; // "FBA1"
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = Integer.BYTES * 2;
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES * 3 + Integer.BYTES * 3; // offset, lengths, count, dates
+    private static final int FOOTER_SIZE = Long.BYTES + Integer.BYTES * 2;          // index offset, blocks, magic
+    private static final int BLOCK_BYTES = 64 * 1024;
+    private static final Pattern FILE_NAME = Pattern.compile("(\\d{6})\\.fba");
+
+    private static final String HORIZON = "horizon";
+    private static final String LAST_FILE = "lastFile";
+    private static final String PENDING = "pending";
+
+    private final File directory;
+    private final File manifest;
+    private final TransactionSegmentStore store;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final List<ArchiveFile> files = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock(); // queries read both tiers as of one horizon
+    private volatile LocalDate horizon;
+
+    /**
+     * Opens the archive of a store, completing or discarding an interrupted archive run.
+     *
+     * @param directory the directory holding the archive files
+     * @param store the store whose old records are archived
+     * @throws IOException if the archive cannot be read
+     */
+    public TransactionArchive(File directory, TransactionSegmentStore store) throws IOException {
+        this.directory = directory;
+        this.manifest = new File(directory, "archive.properties");
+        this.store = store;
+        open();
+    }
+
+    /**
+     * Returns the archive horizon: every transaction dated before it is in the archive.
+     *
+     * @return the horizon, or null if nothing was archived
+     */
+    public LocalDate horizon() {
+        return horizon;
+    }
+
+    /**
+     * Visits every live record dated within the given range, archived records first. The archive is
+     * only read when the range starts before the horizon. The view passed to the action is only valid
+     * during the call.
+     *
+     * @param start the first day of the range, or null for no lower bound
+     * @param end the last day of the range, or null for no upper bound
+     * @param action the action to apply to each record
+     * @throws IOException if a segment or archive file cannot be read
+     */
+    public void scan(LocalDate start, LocalDate end, Consumer<RecordView> action) throws IOException {
+        lock.readLock().lock();
+        try {
+            LocalDate current = horizon;
+            if (current != null && (start == null || start.isBefore(current))) {
+                scanArchive(start, end, action);
+            }
+            store.scan(start, end, action);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the months that may hold records in either tier, in order. A month of the archive is
+     * included when one of its blocks overlaps it.
+     *
+     * @return the months
+     */
+    public NavigableSet<YearMonth> months() {
+        lock.readLock().lock();
+        try {
+            NavigableSet<YearMonth> months = store.months();
+            for (ArchiveFile file : files) {
+                for (Block block : file.blocks) {
+                    YearMonth last = month(block.maxDate());
+                    for (YearMonth month = month(block.minDate()); !month.isAfter(last); month = month.plusMonths(1)) {
+                        months.add(month);
+                    }
+                }
+            }
+            return months;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the transaction with the given number, looking in the archive if it is not in the store.
+     *
+     * @param transactionNumber the transaction number
+     * @return the transaction, or null if it does not exist
+     * @throws IOException if a segment or archive file cannot be read
+     */
+    public Transaction find(String transactionNumber) throws IOException {
+        lock.readLock().lock();
+        try {
+            Transaction transaction = store.find(transactionNumber);
+            if (transaction != null || horizon == null) {
+                return transaction;
+            }
+            Transaction[] found = new Transaction[1];
+            long key = TransactionSegmentStore.key(transactionNumber);
+            scanArchive(null, null, view -> {
+                if (found[0] == null && view.idKey() == key) {
+                    Transaction candidate = view.decode();
+                    if (transactionNumber.equals(candidate.getTransactionNumber())) found[0] = candidate;
+                }
+            });
+            return found[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Moves the records of the store dated before the given day into a new archive file and advances
+     * the horizon to that day. The store is locked for the whole run, so that no record dated before
+     * the cutoff can be appended between the copy and the removal.
+     *
+     * @param cutoff the first day kept in the store
+     * @return the number of transactions archived, mirrors excluded
+     * @throws IOException if the archive file cannot be written or the records cannot be removed
+     */
+    public int archiveBefore(LocalDate cutoff) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (horizon != null && !cutoff.isAfter(horizon)) {
+                return 0;
+            }
+            int id = files.isEmpty() ? 0 : files.getLast().id + 1;
+            File file = new File(directory, String.format("%06d.fba", id));
+            synchronized (store) {
+                ArchiveWriter writer = new ArchiveWriter(new File(file.getPath() + ".tmp"));
+                try {
+                    store.scan(null, cutoff.minusDays(1), writer::add);
+                    writer.finish();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                } finally {
+                    writer.close();
+                }
+                if (writer.records == 0) {
+                    Files.delete(writer.file.toPath());
+                    writeManifest(cutoff, lastFileId(), false);
+                    horizon = cutoff;
+                    return 0;
+                }
+                Files.move(writer.file.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                files.add(readIndex(id, file));
+                writeManifest(cutoff, id, true);
+                horizon = cutoff;
+                store.removeBefore(cutoff);
+                writeManifest(cutoff, id, false);
+                LOGGER.log(Level.INFO, "Archived {0} transactions dated before {1} into {2} ({3} bytes from {4})",
+                        new Object[]{writer.owned, cutoff, file.getAbsolutePath(), file.length(), writer.rawBytes});
+                return writer.owned;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the archive files.
+     */
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (ArchiveFile file : files) {
+                file.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void scanArchive(LocalDate start, LocalDate end, Consumer<RecordView> action) throws IOException {
+        long from = start != null ? start.atStartOfDay(zone).toInstant().toEpochMilli() : Long.MIN_VALUE;
+        long until = end != null ? end.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() : Long.MAX_VALUE;
+        for (ArchiveFile file : files) {
+            for (Block block : file.blocks) {
+                if (block.maxDate < from || block.minDate >= until) continue;
+                ByteBuffer buffer = file.inflate(block);
+                int position = 0;
+                while (position < buffer.limit()) {
+                    RecordView view = store.view(buffer, position);
+                    position += view.size();
+                    long date = view.dateMillis();
+                    if (date >= from && date < until) {
+                        action.accept(view);
+                    }
+                }
+            }
+        }
+    }
+
+    private YearMonth month(long dateMillis) {
+        return YearMonth.from(Instant.ofEpochMilli(dateMillis).atZone(zone));
+    }
+
+    private int lastFileId() {
+        return files.isEmpty() ? -1 : files.getLast().id;
+    }
+
+    private void open() throws IOException {
+        directory.mkdirs();
+        Properties properties = new Properties();
+        if (manifest.exists()) {
+            try (InputStream in = new FileInputStream(manifest)) {
+                properties.load(in);
+            }
+        }
+        int lastFile = Integer.parseInt(properties.getProperty(LAST_FILE, "-1"));
+        File[] listed = directory.listFiles();
+        if (listed == null) {
+            throw new IOException("Cannot list archive directory: " + directory.getAbsolutePath());
+        }
+        List<File> archived = new ArrayList<>();
+        for (File file : listed) {
+            Matcher matcher = FILE_NAME.matcher(file.getName());
+            if (matcher.matches() && Integer.parseInt(matcher.group(1)) <= lastFile) {
+                archived.add(file);
+            } else if (matcher.matches() || file.getName().endsWith(".tmp")) {
+                Files.delete(file.toPath()); // unfinished run, its records are still in the store
+            }
+        }
+        archived.sort(null);
+        for (File file : archived) {
+            files.add(readIndex(Integer.parseInt(file.getName().substring(0, 6)), file));
+        }
+        String recorded = properties.getProperty(HORIZON);
+        horizon = recorded != null ? LocalDate.parse(recorded) : null;
+        if (horizon != null && Boolean.parseBoolean(properties.getProperty(PENDING))) {
+            store.removeBefore(horizon);
+            writeManifest(horizon, lastFile, false);
+            LOGGER.log(Level.INFO, "Completed interrupted archive run up to {0}", horizon);
+        }
+    }
+
+    private void writeManifest(LocalDate horizon, int lastFile, boolean pending) {
+        Properties properties = new Properties();
+        properties.setProperty(HORIZON, horizon.toString());
+        properties.setProperty(LAST_FILE, Integer.toString(lastFile));
+        properties.setProperty(PENDING, Boolean.toString(pending));
+        FileManager.writeAtomically(manifest, out -> properties.store(out, "FortisBank transaction archive"));
+    }
+
+    private ArchiveFile readIndex(int id, File file) throws IOException {
+        ArchiveFile archiveFile = new ArchiveFile(id, file);
+        FileChannel channel = archiveFile.channel();
+        long size = channel.size();
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        if (size < FILE_HEADER_SIZE + FOOTER_SIZE || channel.read(footer, size - FOOTER_SIZE) < FOOTER_SIZE
+                || footer.getInt(Long.BYTES + Integer.BYTES) != FILE_MAGIC) {
+            archiveFile.close();
+            throw new IOException("Not a transaction archive: " + file.getAbsolutePath());
+        }
+        long indexOffset = footer.getLong(0);
+        int blocks = footer.getInt(Long.BYTES);
+        ByteBuffer index = ByteBuffer.allocate(blocks * INDEX_ENTRY_SIZE);
+        while (index.hasRemaining()) {
+            if (channel.read(index, indexOffset + index.position()) < 0) {
+                throw new EOFException("Truncated archive index: " + file.getAbsolutePath());
+            }
+        }
+        index.flip();
+        for (int i = 0; i < blocks; i++) {
+            archiveFile.blocks.add(new Block(index.getLong(), index.getInt(), index.getInt(), index.getInt(),
+                    index.getLong(), index.getLong()));
+        }
+        return archiveFile;
+    }
+
+    /**
+     * Position and date range of one compressed block.
+     */
+    private record Block(long offset, int compressedLength, int rawLength, int records, long minDate, long maxDate) {
+    }
+
+    /**
+     * One archive file and its block index.
+     */
+    private static final class ArchiveFile {
+        private final int id;
+        private final File file;
+        private final List<Block> blocks = new ArrayList<>();
+        private FileChannel channel;
+
+        private ArchiveFile(int id, File file) {
+            this.id = id;
+            this.file = file;
+        }
+
+        private FileChannel channel() throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            }
+            return channel;
+        }
+
+        private ByteBuffer inflate(Block block) throws IOException {
+            ByteBuffer compressed = ByteBuffer.allocate(block.compressedLength());
+            while (compressed.hasRemaining()) {
+                if (channel().read(compressed, block.offset() + compressed.position()) < 0) {
+                    throw new EOFException("Truncated archive block: " + file.getAbsolutePath());
+                }
+            }
+            byte[] raw = new byte[block.rawLength()];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed.array());
+                int length = 0;
+                while (length < raw.length && !inflater.finished()) {
+                    int inflated = inflater.inflate(raw, length, raw.length - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                    length += inflated;
+                }
+                if (length != raw.length) {
+                    throw new IOException("Corrupt archive block at offset " + block.offset() + ": " + file.getAbsolutePath());
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt archive block at offset " + block.offset() + ": " + file.getAbsolutePath(), e);
+            } finally {
+                inflater.end();
+            }
+            return ByteBuffer.wrap(raw);
+        }
+
+        private void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Error closing archive file: {0}", file.getAbsolutePath());
+                }
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Writes the blocks, index and footer of a new archive file.
+     */
+    private static final class ArchiveWriter implements Closeable {
+        private final File file;
+        private final FileChannel channel;
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private final List<Block> index = new ArrayList<>();
+        private ByteBuffer block = ByteBuffer.allocate(BLOCK_BYTES);
+        private byte[] compressed = new byte[BLOCK_BYTES];
+        private long position = FILE_HEADER_SIZE;
+        private int blockRecords;
+        private long minDate = Long.MAX_VALUE;
+        private long maxDate = Long.MIN_VALUE;
+        private int records;
+        private int owned;
+        private long rawBytes;
+
+        private ArchiveWriter(File file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            write(ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(FILE_MAGIC).putInt(FILE_VERSION).flip());
+        }
+
+        private void add(RecordView view) {
+            try {
+                int size = view.size();
+                if (block.position() > 0 && block.remaining() < size) {
+                    flushBlock();
+                }
+                if (block.capacity() < size) {
+                    block = ByteBuffer.allocate(size); // a single record larger than a block
+                }
+                view.copyTo(block);
+                long date = view.dateMillis();
+                minDate = Math.min(minDate, date);
+                maxDate = Math.max(maxDate, date);
+                blockRecords++;
+                records++;
+                if (!view.isMirror()) owned++;
+                rawBytes += size;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            deflater.reset();
+            deflater.setInput(block.array(), 0, block.position());
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            write(ByteBuffer.wrap(compressed, 0, length));
+            index.add(new Block(position, length, block.position(), blockRecords, minDate, maxDate));
+            position += length;
+            block.clear();
+            blockRecords = 0;
+            minDate = Long.MAX_VALUE;
+            maxDate = Long.MIN_VALUE;
+        }
+
+        private void finish() throws IOException {
+            if (block.position() > 0) {
+                flushBlock();
+            }
+            ByteBuffer entries = ByteBuffer.allocate(index.size() * INDEX_ENTRY_SIZE);
+            for (Block entry : index) {
+                entries.putLong(entry.offset()).putInt(entry.compressedLength()).putInt(entry.rawLength())
+                        .putInt(entry.records()).putLong(entry.minDate()).putLong(entry.maxDate());
+            }
+            write(entries.flip());
+            write(ByteBuffer.allocate(FOOTER_SIZE).putLong(position).putInt(index.size()).putInt(FILE_MAGIC).flip());
+            channel.force(true);
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            channel.close();
+        }
+    }
+}
@@ -1,30 +1,69 @@
 package com.fortisbank.data.file;
 
+    import com.fortisbank.data.dal_utils.FileManager;
+    import com.fortisbank.data.dal_utils.RecordLog;
+    import com.fortisbank.data.file.codec.TransactionCodec;
     import com.fortisbank.data.interfaces.ITransactionRepository;
+    import com.fortisbank.contracts.exceptions.AccountRepositoryException;
     import com.fortisbank.contracts.exceptions.TransactionRepositoryException;
     import com.fortisbank.contracts.models.accounts.Account;
+    import com.fortisbank.contracts.collections.Page;
     import com.fortisbank.contracts.collections.TransactionList;
+    import com.fortisbank.contracts.models.reports.TransactionTypeTotals;
+    import com.fortisbank.contracts.models.transactions.IdempotencyRecord;
     import com.fortisbank.contracts.models.transactions.Transaction;
+    import com.fortisbank.contracts.models.transactions.TransactionType;
 
     import java.io.File;
+    import java.io.IOException;
+    import java.io.UncheckedIOException;
     import java.math.BigDecimal;
+    import java.time.Instant;
     import java.time.LocalDate;
+    import java.time.YearMonth;
     import java.time.ZoneId;
-    import java.util.List;
+    import java.util.*;
     import java.util.logging.Level;
     import java.util.logging.Logger;
+    import java.util.stream.Stream;
 
     /**
-     * Repository class for managing transactions in a file.
+     * Repository class for managing transactions in files.
+     * Transactions are stored in month-partitioned segment files (see {@link TransactionSegmentStore});
+     * queries read the mapped segments instead of keeping the whole history in memory, and date-range
+     * queries only touch the months they cover. Transactions older than the archive horizon are moved
+     * to a compressed {@link TransactionArchive}, which is read only by queries reaching before it.
      * Implements the ITransactionRepository interface.
      */
-    public class TransactionRepositoryFile extends FileRepository<Transaction> implements ITransactionRepository {
+    public class TransactionRepositoryFile implements ITransactionRepository {
         private static final Logger LOGGER = Logger.getLogger(TransactionRepositoryFile.class.getName());
-        private static final File file = new File("data/transactions.ser");
+        private static final File directory = new File("data/transactions");
+        private static final File archiveDirectory = new File("data/transactions-archive");
+        private static final File logFile = new File("data/transactions.log"); // older formats, imported once
+        private static final File legacyFile = new File("data/transactions.ser");
+        private static final File snapshotFile = new File("data/balance-snapshots.ser");
+        private static final File idempotencyFile = new File("data/idempotency-keys.ser");
+        static final long SEGMENT_BYTES = Long.getLong("fortisbank.segmentBytes", 4L * 1024 * 1024);
         private static TransactionRepositoryFile instance;
 
+        private final TransactionSegmentStore store;
+        private final TransactionArchive archive;
+        private final BalanceSnapshotStore snapshots;
+        private final IdempotencyKeyStore idempotencyKeys = FileRepository.register(new IdempotencyKeyStore(idempotencyFile));
+
         private TransactionRepositoryFile() {
-            super(file);
+            TransactionCodec codec = new TransactionCodec(id -> AccountRepositoryFile.getInstance().findById(id));
+            try {
+                store = new TransactionSegmentStore(directory, codec, FileRepository.FSYNC_ON_APPEND, SEGMENT_BYTES);
+                if (store.isEmpty()) {
+                    importLegacy(codec);
+                }
+                archive = new TransactionArchive(archiveDirectory, store);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error opening transaction segments: " + directory.getAbsolutePath(), e);
+            }
+            FileCompactor.schedule("transactions", store);
+            snapshots = FileRepository.register(new BalanceSnapshotStore(snapshotFile, () -> stream(new TransactionArchive[]{archive}, null, null)));
         }
 
         public static synchronized TransactionRepositoryFile getInstance() {
@@ -37,10 +76,7 @@ package com.fortisbank.data.file;
         @Override
         public Transaction getTransactionByNumber(String transactionNumber) throws TransactionRepositoryException {
             try {
-                return readAllTransactions().stream()
-                        .filter(t -> t.getTransactionNumber().equals(transactionNumber))
-                        .findFirst()
-                        .orElse(null);
+                return archive.find(transactionNumber);
             } catch (Exception e) {
                 LOGGER.log(Level.SEVERE, "Error retrieving transaction by number: {0}", e.getMessage());
                 throw new TransactionRepositoryException("Error retrieving transaction by number: " + transactionNumber, e);
@@ -49,15 +85,17 @@ package com.fortisbank.data.file;
 
         @Override
         public TransactionList getTransactionsByAccount(String accountId) throws TransactionRepositoryException {
+            long key = TransactionSegmentStore.key(accountId);
             try {
-                return readAllTransactions().stream()
-                        .filter(t -> {
-                            Account sourceAccount = t.getSourceAccount();
-                            return (sourceAccount != null && sourceAccount.getAccountNumber().equals(accountId))
-                                    || (t.getDestinationAccount() != null
-                                    && t.getDestinationAccount().getAccountNumber().equals(accountId));
-                        })
-                        .collect(TransactionList::new, TransactionList::add, TransactionList::addAll);
+                TransactionList result = new TransactionList();
+                archive.scan(null, null, view -> {
+                    if (view.sourceKey() != key && view.destinationKey() != key) return;
+                    Transaction t = view.decode();
+                    if (accountId.equals(accountNumber(t.getSourceAccount())) || accountId.equals(accountNumber(t.getDestinationAccount()))) {
+                        result.add(t);
+                    }
+                });
+                return result;
             } catch (Exception e) {
                 LOGGER.log(Level.SEVERE, "Error retrieving transactions by account: {0}", e.getMessage());
                 throw new TransactionRepositoryException("Error retrieving transactions by account: " + accountId, e);
@@ -67,53 +105,104 @@ package com.fortisbank.data.file;
         @Override
         public TransactionList getAllTransactions() throws TransactionRepositoryException {
             try {
-                return new TransactionList(readAllTransactions());
+                TransactionList result = new TransactionList();
+                archive.scan(null, null, view -> result.add(view.decode()));
+                return result;
             } catch (Exception e) {
                 LOGGER.log(Level.SEVERE, "Error retrieving all transactions: {0}", e.getMessage());
                 throw new TransactionRepositoryException("Error retrieving all transactions", e);
             }
         }
 
+        @Override
+        public Stream<Transaction> streamTransactions(LocalDate start, LocalDate end) throws TransactionRepositoryException {
+            return stream(new TransactionArchive[]{archive}, start, end);
+        }
+
+        @Override
+        public Page<Transaction> getTransactionsPage(String pageToken, int pageSize) throws TransactionRepositoryException {
+            try {
+                return readPage(new TransactionArchive[]{archive}, pageToken, pageSize);
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Error retrieving page of transactions: {0}", e.getMessage());
+                throw new TransactionRepositoryException("Error retrieving page of transactions", e);
+            }
+        }
+
         @Override
         public void insertTransaction(Transaction transaction) throws TransactionRepositoryException {
+            if (staged(List.of(transaction))) {
+                return;
+            }
             try {
-                var transactions = readAllTransactions();
-                transactions.add(transaction);
-                writeAllTransactions(transactions);
+                store.append(List.of(transaction));
             } catch (Exception e) {
                 LOGGER.log(Level.SEVERE, "Error inserting transaction: {0}", e.getMessage());
                 throw new TransactionRepositoryException("Error inserting transaction", e);
             }
         }
 
+        @Override
+        public void insertTransactions(Collection<Transaction> transactions) throws TransactionRepositoryException {
+            if (staged(transactions)) {
+                return;
+            }
+            try {
+                store.append(transactions);
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Error inserting transactions: {0}", e.getMessage());
+                throw new TransactionRepositoryException("Error inserting " + transactions.size() + " transactions", e);
+            }
+        }
+
+        /**
+         * Stages the transactions in the unit of work of the current thread, if any, to be inserted in one
+         * batch when it commits.
+         *
+         * @return true if the transactions were staged, false if no unit of work is running
+         */
+        private boolean staged(Collection<Transaction> transactions) {
+            FileUnitOfWork unit = FileUnitOfWork.current();
+            if (unit == null) {
+                return false;
+            }
+            for (Transaction transaction : transactions) {
+                unit.stage(this, transaction.getTransactionNumber(), transaction, this::insertTransactions);
+            }
+            return true;
+        }
+
         @Override
         public void deleteTransaction(String transactionNumber) throws TransactionRepositoryException {
             try {
-                var transactions = readAllTransactions();
-                transactions.removeIf(t -> t.getTransactionNumber().equals(transactionNumber));
-                writeAllTransactions(transactions);
+                store.delete(transactionNumber);
             } catch (Exception e) {
                 LOGGER.log(Level.SEVERE, "Error deleting transaction: {0}", e.getMessage());
                 throw new TransactionRepositoryException("Error deleting transaction: " + transactionNumber, e);
             }
         }
 
+        @Override
+        public int archiveTransactionsBefore(LocalDate cutoff) throws TransactionRepositoryException {
+            try {
+                return archive.archiveBefore(cutoff);
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Error archiving transactions: {0}", e.getMessage());
+                throw new TransactionRepositoryException("Error archiving transactions before " + cutoff, e);
+            }
+        }
+
         @Override
         public TransactionList getTransactionsByCustomerAndDateRange(String customerID, LocalDate start, LocalDate end) throws TransactionRepositoryException {
-            ZoneId zone = ZoneId.systemDefault();
-            try {
-                return readAllTransactions().stream()
-                        .filter(t -> {
-                            Account sourceAccount = t.getSourceAccount();
-                            if (sourceAccount == null) {
-                                return false;
-                            }
-                            String transactionCustomerID = sourceAccount.getCustomer().getUserId();
-                            LocalDate transactionDate = t.getTransactionDate().toInstant().atZone(zone).toLocalDate();
-                            return transactionCustomerID.equals(customerID) &&
-                                    (!transactionDate.isBefore(start) && !transactionDate.isAfter(end));
-                        })
-                        .collect(TransactionList::new, TransactionList::add, TransactionList::addAll);
+            try {
+                Map<Long, Set<String>> accounts = customerAccountKeys(customerID);
+                TransactionList result = new TransactionList();
+                archive.scan(start, end, view -> {
+                    if (!accounts.containsKey(view.sourceKey())) return;
+                    Transaction t = view.decode();
+                    if (isCustomerSource(t, accounts)) result.add(t);
+                });
+                return result;
             } catch (Exception e) {
                 LOGGER.log(Level.SEVERE, "Error retrieving transactions by customer and date range: {0}", e.getMessage());
                 throw new TransactionRepositoryException("Error retrieving transactions by customer and date range", e);
@@ -122,37 +211,264 @@ package com.fortisbank.data.file;
 
         @Override
         public BigDecimal getBalanceBeforeDate(String customerID, LocalDate start) throws TransactionRepositoryException {
-            ZoneId zone = ZoneId.systemDefault();
             try {
-                return readAllTransactions().stream()
-                        .filter(t -> {
-                            String transactionCustomerID = t.getSourceAccount().getCustomer().getUserId();
-                            LocalDate transactionDate = t.getTransactionDate().toInstant().atZone(zone).toLocalDate();
-                            return transactionCustomerID.equals(customerID) && transactionDate.isBefore(start);
-                        })
-                        .map(Transaction::getAmount)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                List<String> accountIds = new ArrayList<>();
+                for (Account account : AccountRepositoryFile.getInstance().getAccountsByCustomerId(customerID)) {
+                    accountIds.add(account.getAccountNumber());
+                }
+                return openingBalance(snapshots.closingBalanceBefore(accountIds, YearMonth.from(start)), start,
+                        (from, to) -> getNetChangeByAccount(customerID, from, to));
             } catch (Exception e) {
                 LOGGER.log(Level.SEVERE, "Error retrieving balance before date: {0}", e.getMessage());
                 throw new TransactionRepositoryException("Error retrieving balance before date", e);
             }
         }
 
-        private List<Transaction> readAllTransactions() throws TransactionRepositoryException {
+        @Override
+        public void updateBalanceSnapshots(Collection<Transaction> transactions) throws TransactionRepositoryException {
             try {
-                return readAll();
+                snapshots.add(transactions);
             } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Error reading transactions from file: {0}", e.getMessage());
-                throw new TransactionRepositoryException("Error reading transactions from file", e);
+                LOGGER.log(Level.SEVERE, "Error updating balance snapshots: {0}", e.getMessage());
+                throw new TransactionRepositoryException("Error updating balance snapshots", e);
             }
         }
 
-        private void writeAllTransactions(List<Transaction> transactions) throws TransactionRepositoryException {
+        @Override
+        public void insertIdempotencyRecord(IdempotencyRecord record, Date expiredBefore) throws TransactionRepositoryException {
+            IdempotencyRecord existing = idempotencyKeys.find(record.key());
+            if (existing != null && !existing.createdAt().before(expiredBefore)) {
+                throw new TransactionRepositoryException("Idempotency key already recorded: " + record.key());
+            }
+            try {
+                idempotencyKeys.add(record);
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Error recording idempotency key: {0}", e.getMessage());
+                throw new TransactionRepositoryException("Error recording idempotency key: " + record.key(), e);
+            }
+        }
+
+        @Override
+        public IdempotencyRecord getIdempotencyRecord(String key) throws TransactionRepositoryException {
+            try {
+                return idempotencyKeys.find(key);
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Error retrieving idempotency key: {0}", e.getMessage());
+                throw new TransactionRepositoryException("Error retrieving idempotency key: " + key, e);
+            }
+        }
+
+        @Override
+        public int deleteIdempotencyRecordsBefore(Date cutoff) throws TransactionRepositoryException {
             try {
-                writeAll(transactions);
+                return idempotencyKeys.removeBefore(cutoff);
             } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Error writing transactions to file: {0}", e.getMessage());
-                throw new TransactionRepositoryException("Error writing transactions to file", e);
+                LOGGER.log(Level.SEVERE, "Error deleting idempotency keys: {0}", e.getMessage());
+                throw new TransactionRepositoryException("Error deleting idempotency keys created before " + cutoff, e);
+            }
+        }
+
+        @Override
+        public Map<String, BigDecimal> getNetChangeByAccount(String customerID, LocalDate start, LocalDate end) throws TransactionRepositoryException {
+            try {
+                Map<Long, Set<String>> accounts = customerAccountKeys(customerID);
+                Map<String, BigDecimal> changes = new HashMap<>();
+                archive.scan(start, end, view -> addNetChange(view, accounts, changes));
+                return changes;
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Error aggregating transactions by account: {0}", e.getMessage());
+                throw new TransactionRepositoryException("Error aggregating transactions by account", e);
+            }
+        }
+
+        @Override
+        public Map<TransactionType, TransactionTypeTotals> getTotalsByTransactionType() throws TransactionRepositoryException {
+            try {
+                Map<TransactionType, TransactionTypeTotals> totals = new EnumMap<>(TransactionType.class);
+                archive.scan(null, null, view -> addTotals(totals, view));
+                return totals;
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Error aggregating transactions by type: {0}", e.getMessage());
+                throw new TransactionRepositoryException("Error aggregating transactions by type", e);
+            }
+        }
+
+        /**
+         * Streams the transactions of the given archives dated within a range, mirrors excluded, one month
+         * at a time: a month is decoded when the stream reaches it, so that memory is bounded by the
+         * largest month rather than by the history.
+         */
+        static Stream<Transaction> stream(TransactionArchive[] archives, LocalDate start, LocalDate end) {
+            NavigableSet<YearMonth> months = new TreeSet<>();
+            for (TransactionArchive archive : archives) {
+                months.addAll(archive.months());
+            }
+            if (start != null) months = months.tailSet(YearMonth.from(start), true);
+            if (end != null) months = months.headSet(YearMonth.from(end), true);
+            return months.stream().flatMap(month -> {
+                LocalDate from = start != null && start.isAfter(month.atDay(1)) ? start : month.atDay(1);
+                LocalDate to = end != null && end.isBefore(month.atEndOfMonth()) ? end : month.atEndOfMonth();
+                List<Transaction> transactions = new ArrayList<>();
+                try {
+                    for (TransactionArchive archive : archives) {
+                        archive.scan(from, to, view -> {
+                            if (!view.isMirror()) transactions.add(view.decode());
+                        });
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return transactions.stream();
+            });
+        }
+
+        /**
+         * Reads the page of transactions following a token from the given archives, mirrors excluded, in
+         * the order of their dates and id keys. Months are read in order from the month of the token, and
+         * reading stops after the first month that completes the page, so a page only decodes its own
+         * transactions and only reads the months it spans.
+         */
+        static Page<Transaction> readPage(TransactionArchive[] archives, String pageToken, int pageSize) throws IOException {
+            String[] after = Page.decodeToken(pageToken, 2);
+            long afterDate = after != null ? Long.parseLong(after[0]) : Long.MIN_VALUE;
+            long afterId = after != null ? Long.parseLong(after[1]) : Long.MIN_VALUE;
+            NavigableSet<YearMonth> months = new TreeSet<>();
+            for (TransactionArchive archive : archives) {
+                months.addAll(archive.months());
+            }
+            if (after != null) {
+                months = months.tailSet(YearMonth.from(Instant.ofEpochMilli(afterDate).atZone(ZoneId.systemDefault())), true);
+            }
+            // The first pageSize + 1 entries after the token, the last one on top to be evicted by a smaller one
+            PriorityQueue<PageEntry> entries = new PriorityQueue<>(PageEntry.ORDER.reversed());
+            for (YearMonth month : months) {
+                for (TransactionArchive archive : archives) {
+                    archive.scan(month.atDay(1), month.atEndOfMonth(), view -> {
+                        if (view.isMirror()) return;
+                        long date = view.dateMillis();
+                        long id = view.idKey();
+                        if (after != null && (date < afterDate || (date == afterDate && id <= afterId))) return;
+                        if (entries.size() > pageSize) {
+                            PageEntry last = entries.peek();
+                            if (date > last.date() || (date == last.date() && id >= last.id())) return;
+                            entries.poll();
+                        }
+                        entries.add(new PageEntry(date, id, view.decode()));
+                    });
+                }
+                if (entries.size() > pageSize) {
+                    break; // later months only hold later transactions
+                }
+            }
+            List<PageEntry> sorted = new ArrayList<>(entries);
+            sorted.sort(PageEntry.ORDER);
+            Page<PageEntry> page = Page.of(sorted, pageSize, e -> new String[]{Long.toString(e.date()), Long.toString(e.id())});
+            return new Page<>(page.items().stream().map(PageEntry::transaction).toList(), page.nextPageToken());
+        }
+
+        /**
+         * A transaction read for a page, with its position in the page order.
+         */
+        private record PageEntry(long date, long id, Transaction transaction) {
+            private static final Comparator<PageEntry> ORDER =
+                    Comparator.comparingLong(PageEntry::date).thenComparingLong(PageEntry::id);
+        }
+
+        /**
+         * Adds the signed amount of a record to the net change of the accounts it moves money from and to,
+         * when they are among the given accounts. Decodes the record only when its keys are ambiguous.
+         */
+        static void addNetChange(TransactionSegmentStore.RecordView view, Map<Long, Set<String>> accounts, Map<String, BigDecimal> changes) {
+            Set<String> sources = accounts.get(view.sourceKey());
+            Set<String> destinations = accounts.get(view.destinationKey());
+            if (sources == null && destinations == null) return;
+            String source = sources != null && sources.size() == 1 ? sources.iterator().next() : null;
+            String destination = destinations != null && destinations.size() == 1 ? destinations.iterator().next() : null;
+            if ((sources != null && source == null) || (destinations != null && destination == null)) {
+                Transaction t = view.decode();
+                source = sources != null && sources.contains(accountNumber(t.getSourceAccount())) ? accountNumber(t.getSourceAccount()) : null;
+                destination = destinations != null && destinations.contains(accountNumber(t.getDestinationAccount())) ? accountNumber(t.getDestinationAccount()) : null;
+            }
+            if (source != null) changes.merge(source, view.amount().negate(), BigDecimal::add);
+            if (destination != null) changes.merge(destination, view.amount(), BigDecimal::add);
+        }
+
+        /**
+         * Adds to the closing balance of the month before a date the net change of the days of its month
+         * before it, which are read only when the date is not the first of the month.
+         */
+        static BigDecimal openingBalance(BigDecimal previousMonthBalance, LocalDate start, NetChangeQuery netChange)
+                throws TransactionRepositoryException {
+            BigDecimal balance = previousMonthBalance;
+            if (start.getDayOfMonth() > 1) {
+                for (BigDecimal change : netChange.query(start.withDayOfMonth(1), start.minusDays(1)).values()) {
+                    balance = balance.add(change);
+                }
+            }
+            return balance;
+        }
+
+        /**
+         * Reads the net change by account of a customer within a date range.
+         */
+        @FunctionalInterface
+        interface NetChangeQuery {
+            Map<String, BigDecimal> query(LocalDate start, LocalDate end) throws TransactionRepositoryException;
+        }
+
+        /**
+         * Adds a record to the aggregates of its type.
+         */
+        static void addTotals(Map<TransactionType, TransactionTypeTotals> totals, TransactionSegmentStore.RecordView view) {
+            totals.merge(view.type(), new TransactionTypeTotals(1, view.amount()), TransactionTypeTotals::plus);
+        }
+
+        /**
+         * Returns the header keys of the customer's accounts.
+         */
+        private Map<Long, Set<String>> customerAccountKeys(String customerID) throws AccountRepositoryException {
+            return accountKeys(AccountRepositoryFile.getInstance().getAccountsByCustomerId(customerID));
+        }
+
+        /**
+         * Returns the header keys of the given accounts, mapped to the account numbers sharing each key.
+         */
+        static Map<Long, Set<String>> accountKeys(Iterable<Account> accounts) {
+            Map<Long, Set<String>> keys = new HashMap<>();
+            for (Account account : accounts) {
+                keys.computeIfAbsent(TransactionSegmentStore.key(account.getAccountNumber()), k -> new HashSet<>())
+                        .add(account.getAccountNumber());
+            }
+            return keys;
+        }
+
+        static boolean isCustomerSource(Transaction t, Map<Long, Set<String>> accounts) {
+            String source = accountNumber(t.getSourceAccount());
+            Set<String> candidates = accounts.get(TransactionSegmentStore.key(source));
+            return source != null && candidates != null && candidates.contains(source);
+        }
+
+        static String accountNumber(Account account) {
+            return account != null ? account.getAccountNumber() : null;
+        }
+
+        /**
+         * Imports the history kept by older versions in a record log or serialized list.
+         */
+        private void importLegacy(TransactionCodec codec) throws IOException {
+            List<Transaction> transactions;
+            if (logFile.exists() && logFile.length() > 0) {
+                transactions = new RecordLog<>(logFile, false, codec).replay();
+            } else if (legacyFile.exists() && legacyFile.length() > 0) {
+                transactions = FileManager.readListFromFile(legacyFile, codec);
+            } else {
+                return;
+            }
+            Map<String, Transaction> latest = new LinkedHashMap<>();
+            for (Transaction t : transactions) {
+                latest.put(t.getTransactionNumber(), t); // later log records replace earlier ones
             }
+            store.append(latest.values());
+            LOGGER.log(Level.INFO, "Imported {0} transactions into segment files", latest.size());
         }
     }
\ No newline at end of file
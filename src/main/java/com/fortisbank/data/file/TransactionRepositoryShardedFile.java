@@ -0,0 +1,378 @@
+package com.fortisbank.data.file;
+
+import com.fortisbank.contracts.collections.Page;
+import com.fortisbank.contracts.collections.TransactionList;
+import com.fortisbank.contracts.exceptions.TransactionRepositoryException;
+import com.fortisbank.contracts.models.accounts.Account;
+import com.fortisbank.contracts.models.reports.TransactionTypeTotals;
+import com.fortisbank.contracts.models.transactions.IdempotencyRecord;
+import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.contracts.models.transactions.TransactionType;
+import com.fortisbank.data.file.codec.TransactionCodec;
+import com.fortisbank.data.interfaces.ITransactionRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static com.fortisbank.data.file.TransactionRepositoryFile.accountKeys;
+import static com.fortisbank.data.file.TransactionRepositoryFile.accountNumber;
+import static com.fortisbank.data.file.TransactionRepositoryFile.addNetChange;
+import static com.fortisbank.data.file.TransactionRepositoryFile.addTotals;
+import static com.fortisbank.data.file.TransactionRepositoryFile.isCustomerSource;
+import static com.fortisbank.data.file.TransactionRepositoryFile.openingBalance;
+
+/**
+ * Repository class for managing transactions in sharded segment files.
+ * <p>
+ * Each shard of the {@link ShardLayout} has its own {@link TransactionSegmentStore}. A transaction is
+ * owned by the shard of the customer of its source account (its destination account for deposits);
+ * a transfer to a customer of another shard is also written to that shard as a mirror record, so that
+ * every query about one customer or account reads a single shard. Queries that span all customers
+ * skip mirrors. Each shard has its own {@link TransactionArchive} for the transactions older than the
+ * archive horizon.
+ * Implements the ITransactionRepository interface.
+ */
+public class TransactionRepositoryShardedFile implements ITransactionRepository {
+    private static final Logger LOGGER = Logger.getLogger(TransactionRepositoryShardedFile.class.getName());
+    private static TransactionRepositoryShardedFile instance;
+
+    private final AccountRepositoryShardedFile accounts = AccountRepositoryShardedFile.getInstance();
+    private final TransactionSegmentStore[] stores;
+    private final TransactionArchive[] archives;
+    private final BalanceSnapshotStore snapshots;
+    private final IdempotencyKeyStore idempotencyKeys = FileRepository.register(new IdempotencyKeyStore(new File(ShardLayout.DIRECTORY, "idempotency-keys.ser")));
+
+    private TransactionRepositoryShardedFile() {
+        ShardLayout layout = ShardLayout.get();
+        TransactionCodec codec = new TransactionCodec(accounts::findAccount);
+        stores = new TransactionSegmentStore[layout.count()];
+        archives = new TransactionArchive[layout.count()];
+        try {
+            boolean empty = true;
+            for (int i = 0; i < stores.length; i++) {
+                stores[i] = new TransactionSegmentStore(layout.shardFile("transactions", i, ""), codec,
+                        FileRepository.FSYNC_ON_APPEND, TransactionRepositoryFile.SEGMENT_BYTES);
+                empty &= stores[i].isEmpty();
+            }
+            if (layout.isNew() && empty) {
+                importUnsharded();
+            }
+            for (int i = 0; i < stores.length; i++) {
+                archives[i] = new TransactionArchive(layout.shardFile("archive", i, ""), stores[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening transaction shards: " + ShardLayout.DIRECTORY.getAbsolutePath(), e);
+        }
+        for (int i = 0; i < stores.length; i++) {
+            FileCompactor.schedule(String.format("transactions-%02d", i), stores[i]);
+        }
+        snapshots = FileRepository.register(new BalanceSnapshotStore(new File(ShardLayout.DIRECTORY, "balance-snapshots.ser"),
+                () -> TransactionRepositoryFile.stream(archives, null, null)));
+    }
+
+    public static synchronized TransactionRepositoryShardedFile getInstance() {
+        if (instance == null) {
+            instance = new TransactionRepositoryShardedFile();
+        }
+        return instance;
+    }
+
+    @Override
+    public Transaction getTransactionByNumber(String transactionNumber) throws TransactionRepositoryException {
+        try {
+            for (TransactionArchive archive : archives) {
+                Transaction transaction = archive.find(transactionNumber);
+                if (transaction != null) {
+                    return transaction;
+                }
+            }
+            return null;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving transaction by number: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error retrieving transaction by number: " + transactionNumber, e);
+        }
+    }
+
+    @Override
+    public TransactionList getTransactionsByAccount(String accountId) throws TransactionRepositoryException {
+        long key = TransactionSegmentStore.key(accountId);
+        try {
+            int shard = accounts.shardOfAccount(accountId);
+            TransactionList result = new TransactionList();
+            for (int i = 0; i < stores.length; i++) {
+                if (shard >= 0 && i != shard) continue; // unknown accounts are searched in every shard
+                boolean owned = shard >= 0;
+                archives[i].scan(null, null, view -> {
+                    if (view.sourceKey() != key && view.destinationKey() != key) return;
+                    if (!owned && view.isMirror()) return;
+                    Transaction t = view.decode();
+                    if (accountId.equals(accountNumber(t.getSourceAccount())) || accountId.equals(accountNumber(t.getDestinationAccount()))) {
+                        result.add(t);
+                    }
+                });
+            }
+            return result;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving transactions by account: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error retrieving transactions by account: " + accountId, e);
+        }
+    }
+
+    @Override
+    public TransactionList getAllTransactions() throws TransactionRepositoryException {
+        try {
+            TransactionList result = new TransactionList();
+            for (TransactionArchive archive : archives) {
+                archive.scan(null, null, view -> {
+                    if (!view.isMirror()) result.add(view.decode());
+                });
+            }
+            return result;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving all transactions: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error retrieving all transactions", e);
+        }
+    }
+
+    @Override
+    public Stream<Transaction> streamTransactions(LocalDate start, LocalDate end) throws TransactionRepositoryException {
+        return TransactionRepositoryFile.stream(archives, start, end);
+    }
+
+    @Override
+    public Page<Transaction> getTransactionsPage(String pageToken, int pageSize) throws TransactionRepositoryException {
+        try {
+            return TransactionRepositoryFile.readPage(archives, pageToken, pageSize);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving page of transactions: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error retrieving page of transactions", e);
+        }
+    }
+
+    @Override
+    public void insertTransaction(Transaction transaction) throws TransactionRepositoryException {
+        if (staged(List.of(transaction))) {
+            return;
+        }
+        try {
+            append(List.of(transaction));
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error inserting transaction: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error inserting transaction", e);
+        }
+    }
+
+    @Override
+    public void insertTransactions(Collection<Transaction> transactions) throws TransactionRepositoryException {
+        if (staged(transactions)) {
+            return;
+        }
+        try {
+            append(transactions);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error inserting transactions: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error inserting " + transactions.size() + " transactions", e);
+        }
+    }
+
+    /**
+     * Stages the transactions in the unit of work of the current thread, if any, to be inserted in one
+     * batch when it commits.
+     *
+     * @return true if the transactions were staged, false if no unit of work is running
+     */
+    private boolean staged(Collection<Transaction> transactions) {
+        FileUnitOfWork unit = FileUnitOfWork.current();
+        if (unit == null) {
+            return false;
+        }
+        for (Transaction transaction : transactions) {
+            unit.stage(this, transaction.getTransactionNumber(), transaction, this::insertTransactions);
+        }
+        return true;
+    }
+
+    @Override
+    public void deleteTransaction(String transactionNumber) throws TransactionRepositoryException {
+        try {
+            for (TransactionSegmentStore store : stores) {
+                store.delete(transactionNumber); // the owner record and its mirror, if any; archived ones are kept
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error deleting transaction: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error deleting transaction: " + transactionNumber, e);
+        }
+    }
+
+    @Override
+    public int archiveTransactionsBefore(LocalDate cutoff) throws TransactionRepositoryException {
+        try {
+            int archived = 0;
+            for (TransactionArchive archive : archives) {
+                archived += archive.archiveBefore(cutoff);
+            }
+            return archived;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error archiving transactions: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error archiving transactions before " + cutoff, e);
+        }
+    }
+
+    @Override
+    public TransactionList getTransactionsByCustomerAndDateRange(String customerID, LocalDate start, LocalDate end) throws TransactionRepositoryException {
+        try {
+            Map<Long, Set<String>> keys = accountKeys(accounts.getAccountsByCustomerId(customerID));
+            TransactionList result = new TransactionList();
+            archives[accounts.shardOfCustomer(customerID)].scan(start, end, view -> {
+                if (!keys.containsKey(view.sourceKey())) return;
+                Transaction t = view.decode();
+                if (isCustomerSource(t, keys)) result.add(t);
+            });
+            return result;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving transactions by customer and date range: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error retrieving transactions by customer and date range", e);
+        }
+    }
+
+    @Override
+    public BigDecimal getBalanceBeforeDate(String customerID, LocalDate start) throws TransactionRepositoryException {
+        try {
+            List<String> accountIds = new ArrayList<>();
+            for (Account account : accounts.getAccountsByCustomerId(customerID)) {
+                accountIds.add(account.getAccountNumber());
+            }
+            return openingBalance(snapshots.closingBalanceBefore(accountIds, YearMonth.from(start)), start,
+                    (from, to) -> getNetChangeByAccount(customerID, from, to));
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving balance before date: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error retrieving balance before date", e);
+        }
+    }
+
+    @Override
+    public void updateBalanceSnapshots(Collection<Transaction> transactions) throws TransactionRepositoryException {
+        try {
+            snapshots.add(transactions);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error updating balance snapshots: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error updating balance snapshots", e);
+        }
+    }
+
+    @Override
+    public void insertIdempotencyRecord(IdempotencyRecord record, Date expiredBefore) throws TransactionRepositoryException {
+        IdempotencyRecord existing = idempotencyKeys.find(record.key());
+        if (existing != null && !existing.createdAt().before(expiredBefore)) {
+            throw new TransactionRepositoryException("Idempotency key already recorded: " + record.key());
+        }
+        try {
+            idempotencyKeys.add(record);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error recording idempotency key: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error recording idempotency key: " + record.key(), e);
+        }
+    }
+
+    @Override
+    public IdempotencyRecord getIdempotencyRecord(String key) throws TransactionRepositoryException {
+        try {
+            return idempotencyKeys.find(key);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving idempotency key: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error retrieving idempotency key: " + key, e);
+        }
+    }
+
+    @Override
+    public int deleteIdempotencyRecordsBefore(Date cutoff) throws TransactionRepositoryException {
+        try {
+            return idempotencyKeys.removeBefore(cutoff);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error deleting idempotency keys: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error deleting idempotency keys created before " + cutoff, e);
+        }
+    }
+
+    @Override
+    public Map<String, BigDecimal> getNetChangeByAccount(String customerID, LocalDate start, LocalDate end) throws TransactionRepositoryException {
+        try {
+            Map<Long, Set<String>> keys = accountKeys(accounts.getAccountsByCustomerId(customerID));
+            Map<String, BigDecimal> changes = new HashMap<>();
+            // The customer's shard holds its outgoing transactions and mirrors of the incoming ones
+            archives[accounts.shardOfCustomer(customerID)].scan(start, end, view -> addNetChange(view, keys, changes));
+            return changes;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error aggregating transactions by account: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error aggregating transactions by account", e);
+        }
+    }
+
+    @Override
+    public Map<TransactionType, TransactionTypeTotals> getTotalsByTransactionType() throws TransactionRepositoryException {
+        try {
+            Map<TransactionType, TransactionTypeTotals> totals = new EnumMap<>(TransactionType.class);
+            for (TransactionArchive archive : archives) {
+                archive.scan(null, null, view -> {
+                    if (!view.isMirror()) addTotals(totals, view);
+                });
+            }
+            return totals;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error aggregating transactions by type: {0}", e.getMessage());
+            throw new TransactionRepositoryException("Error aggregating transactions by type", e);
+        }
+    }
+
+    /**
+     * Appends transactions to the shards of their owners, and mirrors to the shards of their
+     * destination accounts when those differ.
+     */
+    private void append(Collection<? extends Transaction> transactions) throws IOException {
+        Map<Integer, List<Transaction>> owned = new TreeMap<>();
+        Map<Integer, List<Transaction>> mirrors = new TreeMap<>();
+        for (Transaction transaction : transactions) {
+            Account owner = transaction.getSourceAccount() != null ? transaction.getSourceAccount() : transaction.getDestinationAccount();
+            int shard = shardOf(owner);
+            owned.computeIfAbsent(shard, s -> new ArrayList<>()).add(transaction);
+            int destinationShard = shardOf(transaction.getDestinationAccount());
+            if (transaction.getDestinationAccount() != null && destinationShard != shard) {
+                mirrors.computeIfAbsent(destinationShard, s -> new ArrayList<>()).add(transaction);
+            }
+        }
+        for (Map.Entry<Integer, List<Transaction>> entry : owned.entrySet()) {
+            stores[entry.getKey()].append(entry.getValue(), false);
+        }
+        for (Map.Entry<Integer, List<Transaction>> entry : mirrors.entrySet()) {
+            stores[entry.getKey()].append(entry.getValue(), true);
+        }
+    }
+
+    private int shardOf(Account account) {
+        if (account == null) return 0;
+        int shard = accounts.shardOfAccount(account.getAccountNumber());
+        if (shard >= 0) return shard;
+        return accounts.shardOfCustomer(account.getCustomer() != null ? account.getCustomer().getUserId() : null);
+    }
+
+    /**
+     * Distributes the history of the unsharded segment files into the shards when the layout is created.
+     */
+    private void importUnsharded() throws IOException {
+        try {
+            TransactionList transactions = TransactionRepositoryFile.getInstance().getAllTransactions();
+            append(transactions);
+            LOGGER.log(Level.INFO, "Imported {0} transactions into {1} shards", new Object[]{transactions.size(), stores.length});
+        } catch (TransactionRepositoryException e) {
+            throw new IOException("Error importing unsharded transactions", e);
+        }
+    }
+}
@@ -0,0 +1,621 @@
+package com.fortisbank.data.file;
+
+import com.fortisbank.contracts.models.accounts.Account;
+import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.contracts.models.transactions.TransactionType;
+import com.fortisbank.data.dal_utils.RecordCodec;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Month-partitioned segment files holding the transaction history.
+ * <p>
+ * Transactions are appended to the segment of the month they are dated in, named
+ * {@code yyyy-MM.NNN.seg}; a new segment is started once the current one reaches the maximum
+ * segment size. Segments are read through memory-mapped buffers, and a range query maps only the
+ * segments of the months it overlaps.
+ * <p>
+ * Every record starts with a fixed-layout header holding the date, type, amount and hashed keys of
+ * the transaction and its accounts, followed by the encoded transaction. Scans filter on the header
+ * directly in the mapped buffer and decode the full transaction only for matching records.
+ * Deleting a transaction sets a flag in its header; segments are otherwise only modified by
+ * {@link #compact(double)}, which rewrites the segments holding too many deleted records, and by
+ * {@link #removeBefore(LocalDate)} once old records have been moved to a {@link TransactionArchive}.
+ */
+public class TransactionSegmentStore implements FileCompactor.Compactable {
+
+    private static final Logger LOGGER = Logger.getLogger(TransactionSegmentStore.class.getName());
+
+    private static final int FILE_MAGIC = 0x46425331; // "FBS1"
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = Integer.BYTES * 2;
+
+    // Record header layout: offsets relative to the start of the record
+    private static final int LENGTH = 0;           // int, payload length
+    private static final int CHECKSUM = 4;         // int, CRC32 of the payload
+    private static final int FLAGS = 8;            // byte, see FLAG_DELETED and FLAG_MIRROR
+    private static final int TYPE = 9;             // byte, transaction type ordinal
+    private static final int SCALE = 10;           // byte, amount scale or SCALE_IN_PAYLOAD
+    private static final int DATE = 16;            // long, epoch milliseconds
+    private static final int AMOUNT = 24;          // long, unscaled amount
+    private static final int ID_KEY = 32;          // long, key of the transaction number
+    private static final int SOURCE_KEY = 40;      // long, key of the source account number, 0 if none
+    private static final int DESTINATION_KEY = 48; // long, key of the destination account number, 0 if none
+    private static final int RECORD_HEADER_SIZE = 56;
+
+    private static final byte FLAG_DELETED = 1;
+    private static final byte FLAG_MIRROR = 2; // copy of a record owned by another store, see append(Collection, boolean)
+    private static final byte SCALE_IN_PAYLOAD = Byte.MIN_VALUE; // amount does not fit the header
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{4}-\\d{2})\\.(\\d{3,})\\.seg");
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final File directory;
+    private final RecordCodec<Transaction> codec;
+    private final boolean fsyncOnAppend;
+    private final long maxSegmentBytes;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final NavigableMap<YearMonth, List<Segment>> segments = new TreeMap<>();
+
+    /**
+     * Opens the segment store in the given directory, truncating torn records at segment tails.
+     *
+     * @param directory the directory holding the segment files
+     * @param codec the codec used to encode the transactions
+     * @param fsyncOnAppend whether every append should be forced to the storage device
+     * @param maxSegmentBytes the size at which a new segment is started
+     * @throws IOException if the segments cannot be opened
+     */
+    public TransactionSegmentStore(File directory, RecordCodec<Transaction> codec, boolean fsyncOnAppend,
+                                   long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.codec = codec;
+        this.fsyncOnAppend = fsyncOnAppend;
+        this.maxSegmentBytes = Math.min(maxSegmentBytes, Integer.MAX_VALUE); // segments are mapped whole
+        open();
+    }
+
+    /**
+     * Returns whether the store holds no segment at all.
+     *
+     * @return true if no transaction was ever stored
+     */
+    public synchronized boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * Returns the months that have segments, in order.
+     *
+     * @return a copy of the months
+     */
+    public synchronized NavigableSet<YearMonth> months() {
+        return new TreeSet<>(segments.keySet());
+    }
+
+    /**
+     * Appends transactions to the segments of their months.
+     *
+     * @param transactions the transactions to append
+     * @throws IOException if a transaction cannot be written
+     */
+    public void append(Collection<? extends Transaction> transactions) throws IOException {
+        append(transactions, false);
+    }
+
+    /**
+     * Appends transactions to the segments of their months, optionally flagged as mirrors: copies of
+     * transactions owned by another store, kept so that queries on this store see them too.
+     *
+     * @param transactions the transactions to append
+     * @param mirror whether the records are mirrors
+     * @throws IOException if a transaction cannot be written
+     */
+    public synchronized void append(Collection<? extends Transaction> transactions, boolean mirror) throws IOException {
+        Set<Segment> written = new HashSet<>();
+        for (Transaction transaction : transactions) {
+            ByteBuffer record = encode(transaction);
+            if (mirror) record.put(FLAGS, FLAG_MIRROR);
+            YearMonth month = YearMonth.from(transaction.getTransactionDate().toInstant().atZone(zone));
+            Segment segment = activeSegment(month, record.remaining());
+            long position = segment.size;
+            while (record.hasRemaining()) {
+                position += segment.channel().write(record, position);
+            }
+            segment.size = position;
+            written.add(segment);
+        }
+        if (fsyncOnAppend) {
+            for (Segment segment : written) {
+                segment.channel().force(false);
+            }
+        }
+    }
+
+    /**
+     * Visits every live record dated within the given range, in month order.
+     * The view passed to the action is only valid during the call.
+     * <p>
+     * The segments in range and their sizes are captured under the store's lock, and their mapped
+     * buffers are then scanned without it, so the action may be slow or call back into the store.
+     * Records appended once the scan has started are not visited.
+     *
+     * @param start the first day of the range, or null for no lower bound
+     * @param end the last day of the range, or null for no upper bound
+     * @param action the action to apply to each record
+     * @throws IOException if a segment cannot be read
+     */
+    public void scan(LocalDate start, LocalDate end, Consumer<RecordView> action) throws IOException {
+        long from = start != null ? start.atStartOfDay(zone).toInstant().toEpochMilli() : Long.MIN_VALUE;
+        long until = end != null ? end.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() : Long.MAX_VALUE;
+        List<Mapping> mappings = new ArrayList<>();
+        synchronized (this) {
+            NavigableMap<YearMonth, List<Segment>> range = segments;
+            if (start != null) range = range.tailMap(YearMonth.from(start), true);
+            if (end != null) range = range.headMap(YearMonth.from(end), true);
+            for (List<Segment> monthSegments : range.values()) {
+                for (Segment segment : monthSegments) {
+                    mappings.add(new Mapping(segment.map(), (int) segment.size));
+                }
+            }
+        }
+
+        // A mapping stays readable after its segment is compacted or removed, and only absolute reads
+        // are made, so the buffers can be scanned while other threads use the store
+        RecordView view = new RecordView();
+        for (Mapping mapping : mappings) {
+            MappedByteBuffer buffer = mapping.buffer();
+            view.buffer = buffer;
+            int position = FILE_HEADER_SIZE;
+            while (position < mapping.limit()) {
+                view.offset = position;
+                position += RECORD_HEADER_SIZE + buffer.getInt(position + LENGTH);
+                if ((buffer.get(view.offset + FLAGS) & FLAG_DELETED) != 0) continue;
+                long date = buffer.getLong(view.offset + DATE);
+                if (date >= from && date < until) {
+                    action.accept(view);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the transaction with the given number.
+     *
+     * @param transactionNumber the transaction number
+     * @return the transaction, or null if it does not exist
+     * @throws IOException if a segment cannot be read
+     */
+    public Transaction find(String transactionNumber) throws IOException {
+        Transaction[] found = new Transaction[1];
+        long key = key(transactionNumber);
+        scan(null, null, view -> {
+            if (found[0] == null && view.idKey() == key) {
+                Transaction candidate = view.decode();
+                if (transactionNumber.equals(candidate.getTransactionNumber())) found[0] = candidate;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Marks the transaction with the given number as deleted.
+     *
+     * @param transactionNumber the transaction number
+     * @return true if a transaction was deleted, false if none exists
+     * @throws IOException if a segment cannot be read or written
+     */
+    public synchronized boolean delete(String transactionNumber) throws IOException {
+        long key = key(transactionNumber);
+        for (List<Segment> monthSegments : segments.values()) {
+            for (Segment segment : monthSegments) {
+                MappedByteBuffer buffer = segment.map();
+                int position = FILE_HEADER_SIZE;
+                while (position < segment.size) {
+                    int offset = position;
+                    position += RECORD_HEADER_SIZE + buffer.getInt(offset + LENGTH);
+                    if ((buffer.get(offset + FLAGS) & FLAG_DELETED) != 0 || buffer.getLong(offset + ID_KEY) != key) continue;
+                    if (!transactionNumber.equals(decode(buffer, offset).getTransactionNumber())) continue;
+                    segment.channel().write(ByteBuffer.wrap(new byte[]{FLAG_DELETED}), offset + FLAGS);
+                    if (fsyncOnAppend) segment.channel().force(false);
+                    if (segment.deletedBytes >= 0) segment.deletedBytes += position - offset;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the records dated before the given day, once they have been copied to the archive:
+     * the segments of earlier months are deleted, and the records of the cutoff's month dated before
+     * it are marked as deleted, to be dropped by compaction.
+     *
+     * @param cutoff the first day kept in the store
+     * @throws IOException if a segment cannot be read, written or deleted
+     */
+    public synchronized void removeBefore(LocalDate cutoff) throws IOException {
+        long until = cutoff.atStartOfDay(zone).toInstant().toEpochMilli();
+        YearMonth cutoffMonth = YearMonth.from(cutoff);
+        NavigableMap<YearMonth, List<Segment>> earlier = segments.headMap(cutoffMonth, false);
+        for (List<Segment> monthSegments : earlier.values()) {
+            for (Segment segment : monthSegments) {
+                segment.close();
+                Files.deleteIfExists(segment.file.toPath());
+            }
+        }
+        earlier.clear();
+        for (Segment segment : segments.getOrDefault(cutoffMonth, List.of())) {
+            MappedByteBuffer buffer = segment.map();
+            boolean written = false;
+            int position = FILE_HEADER_SIZE;
+            while (position < segment.size) {
+                int offset = position;
+                position += RECORD_HEADER_SIZE + buffer.getInt(offset + LENGTH);
+                if ((buffer.get(offset + FLAGS) & FLAG_DELETED) != 0 || buffer.getLong(offset + DATE) >= until) continue;
+                segment.channel().write(ByteBuffer.wrap(new byte[]{FLAG_DELETED}), offset + FLAGS);
+                if (segment.deletedBytes >= 0) segment.deletedBytes += position - offset;
+                written = true;
+            }
+            if (written && fsyncOnAppend) segment.channel().force(false);
+        }
+    }
+
+    /**
+     * Rewrites the segments in which deleted records take at least the given share of the space,
+     * dropping those records. Each segment is written to a temporary file, forced to disk and renamed
+     * over the original. The store is locked for the whole run.
+     *
+     * @param garbageRatio the share of deleted bytes above which a segment is rewritten
+     * @return the report of the run, or null if no segment needed compaction
+     * @throws IOException if a segment cannot be rewritten; segments already rewritten are kept
+     */
+    @Override
+    public synchronized CompactionReport compact(double garbageRatio) throws IOException {
+        long start = System.nanoTime();
+        int compacted = 0;
+        long bytesBefore = 0;
+        long bytesAfter = 0;
+        for (List<Segment> monthSegments : segments.values()) {
+            for (Segment segment : monthSegments) {
+                if (segment.deletedBytes < 0) {
+                    segment.deletedBytes = measureDeleted(segment); // once per segment, then kept up to date
+                }
+                long recordBytes = segment.size - FILE_HEADER_SIZE;
+                if (segment.deletedBytes == 0 || (double) segment.deletedBytes / recordBytes < garbageRatio) continue;
+                bytesBefore += segment.size;
+                rewriteLive(segment);
+                bytesAfter += segment.size;
+                compacted++;
+            }
+        }
+        if (compacted == 0) return null;
+        Duration duration = Duration.ofNanos(System.nanoTime() - start);
+        return new CompactionReport("transactions", compacted, bytesBefore, bytesAfter, duration, duration);
+    }
+
+    /**
+     * Closes the segment files.
+     */
+    public synchronized void close() {
+        for (List<Segment> monthSegments : segments.values()) {
+            for (Segment segment : monthSegments) {
+                segment.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the 64-bit key stored in record headers for an id, or 0 for null.
+     * Canonical UUIDs fold their two halves; other ids are hashed with FNV-1a.
+     * Different ids may share a key, so matches must be confirmed on the decoded record.
+     *
+     * @param id the transaction or account number
+     * @return the key of the id
+     */
+    public static long key(String id) {
+        if (id == null) return 0;
+        long key;
+        try {
+            UUID uuid = UUID.fromString(id);
+            key = uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+        } catch (IllegalArgumentException e) {
+            key = 0xcbf29ce484222325L;
+            for (int i = 0; i < id.length(); i++) {
+                key = (key ^ id.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        return key != 0 ? key : 1;
+    }
+
+    /**
+     * Zero-copy view of one record while scanning; header fields are read directly from the mapped segment.
+     */
+    public final class RecordView {
+        private ByteBuffer buffer;
+        private int offset;
+
+        public long dateMillis() {
+            return buffer.getLong(offset + DATE);
+        }
+
+        public TransactionType type() {
+            return TYPES[buffer.get(offset + TYPE)];
+        }
+
+        public BigDecimal amount() {
+            byte scale = buffer.get(offset + SCALE);
+            return scale != SCALE_IN_PAYLOAD ? BigDecimal.valueOf(buffer.getLong(offset + AMOUNT), scale) : decode().getAmount();
+        }
+
+        public long idKey() {
+            return buffer.getLong(offset + ID_KEY);
+        }
+
+        public long sourceKey() {
+            return buffer.getLong(offset + SOURCE_KEY);
+        }
+
+        public long destinationKey() {
+            return buffer.getLong(offset + DESTINATION_KEY);
+        }
+
+        public boolean isMirror() {
+            return (buffer.get(offset + FLAGS) & FLAG_MIRROR) != 0;
+        }
+
+        /**
+         * Returns the size of this record, header included.
+         */
+        int size() {
+            return RECORD_HEADER_SIZE + buffer.getInt(offset + LENGTH);
+        }
+
+        /**
+         * Copies this record, header included, into the given buffer.
+         */
+        void copyTo(ByteBuffer target) {
+            target.put(buffer.slice(offset, size()));
+        }
+
+        /**
+         * Decodes the full transaction of this record.
+         *
+         * @return the transaction
+         */
+        public Transaction decode() {
+            try {
+                return TransactionSegmentStore.this.decode(buffer, offset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Returns a view of a record copied out of this store's segments, such as into an archive block.
+     *
+     * @param buffer the buffer holding the record
+     * @param offset the offset of the record in the buffer
+     * @return the view of the record
+     */
+    RecordView view(ByteBuffer buffer, int offset) {
+        RecordView view = new RecordView();
+        view.buffer = buffer;
+        view.offset = offset;
+        return view;
+    }
+
+    private ByteBuffer encode(Transaction transaction) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        codec.encode(transaction, out);
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+
+        BigDecimal amount = transaction.getAmount();
+        boolean amountFits = amount != null && amount.unscaledValue().bitLength() < Long.SIZE
+                && amount.scale() > SCALE_IN_PAYLOAD && amount.scale() <= Byte.MAX_VALUE;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(LENGTH, payload.length);
+        record.putInt(CHECKSUM, checksum(payload));
+        record.put(TYPE, (byte) transaction.getTransactionType().ordinal());
+        record.put(SCALE, amountFits ? (byte) amount.scale() : SCALE_IN_PAYLOAD);
+        record.putLong(DATE, transaction.getTransactionDate().getTime());
+        record.putLong(AMOUNT, amountFits ? amount.unscaledValue().longValue() : 0);
+        record.putLong(ID_KEY, key(transaction.getTransactionNumber()));
+        record.putLong(SOURCE_KEY, key(accountNumber(transaction.getSourceAccount())));
+        record.putLong(DESTINATION_KEY, key(accountNumber(transaction.getDestinationAccount())));
+        record.put(RECORD_HEADER_SIZE, payload);
+        return record;
+    }
+
+    private Transaction decode(ByteBuffer buffer, int offset) throws IOException {
+        byte[] payload = new byte[buffer.getInt(offset + LENGTH)];
+        buffer.get(offset + RECORD_HEADER_SIZE, payload);
+        return codec.decode(new DataInputStream(new ByteArrayInputStream(payload)));
+    }
+
+    private Segment activeSegment(YearMonth month, int recordSize) throws IOException {
+        List<Segment> monthSegments = segments.computeIfAbsent(month, m -> new ArrayList<>());
+        Segment last = monthSegments.isEmpty() ? null : monthSegments.getLast();
+        if (last != null && (last.size == FILE_HEADER_SIZE || last.size + recordSize <= maxSegmentBytes)) {
+            return last;
+        }
+        Segment segment = new Segment(month, last == null ? 0 : last.sequence + 1);
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(FILE_MAGIC).putInt(FILE_VERSION).flip();
+        segment.channel().write(header, 0);
+        segment.size = FILE_HEADER_SIZE;
+        monthSegments.add(segment);
+        return segment;
+    }
+
+    private void open() throws IOException {
+        directory.mkdirs();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list segment directory: " + directory.getAbsolutePath());
+        }
+        for (File file : files) {
+            Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+            if (!matcher.matches()) continue;
+            Segment segment = new Segment(YearMonth.parse(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            segment.size = file.length();
+            segments.computeIfAbsent(segment.month, m -> new ArrayList<>()).add(segment);
+        }
+        for (List<Segment> monthSegments : segments.values()) {
+            monthSegments.sort(Comparator.comparingInt(s -> s.sequence));
+            for (Segment segment : monthSegments) {
+                checkHeader(segment);
+            }
+            recover(monthSegments.getLast()); // only the last segment of a month is ever appended to
+        }
+    }
+
+    private void checkHeader(Segment segment) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        if (segment.size < FILE_HEADER_SIZE || segment.channel().read(header, 0) < FILE_HEADER_SIZE
+                || header.getInt(0) != FILE_MAGIC || header.getInt(Integer.BYTES) != FILE_VERSION) {
+            throw new IOException("Not a transaction segment: " + segment.file.getAbsolutePath());
+        }
+    }
+
+    private void recover(Segment segment) throws IOException {
+        MappedByteBuffer buffer = segment.map();
+        long position = FILE_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= segment.size) {
+            int offset = (int) position;
+            int length = buffer.getInt(offset + LENGTH);
+            if (length < 0 || offset + RECORD_HEADER_SIZE + (long) length > segment.size) break;
+            byte[] payload = new byte[length];
+            buffer.get(offset + RECORD_HEADER_SIZE, payload);
+            if (checksum(payload) != buffer.getInt(offset + CHECKSUM)) break;
+            position += RECORD_HEADER_SIZE + length;
+        }
+        if (position < segment.size) {
+            LOGGER.log(Level.WARNING, "Truncating torn tail of segment {0} at offset {1}",
+                    new Object[]{segment.file.getAbsolutePath(), position});
+            segment.channel().truncate(position);
+            segment.size = position;
+            segment.mapped = null;
+        }
+    }
+
+    private long measureDeleted(Segment segment) throws IOException {
+        MappedByteBuffer buffer = segment.map();
+        long deleted = 0;
+        int position = FILE_HEADER_SIZE;
+        while (position < segment.size) {
+            int offset = position;
+            position += RECORD_HEADER_SIZE + buffer.getInt(offset + LENGTH);
+            if ((buffer.get(offset + FLAGS) & FLAG_DELETED) != 0) deleted += position - offset;
+        }
+        return deleted;
+    }
+
+    private void rewriteLive(Segment segment) throws IOException {
+        MappedByteBuffer buffer = segment.map();
+        File temp = new File(segment.file.getPath() + ".tmp");
+        long size = FILE_HEADER_SIZE;
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.write(ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(FILE_MAGIC).putInt(FILE_VERSION).flip());
+            int position = FILE_HEADER_SIZE;
+            while (position < segment.size) {
+                int offset = position;
+                position += RECORD_HEADER_SIZE + buffer.getInt(offset + LENGTH);
+                if ((buffer.get(offset + FLAGS) & FLAG_DELETED) != 0) continue;
+                ByteBuffer record = buffer.slice(offset, position - offset);
+                while (record.hasRemaining()) {
+                    size += out.write(record);
+                }
+            }
+            out.force(true);
+        }
+        segment.close();
+        Files.move(temp.toPath(), segment.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segment.size = size;
+        segment.deletedBytes = 0;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static String accountNumber(Account account) {
+        return account != null ? account.getAccountNumber() : null;
+    }
+
+    /**
+     * The mapped buffer of a segment and the size up to which it is scanned.
+     */
+    private record Mapping(MappedByteBuffer buffer, int limit) {
+    }
+
+    /**
+     * One segment file and its current mapping.
+     */
+    private final class Segment {
+        private final YearMonth month;
+        private final int sequence;
+        private final File file;
+        private long size;
+        private long deletedBytes = -1; // bytes of deleted records, -1 until measured
+        private FileChannel channel;
+        private MappedByteBuffer mapped;
+
+        private Segment(YearMonth month, int sequence) {
+            this.month = month;
+            this.sequence = sequence;
+            this.file = new File(directory, String.format("%s.%03d.seg", month, sequence));
+        }
+
+        private FileChannel channel() throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            return channel;
+        }
+
+        /**
+         * Maps the segment up to its current size, remapping only when records were appended since the last call.
+         */
+        private MappedByteBuffer map() throws IOException {
+            if (mapped == null || mapped.capacity() != size) {
+                mapped = channel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            return mapped;
+        }
+
+        private void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Error closing segment: {0}", file.getAbsolutePath());
+                }
+                channel = null;
+                mapped = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.fortisbank.data.file.codec;
+
+import com.fortisbank.contracts.models.accounts.*;
+import com.fortisbank.contracts.models.users.Customer;
+import com.fortisbank.data.dal_utils.RecordCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.function.Function;
+
+import static com.fortisbank.data.file.codec.CodecSupport.*;
+
+/**
+ * Binary codec for {@link Account} records.
+ * The owning customer is stored as its id and resolved through the customer store when decoding;
+ * type-specific fields follow the common ones. Version 2 adds the optimistic concurrency version of
+ * the account; version 1 records decode with version 0.
+ */
+public class AccountCodec implements RecordCodec<Account> {
+
+    private static final int VERSION = 2;
+
+    private final Function<String, Customer> customerResolver;
+
+    /**
+     * Constructs an AccountCodec.
+     *
+     * @param customerResolver returns the stored customer with the given id, or null if it does not exist
+     */
+    public AccountCodec(Function<String, Customer> customerResolver) {
+        this.customerResolver = customerResolver;
+    }
+
+    @Override
+    public String name() {
+        return "account";
+    }
+
+    @Override
+    public void encode(Account account, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        writeEnum(out, account.getAccountType());
+        writeId(out, account.getAccountNumber());
+        writeId(out, account.getCustomer() != null ? account.getCustomer().getUserId() : null);
+        writeDate(out, account.getOpenedDate());
+        writeDecimal(out, account.getAvailableBalance());
+        out.writeBoolean(account.isActive());
+        out.writeBoolean(account.isLowBalanceAlertSent());
+        switch (account) {
+            case SavingsAccount savings -> {
+                writeDecimal(out, savings.getAnnualInterestRate());
+                writeLocalDate(out, savings.getLastInterestApplied());
+            }
+            case CreditAccount credit -> {
+                writeDecimal(out, credit.getCreditLimit());
+                writeDecimal(out, credit.getInterestRate());
+                writeLocalDate(out, credit.getLastInterestApplied());
+            }
+            case CurrencyAccount currency -> {
+                writeString(out, currency.getCurrencyCode());
+                writeDate(out, currency.getLastActiveDate());
+            }
+            default -> {
+                // checking accounts have no additional fields
+            }
+        }
+        writeVarLong(out, account.getVersion());
+    }
+
+    @Override
+    public Account decode(DataInput in) throws IOException {
+        int version = readVersion(in, VERSION, name());
+        AccountType type = readEnum(in, AccountType.class);
+        String accountNumber = readId(in);
+        String customerId = readId(in);
+        Date openedDate = readDate(in);
+        BigDecimal balance = readDecimal(in);
+        boolean active = in.readBoolean();
+        boolean lowBalanceAlertSent = in.readBoolean();
+
+        Customer customer = resolveCustomer(customerId);
+        Account account;
+        switch (type) {
+            case SAVINGS -> {
+                SavingsAccount savings = new SavingsAccount(accountNumber, customer, openedDate, balance, readDecimal(in));
+                savings.setLastInterestApplied(readLocalDate(in));
+                account = savings;
+            }
+            case CREDIT -> {
+                CreditAccount credit = new CreditAccount(accountNumber, customer, openedDate, readDecimal(in), readDecimal(in));
+                credit.setLastInterestApplied(readLocalDate(in));
+                account = credit;
+            }
+            case CURRENCY -> {
+                CurrencyAccount currency = new CurrencyAccount(accountNumber, customer, openedDate, balance, readString(in));
+                currency.setLastActiveDate(readDate(in));
+                account = currency;
+            }
+            case CHECKING -> account = new CheckingAccount(accountNumber, customer, openedDate, balance);
+            case null, default -> throw new IOException("Unsupported account type: " + type);
+        }
+        account.setAvailableBalance(balance);
+        account.setActive(active);
+        account.setLowBalanceAlertSent(lowBalanceAlertSent);
+        if (version >= 2) {
+            account.setVersion(readVarLong(in));
+        }
+        return account;
+    }
+
+    private Customer resolveCustomer(String customerId) {
+        if (customerId == null) {
+            return null;
+        }
+        Customer customer = customerResolver.apply(customerId);
+        return customer != null ? customer : CustomerCodec.placeholder(customerId);
+    }
+
+    /**
+     * Creates a stand-in for an account that is referenced by id but no longer stored.
+     *
+     * @param accountNumber the number of the missing account
+     * @return a checking account carrying only the number
+     */
+    static Account placeholder(String accountNumber) {
+        return new CheckingAccount(accountNumber, null, null, BigDecimal.ZERO);
+    }
+}
@@ -0,0 +1,41 @@
+package com.fortisbank.data.file.codec;
+
+import com.fortisbank.contracts.models.reports.BalanceSnapshot;
+import com.fortisbank.data.dal_utils.RecordCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.YearMonth;
+
+import static com.fortisbank.data.file.codec.CodecSupport.*;
+
+/**
+ * Binary codec for {@link BalanceSnapshot} records.
+ * The month is stored as its number of months since year 0.
+ */
+public class BalanceSnapshotCodec implements RecordCodec<BalanceSnapshot> {
+
+    private static final int VERSION = 1;
+
+    @Override
+    public String name() {
+        return "balance-snapshot";
+    }
+
+    @Override
+    public void encode(BalanceSnapshot snapshot, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        writeId(out, snapshot.accountId());
+        writeVarInt(out, snapshot.month().getYear() * 12 + snapshot.month().getMonthValue() - 1);
+        writeDecimal(out, snapshot.closingBalance());
+    }
+
+    @Override
+    public BalanceSnapshot decode(DataInput in) throws IOException {
+        readVersion(in, VERSION, name());
+        String accountId = readId(in);
+        int months = readVarInt(in);
+        return new BalanceSnapshot(accountId, YearMonth.of(months / 12, months % 12 + 1), readDecimal(in));
+    }
+}
@@ -0,0 +1,77 @@
+package com.fortisbank.data.file.codec;
+
+import com.fortisbank.contracts.models.users.BankManager;
+import com.fortisbank.contracts.models.users.Customer;
+import com.fortisbank.data.dal_utils.RecordCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static com.fortisbank.data.file.codec.CodecSupport.*;
+
+/**
+ * Binary codec for {@link BankManager} records.
+ * Managed customers are stored as ids and resolved through the customer store when decoding.
+ */
+public class BankManagerCodec implements RecordCodec<BankManager> {
+
+    private static final int VERSION = 1;
+
+    private final Function<String, Customer> customerResolver;
+
+    /**
+     * Constructs a BankManagerCodec.
+     *
+     * @param customerResolver returns the stored customer with the given id, or null if it does not exist
+     */
+    public BankManagerCodec(Function<String, Customer> customerResolver) {
+        this.customerResolver = customerResolver;
+    }
+
+    @Override
+    public String name() {
+        return "bank-manager";
+    }
+
+    @Override
+    public void encode(BankManager manager, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        writeId(out, manager.getUserId());
+        writeString(out, manager.getFirstName());
+        writeString(out, manager.getLastName());
+        writeString(out, manager.getEmail());
+        writeString(out, manager.getHashedPassword());
+        writeString(out, manager.getPINHash());
+        List<Customer> customers = manager.getCustomers();
+        writeVarInt(out, customers.size());
+        for (Customer customer : customers) {
+            writeId(out, customer.getUserId());
+        }
+    }
+
+    @Override
+    public BankManager decode(DataInput in) throws IOException {
+        readVersion(in, VERSION, name());
+        BankManager manager = new BankManager();
+        manager.setUserId(readId(in));
+        manager.setFirstName(readString(in));
+        manager.setLastName(readString(in));
+        manager.setEmail(readString(in));
+        manager.setHashedPassword(readString(in));
+        manager.setPINHash(readString(in));
+        int count = readVarInt(in);
+        List<Customer> customers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Customer customer = customerResolver.apply(readId(in));
+            if (customer != null) {
+                customers.add(customer); // customers deleted since are dropped
+            }
+        }
+        manager.setCustomers(customers);
+        return manager;
+    }
+}
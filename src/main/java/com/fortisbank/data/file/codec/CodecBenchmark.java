@@ -0,0 +1,121 @@
+package com.fortisbank.data.file.codec;
+
+import com.fortisbank.contracts.models.accounts.Account;
+import com.fortisbank.contracts.models.accounts.CheckingAccount;
+import com.fortisbank.contracts.models.accounts.SavingsAccount;
+import com.fortisbank.contracts.models.others.Notification;
+import com.fortisbank.contracts.models.others.NotificationType;
+import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.contracts.models.transactions.TransactionFactory;
+import com.fortisbank.contracts.models.transactions.TransactionType;
+import com.fortisbank.contracts.models.users.Customer;
+import com.fortisbank.contracts.utils.IdGenerator;
+import com.fortisbank.data.dal_utils.JavaSerializationCodec;
+import com.fortisbank.data.dal_utils.RecordCodec;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Command-line benchmark comparing Java serialization with the binary record codecs.
+ * <p>
+ * Usage: {@code java com.fortisbank.data.file.codec.CodecBenchmark [transactionCount]} (default 100000).
+ * Synthetic customers, accounts, transactions and notifications are encoded and decoded in memory;
+ * for each record type the encoded size and the encode/decode throughput of both formats are printed.
+ */
+public class CodecBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int transactionCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Random random = new Random(42);
+
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, transactionCount / 100); i++) {
+            customers.add(new Customer(IdGenerator.generateId(), "First" + i, "Last" + i, "user" + i + "@fortisbank.com",
+                    "514555" + String.format("%04d", i % 10_000), "hash" + i, "pin" + i));
+        }
+        List<Account> accounts = new ArrayList<>();
+        for (Customer customer : customers) {
+            accounts.add(new CheckingAccount(IdGenerator.generateId(), customer, new Date(), BigDecimal.valueOf(random.nextInt(100_000), 2)));
+            accounts.add(new SavingsAccount(IdGenerator.generateId(), customer, new Date(), BigDecimal.valueOf(random.nextInt(100_000), 2), new BigDecimal("0.025")));
+        }
+        List<Transaction> transactions = new ArrayList<>(transactionCount);
+        TransactionType[] types = {TransactionType.DEPOSIT, TransactionType.WITHDRAWAL, TransactionType.TRANSFER};
+        for (int i = 0; i < transactionCount; i++) {
+            TransactionType type = types[random.nextInt(types.length)];
+            Account source = accounts.get(random.nextInt(accounts.size()));
+            Account destination = accounts.get(random.nextInt(accounts.size()));
+            transactions.add(TransactionFactory.createTransaction(type, null, new Date(), BigDecimal.valueOf(random.nextInt(50_000), 2), source, destination));
+        }
+        List<Notification> notifications = new ArrayList<>();
+        for (int i = 0; i < transactionCount / 10; i++) {
+            Account account = accounts.get(random.nextInt(accounts.size()));
+            notifications.add(new Notification(NotificationType.TRANSACTION_RECEIPT, "Transaction Receipt",
+                    "Your transaction " + i + " was processed.", account.getCustomer(), account));
+        }
+
+        Map<String, Customer> customerIndex = index(customers, Customer::getUserId);
+        Map<String, Account> accountIndex = index(accounts, Account::getAccountNumber);
+
+        System.out.printf("%-14s %-8s %9s %14s %12s %12s%n", "record", "format", "records", "bytes", "enc rec/s", "dec rec/s");
+        run("customer", customers, new CustomerCodec());
+        run("account", accounts, new AccountCodec(customerIndex::get));
+        run("transaction", transactions, new TransactionCodec(accountIndex::get));
+        run("notification", notifications, new NotificationCodec(customerIndex::get, accountIndex::get));
+    }
+
+    private static <T> void run(String label, List<T> records, RecordCodec<T> codec) throws IOException {
+        measure(label, "java", records, new JavaSerializationCodec<>());
+        measure(label, "binary", records, codec);
+    }
+
+    private static <T> void measure(String label, String format, List<T> records, RecordCodec<T> codec) throws IOException {
+        byte[] encoded = null;
+        long encodeNanos = Long.MAX_VALUE;
+        long decodeNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) { // best of several rounds, the first ones warm up the JIT
+            long start = System.nanoTime();
+            encoded = encodeAll(records, codec);
+            encodeNanos = Math.min(encodeNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            int decoded = decodeAll(encoded, records.size(), codec);
+            decodeNanos = Math.min(decodeNanos, System.nanoTime() - start);
+            if (decoded != records.size()) {
+                throw new IllegalStateException("Decoded " + decoded + " of " + records.size() + " records");
+            }
+        }
+        System.out.printf("%-14s %-8s %9d %14d %12.0f %12.0f%n", label, format, records.size(), encoded.length,
+                records.size() / (encodeNanos / 1e9), records.size() / (decodeNanos / 1e9));
+    }
+
+    private static <T> byte[] encodeAll(List<T> records, RecordCodec<T> codec) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (T record : records) {
+            codec.encode(record, out);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static <T> int decodeAll(byte[] encoded, int count, RecordCodec<T> codec) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        for (int i = 0; i < count; i++) {
+            codec.decode(in);
+        }
+        return count;
+    }
+
+    private static <T> Map<String, T> index(List<T> items, Function<T, String> key) {
+        Map<String, T> map = new HashMap<>();
+        for (T item : items) {
+            map.put(key.apply(item), item);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,106 @@
+package com.fortisbank.data.file.codec;
+
+import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.data.dal_utils.FileManager;
+import com.fortisbank.data.dal_utils.JavaSerializationCodec;
+import com.fortisbank.data.dal_utils.RecordCodec;
+import com.fortisbank.data.dal_utils.RecordLog;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Command-line tool converting the Java-serialized data files of the file storage mode to the binary codecs.
+ * <p>
+ * Usage: {@code java com.fortisbank.data.file.codec.CodecMigrationTool [dataDirectory]} (default {@code data}).
+ * The application must not be running. Each converted file is first copied to {@code <name>.bak}; the
+ * conversion is verified by decoding the new file and rolled back if the record count differs.
+ * Files already in the binary format are left untouched. The repositories also read the legacy files
+ * directly, so running the tool is optional: it converts everything at once instead of on first write.
+ */
+public class CodecMigrationTool {
+
+    public static void main(String[] args) throws IOException {
+        File dataDir = new File(args.length > 0 ? args[0] : "data");
+        // Only encoding matters here; references decode to placeholders during verification
+        migrateSnapshot(new File(dataDir, "customers.ser"), new CustomerCodec());
+        migrateSnapshot(new File(dataDir, "managers.ser"), new BankManagerCodec(id -> null));
+        migrateSnapshot(new File(dataDir, "accounts.ser"), new AccountCodec(id -> null));
+        migrateSnapshot(new File(dataDir, "notifications.ser"), new NotificationCodec(id -> null, id -> null));
+        migrateTransactions(new File(dataDir, "transactions.log"), new File(dataDir, "transactions.ser"));
+    }
+
+    private static <T> void migrateSnapshot(File file, RecordCodec<T> codec) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            System.out.printf("%-20s skipped (no data)%n", file.getName());
+            return;
+        }
+        if (!isJavaSerialized(file)) {
+            System.out.printf("%-20s skipped (already converted)%n", file.getName());
+            return;
+        }
+        List<T> items = FileManager.readListFromFile(file);
+        if (items.isEmpty()) {
+            System.out.printf("%-20s skipped (no readable records)%n", file.getName());
+            return;
+        }
+        long before = file.length();
+        File backup = backup(file);
+        FileManager.writeListToFile(file, items, codec);
+        int decoded = FileManager.readListFromFile(file, codec).size();
+        if (decoded != items.size()) {
+            Files.copy(backup.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            System.out.printf("%-20s FAILED (%d of %d records decoded), original restored%n",
+                    file.getName(), decoded, items.size());
+            return;
+        }
+        report(file.getName(), items.size(), before, file.length());
+    }
+
+    private static void migrateTransactions(File logFile, File legacyFile) throws IOException {
+        TransactionCodec codec = new TransactionCodec(id -> null);
+        List<Transaction> transactions;
+        long before;
+        if (logFile.exists() && logFile.length() > 0) {
+            before = logFile.length();
+            transactions = new RecordLog<>(logFile, false, codec).replay(); // reads legacy and binary records
+            backup(logFile);
+        } else if (legacyFile.exists() && legacyFile.length() > 0) {
+            before = legacyFile.length();
+            transactions = FileManager.readListFromFile(legacyFile);
+        } else {
+            System.out.printf("%-20s skipped (no data)%n", logFile.getName());
+            return;
+        }
+        try (RecordLog<Transaction> log = new RecordLog<>(logFile, false, codec)) {
+            log.rewrite(transactions);
+            int decoded = log.replay().size();
+            if (decoded != transactions.size()) {
+                throw new IOException("Verification failed: " + decoded + " of " + transactions.size() + " records decoded");
+            }
+        }
+        report(logFile.getName(), transactions.size(), before, logFile.length());
+    }
+
+    private static boolean isJavaSerialized(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readUnsignedShort() == JavaSerializationCodec.STREAM_MAGIC;
+        }
+    }
+
+    private static File backup(File file) throws IOException {
+        File backup = new File(file.getPath() + ".bak");
+        Files.copy(file.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return backup;
+    }
+
+    private static void report(String name, int records, long before, long after) {
+        System.out.printf("%-20s %7d records  %10d -> %10d bytes (%.1f%%)%n",
+                name, records, before, after, 100.0 * after / before);
+    }
+}
@@ -0,0 +1,196 @@
+package com.fortisbank.data.file.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Field-level encoding helpers shared by the binary record codecs.
+ * <p>
+ * Integers are written as zig-zag variable-length values, identifiers in canonical UUID form as
+ * 16 raw bytes and enums by ordinal (new constants must therefore be appended, never inserted).
+ * Every nullable field is preceded by a presence marker.
+ */
+final class CodecSupport {
+
+    private static final int ABSENT = 0;
+    private static final int COMPACT = 1;
+    private static final int EXTENDED = 2;
+
+    private CodecSupport() {
+    }
+
+    /**
+     * Reads the schema version byte of a record and checks it is supported.
+     */
+    static int readVersion(DataInput in, int maxVersion, String format) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > maxVersion) {
+            throw new IOException("Unsupported " + format + " record version: " + version);
+        }
+        return version;
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        return Math.toIntExact(readVarLong(in));
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Writes an identifier, using 16 bytes when it is a canonical UUID string.
+     */
+    static void writeId(DataOutput out, String id) throws IOException {
+        UUID uuid = id != null ? parseCanonicalUuid(id) : null;
+        if (id == null) {
+            out.writeByte(ABSENT);
+        } else if (uuid != null) {
+            out.writeByte(COMPACT);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        } else {
+            out.writeByte(EXTENDED);
+            out.writeUTF(id);
+        }
+    }
+
+    static String readId(DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        return switch (tag) {
+            case ABSENT -> null;
+            case COMPACT -> new UUID(in.readLong(), in.readLong()).toString();
+            case EXTENDED -> in.readUTF();
+            default -> throw new IOException("Malformed identifier tag: " + tag);
+        };
+    }
+
+    /**
+     * Writes a decimal as its unscaled value and scale, using a variable-length long when it fits.
+     */
+    static void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeByte(ABSENT);
+            return;
+        }
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() < Long.SIZE) {
+            out.writeByte(COMPACT);
+            writeVarLong(out, unscaled.longValue());
+        } else {
+            byte[] bytes = unscaled.toByteArray();
+            out.writeByte(EXTENDED);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+        writeVarInt(out, value.scale());
+    }
+
+    static BigDecimal readDecimal(DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        BigInteger unscaled;
+        switch (tag) {
+            case ABSENT:
+                return null;
+            case COMPACT:
+                unscaled = BigInteger.valueOf(readVarLong(in));
+                break;
+            case EXTENDED:
+                byte[] bytes = new byte[readVarInt(in)];
+                in.readFully(bytes);
+                unscaled = new BigInteger(bytes);
+                break;
+            default:
+                throw new IOException("Malformed decimal tag: " + tag);
+        }
+        return new BigDecimal(unscaled, readVarInt(in));
+    }
+
+    static void writeDate(DataOutput out, Date value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeVarLong(out, value.getTime());
+        }
+    }
+
+    static Date readDate(DataInput in) throws IOException {
+        return in.readBoolean() ? new Date(readVarLong(in)) : null;
+    }
+
+    static void writeLocalDate(DataOutput out, LocalDate value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeVarLong(out, value.toEpochDay());
+        }
+    }
+
+    static LocalDate readLocalDate(DataInput in) throws IOException {
+        return in.readBoolean() ? LocalDate.ofEpochDay(readVarLong(in)) : null;
+    }
+
+    static void writeEnum(DataOutput out, Enum<?> value) throws IOException {
+        out.writeByte(value != null ? value.ordinal() + 1 : 0);
+    }
+
+    static <E extends Enum<E>> E readEnum(DataInput in, Class<E> type) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        if (ordinal == 0) {
+            return null;
+        }
+        E[] constants = type.getEnumConstants();
+        if (ordinal > constants.length) {
+            throw new IOException("Unknown " + type.getSimpleName() + " ordinal: " + (ordinal - 1));
+        }
+        return constants[ordinal - 1];
+    }
+
+    private static UUID parseCanonicalUuid(String id) {
+        if (id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.fortisbank.data.file.codec;
+
+import com.fortisbank.contracts.models.users.Customer;
+import com.fortisbank.data.dal_utils.RecordCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.fortisbank.data.file.codec.CodecSupport.*;
+
+/**
+ * Binary codec for {@link Customer} records.
+ * Accounts and inbox are not stored with the customer; they are loaded from their own repositories.
+ */
+public class CustomerCodec implements RecordCodec<Customer> {
+
+    private static final int VERSION = 1;
+
+    @Override
+    public String name() {
+        return "customer";
+    }
+
+    @Override
+    public void encode(Customer customer, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        writeId(out, customer.getUserId());
+        writeString(out, customer.getFirstName());
+        writeString(out, customer.getLastName());
+        writeString(out, customer.getEmail());
+        writeString(out, customer.getPhoneNumber());
+        writeString(out, customer.getHashedPassword());
+        writeString(out, customer.getPINHash());
+    }
+
+    @Override
+    public Customer decode(DataInput in) throws IOException {
+        readVersion(in, VERSION, name());
+        String userId = readId(in);
+        String firstName = readString(in);
+        String lastName = readString(in);
+        String email = readString(in);
+        String phoneNumber = readString(in);
+        String hashedPassword = readString(in);
+        String pinHash = readString(in);
+        return new Customer(userId, firstName, lastName, email, phoneNumber, hashedPassword, pinHash);
+    }
+
+    /**
+     * Creates a stand-in for a customer that is referenced by id but no longer stored.
+     *
+     * @param userId the id of the missing customer
+     * @return a customer carrying only the id
+     */
+    static Customer placeholder(String userId) {
+        return new Customer(userId, "", "", "", "", "", "");
+    }
+}
@@ -0,0 +1,40 @@
+package com.fortisbank.data.file.codec;
+
+import com.fortisbank.contracts.models.transactions.IdempotencyRecord;
+import com.fortisbank.data.dal_utils.RecordCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.fortisbank.data.file.codec.CodecSupport.*;
+
+/**
+ * Binary codec for {@link IdempotencyRecord} records.
+ * The result is encoded with {@link TransactionResultCodec}.
+ */
+public class IdempotencyRecordCodec implements RecordCodec<IdempotencyRecord> {
+
+    private static final int VERSION = 1;
+
+    private final TransactionResultCodec resultCodec = new TransactionResultCodec();
+
+    @Override
+    public String name() {
+        return "idempotency-record";
+    }
+
+    @Override
+    public void encode(IdempotencyRecord record, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeUTF(record.key());
+        writeDate(out, record.createdAt());
+        resultCodec.encode(record.result(), out);
+    }
+
+    @Override
+    public IdempotencyRecord decode(DataInput in) throws IOException {
+        readVersion(in, VERSION, name());
+        return new IdempotencyRecord(in.readUTF(), readDate(in), resultCodec.decode(in));
+    }
+}
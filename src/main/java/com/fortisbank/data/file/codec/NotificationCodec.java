@@ -0,0 +1,75 @@
+package com.fortisbank.data.file.codec;
+
+import com.fortisbank.contracts.models.accounts.Account;
+import com.fortisbank.contracts.models.others.Notification;
+import com.fortisbank.contracts.models.others.NotificationType;
+import com.fortisbank.contracts.models.users.Customer;
+import com.fortisbank.data.dal_utils.RecordCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Date;
+import java.util.function.Function;
+
+import static com.fortisbank.data.file.codec.CodecSupport.*;
+
+/**
+ * Binary codec for {@link Notification} records.
+ * The related customer and account are stored as ids and resolved when decoding; references to
+ * entities that no longer exist are dropped.
+ */
+public class NotificationCodec implements RecordCodec<Notification> {
+
+    private static final int VERSION = 1;
+
+    private final Function<String, Customer> customerResolver;
+    private final Function<String, Account> accountResolver;
+
+    /**
+     * Constructs a NotificationCodec.
+     *
+     * @param customerResolver returns the stored customer with the given id, or null if it does not exist
+     * @param accountResolver returns the stored account with the given number, or null if it does not exist
+     */
+    public NotificationCodec(Function<String, Customer> customerResolver, Function<String, Account> accountResolver) {
+        this.customerResolver = customerResolver;
+        this.accountResolver = accountResolver;
+    }
+
+    @Override
+    public String name() {
+        return "notification";
+    }
+
+    @Override
+    public void encode(Notification notification, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        writeId(out, notification.getNotificationId());
+        writeId(out, notification.getRecipientUserId());
+        writeEnum(out, notification.getType());
+        writeString(out, notification.getTitle());
+        writeString(out, notification.getMessage());
+        writeDate(out, notification.getTimestamp());
+        out.writeBoolean(notification.isRead());
+        writeId(out, notification.getRelatedCustomer() != null ? notification.getRelatedCustomer().getUserId() : null);
+        writeId(out, notification.getRelatedAccount() != null ? notification.getRelatedAccount().getAccountNumber() : null);
+    }
+
+    @Override
+    public Notification decode(DataInput in) throws IOException {
+        readVersion(in, VERSION, name());
+        String notificationId = readId(in);
+        String recipientUserId = readId(in);
+        NotificationType type = readEnum(in, NotificationType.class);
+        String title = readString(in);
+        String message = readString(in);
+        Date timestamp = readDate(in);
+        boolean read = in.readBoolean();
+        String customerId = readId(in);
+        String accountNumber = readId(in);
+        return new Notification(notificationId, recipientUserId, type, title, message, read, timestamp,
+                customerId != null ? customerResolver.apply(customerId) : null,
+                accountNumber != null ? accountResolver.apply(accountNumber) : null);
+    }
+}
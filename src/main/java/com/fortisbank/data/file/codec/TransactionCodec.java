@@ -0,0 +1,90 @@
+package com.fortisbank.data.file.codec;
+
+import com.fortisbank.contracts.models.accounts.Account;
+import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.contracts.models.transactions.TransactionFactory;
+import com.fortisbank.contracts.models.transactions.TransactionType;
+import com.fortisbank.data.dal_utils.RecordCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.function.Function;
+
+import static com.fortisbank.data.file.codec.CodecSupport.*;
+
+/**
+ * Binary codec for {@link Transaction} records.
+ * Source and destination accounts are stored as account numbers and resolved through the account
+ * store when decoding; accounts that no longer exist are replaced by placeholders carrying the number.
+ */
+public class TransactionCodec implements RecordCodec<Transaction> {
+
+    private static final int VERSION = 1;
+
+    private final Function<String, Account> accountResolver;
+
+    /**
+     * Constructs a TransactionCodec.
+     *
+     * @param accountResolver returns the stored account with the given number, or null if it does not exist
+     */
+    public TransactionCodec(Function<String, Account> accountResolver) {
+        this.accountResolver = accountResolver;
+    }
+
+    @Override
+    public String name() {
+        return "transaction";
+    }
+
+    @Override
+    public void encode(Transaction transaction, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        writeEnum(out, transaction.getTransactionType());
+        writeId(out, transaction.getTransactionNumber());
+        writeDate(out, transaction.getTransactionDate());
+        writeDecimal(out, transaction.getAmount());
+        writeString(out, transaction.getDescription());
+        writeId(out, accountNumber(transaction.getSourceAccount()));
+        writeId(out, accountNumber(transaction.getDestinationAccount()));
+    }
+
+    @Override
+    public Transaction decode(DataInput in) throws IOException {
+        readVersion(in, VERSION, name());
+        TransactionType type = readEnum(in, TransactionType.class);
+        String transactionNumber = readId(in);
+        Date date = readDate(in);
+        BigDecimal amount = readDecimal(in);
+        String description = readString(in);
+        Account source = resolveAccount(readId(in));
+        Account destination = resolveAccount(readId(in));
+        if (type == null) {
+            throw new IOException("Transaction record without type: " + transactionNumber);
+        }
+
+        Transaction transaction = TransactionFactory.createTransaction(type, description, date, amount, source, destination);
+        // The factory only keeps the accounts relevant to the type; restore the stored fields as they were
+        transaction.setTransactionNumber(transactionNumber);
+        transaction.setTransactionDate(date);
+        transaction.setDescription(description);
+        transaction.setSourceAccount(source);
+        transaction.setDestinationAccount(destination);
+        return transaction;
+    }
+
+    private Account resolveAccount(String accountNumber) {
+        if (accountNumber == null) {
+            return null;
+        }
+        Account account = accountResolver.apply(accountNumber);
+        return account != null ? account : AccountCodec.placeholder(accountNumber);
+    }
+
+    private static String accountNumber(Account account) {
+        return account != null ? account.getAccountNumber() : null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.fortisbank.data.file.codec;
+
+import com.fortisbank.contracts.models.transactions.TransactionResult;
+import com.fortisbank.contracts.models.transactions.TransactionType;
+import com.fortisbank.data.dal_utils.RecordCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.fortisbank.data.file.codec.CodecSupport.*;
+
+/**
+ * Binary codec for {@link TransactionResult} records of the transaction ledger.
+ * Accounts are stored as numbers only, so results decode without the account repository.
+ */
+public class TransactionResultCodec implements RecordCodec<TransactionResult> {
+
+    private static final int VERSION = 1;
+
+    @Override
+    public String name() {
+        return "transaction-result";
+    }
+
+    @Override
+    public void encode(TransactionResult result, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        writeVarLong(out, result.sequence());
+        writeId(out, result.transactionNumber());
+        writeEnum(out, result.type());
+        writeId(out, result.sourceAccountId());
+        writeId(out, result.destinationAccountId());
+        writeDecimal(out, result.amount());
+        writeEnum(out, result.status());
+        writeString(out, result.reason());
+    }
+
+    @Override
+    public TransactionResult decode(DataInput in) throws IOException {
+        readVersion(in, VERSION, name());
+        return new TransactionResult(readVarLong(in), readId(in), readEnum(in, TransactionType.class),
+                readId(in), readId(in), readDecimal(in), readEnum(in, TransactionResult.Status.class), readString(in));
+    }
+}
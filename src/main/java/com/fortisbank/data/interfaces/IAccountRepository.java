@@ -1,8 +1,15 @@
 package com.fortisbank.data.interfaces;
 
      import com.fortisbank.contracts.models.accounts.Account;
+     import com.fortisbank.contracts.models.accounts.AccountType;
+     import com.fortisbank.contracts.models.reports.AccountTypeTotals;
      import com.fortisbank.contracts.collections.AccountList;
+     import com.fortisbank.contracts.collections.Page;
      import com.fortisbank.contracts.exceptions.AccountRepositoryException;
+     import com.fortisbank.contracts.exceptions.OptimisticLockException;
+
+     import java.math.BigDecimal;
+     import java.util.Map;
 
      /**
       * Interface for account repository operations.
@@ -36,6 +43,16 @@ package com.fortisbank.data.interfaces;
           */
          AccountList getAllAccounts() throws AccountRepositoryException;
 
+         /**
+          * Retrieves one page of accounts, in the order of their IDs.
+          *
+          * @param pageToken the token of the page, from the previous page, or null for the first page
+          * @param pageSize the maximum number of accounts in the page
+          * @return the page of accounts
+          * @throws AccountRepositoryException if an error occurs while retrieving the accounts
+          */
+         Page<Account> getAccountsPage(String pageToken, int pageSize) throws AccountRepositoryException;
+
          /**
           * Inserts a new account.
           *
@@ -45,9 +62,11 @@ package com.fortisbank.data.interfaces;
          void insertAccount(Account account) throws AccountRepositoryException;
 
          /**
-          * Updates an existing account.
+          * Updates an existing account, if its stored version is still the version of the given
+          * instance, and increments the version of both.
           *
           * @param account the account to update
+          * @throws OptimisticLockException if the account was updated since the instance was read
           * @throws AccountRepositoryException if an error occurs while updating the account
           */
          void updateAccount(Account account) throws AccountRepositoryException;
@@ -59,4 +78,21 @@ package com.fortisbank.data.interfaces;
           * @throws AccountRepositoryException if an error occurs while deleting the account
           */
          void deleteAccount(String accountId) throws AccountRepositoryException;
+
+         /**
+          * Counts the accounts of each type and sums their balances and credit limits, without loading them.
+          *
+          * @return the aggregates by account type; types without accounts are absent
+          * @throws AccountRepositoryException if an error occurs while aggregating the accounts
+          */
+         Map<AccountType, AccountTypeTotals> getTotalsByAccountType() throws AccountRepositoryException;
+
+         /**
+          * Retrieves the accounts whose available balance is below a threshold.
+          *
+          * @param threshold the balance below which accounts are returned
+          * @return a list of the accounts with a lower balance
+          * @throws AccountRepositoryException if an error occurs while retrieving the accounts
+          */
+         AccountList getAccountsWithBalanceBelow(BigDecimal threshold) throws AccountRepositoryException;
      }
\ No newline at end of file
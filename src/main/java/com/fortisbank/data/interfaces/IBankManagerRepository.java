@@ -27,6 +27,15 @@ package com.fortisbank.data.interfaces;
           */
          ManagerList getAllManagers() throws BankManagerRepositoryException;
 
+         /**
+          * Retrieves the bank manager with the given email, compared case-insensitively.
+          *
+          * @param email the email to look up
+          * @return the bank manager, or null if no manager has this email
+          * @throws BankManagerRepositoryException if an error occurs during retrieval
+          */
+         BankManager getManagerByEmail(String email) throws BankManagerRepositoryException;
+
          /**
           * Inserts a new bank manager.
           *
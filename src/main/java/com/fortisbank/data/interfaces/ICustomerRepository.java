@@ -2,6 +2,7 @@ package com.fortisbank.data.interfaces;
 
      import com.fortisbank.contracts.exceptions.CustomerRepositoryException;
      import com.fortisbank.contracts.collections.CustomerList;
+     import com.fortisbank.contracts.collections.Page;
      import com.fortisbank.contracts.models.users.Customer;
 
      /**
@@ -27,6 +28,34 @@ package com.fortisbank.data.interfaces;
           */
          CustomerList getAllCustomers() throws CustomerRepositoryException;
 
+         /**
+          * Retrieves one page of customers, in the order of their IDs.
+          *
+          * @param pageToken the token of the page, from the previous page, or null for the first page
+          * @param pageSize the maximum number of customers in the page
+          * @return the page of customers
+          * @throws CustomerRepositoryException if an error occurs while retrieving the customers
+          */
+         Page<Customer> getCustomersPage(String pageToken, int pageSize) throws CustomerRepositoryException;
+
+         /**
+          * Retrieves the customer with the given email, compared case-insensitively.
+          *
+          * @param email the email to look up
+          * @return the customer, or null if no customer has this email
+          * @throws CustomerRepositoryException if an error occurs during retrieval
+          */
+         Customer getCustomerByEmail(String email) throws CustomerRepositoryException;
+
+         /**
+          * Retrieves a customer with the given phone number.
+          *
+          * @param phoneNumber the phone number to look up
+          * @return the customer, or null if no customer has this phone number
+          * @throws CustomerRepositoryException if an error occurs during retrieval
+          */
+         Customer getCustomerByPhone(String phoneNumber) throws CustomerRepositoryException;
+
          /**
           * Inserts a new customer.
           *
@@ -50,4 +79,12 @@ package com.fortisbank.data.interfaces;
           * @throws CustomerRepositoryException if an error occurs while deleting the customer
           */
          void deleteCustomer(String customerId) throws CustomerRepositoryException;
+
+         /**
+          * Counts the customers without loading them.
+          *
+          * @return the number of customers
+          * @throws CustomerRepositoryException if an error occurs while counting the customers
+          */
+         int countCustomers() throws CustomerRepositoryException;
      }
\ No newline at end of file
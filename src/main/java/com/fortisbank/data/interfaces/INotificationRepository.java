@@ -1,13 +1,27 @@
 package com.fortisbank.data.interfaces;
 
 import com.fortisbank.contracts.collections.NotificationList;
+import com.fortisbank.contracts.collections.Page;
 import com.fortisbank.contracts.models.others.Notification;
 import com.fortisbank.contracts.exceptions.NotificationRepositoryException;
 
+import java.util.Collection;
+
 public interface INotificationRepository {
     void insertNotification(Notification notification) throws NotificationRepositoryException;
+    void insertNotifications(Collection<Notification> notifications) throws NotificationRepositoryException;
     void deleteNotification(String notificationId) throws NotificationRepositoryException;
     void markAsSeen(String notificationId) throws NotificationRepositoryException;
     NotificationList getNotificationsByUserId(String userId) throws NotificationRepositoryException;
+
+    /**
+     * Retrieves one page of the notifications of a user, newest first.
+     *
+     * @param userId the ID of the recipient
+     * @param pageToken the token of the page, from the previous page, or null for the first page
+     * @param pageSize the maximum number of notifications in the page
+     * @return the page of notifications
+     */
+    Page<Notification> getNotificationsPageByUserId(String userId, String pageToken, int pageSize) throws NotificationRepositoryException;
     Notification getNotificationById(String id) throws NotificationRepositoryException;
 }
@@ -1,11 +1,19 @@
 package com.fortisbank.data.interfaces;
 
 import com.fortisbank.contracts.exceptions.TransactionRepositoryException;
+import com.fortisbank.contracts.collections.Page;
 import com.fortisbank.contracts.collections.TransactionList;
+import com.fortisbank.contracts.models.reports.TransactionTypeTotals;
+import com.fortisbank.contracts.models.transactions.IdempotencyRecord;
 import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.contracts.models.transactions.TransactionType;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Interface for transaction repository operations.
@@ -36,6 +44,28 @@ public interface ITransactionRepository {
      */
     TransactionList getAllTransactions() throws TransactionRepositoryException;
 
+    /**
+     * Streams the transactions dated within a range, archived ones included, without loading them all
+     * in memory: rows are fetched from the database as the stream is consumed, and the file
+     * repositories read one month at a time. The stream may hold a database connection until it is
+     * closed, so callers use it in a try-with-resources statement. Errors while the stream is
+     * consumed are thrown as unchecked exceptions.
+     *
+     * @param start the first day of the range, or null for no lower bound
+     * @param end the last day of the range, or null for no upper bound
+     * @return the stream of transactions, to be closed after use
+     */
+    Stream<Transaction> streamTransactions(LocalDate start, LocalDate end) throws TransactionRepositoryException;
+
+    /**
+     * Retrieves one page of transactions, archived ones included, in date order.
+     *
+     * @param pageToken the token of the page, from the previous page, or null for the first page
+     * @param pageSize the maximum number of transactions in the page
+     * @return the page of transactions
+     */
+    Page<Transaction> getTransactionsPage(String pageToken, int pageSize) throws TransactionRepositoryException;
+
     /**
      * Inserts a new transaction.
      *
@@ -43,6 +73,14 @@ public interface ITransactionRepository {
      */
     void insertTransaction(Transaction transaction) throws TransactionRepositoryException;
 
+    /**
+     * Inserts several transactions at once: in one batched database transaction, or in one append
+     * to the file store. Used by jobs that record many transactions.
+     *
+     * @param transactions the transactions to insert
+     */
+    void insertTransactions(Collection<Transaction> transactions) throws TransactionRepositoryException;
+
     /**
      * Deletes a transaction by its number.
      *
@@ -61,11 +99,78 @@ public interface ITransactionRepository {
     TransactionList getTransactionsByCustomerAndDateRange(String customerID, LocalDate start, LocalDate end) throws TransactionRepositoryException;
 
     /**
-     * Retrieves the balance for a specific customer before a given date.
+     * Retrieves the balance of a customer's accounts before a given date: the signed sum of their
+     * transactions, with the signs of {@link #getNetChangeByAccount}. It is read from the monthly
+     * balance snapshots before the month of the date, plus the transactions of that month before it.
      *
      * @param customerID the ID of the customer whose balance to retrieve
      * @param start the date before which to calculate the balance
      * @return the balance for the specified customer before the given date
      */
     BigDecimal getBalanceBeforeDate(String customerID, LocalDate start) throws TransactionRepositoryException;
-}
\ No newline at end of file
+
+    /**
+     * Adds transactions to the monthly closing-balance snapshots of their accounts, read by
+     * {@link #getBalanceBeforeDate}. Called with the transactions inserted by a unit of work, once.
+     *
+     * @param transactions the inserted transactions
+     */
+    void updateBalanceSnapshots(Collection<Transaction> transactions) throws TransactionRepositoryException;
+
+    /**
+     * Records the idempotency key a transaction was executed with in the dedupe index. Called in the
+     * unit of work of the transaction, so that the key is stored if and only if the transaction is.
+     * An expired record of the key, created before the cutoff, is replaced.
+     *
+     * @param record the key and the result of the transaction
+     * @param expiredBefore the creation date before which a record of the key has expired
+     * @throws TransactionRepositoryException if a live record of the key exists or the key cannot be stored
+     */
+    void insertIdempotencyRecord(IdempotencyRecord record, Date expiredBefore) throws TransactionRepositoryException;
+
+    /**
+     * Retrieves the record of an idempotency key from the dedupe index.
+     *
+     * @param key the idempotency key
+     * @return the record, or null if the key was never recorded or has been deleted
+     */
+    IdempotencyRecord getIdempotencyRecord(String key) throws TransactionRepositoryException;
+
+    /**
+     * Deletes the records of the dedupe index created before a date.
+     *
+     * @param cutoff the creation date of the oldest record kept
+     * @return the number of records deleted
+     */
+    int deleteIdempotencyRecordsBefore(Date cutoff) throws TransactionRepositoryException;
+
+    /**
+     * Sums, for each account of a customer, the signed amounts of its transactions within a date range:
+     * deposits and incoming transfers add to the account, withdrawals, fees and outgoing transfers
+     * subtract from it. The sums are computed without loading the transactions.
+     *
+     * @param customerID the ID of the customer whose accounts to aggregate
+     * @param start the start date of the date range
+     * @param end the end date of the date range
+     * @return the net change by account number; accounts without transactions in the range are absent
+     */
+    Map<String, BigDecimal> getNetChangeByAccount(String customerID, LocalDate start, LocalDate end) throws TransactionRepositoryException;
+
+    /**
+     * Counts the transactions of each type and sums their amounts, archived ones included, without
+     * loading them.
+     *
+     * @return the aggregates by transaction type; types without transactions are absent
+     */
+    Map<TransactionType, TransactionTypeTotals> getTotalsByTransactionType() throws TransactionRepositoryException;
+
+    /**
+     * Moves the transactions dated before the given day to the archive.
+     * Archived transactions are no longer modified, but are still returned by the queries above;
+     * date-range queries read the archive only when the range starts before the archived days.
+     *
+     * @param cutoff the first day kept out of the archive
+     * @return the number of transactions archived
+     */
+    int archiveTransactionsBefore(LocalDate cutoff) throws TransactionRepositoryException;
+}
@@ -22,15 +22,15 @@ public class Main {
                  * and  from there the other services needed by the application will be initialized and passed to the components.
                  */
 
-                //Define the storage mode for the application
-                StorageMode storageMode = StorageMode.DATABASE;
+                //Define the storage mode for the application, DATABASE unless set with -Dfortisbank.storageMode=...
+                StorageMode storageMode = StorageMode.valueOf(System.getProperty("fortisbank.storageMode", "DATABASE"));
                 // Initialize the data for testing purposes
                 initData(storageMode);
                 // LoginFrame is the entry point of the application
                 new LoginFrame(storageMode).setVisible(true);
                 // Start background tasks
                 AutomationService.startAllDaemonTasks(storageMode);
-                if (DatabaseConnection.getInstance().TestConnection()){
+                if (DatabaseConnection.getInstance(storageMode).TestConnection()){
                     System.out.println("Database connection test successful.");
                 } else {
                     System.out.println("Database connection test failed.");
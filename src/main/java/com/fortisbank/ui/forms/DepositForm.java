@@ -63,7 +63,7 @@ package com.fortisbank.ui.forms;
                          targetAccount
                  );
 
-                 TransactionService.getInstance(storageMode).executeTransaction(tx);
+                 TransactionService.getInstance(storageMode).executeTransaction(tx, submissionKey);
                  StyleUtils.showStyledSuccessDialog(this, "Deposit successful.");
                  return true;
              } catch (NumberFormatException e) {
@@ -1,5 +1,6 @@
 package com.fortisbank.ui.forms;
 
+    import com.fortisbank.contracts.utils.IdGenerator;
     import com.fortisbank.data.dal_utils.StorageMode;
     import com.fortisbank.ui.ui_utils.StyleUtils;
 
@@ -23,6 +24,11 @@ package com.fortisbank.ui.forms;
         protected final JTextField descriptionField = new JTextField();
         protected StorageMode storageMode;
 
+        /**
+         * Idempotency key of the form's submission: a confirmation sent twice executes its transaction once.
+         */
+        protected final String submissionKey = IdGenerator.generateId();
+
         /**
          * Constructs a TransactionForm with the specified title and storage mode.
          *
@@ -223,7 +223,7 @@ package com.fortisbank.ui.forms;
                          destination
                  );
 
-                 TransactionService.getInstance(storageMode).executeTransaction(tx);
+                 TransactionService.getInstance(storageMode).executeTransaction(tx, submissionKey);
                  StyleUtils.showStyledSuccessDialog(this, "Transfer successful.");
                  return true;
              } catch (Exception e) {
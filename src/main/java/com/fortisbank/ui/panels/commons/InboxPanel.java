@@ -3,6 +3,7 @@ package com.fortisbank.ui.panels.commons;
      import com.fortisbank.business.services.account.AccountLoanRequestService;
      import com.fortisbank.business.services.notification.NotificationService;
      import com.fortisbank.data.dal_utils.StorageMode;
+     import com.fortisbank.contracts.collections.Page;
      import com.fortisbank.contracts.models.others.Notification;
      import com.fortisbank.business.services.session.SessionManager;
      import com.fortisbank.ui.components.NotificationCard;
@@ -10,7 +11,6 @@ package com.fortisbank.ui.panels.commons;
 
      import javax.swing.*;
      import java.awt.*;
-     import java.util.List;
      import java.util.logging.Level;
      import java.util.logging.Logger;
 
@@ -21,12 +21,15 @@ package com.fortisbank.ui.panels.commons;
      public class InboxPanel extends JPanel {
 
          private static final Logger LOGGER = Logger.getLogger(InboxPanel.class.getName());
+         private static final int PAGE_SIZE = 50;
 
          private final NotificationService notificationService;
          private final AccountLoanRequestService accountLoanService;
          private final JPanel messageListPanel = new JPanel();
          private final JComboBox<String> filterSelector = new JComboBox<>(new String[]{"All", "Unread", "Custom", "System", "Security"});
          private final StorageMode storageMode;
+         private final JButton loadMoreBtn = new JButton("Load More");
+         private String nextPageToken; // null once the last page is shown
 
          /**
           * Constructs an InboxPanel with the specified storage mode.
@@ -59,6 +62,7 @@ package com.fortisbank.ui.panels.commons;
 
                  StyleUtils.styleButton(markAllReadBtn, false);
                  StyleUtils.styleButton(clearBtn, false);
+                 StyleUtils.styleButton(loadMoreBtn, false);
 
                  markAllReadBtn.addActionListener(e -> {
                      try {
@@ -80,6 +84,8 @@ package com.fortisbank.ui.panels.commons;
                      }
                  });
 
+                 loadMoreBtn.addActionListener(e -> loadMessages());
+
                  topPanel.add(filterLabel);
                  topPanel.add(filterSelector);
                  topPanel.add(markAllReadBtn);
@@ -103,27 +109,40 @@ package com.fortisbank.ui.panels.commons;
          }
 
          /**
-          * Refreshes the messages displayed in the inbox panel based on the selected filter.
+          * Refreshes the messages displayed in the inbox panel based on the selected filter, starting
+          * again from the first page.
           */
          private void refreshMessages() {
-             try {
-                 messageListPanel.removeAll();
+             messageListPanel.removeAll();
+             nextPageToken = null;
+             loadMessages();
+         }
 
-                 List<Notification> notifications = switch (filterSelector.getSelectedItem().toString()) {
-                     case "Unread" -> notificationService.getUnreadNotifications(SessionManager.getCurrentUser().getUserId());
-                     default -> notificationService.getAllNotifications(SessionManager.getCurrentUser().getUserId());
-                 };
+         /**
+          * Appends the next page of messages to the inbox panel. The "Unread" filter is applied to each
+          * page as it is read.
+          */
+         private void loadMessages() {
+             try {
+                 messageListPanel.remove(loadMoreBtn);
+                 Page<Notification> page = notificationService.getNotificationsPage(
+                         SessionManager.getCurrentUser().getUserId(), nextPageToken, PAGE_SIZE);
+                 boolean unreadOnly = "Unread".equals(filterSelector.getSelectedItem().toString());
+
+                 for (Notification notification : page.items()) {
+                     if (unreadOnly && notification.isRead()) continue;
+                     NotificationCard card = new NotificationCard(notification, storageMode);
+                     messageListPanel.add(card);
+                     messageListPanel.add(Box.createVerticalStrut(10));
+                 }
+                 nextPageToken = page.nextPageToken();
 
-                 if (notifications.isEmpty()) {
+                 if (page.hasNext()) {
+                     messageListPanel.add(loadMoreBtn);
+                 } else if (messageListPanel.getComponentCount() == 0) {
                      JLabel emptyLabel = new JLabel("No notifications.");
                      StyleUtils.styleLabel(emptyLabel);
                      messageListPanel.add(emptyLabel);
-                 } else {
-                     for (Notification notification : notifications) {
-                         NotificationCard card = new NotificationCard(notification, storageMode);
-                         messageListPanel.add(card);
-                         messageListPanel.add(Box.createVerticalStrut(10));
-                     }
                  }
 
                  messageListPanel.revalidate();
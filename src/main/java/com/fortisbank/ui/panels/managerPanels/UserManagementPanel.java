@@ -4,6 +4,7 @@ package com.fortisbank.ui.panels.managerPanels;
     import com.fortisbank.business.services.users.manager.BankManagerService;
     import com.fortisbank.data.dal_utils.StorageMode;
     import com.fortisbank.contracts.collections.ManagerList;
+    import com.fortisbank.contracts.collections.Page;
     import com.fortisbank.contracts.models.users.Customer;
     import com.fortisbank.contracts.models.users.User;
     import com.fortisbank.ui.components.UserCard;
@@ -11,7 +12,6 @@ package com.fortisbank.ui.panels.managerPanels;
 
     import javax.swing.*;
     import java.awt.*;
-    import java.util.List;
     import java.util.logging.Level;
     import java.util.logging.Logger;
 
@@ -22,8 +22,12 @@ package com.fortisbank.ui.panels.managerPanels;
     public class UserManagementPanel extends JPanel {
 
         private static final Logger LOGGER = Logger.getLogger(UserManagementPanel.class.getName());
+        private static final int PAGE_SIZE = 50;
         private final StorageMode storageMode;
         private final JPanel userListPanel = new JPanel();
+        private final JPanel customerListPanel = new JPanel();
+        private final JButton loadMoreBtn = new JButton("Load More Customers");
+        private String nextCustomersPage; // null once the last page of customers is shown
         private final JComboBox<String> roleFilter = new JComboBox<>(new String[]{"All", "Customer", "Manager"});
 
         /**
@@ -55,6 +59,10 @@ package com.fortisbank.ui.panels.managerPanels;
 
                 userListPanel.setLayout(new BoxLayout(userListPanel, BoxLayout.Y_AXIS));
                 userListPanel.setOpaque(false);
+                customerListPanel.setLayout(new BoxLayout(customerListPanel, BoxLayout.Y_AXIS));
+                customerListPanel.setOpaque(false);
+                StyleUtils.styleButton(loadMoreBtn, false);
+                loadMoreBtn.addActionListener(e -> loadCustomers());
 
                 JScrollPane scrollPane = new JScrollPane(userListPanel);
                 scrollPane.setOpaque(false);
@@ -78,11 +86,11 @@ package com.fortisbank.ui.panels.managerPanels;
                 String selectedRole = roleFilter.getSelectedItem().toString();
 
                 if (selectedRole.equals("All") || selectedRole.equals("Customer")) {
-                    List<Customer> customers = CustomerService.getInstance(storageMode).getAllCustomers();
-                    for (Customer customer : customers) {
-                        userListPanel.add(new UserCard(customer, storageMode));
-                        userListPanel.add(Box.createVerticalStrut(10));
-                    }
+                    customerListPanel.removeAll();
+                    nextCustomersPage = null;
+                    userListPanel.add(customerListPanel);
+                    userListPanel.add(loadMoreBtn);
+                    loadCustomers();
                 }
 
                 if (selectedRole.equals("All") || selectedRole.equals("Manager")) {
@@ -100,4 +108,25 @@ package com.fortisbank.ui.panels.managerPanels;
                 StyleUtils.showStyledErrorDialog(this, "Failed to refresh the user list: " + e.getMessage());
             }
         }
+
+        /**
+         * Appends the next page of customers to the user list.
+         */
+        private void loadCustomers() {
+            try {
+                Page<Customer> page = CustomerService.getInstance(storageMode).getCustomersPage(nextCustomersPage, PAGE_SIZE);
+                for (Customer customer : page.items()) {
+                    customerListPanel.add(new UserCard(customer, storageMode));
+                    customerListPanel.add(Box.createVerticalStrut(10));
+                }
+                nextCustomersPage = page.nextPageToken();
+                loadMoreBtn.setVisible(page.hasNext());
+
+                userListPanel.revalidate();
+                userListPanel.repaint();
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Error loading customers: {0}", e.getMessage());
+                StyleUtils.showStyledErrorDialog(this, "Failed to load customers: " + e.getMessage());
+            }
+        }
     }
\ No newline at end of file
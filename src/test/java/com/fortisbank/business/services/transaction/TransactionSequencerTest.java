@@ -0,0 +1,112 @@
+package com.fortisbank.business.services.transaction;
+
+import com.fortisbank.contracts.models.accounts.Account;
+import com.fortisbank.contracts.models.accounts.CheckingAccount;
+import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.contracts.models.transactions.TransactionFactory;
+import com.fortisbank.contracts.models.transactions.TransactionResult;
+import com.fortisbank.contracts.models.transactions.TransactionType;
+import com.fortisbank.contracts.utils.IdGenerator;
+import com.fortisbank.data.dal_utils.WriteAheadJournal;
+import com.fortisbank.data.file.codec.TransactionResultCodec;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of {@link TransactionSequencer}, run in the build's working directory.
+ */
+class TransactionSequencerTest {
+
+    @Test
+    void transactionsQueuedMeanwhileAreExecutedAsOneBatchInOrder() throws Exception {
+        CountDownLatch executing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = new ArrayList<>();
+        TransactionSequencer sequencer = new TransactionSequencer("test-" + IdGenerator.generateId(), (transactions, keys, first) -> {
+            batchSizes.add(transactions.size());
+            executing.countDown();
+            try {
+                assertTrue(release.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            List<TransactionResult> results = new ArrayList<>();
+            for (int i = 0; i < transactions.size(); i++) {
+                results.add(TransactionResult.applied(first + i, transactions.get(i)));
+            }
+            return results;
+        });
+        Account account = new CheckingAccount(IdGenerator.generateId(), null, new Date(), BigDecimal.ZERO);
+
+        CompletableFuture<TransactionResult> head = sequencer.submit(deposit(account), null);
+        assertTrue(executing.await(10, TimeUnit.SECONDS));
+        List<Transaction> queued = new ArrayList<>();
+        List<CompletableFuture<TransactionResult>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            queued.add(deposit(account));
+            results.add(sequencer.submit(queued.get(i), null));
+        }
+        release.countDown();
+
+        long first = head.get(10, TimeUnit.SECONDS).sequence();
+        for (int i = 0; i < results.size(); i++) {
+            TransactionResult result = results.get(i).get(10, TimeUnit.SECONDS);
+            assertEquals(first + 1 + i, result.sequence());
+            assertEquals(queued.get(i).getTransactionNumber(), result.transactionNumber());
+        }
+        assertEquals(List.of(1, 10), batchSizes);
+    }
+
+    @Test
+    void numberingContinuesFromTheLastLedgerEntry() throws Exception {
+        String name = "test-" + IdGenerator.generateId();
+        Account account = new CheckingAccount(IdGenerator.generateId(), null, new Date(), BigDecimal.ZERO);
+        TransactionSequencer first = new TransactionSequencer(name, TransactionSequencerTest::applyAll);
+        long last = 0;
+        for (int i = 0; i < 5; i++) {
+            last = first.submit(deposit(account), null).get(10, TimeUnit.SECONDS).sequence();
+        }
+
+        // The results are journaled after their futures are completed
+        File ledger = new File("data/ledger-" + name + ".journal");
+        for (int attempt = 0; attempt < 500 && lastLsn(ledger) < last; attempt++) {
+            Thread.sleep(10);
+        }
+
+        TransactionSequencer reopened = new TransactionSequencer(name, TransactionSequencerTest::applyAll);
+        assertEquals(last + 1, reopened.submit(deposit(account), null).get(10, TimeUnit.SECONDS).sequence());
+    }
+
+    private static long lastLsn(File ledger) throws IOException {
+        WriteAheadJournal<TransactionResult> journal = new WriteAheadJournal<>(ledger, new TransactionResultCodec(), false);
+        try {
+            return journal.resume();
+        } finally {
+            journal.close();
+        }
+    }
+
+    private static List<TransactionResult> applyAll(List<Transaction> transactions, List<String> keys, long first) {
+        List<TransactionResult> results = new ArrayList<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            results.add(TransactionResult.applied(first + i, transactions.get(i)));
+        }
+        return results;
+    }
+
+    private static Transaction deposit(Account account) {
+        return TransactionFactory.createTransaction(TransactionType.DEPOSIT, "Test deposit", new Date(), BigDecimal.ONE, null, account);
+    }
+}
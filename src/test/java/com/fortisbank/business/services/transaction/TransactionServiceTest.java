@@ -0,0 +1,152 @@
+package com.fortisbank.business.services.transaction;
+
+import com.fortisbank.business.services.account.AccountService;
+import com.fortisbank.contracts.exceptions.InvalidTransactionException;
+import com.fortisbank.contracts.models.accounts.Account;
+import com.fortisbank.contracts.models.accounts.CheckingAccount;
+import com.fortisbank.contracts.models.accounts.SavingsAccount;
+import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.contracts.models.transactions.TransactionFactory;
+import com.fortisbank.contracts.models.transactions.TransactionType;
+import com.fortisbank.contracts.models.users.Customer;
+import com.fortisbank.contracts.utils.IdGenerator;
+import com.fortisbank.data.dal_utils.StorageMode;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of {@link TransactionService} on the file storage, run in the build's working directory.
+ */
+class TransactionServiceTest {
+
+    private final TransactionService transactionService = TransactionService.getInstance(StorageMode.FILE);
+    private final AccountService accountService = AccountService.getInstance(StorageMode.FILE);
+
+    @Test
+    void rejectedTransactionLeavesBalanceUnchanged() {
+        Account account = new CheckingAccount(IdGenerator.generateId(), customer(), new Date(), new BigDecimal("100.00"));
+        accountService.createAccount(account);
+        for (int i = 0; i < CheckingAccount.FREE_TRANSACTION_LIMIT; i++) {
+            transactionService.executeTransaction(withdrawal(account, "1.00"));
+        }
+
+        // The withdrawal is debited before its fee is found to exceed the remaining balance
+        Transaction withdrawal = withdrawal(account, "95.00");
+        assertThrows(InvalidTransactionException.class, () -> transactionService.executeTransaction(withdrawal));
+
+        Account stored = accountService.getAccount(account.getAccountNumber());
+        assertEquals(0, new BigDecimal("98.00").compareTo(stored.getAvailableBalance()), "stored balance " + stored.getAvailableBalance());
+        assertEquals(0, new BigDecimal("98.00").compareTo(account.getAvailableBalance()), "caller's balance " + account.getAvailableBalance());
+
+        // Nothing of the rejected withdrawal is written by a later transaction on the account either
+        transactionService.executeTransaction(withdrawal(account, "1.00"));
+        stored = accountService.getAccount(account.getAccountNumber());
+        assertEquals(0, new BigDecimal("92.00").compareTo(stored.getAvailableBalance()), "stored balance " + stored.getAvailableBalance());
+    }
+
+    @Test
+    void interestRunsConcurrentWithDepositsLoseNoUpdate() throws Exception {
+        Account account = new SavingsAccount(IdGenerator.generateId(), customer(), new Date(), new BigDecimal("1000.00"), new BigDecimal("0.01"));
+        accountService.createAccount(account);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> deposits = executor.submit(() -> {
+                for (int i = 0; i < 20; i++) {
+                    transactionService.executeTransaction(TransactionFactory.createTransaction(TransactionType.DEPOSIT,
+                            "Test deposit", new Date(), BigDecimal.ONE, null, account));
+                }
+            });
+            Future<?> interest = executor.submit(() -> {
+                for (int i = 0; i < 5; i++) {
+                    transactionService.applyAnnualInterestToSavingsAccount((SavingsAccount) accountService.getAccount(account.getAccountNumber()));
+                }
+            });
+            deposits.get();
+            interest.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Every deposit and interest credit is both recorded and reflected in the stored balance
+        BigDecimal credited = transactionService.getTransactionsByAccount(account.getAccountNumber()).stream()
+                .map(Transaction::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        Account stored = accountService.getAccount(account.getAccountNumber());
+        assertEquals(0, new BigDecimal("1000.00").add(credited).compareTo(stored.getAvailableBalance()),
+                "stored balance " + stored.getAvailableBalance() + ", credited " + credited);
+    }
+
+    @Test
+    void withdrawalsRetriedOnConflictsAreRecordedOnceWithOneFee() throws Exception {
+        Account account = new CheckingAccount(IdGenerator.generateId(), customer(), new Date(), new BigDecimal("1000.00"));
+        accountService.createAccount(account);
+        for (int i = 0; i < CheckingAccount.FREE_TRANSACTION_LIMIT; i++) {
+            transactionService.executeTransaction(withdrawal(account, "1.00"));
+        }
+
+        // Another writer, such as an automation task, updates the account without its lock, so the
+        // withdrawals keep failing their version checks and are retried
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger rogueUpdates = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        int withdrawals = 30;
+        try {
+            Future<?> rogue = executor.submit(() -> {
+                while (running.get()) {
+                    Account copy = accountService.getAccount(account.getAccountNumber());
+                    try {
+                        accountService.updateAccount(copy);
+                        rogueUpdates.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        // updated by a withdrawal since it was read
+                    }
+                }
+            });
+            for (int i = 0; i < withdrawals; i++) {
+                transactionService.executeTransaction(withdrawal(account, "1.00"));
+            }
+            running.set(false);
+            rogue.get();
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+        assertTrue(rogueUpdates.get() > 0, "the other writer never updated the account");
+
+        Map<String, Long> records = transactionService.getTransactionsByAccount(account.getAccountNumber()).stream()
+                .collect(Collectors.groupingBy(Transaction::getTransactionNumber, Collectors.counting()));
+        assertEquals(0, records.values().stream().filter(count -> count > 1).count(), "duplicated transaction records");
+        Map<TransactionType, Long> byType = transactionService.getTransactionsByAccount(account.getAccountNumber()).stream()
+                .collect(Collectors.groupingBy(Transaction::getTransactionType, Collectors.counting()));
+        assertEquals(CheckingAccount.FREE_TRANSACTION_LIMIT + withdrawals, byType.get(TransactionType.WITHDRAWAL).intValue());
+        assertEquals(withdrawals, byType.get(TransactionType.FEE).intValue());
+
+        BigDecimal expected = new BigDecimal("1000.00")
+                .subtract(BigDecimal.valueOf(CheckingAccount.FREE_TRANSACTION_LIMIT + withdrawals))
+                .subtract(CheckingAccount.TRANSACTION_FEE.multiply(BigDecimal.valueOf(withdrawals)));
+        Account stored = accountService.getAccount(account.getAccountNumber());
+        assertEquals(0, expected.compareTo(stored.getAvailableBalance()), "stored balance " + stored.getAvailableBalance());
+    }
+
+    private static Customer customer() {
+        return new Customer(IdGenerator.generateId(), "Test", "Customer", "test@example.com", "5555555555", null, null);
+    }
+
+    private static Transaction withdrawal(Account account, String amount) {
+        return TransactionFactory.createTransaction(TransactionType.WITHDRAWAL, "Test withdrawal", new Date(),
+                new BigDecimal(amount), account, null);
+    }
+}
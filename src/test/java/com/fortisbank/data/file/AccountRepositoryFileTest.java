@@ -0,0 +1,95 @@
+package com.fortisbank.data.file;
+
+import com.fortisbank.contracts.exceptions.AccountRepositoryException;
+import com.fortisbank.contracts.exceptions.OptimisticLockException;
+import com.fortisbank.contracts.models.accounts.Account;
+import com.fortisbank.contracts.models.accounts.CheckingAccount;
+import com.fortisbank.contracts.utils.IdGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests of the optimistic locking of {@link AccountRepositoryFile}, run in the build's working directory.
+ */
+class AccountRepositoryFileTest {
+
+    private final AccountRepositoryFile repository = AccountRepositoryFile.getInstance();
+
+    @Test
+    void secondWriterOfTheSameVersionIsRejected() throws Exception {
+        Account account = insertAccount("100.00");
+        Account first = repository.getAccountById(account.getAccountNumber());
+        Account second = repository.getAccountById(account.getAccountNumber());
+        assertNotSame(first, second);
+
+        first.setAvailableBalance(new BigDecimal("150.00"));
+        repository.updateAccount(first);
+        assertEquals(account.getVersion() + 1, first.getVersion());
+
+        second.setAvailableBalance(new BigDecimal("50.00"));
+        assertThrows(OptimisticLockException.class, () -> repository.updateAccount(second));
+        assertEquals(account.getVersion(), second.getVersion());
+
+        Account stored = repository.getAccountById(account.getAccountNumber());
+        assertEquals(0, new BigDecimal("150.00").compareTo(stored.getAvailableBalance()), "stored balance " + stored.getAvailableBalance());
+        assertEquals(first.getVersion(), stored.getVersion());
+    }
+
+    @Test
+    void concurrentWritersRetryingOnConflictsLoseNoUpdate() throws Exception {
+        Account account = insertAccount("0.00");
+        int writers = 4;
+        int increments = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < increments; j++) {
+                        increment(account.getAccountNumber());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Account stored = repository.getAccountById(account.getAccountNumber());
+        assertEquals(0, BigDecimal.valueOf(writers * increments).compareTo(stored.getAvailableBalance()), "stored balance " + stored.getAvailableBalance());
+        assertEquals(account.getVersion() + writers * increments, stored.getVersion());
+    }
+
+    private void increment(String accountNumber) throws AccountRepositoryException {
+        while (true) {
+            Account account = repository.getAccountById(accountNumber);
+            account.setAvailableBalance(account.getAvailableBalance().add(BigDecimal.ONE));
+            try {
+                repository.updateAccount(account);
+                return;
+            } catch (OptimisticLockException e) {
+                // another writer committed since the read; retry on a fresh copy
+            }
+        }
+    }
+
+    private Account insertAccount(String balance) throws AccountRepositoryException {
+        Account account = new CheckingAccount(IdGenerator.generateId(), null, new Date(), new BigDecimal(balance));
+        repository.insertAccount(account);
+        return account;
+    }
+}
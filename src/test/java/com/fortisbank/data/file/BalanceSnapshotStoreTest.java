@@ -0,0 +1,85 @@
+package com.fortisbank.data.file;
+
+import com.fortisbank.contracts.models.accounts.Account;
+import com.fortisbank.contracts.models.accounts.CheckingAccount;
+import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.contracts.models.transactions.TransactionFactory;
+import com.fortisbank.contracts.models.transactions.TransactionType;
+import com.fortisbank.contracts.utils.IdGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests of {@link BalanceSnapshotStore}.
+ */
+class BalanceSnapshotStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void concurrentUpdatesOfAnAccountAreAllAdded() throws Exception {
+        BalanceSnapshotStore store = new BalanceSnapshotStore(new File(directory.toFile(), "balance-snapshots.ser"), Stream::empty);
+        Account account = new CheckingAccount(IdGenerator.generateId(), null, new Date(), BigDecimal.ZERO);
+        int writers = 4;
+        int deposits = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                boolean inUnitOfWork = i % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < deposits; j++) {
+                        List<Transaction> transactions = List.of(deposit(account));
+                        if (inUnitOfWork) {
+                            FileUnitOfWork.run(() -> store.add(transactions));
+                        } else {
+                            store.add(transactions);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        BigDecimal balance = store.closingBalanceBefore(List.of(account.getAccountNumber()), YearMonth.now().plusMonths(1));
+        assertEquals(0, BigDecimal.valueOf(writers * deposits).compareTo(balance), "closing balance " + balance);
+    }
+
+    @Test
+    void transactionStagedTwiceInAUnitOfWorkIsAddedOnce() throws Exception {
+        BalanceSnapshotStore store = new BalanceSnapshotStore(new File(directory.toFile(), "balance-snapshots.ser"), Stream::empty);
+        Account account = new CheckingAccount(IdGenerator.generateId(), null, new Date(), BigDecimal.ZERO);
+        List<Transaction> transactions = List.of(deposit(account));
+        FileUnitOfWork.run(() -> {
+            store.add(transactions);
+            store.add(transactions);
+        });
+
+        BigDecimal balance = store.closingBalanceBefore(List.of(account.getAccountNumber()), YearMonth.now().plusMonths(1));
+        assertEquals(0, BigDecimal.ONE.compareTo(balance), "closing balance " + balance);
+    }
+
+    private static Transaction deposit(Account account) {
+        return TransactionFactory.createTransaction(TransactionType.DEPOSIT, "Test deposit", new Date(), BigDecimal.ONE, null, account);
+    }
+}
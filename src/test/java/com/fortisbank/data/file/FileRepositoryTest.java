@@ -0,0 +1,125 @@
+package com.fortisbank.data.file;
+
+import com.fortisbank.contracts.models.reports.BalanceSnapshot;
+import com.fortisbank.data.file.codec.BalanceSnapshotCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Tests of the concurrent reads of {@link FileRepository}.
+ */
+class FileRepositoryTest {
+
+    private static final int ACCOUNTS = 8;
+    private static final int MONTHS = 1000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readersSeeConsistentStateWhileWritersGrowTheStore() throws Exception {
+        Snapshots repository = new Snapshots(new File(directory.toFile(), "snapshots.ser"));
+        int writers = 2;
+        int readers = 4;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(writers + readers);
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                writes.add(executor.submit(() -> {
+                    // Every month of each account in turn, so the store, its key set and the index
+                    // entries are all resized while the readers run
+                    for (int month = writer; month < MONTHS; month += writers) {
+                        List<BalanceSnapshot> snapshots = new ArrayList<>(ACCOUNTS);
+                        for (int account = 0; account < ACCOUNTS; account++) {
+                            snapshots.add(snapshot(account, month));
+                        }
+                        repository.append(snapshots);
+                    }
+                }));
+            }
+            List<Future<?>> reads = new ArrayList<>();
+            for (int r = 0; r < readers; r++) {
+                reads.add(executor.submit(() -> {
+                    while (writing.get()) {
+                        String account = accountId(ThreadLocalRandom.current().nextInt(ACCOUNTS));
+                        List<BalanceSnapshot> byAccount = repository.byAccount(account);
+                        for (BalanceSnapshot snapshot : byAccount) {
+                            assertNotNull(snapshot, "indexed snapshot of " + account);
+                            assertEquals(account, snapshot.accountId());
+                            assertNotNull(repository.find(snapshot.key()), "stored snapshot " + snapshot.key());
+                        }
+                        for (BalanceSnapshot snapshot : repository.page(null, 50)) {
+                            assertNotNull(snapshot, "paged snapshot");
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> write : writes) {
+                write.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            for (Future<?> read : reads) {
+                read.get(60, TimeUnit.SECONDS); // rethrows a failed check, or times out if a reader hangs
+            }
+        } finally {
+            writing.set(false);
+            executor.shutdownNow();
+        }
+
+        assertEquals(ACCOUNTS * MONTHS, repository.size());
+        for (int account = 0; account < ACCOUNTS; account++) {
+            assertEquals(MONTHS, repository.byAccount(accountId(account)).size());
+        }
+    }
+
+    private static BalanceSnapshot snapshot(int account, int month) {
+        return new BalanceSnapshot(accountId(account), YearMonth.of(2000, 1).plusMonths(month), BigDecimal.valueOf(month));
+    }
+
+    private static String accountId(int account) {
+        return "A" + account;
+    }
+
+    /**
+     * Balance snapshots indexed by account, a small repository to exercise the reads of the base class.
+     */
+    private static final class Snapshots extends FileRepository<BalanceSnapshot> {
+        private final FileIndex<BalanceSnapshot> accountIndex;
+
+        Snapshots(File file) {
+            super(file, BalanceSnapshot::key, new BalanceSnapshotCodec());
+            accountIndex = addIndex("account", BalanceSnapshot::accountId);
+        }
+
+        BalanceSnapshot find(String key) {
+            return findById(key);
+        }
+
+        List<BalanceSnapshot> byAccount(String accountId) {
+            return findAllByIndex(accountIndex, accountId);
+        }
+
+        List<BalanceSnapshot> page(String afterKey, int limit) {
+            return readPage(afterKey, limit);
+        }
+    }
+}
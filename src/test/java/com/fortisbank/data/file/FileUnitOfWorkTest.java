@@ -0,0 +1,59 @@
+package com.fortisbank.data.file;
+
+import com.fortisbank.contracts.exceptions.OptimisticLockException;
+import com.fortisbank.contracts.exceptions.UnitOfWorkException;
+import com.fortisbank.contracts.models.accounts.Account;
+import com.fortisbank.contracts.models.accounts.CheckingAccount;
+import com.fortisbank.contracts.models.transactions.Transaction;
+import com.fortisbank.contracts.models.transactions.TransactionFactory;
+import com.fortisbank.contracts.models.transactions.TransactionType;
+import com.fortisbank.contracts.utils.IdGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests of {@link FileUnitOfWork} over the file repositories, run in the build's working directory.
+ */
+class FileUnitOfWorkTest {
+
+    private final AccountRepositoryFile accounts = AccountRepositoryFile.getInstance();
+    private final TransactionRepositoryFile transactions = TransactionRepositoryFile.getInstance();
+
+    @Test
+    void versionConflictWritesNothingStagedBeforeTheAccount() throws Exception {
+        Account account = new CheckingAccount(IdGenerator.generateId(), null, new Date(), new BigDecimal("100.00"));
+        accounts.insertAccount(account);
+        Account stale = accounts.getAccountById(account.getAccountNumber());
+        Account current = accounts.getAccountById(account.getAccountNumber());
+        current.setAvailableBalance(new BigDecimal("90.00"));
+        accounts.updateAccount(current);
+
+        Transaction withdrawal = TransactionFactory.createTransaction(TransactionType.WITHDRAWAL, "Test withdrawal", new Date(),
+                BigDecimal.TEN, stale, null);
+        stale.setAvailableBalance(new BigDecimal("90.00"));
+        UnitOfWorkException e = assertThrows(UnitOfWorkException.class, () -> FileUnitOfWork.run(() -> {
+            try {
+                // Staged before the account, as the fee of a withdrawal used to be
+                transactions.insertTransaction(withdrawal);
+                transactions.updateBalanceSnapshots(List.of(withdrawal));
+                accounts.updateAccount(stale);
+            } catch (Exception failure) {
+                throw new IllegalStateException(failure);
+            }
+        }));
+        assertInstanceOf(OptimisticLockException.class, e.getCause());
+
+        assertNull(transactions.getTransactionByNumber(withdrawal.getTransactionNumber()));
+        Account stored = accounts.getAccountById(account.getAccountNumber());
+        assertEquals(0, new BigDecimal("90.00").compareTo(stored.getAvailableBalance()), "stored balance " + stored.getAvailableBalance());
+        assertEquals(current.getVersion(), stored.getVersion());
+    }
+}